@@ -1,36 +1,29 @@
 package Main.Java;
 
-import javafx.application.Application;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
-import javafx.stage.Stage;
-
-import java.awt.*;
-
-public class Main extends Application {
-
-    @Override
-    public void start(Stage stage) throws Exception {
-        FXMLLoader loader = new FXMLLoader(getClass()
-                .getResource("/Main/resources/layout.fxml"));
-
-        //hello
-
-        Parent root = loader.load(); // This loads the FXML
-
-        Scene scene = new Scene(root);
-
-        // Load CSS styling
-        scene.getStylesheets().add(getClass()
-                .getResource("/Main/resources/style.css").toExternalForm());
-
-        stage.setTitle("Minecraft Server Dashboard");
-        stage.setScene(scene);
-        stage.show();
-    }
-
-    public static void main(String[] args) {
-        launch();
+import Main.Java.daemon.Daemon;
+import Main.Java.daemon.DaemonClient;
+import Main.Java.ui.DashboardApp;
+
+import java.util.Arrays;
+
+// Entry point. No arguments opens the dashboard window; "daemon" runs the same server
+// management headless and "ctl" talks to a running daemon. This class must not touch JavaFX:
+// the headless modes run on hosts without it and never load a single JavaFX class.
+public class Main {
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "";
+        String[] rest = args.length > 0 ? Arrays.copyOfRange(args, 1, args.length) : args;
+        switch (mode) {
+            case "daemon":
+                Daemon.main(rest);
+                break;
+            case "ctl":
+                System.exit(DaemonClient.main(rest));
+                break;
+            default:
+                DashboardApp.main(args);
+                break;
+        }
     }
 }
@@ -0,0 +1,632 @@
+package Main.Java.backup;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+// Incremental, deduplicated backups of world folders into a repository on disk:
+//   chunks/ab/abcdef...   one file per distinct chunk, named by its SHA-256
+//   snapshots/<id>.snap.gz  one manifest per backup: every file with its size, mtime and chunks
+// Files are cut into content-defined chunks (see Chunker). A chunk that is already in the
+// repository is not written again, however many files or snapshots contain it. A file whose size
+// and mtime match the previous snapshot is not read at all, so backing up an unchanged world is
+// mostly one stat per file. New data is hashed and compressed on a pool of workers, and reads
+// and writes go through one RateLimiter.
+// Chunks are written to a temporary name and moved into place, and the manifest goes last, so
+// an interrupted backup leaves only unreferenced chunks behind for prune() to remove.
+public class BackupEngine {
+
+    private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH-mm-ss");
+    private static final HexFormat HEX = HexFormat.of();
+    private static final int DIGEST = 32;
+    private static final byte STORED = 0;
+    private static final byte DEFLATED = 1;
+    // Region data is already zlib-compressed: keep a chunk raw unless deflate saves 10%
+    private static final double MIN_SAVING = 0.9;
+    // Held open by a running server; never useful in a backup
+    private static final String SESSION_LOCK = "session.lock";
+
+    private final Path chunkDir;
+    private final Path snapshotDir;
+    private final int threads;
+    private final RateLimiter limiter;
+
+    public BackupEngine(Path repository, int threads, long maxBytesPerSecond) {
+        this.chunkDir = repository.resolve("chunks");
+        this.snapshotDir = repository.resolve("snapshots");
+        this.threads = Math.max(1, threads);
+        this.limiter = new RateLimiter(maxBytesPerSecond);
+    }
+
+    // One file in a snapshot; digests holds the SHA-256 of each chunk, 32 bytes apiece, in order
+    static final class Entry {
+        final String path;
+        final long size;
+        final long mtime;
+        final byte[] digests;
+
+        Entry(String path, long size, long mtime, byte[] digests) {
+            this.path = path;
+            this.size = size;
+            this.mtime = mtime;
+            this.digests = digests;
+        }
+
+        int chunks() {
+            return digests.length / DIGEST;
+        }
+    }
+
+    // Header of a snapshot; the file list is read from the manifest only when needed
+    public static final class Snapshot {
+        private final String id;
+        private final Path manifest;
+        private final List<String> roots;
+        private final long created;
+        private final int files;
+        private final long bytes;
+        private final int reusedFiles;
+        private final long newChunks;
+        private final long storedBytes;
+        private final long elapsedMs;
+
+        Snapshot(String id, Path manifest, List<String> roots, long created, int files, long bytes,
+                 int reusedFiles, long newChunks, long storedBytes, long elapsedMs) {
+            this.id = id;
+            this.manifest = manifest;
+            this.roots = roots;
+            this.created = created;
+            this.files = files;
+            this.bytes = bytes;
+            this.reusedFiles = reusedFiles;
+            this.newChunks = newChunks;
+            this.storedBytes = storedBytes;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public String getId() { return id; }
+        public List<String> getRoots() { return roots; }
+        public long getCreated() { return created; }
+        public int getFiles() { return files; }
+        public long getBytes() { return bytes; }
+        public int getReusedFiles() { return reusedFiles; }
+        public long getNewChunks() { return newChunks; }
+        public long getStoredBytes() { return storedBytes; }
+        public long getElapsedMs() { return elapsedMs; }
+
+        public String summary() {
+            return String.format("%s: %d files, %.2f GB, %d unchanged, %d new chunks (%.1f MB stored) in %.1f s",
+                    id, files, bytes / (1024.0 * 1024 * 1024), reusedFiles, newChunks,
+                    storedBytes / (1024.0 * 1024), elapsedMs / 1000.0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%s, %.2f GB)", id, String.join(", ", roots), bytes / (1024.0 * 1024 * 1024));
+        }
+    }
+
+    // Outcome of verify(); problems lists the first few damaged files and chunks
+    public static final class Verification {
+        private final int files;
+        private final long chunks;
+        private final long missing;
+        private final long corrupt;
+        private final List<String> problems;
+
+        Verification(int files, long chunks, long missing, long corrupt, List<String> problems) {
+            this.files = files;
+            this.chunks = chunks;
+            this.missing = missing;
+            this.corrupt = corrupt;
+            this.problems = problems;
+        }
+
+        public boolean isOk() { return missing == 0 && corrupt == 0 && problems.isEmpty(); }
+        public int getFiles() { return files; }
+        public long getChunks() { return chunks; }
+        public long getMissing() { return missing; }
+        public long getCorrupt() { return corrupt; }
+        public List<String> getProblems() { return problems; }
+    }
+
+    // Snapshots the given folders of baseDir (world, world_nether, ...) and returns its header.
+    // The server must not be writing to them (save-off), or the copy may catch a half-written file.
+    public Snapshot backup(Path baseDir, List<String> roots) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Snapshot previous = latest();
+        Map<String, Entry> before = new HashMap<>();
+        if (previous != null) {
+            for (Entry e : readEntries(previous)) {
+                before.put(e.path, e);
+            }
+        }
+
+        List<Path> files = new ArrayList<>();
+        for (String root : roots) {
+            Path dir = baseDir.resolve(root);
+            if (!Files.isDirectory(dir)) continue;
+            try (Stream<Path> walk = Files.walk(dir)) {
+                walk.filter(p -> Files.isRegularFile(p) && !p.getFileName().toString().equals(SESSION_LOCK))
+                        .forEach(files::add);
+            }
+        }
+        Collections.sort(files);
+
+        Files.createDirectories(chunkDir);
+        Files.createDirectories(snapshotDir);
+        Entry[] entries = new Entry[files.size()];
+        List<Future<Entry>> pending = new ArrayList<>();
+        List<Integer> pendingIndex = new ArrayList<>();
+        AtomicLong newChunks = new AtomicLong();
+        AtomicLong storedBytes = new AtomicLong();
+        // Chunks some worker has taken on writing in this run, hex digest
+        Set<String> claimed = ConcurrentHashMap.newKeySet();
+        int reused = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "backup-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                Path file = files.get(i);
+                String rel = relative(baseDir, file);
+                if (rel.indexOf('\t') >= 0 || rel.indexOf('\n') >= 0) continue;
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                long mtime = attrs.lastModifiedTime().toMillis();
+                Entry old = before.get(rel);
+                if (old != null && old.size == attrs.size() && old.mtime == mtime) {
+                    entries[i] = old;
+                    reused++;
+                    continue;
+                }
+                pending.add(pool.submit(() -> store(file, rel, mtime, claimed, newChunks, storedBytes)));
+                pendingIndex.add(i);
+            }
+            for (int k = 0; k < pending.size(); k++) {
+                entries[pendingIndex.get(k)] = pending.get(k).get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof InterruptedException) throw (InterruptedException) cause;
+            throw new IOException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long created = System.currentTimeMillis();
+        String id = LocalDateTime.now().format(ID_FORMAT);
+        for (int n = 2; Files.exists(snapshotDir.resolve(id + ".snap.gz")); n++) {
+            id = LocalDateTime.now().format(ID_FORMAT) + "-" + n;
+        }
+        Path manifest = snapshotDir.resolve(id + ".snap.gz");
+        int fileCount = 0;
+        long bytes = 0;
+        for (Entry e : entries) {
+            if (e == null) continue;
+            fileCount++;
+            bytes += e.size;
+        }
+        Snapshot snapshot = new Snapshot(id, manifest, List.copyOf(roots), created, fileCount, bytes, reused,
+                newChunks.get(), storedBytes.get(), (System.nanoTime() - start) / 1_000_000);
+        writeManifest(snapshot, entries);
+        return snapshot;
+    }
+
+    // Reads a file chunk by chunk and stores the chunks the repository does not have yet
+    private Entry store(Path file, String rel, long mtime, Set<String> claimed, AtomicLong newChunks,
+                        AtomicLong storedBytes) throws IOException, InterruptedException {
+        MessageDigest sha = sha256();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] buf = new byte[4 * Chunker.MAX];
+        byte[] out = new byte[Chunker.MAX + 1024];
+        byte[] digests = new byte[DIGEST * 16];
+        int count = 0;
+        long size = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            int len = 0;
+            boolean eof = false;
+            while (!eof || len > 0) {
+                while (!eof && len < buf.length) {
+                    int n = in.read(buf, len, buf.length - len);
+                    if (n < 0) {
+                        eof = true;
+                    } else {
+                        limiter.acquire(n);
+                        len += n;
+                    }
+                }
+                int pos = 0;
+                int c;
+                while (pos < len && (c = Chunker.next(buf, pos, len, eof)) > 0) {
+                    sha.update(buf, pos, c);
+                    byte[] digest = sha.digest();
+                    if (write(digest, buf, pos, c, claimed, deflater, out, storedBytes)) {
+                        newChunks.incrementAndGet();
+                    }
+                    if ((count + 1) * DIGEST > digests.length) {
+                        digests = Arrays.copyOf(digests, digests.length * 2);
+                    }
+                    System.arraycopy(digest, 0, digests, count * DIGEST, DIGEST);
+                    count++;
+                    size += c;
+                    pos += c;
+                }
+                System.arraycopy(buf, pos, buf, 0, len - pos);
+                len -= pos;
+            }
+        } finally {
+            deflater.end();
+        }
+        return new Entry(rel, size, mtime, Arrays.copyOf(digests, count * DIGEST));
+    }
+
+    // Stores one chunk unless it is already there or another worker is storing it; true if this
+    // call wrote it
+    private boolean write(byte[] digest, byte[] buf, int off, int len, Set<String> claimed, Deflater deflater,
+                          byte[] out, AtomicLong storedBytes) throws IOException, InterruptedException {
+        Path path = chunkPath(digest);
+        if (Files.exists(path) || !claimed.add(HEX.formatHex(digest))) return false;
+        int packed = 0;
+        boolean deflated = false;
+        if (compressible(buf, off, len)) {
+            deflater.reset();
+            deflater.setInput(buf, off, len);
+            deflater.finish();
+            packed = deflater.deflate(out);
+            deflated = deflater.finished() && packed < len * MIN_SAVING;
+        }
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + "." + Thread.currentThread().threadId() + ".tmp");
+        limiter.acquire(deflated ? packed : len);
+        try (OutputStream o = Files.newOutputStream(tmp)) {
+            o.write(deflated ? DEFLATED : STORED);
+            if (deflated) {
+                o.write(out, 0, packed);
+            } else {
+                o.write(buf, off, len);
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        storedBytes.addAndGet(1 + (deflated ? packed : len));
+        return true;
+    }
+
+    // Order-0 entropy of the bytes: chunk data inside region files is already zlib-compressed and
+    // comes out near 8 bits per byte, where running deflate over it would only burn CPU
+    private static boolean compressible(byte[] buf, int off, int len) {
+        int[] counts = new int[256];
+        for (int i = off; i < off + len; i++) {
+            counts[buf[i] & 0xff]++;
+        }
+        double bits = 0;
+        for (int c : counts) {
+            if (c > 0) {
+                double p = (double) c / len;
+                bits -= p * Math.log(p);
+            }
+        }
+        bits /= Math.log(2);
+        return bits < 8 * MIN_SAVING;
+    }
+
+    // Snapshots in the repository, oldest first
+    public List<Snapshot> list() throws IOException {
+        List<Snapshot> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(snapshotDir)) return snapshots;
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(snapshotDir, "*.snap.gz")) {
+            for (Path p : dir) {
+                try {
+                    snapshots.add(readHeader(p));
+                } catch (IOException | RuntimeException e) {
+                    // Unreadable manifest: not offered for restore
+                }
+            }
+        }
+        snapshots.sort((a, b) -> a.id.compareTo(b.id));
+        return snapshots;
+    }
+
+    public Snapshot latest() throws IOException {
+        List<Snapshot> all = list();
+        return all.isEmpty() ? null : all.get(all.size() - 1);
+    }
+
+    // Reads back every chunk the snapshot needs (each once) and checks it against its hash and
+    // every file against its size
+    public Verification verify(Snapshot snapshot) throws IOException, InterruptedException {
+        List<Entry> entries = readEntries(snapshot);
+        Set<String> unique = new HashSet<>();
+        for (Entry e : entries) {
+            for (int i = 0; i < e.chunks(); i++) {
+                unique.add(HEX.formatHex(e.digests, i * DIGEST, (i + 1) * DIGEST));
+            }
+        }
+        Map<String, Integer> lengths = new ConcurrentHashMap<>();
+        AtomicLong missing = new AtomicLong();
+        AtomicLong corrupt = new AtomicLong();
+        List<String> problems = Collections.synchronizedList(new ArrayList<>());
+        forEachParallel(new ArrayList<>(unique), hex -> {
+            byte[] digest = HEX.parseHex(hex);
+            try {
+                byte[] data = readChunk(digest);
+                if (!MessageDigest.isEqual(sha256().digest(data), digest)) {
+                    corrupt.incrementAndGet();
+                    note(problems, "corrupt chunk " + hex);
+                } else {
+                    lengths.put(hex, data.length);
+                }
+            } catch (NoSuchFileException e) {
+                missing.incrementAndGet();
+                note(problems, "missing chunk " + hex);
+            } catch (IOException e) {
+                corrupt.incrementAndGet();
+                note(problems, "unreadable chunk " + hex + ": " + e.getMessage());
+            }
+        });
+        for (Entry e : entries) {
+            long size = 0;
+            for (int i = 0; i < e.chunks(); i++) {
+                Integer len = lengths.get(HEX.formatHex(e.digests, i * DIGEST, (i + 1) * DIGEST));
+                if (len == null) {
+                    size = -1;
+                    break;
+                }
+                size += len;
+            }
+            if (size != e.size) {
+                note(problems, "damaged file " + e.path);
+            }
+        }
+        return new Verification(entries.size(), unique.size(), missing.get(), corrupt.get(), List.copyOf(problems));
+    }
+
+    // Writes the snapshot's files under targetDir; each file goes to a temporary name first and
+    // every chunk is checked against its hash on the way
+    public void restore(Snapshot snapshot, Path targetDir) throws IOException, InterruptedException {
+        List<Entry> entries = readEntries(snapshot);
+        forEachParallel(entries, e -> {
+            Path out = targetDir.resolve(e.path).normalize();
+            if (!out.startsWith(targetDir)) {
+                throw new IOException("Refusing to restore outside the server folder: " + e.path);
+            }
+            Files.createDirectories(out.getParent());
+            Path tmp = out.resolveSibling(out.getFileName() + ".restore.tmp");
+            MessageDigest sha = sha256();
+            try (OutputStream o = Files.newOutputStream(tmp)) {
+                for (int i = 0; i < e.chunks(); i++) {
+                    byte[] digest = Arrays.copyOfRange(e.digests, i * DIGEST, (i + 1) * DIGEST);
+                    byte[] data = readChunk(digest);
+                    if (!MessageDigest.isEqual(sha.digest(data), digest)) {
+                        throw new IOException("Chunk " + HEX.formatHex(digest) + " of " + e.path + " is corrupt");
+                    }
+                    limiter.acquire(data.length);
+                    o.write(data);
+                }
+            }
+            Files.setLastModifiedTime(tmp, FileTime.fromMillis(e.mtime));
+            Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING);
+        });
+    }
+
+    // Deletes all but the newest keep snapshots, then every chunk no remaining snapshot uses.
+    // Returns the number of chunk files removed.
+    public long prune(int keep) throws IOException {
+        List<Snapshot> all = list();
+        for (int i = 0; i < all.size() - Math.max(keep, 1); i++) {
+            Files.deleteIfExists(all.get(i).manifest);
+        }
+        Set<String> live = new HashSet<>();
+        for (Snapshot s : list()) {
+            for (Entry e : readEntries(s)) {
+                for (int i = 0; i < e.chunks(); i++) {
+                    live.add(HEX.formatHex(e.digests, i * DIGEST, (i + 1) * DIGEST));
+                }
+            }
+        }
+        long removed = 0;
+        if (!Files.isDirectory(chunkDir)) return 0;
+        try (DirectoryStream<Path> prefixes = Files.newDirectoryStream(chunkDir)) {
+            for (Path prefix : prefixes) {
+                if (!Files.isDirectory(prefix)) continue;
+                try (DirectoryStream<Path> chunks = Files.newDirectoryStream(prefix)) {
+                    for (Path chunk : chunks) {
+                        // Also removes .tmp files left by an interrupted backup
+                        if (!live.contains(chunk.getFileName().toString())) {
+                            Files.deleteIfExists(chunk);
+                            removed++;
+                        }
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    private byte[] readChunk(byte[] digest) throws IOException {
+        byte[] raw = Files.readAllBytes(chunkPath(digest));
+        if (raw.length == 0) throw new IOException("empty chunk file");
+        if (raw[0] == STORED) return Arrays.copyOfRange(raw, 1, raw.length);
+        if (raw[0] != DEFLATED) throw new IOException("unknown chunk format " + raw[0]);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(raw, 1, raw.length - 1);
+            byte[] out = new byte[Chunker.MAX];
+            int n = inflater.inflate(out);
+            if (!inflater.finished()) throw new IOException("chunk larger than " + Chunker.MAX + " bytes");
+            return Arrays.copyOf(out, n);
+        } catch (DataFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private Path chunkPath(byte[] digest) {
+        String hex = HEX.formatHex(digest);
+        return chunkDir.resolve(hex.substring(0, 2)).resolve(hex);
+    }
+
+    // Manifest: "#key=value" header lines, then size \t mtime \t path \t hex digests of the chunks
+    private void writeManifest(Snapshot s, Entry[] entries) throws IOException {
+        Path tmp = s.manifest.resolveSibling(s.manifest.getFileName() + ".tmp");
+        try (BufferedWriter w = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024), StandardCharsets.UTF_8))) {
+            w.write("#roots=" + String.join("/", s.roots) + "\n");
+            w.write("#created=" + s.created + "\n");
+            w.write("#files=" + s.files + "\n");
+            w.write("#bytes=" + s.bytes + "\n");
+            w.write("#reused=" + s.reusedFiles + "\n");
+            w.write("#newChunks=" + s.newChunks + "\n");
+            w.write("#stored=" + s.storedBytes + "\n");
+            w.write("#elapsedMs=" + s.elapsedMs + "\n");
+            for (Entry e : entries) {
+                if (e == null) continue;
+                w.write(Long.toString(e.size));
+                w.write('\t');
+                w.write(Long.toString(e.mtime));
+                w.write('\t');
+                w.write(e.path);
+                w.write('\t');
+                w.write(HEX.formatHex(e.digests));
+                w.write('\n');
+            }
+        }
+        Files.move(tmp, s.manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Snapshot readHeader(Path manifest) throws IOException {
+        Map<String, String> header = new HashMap<>();
+        try (BufferedReader r = open(manifest)) {
+            String line;
+            while ((line = r.readLine()) != null && line.startsWith("#")) {
+                int eq = line.indexOf('=');
+                if (eq > 0) header.put(line.substring(1, eq), line.substring(eq + 1));
+            }
+        }
+        String name = manifest.getFileName().toString();
+        String roots = header.getOrDefault("roots", "");
+        return new Snapshot(name.substring(0, name.length() - ".snap.gz".length()), manifest,
+                roots.isEmpty() ? List.of() : List.of(roots.split("/")),
+                Long.parseLong(header.getOrDefault("created", "0")),
+                Integer.parseInt(header.getOrDefault("files", "0")),
+                Long.parseLong(header.getOrDefault("bytes", "0")),
+                Integer.parseInt(header.getOrDefault("reused", "0")),
+                Long.parseLong(header.getOrDefault("newChunks", "0")),
+                Long.parseLong(header.getOrDefault("stored", "0")),
+                Long.parseLong(header.getOrDefault("elapsedMs", "0")));
+    }
+
+    private static List<Entry> readEntries(Snapshot s) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader r = open(s.manifest)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] f = line.split("\t", 4);
+                if (f.length < 4) throw new IOException("Damaged manifest " + s.manifest);
+                entries.add(new Entry(f[2], Long.parseLong(f[0]), Long.parseLong(f[1]), HEX.parseHex(f[3])));
+            }
+        }
+        return entries;
+    }
+
+    private static BufferedReader open(Path manifest) throws IOException {
+        return new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(manifest), 64 * 1024), StandardCharsets.UTF_8));
+    }
+
+    private interface Task<T> {
+        void run(T item) throws IOException, InterruptedException;
+    }
+
+    // Runs task over items on the worker pool; the first failure is rethrown
+    private <T> void forEachParallel(List<T> items, Task<T> task) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "backup-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(items.size());
+            for (T item : items) {
+                futures.add(pool.submit(() -> {
+                    task.run(item);
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof InterruptedException) throw (InterruptedException) cause;
+            throw new IOException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void note(List<String> problems, String problem) {
+        if (problems.size() < 20) {
+            problems.add(problem);
+        }
+    }
+
+    private static String relative(Path baseDir, Path file) {
+        return baseDir.relativize(file).toString().replace('\\', '/');
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package Main.Java.backup;
+
+import java.util.SplittableRandom;
+
+// Content-defined chunking with a gear rolling hash: a chunk ends where the hash of the last 64
+// bytes hits a fixed bit pattern. Cut points depend on the content rather than on offsets, so
+// when a region file grows or changes in one place, the chunks around the change come out the
+// same as before and are not stored again.
+final class Chunker {
+
+    static final int MIN = 16 * 1024;
+    static final int MAX = 256 * 1024;
+    // 16 bits that must be zero: about one cut every 64 KB after MIN
+    private static final long MASK = 0xFFFFL << 48;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // Fixed seed: cut points must be the same in every run or nothing would dedup
+        SplittableRandom random = new SplittableRandom(0x6d635f6261636b75L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private Chunker() {
+    }
+
+    // Length of the chunk starting at from, or -1 if the data in [from, to) may not hold all of it
+    // yet and eof is false. The top bits of the hash are tested because they depend on the last
+    // 64 bytes; the low bits only on the last few.
+    static int next(byte[] buf, int from, int to, boolean eof) {
+        int n = to - from;
+        if (n <= MIN) {
+            return eof ? n : -1;
+        }
+        int limit = Math.min(n, MAX);
+        long h = 0;
+        for (int i = MIN; i < limit; i++) {
+            h = (h << 1) + GEAR[buf[from + i] & 0xff];
+            if ((h & MASK) == 0) {
+                return i + 1;
+            }
+        }
+        if (limit == MAX) return MAX;
+        return eof ? n : -1;
+    }
+}
@@ -0,0 +1,31 @@
+package Main.Java.backup;
+
+// Token bucket shared by all backup workers, so together they stay under one disk budget and
+// the server keeps its I/O. Callers that find the bucket empty sleep in turn while holding the lock.
+final class RateLimiter {
+
+    private final long bytesPerSecond;
+    private final long burst;
+    private double available;
+    private long last = System.nanoTime();
+
+    // 0 or less: unlimited
+    RateLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        // Up to a quarter of a second of I/O at once
+        this.burst = Math.max(bytesPerSecond / 4, 1);
+        this.available = burst;
+    }
+
+    synchronized void acquire(long bytes) throws InterruptedException {
+        if (bytesPerSecond <= 0) return;
+        long now = System.nanoTime();
+        available = Math.min(burst, available + (now - last) * bytesPerSecond / 1e9);
+        last = now;
+        available -= bytes;
+        if (available < 0) {
+            long waitNanos = (long) (-available * 1e9 / bytesPerSecond);
+            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+        }
+    }
+}
@@ -0,0 +1,620 @@
+package Main.Java.console;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Inverted index over the console history in a LogStore: token -> posting list of line numbers,
+// stored as delta varints with a skip entry every SKIP postings. The reader thread only offers
+// (lineNo, line) into a bounded queue; a single indexer thread tokenizes and appends in batches.
+// Besides words of the message, each line is indexed under its log level and under the player
+// names the event matcher finds in it.
+//
+// Query syntax: words are ANDed, "quoted text" is a phrase, player:<name> and level:<warn|error|..>
+// restrict by player and level. Phrases are answered from the index and verified against the text.
+public class ConsoleIndex {
+
+    public static final class Result {
+        public final long[] lineNos;
+        public final String[] lines;
+        // More matches exist beyond the limit
+        public final boolean truncated;
+        public final long micros;
+
+        Result(long[] lineNos, String[] lines, boolean truncated, long micros) {
+            this.lineNos = lineNos;
+            this.lines = lines;
+            this.truncated = truncated;
+            this.micros = micros;
+        }
+    }
+
+    private static final char LEVEL = '\u0001';
+    private static final char PLAYER = '\u0002';
+    private static final int SKIP = 128;
+    private static final int MAX_TOKEN = 32;
+    private static final int BATCH = 4096;
+    private static final String[] LEVELS = {"trace", "debug", "info", "warn", "error", "fatal"};
+    // How often an idle indexer checks whether retention dropped history
+    private static final long PRUNE_CHECK_MS = 1000;
+    // Wakes the indexer from poll() when it is stopped
+    private static final Pending STOP = new Pending(-1, "");
+
+    private final LogStore store;
+    private final LogEventMatcher matcher;
+    private final long maxBackfillLines;
+    private final LinkedBlockingQueue<Pending> queue;
+    private final AtomicLong skipped = new AtomicLong();
+    private Thread indexer;
+    private volatile boolean stopped;
+
+    // Open-addressing dictionary, guarded by this
+    private String[] keys = new String[1 << 14];
+    private Postings[] values = new Postings[1 << 14];
+    private int tokenCount;
+    private long indexedUpTo = -1;
+    private long postingBytes;
+    // Postings below this line were dropped with the segments retention deleted
+    private long prunedBelow;
+
+    private final char[] tokenBuf = new char[MAX_TOKEN + 1];
+
+    public ConsoleIndex(LogStore store, LogEventMatcher matcher, int maxPending, long maxBackfillLines) {
+        this.store = store;
+        this.matcher = matcher;
+        this.maxBackfillLines = maxBackfillLines;
+        this.queue = new LinkedBlockingQueue<>(maxPending);
+    }
+
+    // Indexes up to maxBackfillLines of existing history, then follows offered lines. onError
+    // gets the error that stops the indexer, if any.
+    public synchronized void start(Consumer<IOException> onError) {
+        if (indexer != null) return;
+        indexer = Thread.ofVirtual().name("console-indexer").start(() -> run(onError));
+    }
+
+    // Returns once the indexer has finished, so the store can be closed after it. Not
+    // interrupted: an interrupt inside a store read would close the store's FileChannel.
+    public void stop() {
+        stopped = true;
+        Thread t;
+        synchronized (this) {
+            t = indexer;
+            indexer = null;
+        }
+        if (t == null) return;
+        // A full queue means poll() does not block, and the flag is seen after the batch
+        queue.offer(STOP);
+        try {
+            t.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Called from the console reader thread; never blocks
+    public void offer(long lineNo, String line) {
+        if (!queue.offer(new Pending(lineNo, line))) {
+            skipped.incrementAndGet();
+        }
+    }
+
+    public long skippedCount() {
+        return skipped.get();
+    }
+
+    public synchronized long indexedUpTo() {
+        return indexedUpTo;
+    }
+
+    public synchronized int tokenCount() {
+        return tokenCount;
+    }
+
+    public synchronized long postingBytes() {
+        return postingBytes;
+    }
+
+    private void run(Consumer<IOException> onError) {
+        try {
+            backfill();
+            List<Pending> batch = new ArrayList<>(BATCH);
+            while (!stopped) {
+                Pending first = queue.poll(PRUNE_CHECK_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH - 1);
+                }
+                synchronized (this) {
+                    for (Pending p : batch) {
+                        if (p != STOP && p.lineNo > indexedUpTo) {
+                            index(p.lineNo, p.line);
+                        }
+                    }
+                    long firstLine = store.firstLine();
+                    if (firstLine > prunedBelow) {
+                        prune(firstLine);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException ignored) {
+        } catch (IOException e) {
+            onError.accept(e);
+        }
+    }
+
+    private void backfill() throws IOException {
+        long end = store.nextLine();
+        long from = Math.max(store.firstLine(), end - maxBackfillLines);
+        List<Object> chunk = new ArrayList<>(2 * BATCH);
+        while (from < end && !stopped) {
+            long start = from;
+            store.read(start, (lineNo, ts, line) -> {
+                if (lineNo >= end) return false;
+                chunk.add(lineNo);
+                chunk.add(line);
+                return chunk.size() < 2 * BATCH;
+            });
+            if (chunk.isEmpty()) break;
+            synchronized (this) {
+                for (int i = 0; i < chunk.size(); i += 2) {
+                    index((Long) chunk.get(i), (String) chunk.get(i + 1));
+                }
+            }
+            from = (Long) chunk.get(chunk.size() - 2) + 1;
+            chunk.clear();
+        }
+    }
+
+    // Holds the lock
+    private void index(long lineNo, String line) {
+        indexedUpTo = lineNo;
+        int msg = messageStart(line);
+        int level = levelOf(line, msg);
+        if (level >= 0) {
+            add(LEVEL, LEVELS[level], 0, LEVELS[level].length(), lineNo);
+        }
+        int n = line.length();
+        int i = msg;
+        while (i < n) {
+            while (i < n && !isTokenChar(line.charAt(i))) i++;
+            int start = i;
+            while (i < n && isTokenChar(line.charAt(i))) i++;
+            if (i > start && i - start <= MAX_TOKEN) {
+                add((char) 0, line, start, i, lineNo);
+            }
+        }
+        matcher.match(line, (type, l, fieldStart, fieldEnd) -> {
+            if (fieldStart >= 0 && type.isPlayerEvent()) {
+                add(PLAYER, l, fieldStart, Math.min(fieldEnd, fieldStart + MAX_TOKEN), lineNo);
+            }
+        });
+    }
+
+    private void add(char prefix, CharSequence s, int from, int to, long lineNo) {
+        int slot = slot(prefix, s, from, to);
+        Postings p = values[slot];
+        if (p == null) {
+            keys[slot] = key(prefix, s, from, to);
+            p = values[slot] = new Postings();
+            if (++tokenCount * 2 > keys.length) {
+                grow();
+            }
+        }
+        postingBytes += p.add(lineNo);
+    }
+
+    private Postings get(char prefix, CharSequence s, int from, int to) {
+        return values[slot(prefix, s, from, to)];
+    }
+
+    // Slot of the key, or the empty slot where it would go; no String is built for the lookup
+    private int slot(char prefix, CharSequence s, int from, int to) {
+        int h = prefix;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + fold(s.charAt(i));
+        }
+        // Spread the bits: similar tokens ("chunk 101", "chunk 102") hash to neighbouring values
+        h *= 0x9E3779B9;
+        h ^= h >>> 16;
+        int mask = keys.length - 1;
+        int slot = h & mask;
+        while (true) {
+            String k = keys[slot];
+            if (k == null || keyEquals(k, prefix, s, from, to)) return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static boolean keyEquals(String k, char prefix, CharSequence s, int from, int to) {
+        int offset = prefix == 0 ? 0 : 1;
+        if (k.length() != to - from + offset) return false;
+        if (offset == 1 && k.charAt(0) != prefix) return false;
+        for (int i = from; i < to; i++) {
+            if (k.charAt(i - from + offset) != fold(s.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private String key(char prefix, CharSequence s, int from, int to) {
+        int n = 0;
+        if (prefix != 0) tokenBuf[n++] = prefix;
+        for (int i = from; i < to; i++) {
+            tokenBuf[n++] = fold(s.charAt(i));
+        }
+        return new String(tokenBuf, 0, n);
+    }
+
+    private void grow() {
+        rehash(keys.length * 2);
+    }
+
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        Postings[] oldValues = values;
+        keys = new String[capacity];
+        values = new Postings[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            String k = oldKeys[i];
+            if (k == null) continue;
+            char prefix = k.charAt(0) < ' ' ? k.charAt(0) : 0;
+            int slot = slot(prefix, k, prefix == 0 ? 0 : 1, k.length());
+            keys[slot] = k;
+            values[slot] = oldValues[i];
+        }
+    }
+
+    // Holds the lock. Drops postings of lines retention deleted, and tokens left with none.
+    // Lists are copied, not cut in place, so a search still walking the old one is unaffected.
+    private void prune(long firstLine) {
+        prunedBelow = firstLine;
+        int live = 0;
+        long bytes = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) continue;
+            Postings p = values[i].from(firstLine);
+            if (p == null) {
+                keys[i] = null;
+                values[i] = null;
+                continue;
+            }
+            values[i] = p;
+            live++;
+            bytes += p.length;
+        }
+        tokenCount = live;
+        postingBytes = bytes;
+        // Removing keys breaks the probe chains; reinsert the survivors
+        int capacity = 1 << 14;
+        while (capacity < live * 2) capacity <<= 1;
+        rehash(capacity);
+    }
+
+    // Newest matching lines first, at most limit of them. Posting lists are walked backwards
+    // from the newest line, so the cost depends on how far back the matches are, not on the
+    // size of the history. Candidates are taken under the lock, their lines read without it so
+    // indexing goes on meanwhile.
+    public Result search(String query, int limit) throws IOException {
+        long startNanos = System.nanoTime();
+        List<String> phrases = new ArrayList<>();
+        List<Postings> required = new ArrayList<>();
+        long[] hits = new long[limit];
+        String[] lines = new String[limit];
+        int found = 0;
+        boolean truncated = false;
+        Cursor[] cursors = null;
+        synchronized (this) {
+            if (collect(query, required, phrases)) {
+                required.sort((x, y) -> Integer.compare(x.count, y.count));
+                cursors = new Cursor[required.size()];
+                for (int i = 0; i < cursors.length; i++) {
+                    cursors[i] = new Cursor(required.get(i));
+                }
+            }
+        }
+        long[] candidates = new long[limit];
+        boolean exhausted = cursors == null;
+        while (!exhausted && found < limit) {
+            int n = 0;
+            synchronized (this) {
+                long id;
+                while (n < limit - found && (id = intersectPrev(cursors)) >= 0) {
+                    candidates[n++] = id;
+                }
+                exhausted = n < limit - found;
+            }
+            for (int i = 0; i < n; i++) {
+                // Phrases were matched as ANDed tokens; confirm them on the text
+                String line = store.line(candidates[i]);
+                if (line == null || !containsAll(line, phrases)) continue;
+                hits[found] = candidates[i];
+                lines[found] = line;
+                found++;
+            }
+        }
+        if (!exhausted) {
+            synchronized (this) {
+                truncated = intersectPrev(cursors) >= 0;
+            }
+        }
+        return new Result(Arrays.copyOf(hits, found), Arrays.copyOf(lines, found), truncated,
+                (System.nanoTime() - startNanos) / 1000);
+    }
+
+    // Parses the query into posting lists; false if some token never occurs
+    private boolean collect(String query, List<Postings> required, List<String> phrases) {
+        int n = query.length();
+        int i = 0;
+        while (i < n) {
+            char c = query.charAt(i);
+            if (c == ' ') {
+                i++;
+                continue;
+            }
+            if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                if (end < 0) end = n;
+                String phrase = query.substring(i + 1, end);
+                if (!addTokens(phrase, required)) return false;
+                if (!phrase.isBlank()) phrases.add(phrase.toLowerCase(Locale.ROOT));
+                i = end + 1;
+                continue;
+            }
+            int end = query.indexOf(' ', i);
+            if (end < 0) end = n;
+            String word = query.substring(i, end);
+            i = end;
+            if (startsWithIgnoreCase(word, "player:")) {
+                Postings p = get(PLAYER, word, 7, Math.min(word.length(), 7 + MAX_TOKEN));
+                if (p == null) return false;
+                required.add(p);
+            } else if (startsWithIgnoreCase(word, "level:")) {
+                Postings p = get(LEVEL, word, 6, word.length());
+                if (p == null) return false;
+                required.add(p);
+            } else {
+                int before = required.size();
+                if (!addTokens(word, required)) return false;
+                // "can't" or "minecraft:stone" split into several tokens: keep them adjacent
+                if (required.size() - before > 1) phrases.add(word.toLowerCase(Locale.ROOT));
+            }
+        }
+        return !required.isEmpty();
+    }
+
+    private boolean addTokens(String text, List<Postings> required) {
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            while (i < n && !isTokenChar(text.charAt(i))) i++;
+            int start = i;
+            while (i < n && isTokenChar(text.charAt(i))) i++;
+            if (i > start) {
+                Postings p = i - start <= MAX_TOKEN ? get((char) 0, text, start, i) : null;
+                if (p == null) return false;
+                required.add(p);
+            }
+        }
+        return true;
+    }
+
+    // Next older line present in every list, or -1. Leapfrog driven by the shortest list.
+    private static long intersectPrev(Cursor[] cursors) {
+        Cursor lead = cursors[0];
+        if (!lead.prev()) return -1;
+        long id = lead.id;
+        for (int i = 1; i < cursors.length; i++) {
+            if (!cursors[i].retreat(id)) return -1;
+            if (cursors[i].id != id) {
+                // Bring the lead down to the newest id that cursor still allows, then recheck all
+                if (!lead.retreat(cursors[i].id)) return -1;
+                id = lead.id;
+                i = 0;
+            }
+        }
+        return id;
+    }
+
+    private static boolean containsAll(String line, List<String> phrases) {
+        if (phrases.isEmpty()) return true;
+        String lower = line.toLowerCase(Locale.ROOT);
+        for (String p : phrases) {
+            if (!lower.contains(p)) return false;
+        }
+        return true;
+    }
+
+    // Message after the "[time] [thread/LEVEL]: " prefix, or 0 if the line has none
+    private static int messageStart(String line) {
+        int i = line.indexOf("]: ");
+        return i < 0 ? 0 : i + 3;
+    }
+
+    private static int levelOf(String line, int msg) {
+        for (int i = line.indexOf('/'); i >= 0 && i < msg; i = line.indexOf('/', i + 1)) {
+            int end = line.indexOf(']', i);
+            if (end < 0 || end > msg) return -1;
+            for (int l = 0; l < LEVELS.length; l++) {
+                if (end - i - 1 == LEVELS[l].length() && line.regionMatches(true, i + 1, LEVELS[l], 0, LEVELS[l].length())) {
+                    return l;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWithIgnoreCase(String s, String prefix) {
+        return s.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    private static boolean isTokenChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static char fold(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + 32) : c;
+    }
+
+    private static final class Pending {
+        final long lineNo;
+        final String line;
+
+        Pending(long lineNo, String line) {
+            this.lineNo = lineNo;
+            this.line = line;
+        }
+    }
+
+    // Strictly increasing line numbers as varint deltas. skipIds[k] / skipPos[k] hold the id
+    // before posting (k + 1) * SKIP and the byte offset where that posting starts.
+    private static final class Postings {
+        static final long[] EMPTY_IDS = new long[0];
+        static final int[] EMPTY_POS = new int[0];
+
+        byte[] data = new byte[2];
+        int length;
+        int count;
+        long last = -1;
+        long[] skipIds = EMPTY_IDS;
+        int[] skipPos = EMPTY_POS;
+        int skips;
+
+        // Returns the number of bytes the posting added
+        int add(long id) {
+            if (id <= last) return 0; // same line twice
+            if (count > 0 && count % SKIP == 0) {
+                if (skips == skipIds.length) {
+                    skipIds = Arrays.copyOf(skipIds, Math.max(4, skips * 2));
+                    skipPos = Arrays.copyOf(skipPos, Math.max(4, skips * 2));
+                }
+                skipIds[skips] = last;
+                skipPos[skips] = length;
+                skips++;
+            }
+            if (length + 10 > data.length) {
+                data = Arrays.copyOf(data, data.length + (data.length >> 1) + 10);
+            }
+            int before = length;
+            long delta = id - last;
+            while (delta >= 0x80) {
+                data[length++] = (byte) (delta | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+            last = id;
+            count++;
+            return length - before;
+        }
+
+        // This list without the ids below floor: itself if none are, null if all are
+        Postings from(long floor) {
+            if (last < floor) return null;
+            long id = -1;
+            int pos = 0;
+            Postings kept = null;
+            while (pos < length) {
+                long delta = 0;
+                int shift = 0;
+                byte v;
+                do {
+                    v = data[pos++];
+                    delta |= (long) (v & 0x7f) << shift;
+                    shift += 7;
+                } while (v < 0);
+                id += delta;
+                if (id < floor) continue;
+                if (kept == null) {
+                    if (pos == firstLength()) return this;
+                    kept = new Postings();
+                }
+                kept.add(id);
+            }
+            return kept;
+        }
+
+        private int firstLength() {
+            int n = 1;
+            while (data[n - 1] < 0) n++;
+            return n;
+        }
+    }
+
+    // Walks a posting list from the newest id backwards, one SKIP-sized block at a time
+    private static final class Cursor {
+        final Postings postings;
+        final long[] block = new long[SKIP];
+        int blockNo;
+        int n;
+        int i;
+        long id = Long.MAX_VALUE;
+
+        Cursor(Postings postings) {
+            this.postings = postings;
+            load(postings.skips);
+        }
+
+        // Block b holds the postings after skipIds[b - 1] up to and including skipIds[b]
+        private void load(int b) {
+            Postings p = postings;
+            int pos = b == 0 ? 0 : p.skipPos[b - 1];
+            int end = b == p.skips ? p.length : p.skipPos[b];
+            long prev = b == 0 ? -1 : p.skipIds[b - 1];
+            byte[] data = p.data;
+            int count = 0;
+            while (pos < end) {
+                long delta = 0;
+                int shift = 0;
+                byte v;
+                do {
+                    v = data[pos++];
+                    delta |= (long) (v & 0x7f) << shift;
+                    shift += 7;
+                } while (v < 0);
+                prev += delta;
+                block[count++] = prev;
+            }
+            blockNo = b;
+            n = count;
+            i = count;
+        }
+
+        boolean prev() {
+            while (i == 0) {
+                if (blockNo == 0) return false;
+                load(blockNo - 1);
+            }
+            id = block[--i];
+            return true;
+        }
+
+        // Moves to the newest id <= target; false when the list has none left
+        boolean retreat(long target) {
+            if (id <= target) return true;
+            // First block whose last id reaches target; blocks after it are all newer
+            int lo = 0, hi = postings.skips - 1, b = postings.skips;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (postings.skipIds[mid] >= target) {
+                    b = mid;
+                    hi = mid - 1;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            if (b < blockNo) {
+                load(b);
+            }
+            while (id > target) {
+                if (!prev()) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package Main.Java.console;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Hands console lines from the reader thread to the UI without one Platform.runLater per line.
+// The reader offers into a lock-free queue and never blocks; the UI drains everything that is
+// pending once per pulse. If the UI falls behind by more than maxPending lines, new lines are
+// dropped and counted instead of growing the heap.
+public class ConsolePipeline {
+
+    private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final int maxPending;
+
+    private long drained = 0;
+    private long reportedDrops = 0;
+    private long rateWindowStart = System.nanoTime();
+    private long rateWindowLines = 0;
+    private volatile double linesPerSecond = 0.0;
+    private volatile long lastDrainNanos = 0;
+
+    public ConsolePipeline(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    // Called from the console reader thread
+    public boolean offer(String line) {
+        offered.incrementAndGet();
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        queue.offer(line);
+        return true;
+    }
+
+    // Called once per pulse from the draining thread. Returns the number of lines delivered.
+    // Takes only the lines pending when it starts: a reader that keeps offering would otherwise
+    // hold the pulse forever.
+    public int drain(Consumer<String> sink) {
+        long start = System.nanoTime();
+        int count = 0;
+        long drops = dropped.get();
+        if (drops != reportedDrops) {
+            sink.accept("[console] " + (drops - reportedDrops) + " lines dropped, UI could not keep up");
+            reportedDrops = drops;
+        }
+        int limit = pending.get();
+        String line;
+        while (count < limit && (line = queue.poll()) != null) {
+            pending.decrementAndGet();
+            sink.accept(line);
+            count++;
+        }
+        drained += count;
+        rateWindowLines += count;
+        long now = System.nanoTime();
+        if (now - rateWindowStart >= 1_000_000_000L) {
+            linesPerSecond = rateWindowLines * 1e9 / (now - rateWindowStart);
+            rateWindowLines = 0;
+            rateWindowStart = now;
+        }
+        if (count > 0) {
+            lastDrainNanos = now - start;
+        }
+        return count;
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+
+    public long offeredCount() {
+        return offered.get();
+    }
+
+    public long drainedCount() {
+        return drained;
+    }
+
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    public double linesPerSecond() {
+        return linesPerSecond;
+    }
+
+    public long lastDrainNanos() {
+        return lastDrainNanos;
+    }
+}
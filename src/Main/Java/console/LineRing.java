@@ -0,0 +1,196 @@
+package Main.Java.console;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Bounded ring of the most recent console lines. Lines are stored as UTF-8 bytes in one
+// byte[] with per-line offsets, so memory stays flat no matter how long the server runs.
+// The arrays start small and double up to the limits, so a quiet server does not pay for
+// the full retention up front.
+// Single writer (the console drain); readers must run on the same thread.
+public class LineRing {
+
+    private static final int INITIAL_BYTES = 64 * 1024;
+    private static final int INITIAL_LINES = 1024;
+    // Largest power-of-two array size; bigger limits are clamped to it
+    private static final int MAX_SIZE = 1 << 30;
+
+    private final int maxLines;
+    private final int maxDataSize;
+    private final int maxLineSlots;
+    private byte[] data;
+    // View of data for Utf8.encode
+    private ByteBuffer dataBuf;
+    private int dataMask;
+    private long[] starts;
+    private int[] byteLengths;
+    private int lineMask;
+
+    private long firstLine = 0;
+    private long nextLine = 0;
+    private long head = 0; // absolute byte position of the next write
+
+    public LineRing(int maxLines, int maxBytes) {
+        if (maxLines <= 0) {
+            throw new IllegalArgumentException("maxLines must be positive");
+        }
+        this.maxLines = maxLines;
+        this.maxDataSize = powerOfTwoAtLeast(Math.max(1024, maxBytes));
+        this.maxLineSlots = powerOfTwoAtLeast(maxLines);
+        int size = Math.min(INITIAL_BYTES, maxDataSize);
+        this.data = new byte[size];
+        this.dataBuf = ByteBuffer.wrap(data);
+        this.dataMask = size - 1;
+        int slots = Math.min(INITIAL_LINES, maxLineSlots);
+        this.starts = new long[slots];
+        this.byteLengths = new int[slots];
+        this.lineMask = slots - 1;
+    }
+
+    // Appends a line, evicting the oldest lines when either the line or the byte budget is used up
+    public void add(CharSequence line) {
+        int len = line.length();
+        int encoded = Utf8.encodedLength(line);
+        if (encoded > maxDataSize) {
+            // Oversized line: keep only the tail that fits (at most 3 bytes a char), starting
+            // on a whole character
+            int cut = len - maxDataSize / 4;
+            if (Character.isLowSurrogate(line.charAt(cut)) && Character.isHighSurrogate(line.charAt(cut - 1))) {
+                cut++;
+            }
+            add(line.subSequence(cut, len));
+            return;
+        }
+        if (size() == starts.length && starts.length < maxLineSlots) {
+            growLines();
+        }
+        long used = size() > 0 ? head - starts[slot(firstLine)] : 0;
+        if (used + encoded > data.length && data.length < maxDataSize) {
+            growData(used + encoded);
+        }
+
+        while (size() >= maxLines || size() >= starts.length || (size() > 0 && head + encoded - starts[slot(firstLine)] > data.length)) {
+            firstLine++;
+        }
+
+        int s = slot(nextLine);
+        starts[s] = head;
+        byteLengths[s] = encoded;
+        encode(line, encoded);
+        nextLine++;
+    }
+
+    public void clear() {
+        firstLine = nextLine;
+    }
+
+    public int size() {
+        return (int) (nextLine - firstLine);
+    }
+
+    public int capacity() {
+        return maxLines;
+    }
+
+    // Absolute number of the oldest retained line; numbers keep increasing across evictions
+    public long firstLine() {
+        return firstLine;
+    }
+
+    public long nextLine() {
+        return nextLine;
+    }
+
+    public boolean contains(long lineNo) {
+        return lineNo >= firstLine && lineNo < nextLine;
+    }
+
+    public int byteLength(long lineNo) {
+        checkLine(lineNo);
+        return byteLengths[slot(lineNo)];
+    }
+
+    // Copies the raw UTF-8 bytes of a line into dst and returns the number of bytes written
+    public int copyBytes(long lineNo, byte[] dst) {
+        checkLine(lineNo);
+        int s = slot(lineNo);
+        int len = Math.min(byteLengths[s], dst.length);
+        int from = (int) (starts[s] & dataMask);
+        int firstPart = Math.min(len, data.length - from);
+        System.arraycopy(data, from, dst, 0, firstPart);
+        if (firstPart < len) {
+            System.arraycopy(data, 0, dst, firstPart, len - firstPart);
+        }
+        return len;
+    }
+
+    public String line(long lineNo) {
+        byte[] tmp = new byte[byteLength(lineNo)];
+        int len = copyBytes(lineNo, tmp);
+        return new String(tmp, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private int slot(long lineNo) {
+        return (int) (lineNo & lineMask);
+    }
+
+    private void growLines() {
+        int slots = starts.length * 2;
+        long[] newStarts = new long[slots];
+        int[] newLengths = new int[slots];
+        for (long l = firstLine; l < nextLine; l++) {
+            newStarts[(int) (l & (slots - 1))] = starts[slot(l)];
+            newLengths[(int) (l & (slots - 1))] = byteLengths[slot(l)];
+        }
+        starts = newStarts;
+        byteLengths = newLengths;
+        lineMask = slots - 1;
+    }
+
+    // Absolute positions stay valid; only where they land in the array changes
+    private void growData(long needed) {
+        int size = data.length;
+        while (size < needed && size < maxDataSize) {
+            size *= 2;
+        }
+        byte[] newData = new byte[size];
+        long pos = size() > 0 ? starts[slot(firstLine)] : head;
+        while (pos < head) {
+            int from = (int) (pos & dataMask);
+            int to = (int) (pos & (size - 1));
+            int n = (int) Math.min(head - pos, Math.min(data.length - from, size - to));
+            System.arraycopy(data, from, newData, to, n);
+            pos += n;
+        }
+        data = newData;
+        dataBuf = ByteBuffer.wrap(data);
+        dataMask = size - 1;
+    }
+
+    private void checkLine(long lineNo) {
+        if (!contains(lineNo)) {
+            throw new IndexOutOfBoundsException("Line " + lineNo + " not retained");
+        }
+    }
+
+    private void encode(CharSequence s, int encoded) {
+        int from = (int) (head & dataMask);
+        if (from + encoded <= data.length) {
+            dataBuf.clear().position(from);
+            Utf8.encode(s, dataBuf);
+        } else {
+            // Wraps past the end of the array; happens once per lap of the ring
+            byte[] tmp = new byte[encoded];
+            Utf8.encode(s, ByteBuffer.wrap(tmp));
+            int firstPart = data.length - from;
+            System.arraycopy(tmp, 0, data, from, firstPart);
+            System.arraycopy(tmp, firstPart, data, 0, encoded - firstPart);
+        }
+        head += encoded;
+    }
+
+    private static int powerOfTwoAtLeast(int n) {
+        if (n >= MAX_SIZE) return MAX_SIZE;
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+}
@@ -0,0 +1,570 @@
+package Main.Java.console;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.GZIPInputStream;
+
+// Statistics over a server's old logs (logs/*.log.gz and latest.log): play sessions, peak
+// concurrent players per hour and how often the server fell behind. Files are decompressed and
+// scanned in parallel on the common fork-join pool, one file per task. The per-file results are
+// merged in file order, so a session that crosses the daily rotation is joined up again.
+// Lines are matched in place in the read buffer with the shared LogEventMatcher. Only join, leave
+// and lag events create objects, so memory depends on the number of players and hours, not lines.
+//
+// Times are the local wall-clock times of the log: the date comes from the file name
+// (2026-10-18-1.log.gz) and the time from the [12:34:56] prefix of each line.
+// A player still online from the previous file counts towards the hourly peaks from their next
+// event on, as each file is scanned without knowing the one before it.
+public class LogAnalytics {
+
+    // Upper bounds of the session length buckets in minutes; the last bucket is open
+    public static final long[] SESSION_BUCKETS = {5, 15, 30, 60, 120, 240};
+
+    private static final int BUFFER = 256 * 1024;
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 24 * HOUR;
+
+    private final LogEventMatcher matcher;
+
+    public LogAnalytics(LogEventMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    // Log files of a logs/ folder, oldest first: dated archives by date and index, latest.log last.
+    // The debug-*.log.gz files repeat the normal log and are skipped.
+    public static List<Path> findLogs(Path logsDir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(logsDir)) return files;
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(logsDir, "*.{log,log.gz}")) {
+            for (Path p : dir) {
+                if (!p.getFileName().toString().startsWith("debug") && Files.isRegularFile(p)) {
+                    files.add(p);
+                }
+            }
+        }
+        files.sort(Comparator.comparing(p -> sortKey(p.getFileName().toString())));
+        return files;
+    }
+
+    // "2026-10-18-3.log.gz" -> "2026-10-18-000003", so index 10 sorts after 9; latest.log last
+    static String sortKey(String name) {
+        if (name.equals("latest.log")) return "~";
+        LocalDate date = fileDate(name);
+        if (date == null) return name;
+        int end = name.indexOf(".log");
+        int dash = name.lastIndexOf('-', end);
+        long index = dash >= 10 ? parseDigits(name, dash + 1, end) : 0;
+        return String.format("%s-%06d", name.substring(0, 10), Math.max(index, 0));
+    }
+
+    // Scans all files in parallel; blocks until done
+    public Report analyze(List<Path> files) {
+        long start = System.nanoTime();
+        Report report = files.isEmpty() ? new Report() : ForkJoinPool.commonPool().invoke(new Range(files, 0, files.size()));
+        report.finish();
+        report.elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        return report;
+    }
+
+    // Splits the file list in halves until one file is left; merges left (older) then right.
+    // ForkJoinTask is Serializable, but these tasks never leave the pool
+    @SuppressWarnings("serial")
+    private class Range extends RecursiveTask<Report> {
+        private final List<Path> files;
+        private final int from;
+        private final int to;
+
+        Range(List<Path> files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Report compute() {
+            if (to - from == 1) {
+                return scan(files.get(from));
+            }
+            int mid = (from + to) >>> 1;
+            Range right = new Range(files, mid, to);
+            right.fork();
+            Report left = new Range(files, from, mid).compute();
+            return left.then(right.join());
+        }
+    }
+
+    // One file; an unreadable or corrupt file counts as skipped instead of failing the whole run
+    private Report scan(Path file) {
+        Scanner s = new Scanner(file);
+        try {
+            s.run();
+        } catch (IOException e) {
+            s.report.skippedFiles++;
+        }
+        return s.finishFile();
+    }
+
+    // State while reading one file; is its own LogEventListener so matching allocates nothing
+    private class Scanner implements LogEventListener {
+        private final Path file;
+        private final Report report = new Report();
+        private final ByteLine line = new ByteLine();
+        // Players online in this file and since when
+        private final Map<String, Long> online = new HashMap<>();
+        private long dayBase;
+        private long lastTimeOfDay = -1;
+        private long now = -1;
+        private long currentHour = -1;
+
+        Scanner(Path file) {
+            this.file = file;
+        }
+
+        void run() throws IOException {
+            String name = file.getFileName().toString();
+            LocalDate date = fileDate(name);
+            if (date == null) {
+                // latest.log: the day it was last written to
+                date = LocalDate.ofInstant(Files.getLastModifiedTime(file).toInstant(), ZoneId.systemDefault());
+            }
+            dayBase = date.toEpochDay() * DAY;
+            report.files = 1;
+            report.bytes = Files.size(file);
+            byte[] buf = new byte[BUFFER];
+            int start = 0;
+            int end = 0;
+            try (InputStream in = name.endsWith(".gz")
+                    ? new GZIPInputStream(Files.newInputStream(file), 64 * 1024)
+                    : Files.newInputStream(file)) {
+                int n;
+                while ((n = in.read(buf, end, buf.length - end)) > 0) {
+                    int scanFrom = end;
+                    end += n;
+                    for (int i = scanFrom; i < end; i++) {
+                        if (buf[i] == '\n') {
+                            onLine(buf, start, i);
+                            start = i + 1;
+                        }
+                    }
+                    if (start == 0 && end == buf.length) {
+                        // A line longer than the buffer: take it in pieces
+                        onLine(buf, 0, end);
+                        start = end;
+                    }
+                    // Move the partial last line to the front and read the rest after it
+                    System.arraycopy(buf, start, buf, 0, end - start);
+                    end -= start;
+                    start = 0;
+                }
+                if (end > 0) {
+                    onLine(buf, 0, end);
+                }
+            }
+        }
+
+        private void onLine(byte[] buf, int from, int to) {
+            if (to > from && buf[to - 1] == '\r') to--;
+            line.set(buf, from, to - from);
+            report.lines++;
+            long t = timeOfDay(line);
+            if (t >= 0) {
+                // Times going back by more than an hour: the log crossed midnight
+                if (lastTimeOfDay >= 0 && t < lastTimeOfDay - HOUR) {
+                    dayBase += DAY;
+                }
+                lastTimeOfDay = t;
+                now = dayBase + t;
+                if (report.firstTime < 0) report.firstTime = now;
+                report.lastTime = now;
+                enterHour(now / HOUR);
+            }
+            if (now >= 0) {
+                matcher.match(line, this);
+            }
+        }
+
+        // Hours that pass without a join still had the players already online
+        private void enterHour(long hour) {
+            if (hour == currentHour) return;
+            if (currentHour >= 0 && hour > currentHour) {
+                for (long h = currentHour + 1; h < hour; h++) {
+                    report.peak(h, online.size());
+                }
+            }
+            currentHour = hour;
+            report.peak(hour, online.size());
+        }
+
+        @Override
+        public void onEvent(LogEventType type, CharSequence l, int fieldStart, int fieldEnd) {
+            switch (type) {
+                case JOIN: {
+                    if (fieldStart < 0) return;
+                    String name = l.subSequence(fieldStart, fieldEnd).toString();
+                    if (report.seen.add(name) && !report.booted) {
+                        // Was offline when this file began: a session carried from the last file is over
+                        report.leadingJoins.add(name);
+                    }
+                    online.put(name, now);
+                    report.joins++;
+                    report.peak(now / HOUR, online.size());
+                    break;
+                }
+                case LEAVE: {
+                    if (fieldStart < 0) return;
+                    String name = l.subSequence(fieldStart, fieldEnd).toString();
+                    boolean first = report.seen.add(name);
+                    Long since = online.remove(name);
+                    if (since != null) {
+                        report.addSession(now - since);
+                    } else if (first && !report.booted) {
+                        // Joined in an earlier file (daily rotation); matched up when merging
+                        report.leadingLeaves.putIfAbsent(name, now);
+                    }
+                    break;
+                }
+                case LAG:
+                    if (fieldStart < 0) return;
+                    report.addLag(now, LogEventMatcher.parseField(l, fieldStart, fieldEnd));
+                    break;
+                case BOOT_DONE:
+                    report.booted = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        Report finishFile() {
+            report.openAtEnd.putAll(online);
+            if (report.firstTime >= 0) {
+                report.uptimeMs = report.lastTime - report.firstTime;
+            }
+            return report;
+        }
+    }
+
+    // Merged statistics; built per file and combined in file order
+    public static final class Report {
+        private int files;
+        private int skippedFiles;
+        private long bytes;
+        private long lines;
+        private long uptimeMs;
+        private long elapsedMs;
+        private long firstTime = -1;
+        private long lastTime = -1;
+
+        private long joins;
+        private long sessions;
+        private long sessionMsTotal;
+        private long sessionMsMax;
+        private final long[] sessionBuckets = new long[SESSION_BUCKETS.length + 1];
+
+        // Peak players online per hour (local epoch hour)
+        private final Map<Long, Integer> hourlyPeaks = new HashMap<>();
+
+        private long lagWarnings;
+        private long lagMsTotal;
+        private long lagMsMax;
+        private final long[] lagByHourOfDay = new long[24];
+
+        // For joining sessions across files: whether a server start was seen, players whose first
+        // event (before any start) is a leave or a join, everyone seen, and who was still online at the end
+        private boolean booted;
+        private final Map<String, Long> leadingLeaves = new HashMap<>();
+        private final Set<String> leadingJoins = new HashSet<>();
+        private final Set<String> seen = new HashSet<>();
+        private final Map<String, Long> openAtEnd = new HashMap<>();
+
+        void peak(long hour, int players) {
+            hourlyPeaks.merge(hour, players, Math::max);
+        }
+
+        void addSession(long ms) {
+            if (ms < 0) return;
+            sessions++;
+            sessionMsTotal += ms;
+            sessionMsMax = Math.max(sessionMsMax, ms);
+            long minutes = ms / 60_000;
+            int b = 0;
+            while (b < SESSION_BUCKETS.length && minutes >= SESSION_BUCKETS[b]) b++;
+            sessionBuckets[b]++;
+        }
+
+        void addLag(long time, long behindMs) {
+            lagWarnings++;
+            lagMsTotal += behindMs;
+            lagMsMax = Math.max(lagMsMax, behindMs);
+            lagByHourOfDay[(int) (time / HOUR % 24)]++;
+        }
+
+        // This report followed by the next file(s); mutates and returns this
+        Report then(Report next) {
+            for (Map.Entry<String, Long> leave : next.leadingLeaves.entrySet()) {
+                Long since = openAtEnd.remove(leave.getKey());
+                if (since != null) {
+                    addSession(leave.getValue() - since);
+                } else if (!booted && !seen.contains(leave.getKey())) {
+                    leadingLeaves.put(leave.getKey(), leave.getValue());
+                }
+            }
+            for (String name : next.leadingJoins) {
+                // Joined again without a logged leave (crash, lost line): the length is unknown
+                openAtEnd.remove(name);
+                if (!booted && !seen.contains(name)) {
+                    leadingJoins.add(name);
+                }
+            }
+            seen.addAll(next.seen);
+            if (next.booted) {
+                // The server restarted: whoever was still online left when the old log ended
+                closeOpen();
+            }
+            openAtEnd.putAll(next.openAtEnd);
+            booted |= next.booted;
+
+            files += next.files;
+            skippedFiles += next.skippedFiles;
+            bytes += next.bytes;
+            lines += next.lines;
+            uptimeMs += next.uptimeMs;
+            if (next.firstTime >= 0) {
+                if (firstTime < 0) firstTime = next.firstTime;
+                lastTime = next.lastTime;
+            }
+            joins += next.joins;
+            sessions += next.sessions;
+            sessionMsTotal += next.sessionMsTotal;
+            sessionMsMax = Math.max(sessionMsMax, next.sessionMsMax);
+            for (int i = 0; i < sessionBuckets.length; i++) {
+                sessionBuckets[i] += next.sessionBuckets[i];
+            }
+            for (Map.Entry<Long, Integer> e : next.hourlyPeaks.entrySet()) {
+                peak(e.getKey(), e.getValue());
+            }
+            lagWarnings += next.lagWarnings;
+            lagMsTotal += next.lagMsTotal;
+            lagMsMax = Math.max(lagMsMax, next.lagMsMax);
+            for (int i = 0; i < 24; i++) {
+                lagByHourOfDay[i] += next.lagByHourOfDay[i];
+            }
+            return this;
+        }
+
+        // Sessions still open at the end of the archive end with it
+        void finish() {
+            closeOpen();
+            leadingLeaves.clear();
+            leadingJoins.clear();
+            seen.clear();
+        }
+
+        private void closeOpen() {
+            for (long since : openAtEnd.values()) {
+                addSession(lastTime - since);
+            }
+            openAtEnd.clear();
+        }
+
+        public int getFiles() { return files; }
+        public int getSkippedFiles() { return skippedFiles; }
+        public long getBytes() { return bytes; }
+        public long getLines() { return lines; }
+        public long getUptimeMs() { return uptimeMs; }
+        public long getElapsedMs() { return elapsedMs; }
+        public long getJoins() { return joins; }
+        public long getSessions() { return sessions; }
+        public long getSessionMsMax() { return sessionMsMax; }
+        public long getLagWarnings() { return lagWarnings; }
+        public long getLagMsMax() { return lagMsMax; }
+
+        public double getSessionMsMean() {
+            return sessions > 0 ? (double) sessionMsTotal / sessions : Double.NaN;
+        }
+
+        // Sessions per SESSION_BUCKETS bucket, the open-ended one last
+        public long[] getSessionBuckets() {
+            return sessionBuckets.clone();
+        }
+
+        public long[] getLagByHourOfDay() {
+            return lagByHourOfDay.clone();
+        }
+
+        // Lag warnings per hour the server was up
+        public double getLagPerUptimeHour() {
+            return uptimeMs > 0 ? lagWarnings * (double) HOUR / uptimeMs : Double.NaN;
+        }
+
+        // Highest and average hourly peak for each hour of the day, over the hours the server was up
+        public double[] getPeakByHourOfDay(boolean average) {
+            double[] result = new double[24];
+            int[] hours = new int[24];
+            for (Map.Entry<Long, Integer> e : hourlyPeaks.entrySet()) {
+                int h = (int) (e.getKey() % 24);
+                hours[h]++;
+                result[h] = average ? result[h] + e.getValue() : Math.max(result[h], e.getValue());
+            }
+            if (average) {
+                for (int h = 0; h < 24; h++) {
+                    result[h] = hours[h] > 0 ? result[h] / hours[h] : 0;
+                }
+            }
+            return result;
+        }
+
+        // hour,peak_players rows in time order
+        public void writeHourlyCsv(Path file) throws IOException {
+            Files.createDirectories(file.getParent());
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                out.write("hour,peak_players\n");
+                for (Map.Entry<Long, Integer> e : new TreeMap<>(hourlyPeaks).entrySet()) {
+                    out.write(LocalDateTime.ofEpochSecond(e.getKey() * 3600, 0, ZoneOffset.UTC) + "," + e.getValue() + "\n");
+                }
+            }
+        }
+
+        // A few lines for the console
+        public List<String> summary() {
+            List<String> out = new ArrayList<>();
+            out.add(String.format("Scanned %d log file%s (%.1f MB compressed, %,d lines) in %.1f s%s",
+                    files, files == 1 ? "" : "s", bytes / (1024.0 * 1024.0), lines, elapsedMs / 1000.0,
+                    skippedFiles > 0 ? ", " + skippedFiles + " unreadable" : ""));
+            if (firstTime >= 0) {
+                out.add(String.format("From %s to %s, %.0f h of server uptime",
+                        LocalDate.ofEpochDay(firstTime / DAY), LocalDate.ofEpochDay(lastTime / DAY), uptimeMs / (double) HOUR));
+            }
+            if (sessions > 0) {
+                StringBuilder sb = new StringBuilder(String.format("%,d sessions, average %.0f min, longest %.1f h;",
+                        sessions, getSessionMsMean() / 60_000, sessionMsMax / (double) HOUR));
+                for (int b = 0; b < sessionBuckets.length; b++) {
+                    sb.append(b < SESSION_BUCKETS.length ? " <" + SESSION_BUCKETS[b] + "m " : " longer ").append(sessionBuckets[b]);
+                }
+                out.add(sb.toString());
+            } else {
+                out.add("No player sessions found");
+            }
+            double[] max = getPeakByHourOfDay(false);
+            double[] avg = getPeakByHourOfDay(true);
+            int busiest = 0;
+            int top = 0;
+            for (int h = 1; h < 24; h++) {
+                if (avg[h] > avg[busiest]) busiest = h;
+                if (max[h] > max[top]) top = h;
+            }
+            if (!hourlyPeaks.isEmpty()) {
+                out.add(String.format("Busiest hour %02d:00 (average peak %.1f players), most online %.0f at %02d:00",
+                        busiest, avg[busiest], max[top], top));
+            }
+            if (lagWarnings > 0) {
+                int worst = 0;
+                for (int h = 1; h < 24; h++) {
+                    if (lagByHourOfDay[h] > lagByHourOfDay[worst]) worst = h;
+                }
+                out.add(String.format("%,d lag warnings (%.2f per hour up), worst %.1f s behind, most around %02d:00",
+                        lagWarnings, getLagPerUptimeHour(), lagMsMax / 1000.0, worst));
+            } else {
+                out.add("No lag warnings");
+            }
+            return out;
+        }
+    }
+
+    // Milliseconds into the day from "[12:34:56]" or "[12:34:56 INFO]" at the start of the line, or -1
+    static long timeOfDay(CharSequence line) {
+        int limit = Math.min(line.length() - 7, 32);
+        for (int i = 0; i < limit; i++) {
+            if (line.charAt(i + 2) == ':' && line.charAt(i + 5) == ':' && isDigit(line, i) && isDigit(line, i + 1)
+                    && isDigit(line, i + 3) && isDigit(line, i + 4) && isDigit(line, i + 6) && isDigit(line, i + 7)) {
+                long h = (line.charAt(i) - '0') * 10 + (line.charAt(i + 1) - '0');
+                long m = (line.charAt(i + 3) - '0') * 10 + (line.charAt(i + 4) - '0');
+                long s = (line.charAt(i + 6) - '0') * 10 + (line.charAt(i + 7) - '0');
+                return ((h * 60 + m) * 60 + s) * 1000;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(CharSequence s, int i) {
+        char c = s.charAt(i);
+        return c >= '0' && c <= '9';
+    }
+
+    // yyyy-MM-dd at the start of an archive name, or null
+    static LocalDate fileDate(String name) {
+        if (name.length() < 10 || name.charAt(4) != '-' || name.charAt(7) != '-') return null;
+        long y = parseDigits(name, 0, 4);
+        long m = parseDigits(name, 5, 7);
+        long d = parseDigits(name, 8, 10);
+        if (y < 0 || m < 1 || m > 12 || d < 1 || d > 31) return null;
+        try {
+            return LocalDate.of((int) y, (int) m, (int) d);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static long parseDigits(String s, int from, int to) {
+        if (from >= to || to > s.length()) return -1;
+        long v = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    // A line inside the read buffer, bytes as Latin-1 chars: the patterns and player names are ASCII
+    static final class ByteLine implements CharSequence {
+        private byte[] buf;
+        private int offset;
+        private int length;
+
+        void set(byte[] buf, int offset, int length) {
+            this.buf = buf;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buf[offset + index] & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(buf, offset + start, end - start, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buf, offset, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package Main.Java.console;
+
+// Receives matched log events. The field is given as [fieldStart, fieldEnd) in the line
+// (player name, or the number of a lag or tick event) so no String is created unless the listener needs one;
+// both are -1 when the event has no field.
+public interface LogEventListener {
+    void onEvent(LogEventType type, CharSequence line, int fieldStart, int fieldEnd);
+}
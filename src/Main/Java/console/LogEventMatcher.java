@@ -0,0 +1,327 @@
+package Main.Java.console;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Matches all known log events in one pass over a console line using an Aho-Corasick automaton
+// compiled into a flat transition table over the characters that occur in the patterns.
+// Matching is case-insensitive, never copies the line and reports fields as offsets.
+// Immutable once built, so one instance can be shared.
+public class LogEventMatcher {
+
+    // How the field of an event is located relative to the matched pattern
+    public enum Field {
+        NONE,
+        // Player name directly before the pattern, right after the "]: " log prefix
+        NAME_BEFORE,
+        // Player name after the pattern, closed by '>' (chat)
+        NAME_UNTIL_GT,
+        // First run of digits after the pattern
+        NUMBER_AFTER
+    }
+
+    private static final int ALPHABET = 128;
+    private static final int MAX_NAME = 16;
+    private static final String PREFIX_END = "]: ";
+
+    // Folded ASCII char -> character class; class 0 is "not in any pattern"
+    private final byte[] classes = new byte[ALPHABET];
+    private final int classCount;
+    // Transitions indexed by (state * classCount + class), holding the next state already
+    // multiplied by classCount, bit-inverted (negative) when that state reports a match
+    private final int[] delta;
+    private final int[][] outputs;
+    private final LogEventType[] types;
+    private final Field[] fields;
+    private final int[] lengths;
+    // The pattern only counts at the start of the message
+    private final boolean[] atStart;
+    // State after reading PREFIX_END from the root
+    private final int afterPrefix;
+
+    private LogEventMatcher(Builder b) {
+        int patternCount = b.patterns.size();
+        types = new LogEventType[patternCount];
+        fields = new Field[patternCount];
+        lengths = new int[patternCount];
+        atStart = new boolean[patternCount];
+
+        // Trie
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> out = new ArrayList<>();
+        trie.add(newRow());
+        out.add(new ArrayList<>());
+        for (int p = 0; p < patternCount; p++) {
+            String pattern = b.patterns.get(p);
+            types[p] = b.types.get(p);
+            fields[p] = b.fields.get(p);
+            lengths[p] = pattern.length();
+            atStart[p] = b.atStart.get(p);
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int c = fold(pattern.charAt(i));
+                if (c >= ALPHABET) {
+                    throw new IllegalArgumentException("Patterns must be ASCII: " + pattern);
+                }
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newRow());
+                    out.add(new ArrayList<>());
+                }
+                state = trie.get(state)[c];
+            }
+            out.get(state).add(p);
+        }
+
+        int n = 1;
+        for (String pattern : b.patterns) {
+            for (int i = 0; i < pattern.length(); i++) {
+                int c = fold(pattern.charAt(i));
+                if (classes[c] == 0) {
+                    classes[c] = (byte) n++;
+                    // Upper-case letters share the class of their lower-case form
+                    if (c >= 'a' && c <= 'z') classes[c - 32] = classes[c];
+                }
+            }
+        }
+        classCount = n;
+
+        // Failure links folded into a complete DFA, breadth first
+        int states = trie.size();
+        int[] fail = new int[states];
+        int[] next = new int[states * ALPHABET];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int child = trie.get(0)[c];
+            if (child >= 0) {
+                next[c] = child;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            out.get(s).addAll(out.get(fail[s]));
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = trie.get(s)[c];
+                if (child < 0) {
+                    next[s * ALPHABET + c] = next[fail[s] * ALPHABET + c];
+                } else {
+                    next[s * ALPHABET + c] = child;
+                    fail[child] = next[fail[s] * ALPHABET + c];
+                    queue.add(child);
+                }
+            }
+        }
+
+        // Characters outside every pattern always lead back to the root
+        delta = new int[states * classCount];
+        for (int s = 0; s < states; s++) {
+            for (int c = 0; c < ALPHABET; c++) {
+                int cls = classes[c];
+                if (cls == 0) continue;
+                int target = next[s * ALPHABET + c];
+                delta[s * classCount + cls] = out.get(target).isEmpty() ? target * classCount : ~(target * classCount);
+            }
+        }
+
+        outputs = new int[states][];
+        for (int s = 0; s < states; s++) {
+            List<Integer> o = out.get(s);
+            if (o.isEmpty()) continue;
+            outputs[s] = o.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        int s = 0;
+        for (int i = 0; i < PREFIX_END.length(); i++) {
+            int step = delta[s + classes[PREFIX_END.charAt(i)]];
+            s = step < 0 ? ~step : step;
+        }
+        afterPrefix = s;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Vanilla / Paper / Forge console messages. Whatever a player can type ends up in the
+    // message as well, so every pattern is tied to the start of it.
+    public static LogEventMatcher minecraft() {
+        Builder b = builder()
+                .add(" joined the game", LogEventType.JOIN, Field.NAME_BEFORE)
+                // "Steve (formerly known as Alex) joined the game"
+                .add(" (formerly known as ", LogEventType.JOIN, Field.NAME_BEFORE)
+                .add(" left the game", LogEventType.LEAVE, Field.NAME_BEFORE)
+                .addAtStart("<", LogEventType.CHAT, Field.NAME_UNTIL_GT)
+                .addAtStart("[not secure] <", LogEventType.CHAT, Field.NAME_UNTIL_GT)
+                .add(" has made the advancement ", LogEventType.ADVANCEMENT, Field.NAME_BEFORE)
+                .add(" has completed the challenge ", LogEventType.ADVANCEMENT, Field.NAME_BEFORE)
+                .add(" has reached the goal ", LogEventType.ADVANCEMENT, Field.NAME_BEFORE)
+                .addAtStart("can't keep up!", LogEventType.LAG, Field.NUMBER_AFTER)
+                // Paper/Spigot "tps", Forge "forge tps" and vanilla "tick query"
+                .addAtStart("tps from last 1m, 5m, 15m: ", LogEventType.TPS, Field.NUMBER_AFTER)
+                .addAtStart("overall: mean tick time: ", LogEventType.MSPT, Field.NUMBER_AFTER)
+                .addAtStart("average time per tick: ", LogEventType.MSPT, Field.NUMBER_AFTER)
+                .addAtStart("saved the game", LogEventType.SAVED, Field.NONE)
+                // Not a bare "done" or "ready": those also match Paper's "Done remapping server"
+                // and "a server is already running on that port"
+                .addAtStart("done (", LogEventType.BOOT_DONE, Field.NONE)
+                .addAtStart("server started", LogEventType.BOOT_DONE, Field.NONE);
+        String[] deaths = {
+                " was slain by ", " was shot by ", " was killed", " was blown up by ", " blew up",
+                " was fireballed by ", " was pummeled by ", " was impaled by ", " was squashed by ",
+                " was squished", " was pricked to death", " was struck by lightning", " was stung to death",
+                " was poked to death", " was skewered by ", " was obliterated by ", " was doomed to fall",
+                " drowned", " died", " starved to death", " suffocated in a wall", " withered away",
+                " froze to death", " burned to death", " went up in flames", " walked into fire",
+                " walked into danger zone", " tried to swim in lava", " hit the ground too hard",
+                " fell from a high place", " fell off ", " fell out of the world", " fell while climbing",
+                " experienced kinetic energy", " discovered the floor was lava", " went off with a bang",
+                " left the confines of this world", " didn't want to live in the same world as "
+        };
+        for (String d : deaths) {
+            b.add(d, LogEventType.DEATH, Field.NAME_BEFORE);
+        }
+        return b.build();
+    }
+
+    public int match(CharSequence line, LogEventListener listener) {
+        return match(line, 0, line.length(), listener);
+    }
+
+    // Reports each event type at most once per line; returns the number of events reported.
+    // The message starts after the first "]: " of a line, or at the line start if there is none
+    // (the later lines of a multi-line command reply). Nothing is reported from before it: the
+    // timestamp and thread part of the prefix holds no events, and String.indexOf skips it
+    // several times faster than the automaton can read it.
+    public int match(CharSequence line, int from, int to, LogEventListener listener) {
+        int[] delta = this.delta;
+        byte[] classes = this.classes;
+        int state = 0;
+        int fired = 0;
+        int count = 0;
+        int prefix = line instanceof String ? ((String) line).indexOf(PREFIX_END, from) : indexOfPrefix(line, from, to);
+        int start = from;
+        if (prefix >= 0 && prefix + PREFIX_END.length() <= to) {
+            start = prefix + PREFIX_END.length();
+            state = afterPrefix;
+        }
+        for (int i = start; i < to; i++) {
+            char c = line.charAt(i);
+            // Class 0 leads every state back to the root, so no branch on it: branching per
+            // character on data mispredicts and costs more than the table lookup
+            int cls = c < ALPHABET ? classes[c] : 0;
+            state = delta[state + cls];
+            if (state >= 0) continue;
+            state = ~state;
+            for (int p : outputs[state / classCount]) {
+                int bit = 1 << types[p].ordinal();
+                if ((fired & bit) != 0) continue;
+                int matchStart = i + 1 - lengths[p];
+                if (atStart[p] && !startsMessage(line, start, matchStart)) continue;
+                long span = extract(line, start, to, matchStart, i + 1, fields[p]);
+                if (span == -2) continue;
+                fired |= bit;
+                count++;
+                int fieldStart = span < 0 ? -1 : (int) (span >>> 32);
+                int fieldEnd = span < 0 ? -1 : (int) span;
+                listener.onEvent(types[p], line, fieldStart, fieldEnd);
+            }
+        }
+        return count;
+    }
+
+    // Returns (start << 32 | end) for the field, -1 for "no field", or -2 if the match is rejected
+    private static long extract(CharSequence s, int message, int to, int matchStart, int matchEnd, Field field) {
+        switch (field) {
+            case NAME_BEFORE: {
+                int b = matchStart;
+                while (b > message && isNameChar(s.charAt(b - 1))) b--;
+                int len = matchStart - b;
+                if (len == 0 || len > MAX_NAME) return -2;
+                if (!startsMessage(s, message, b)) return -2;
+                return ((long) b << 32) | matchStart;
+            }
+            case NAME_UNTIL_GT: {
+                int e = matchEnd;
+                while (e < to && e - matchEnd <= MAX_NAME && isNameChar(s.charAt(e))) e++;
+                if (e == matchEnd || e >= to || s.charAt(e) != '>') return -2;
+                return ((long) matchEnd << 32) | e;
+            }
+            case NUMBER_AFTER: {
+                int b = matchEnd;
+                while (b < to && !Character.isDigit(s.charAt(b))) b++;
+                int e = b;
+                while (e < to && Character.isDigit(s.charAt(e))) e++;
+                return b == e ? -1 : ((long) b << 32) | e;
+            }
+            default:
+                return -1;
+        }
+    }
+
+    // Whether only colour codes (section sign + one char) come between message and pos
+    private static boolean startsMessage(CharSequence s, int message, int pos) {
+        while (pos - message >= 2 && s.charAt(pos - 2) == '\u00a7') pos -= 2;
+        return pos == message;
+    }
+
+    private static int indexOfPrefix(CharSequence s, int from, int to) {
+        for (int i = from; i + PREFIX_END.length() <= to; i++) {
+            if (s.charAt(i) == ']' && s.charAt(i + 1) == ':' && s.charAt(i + 2) == ' ') return i;
+        }
+        return -1;
+    }
+
+    // Parses the digits of a NUMBER_AFTER field without creating a String
+    public static long parseField(CharSequence line, int fieldStart, int fieldEnd) {
+        long v = 0;
+        for (int i = fieldStart; i < fieldEnd; i++) {
+            v = v * 10 + (line.charAt(i) - '0');
+        }
+        return v;
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '.';
+    }
+
+    private static int fold(char c) {
+        return (c >= 'A' && c <= 'Z') ? c + 32 : c;
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    public static class Builder {
+        private final List<String> patterns = new ArrayList<>();
+        private final List<LogEventType> types = new ArrayList<>();
+        private final List<Field> fields = new ArrayList<>();
+        private final List<Boolean> atStart = new ArrayList<>();
+
+        public Builder add(String pattern, LogEventType type, Field field) {
+            return add(pattern, type, field, false);
+        }
+
+        // The pattern has to start the message, so the same text inside chat does not count
+        public Builder addAtStart(String pattern, LogEventType type, Field field) {
+            return add(pattern, type, field, true);
+        }
+
+        private Builder add(String pattern, LogEventType type, Field field, boolean start) {
+            patterns.add(pattern);
+            types.add(type);
+            fields.add(field);
+            atStart.add(start);
+            return this;
+        }
+
+        public LogEventMatcher build() {
+            return new LogEventMatcher(this);
+        }
+    }
+}
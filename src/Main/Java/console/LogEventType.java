@@ -0,0 +1,21 @@
+package Main.Java.console;
+
+public enum LogEventType {
+    JOIN,
+    LEAVE,
+    DEATH,
+    CHAT,
+    ADVANCEMENT,
+    LAG,
+    // Tick health reported by tps / mspt style commands
+    TPS,
+    MSPT,
+    // "Saved the game" after save-all, awaited before a backup copies the world
+    SAVED,
+    BOOT_DONE;
+
+    // Events whose field is a player name
+    public boolean isPlayerEvent() {
+        return this == JOIN || this == LEAVE || this == DEATH || this == CHAT || this == ADVANCEMENT;
+    }
+}
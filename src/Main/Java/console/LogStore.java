@@ -0,0 +1,552 @@
+package Main.Java.console;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+// Append-only on-disk console history. Lines are written as records
+//   int length, long lineNo, long timestampMillis, UTF-8 bytes
+// into segment files that roll over at a size limit. Appends are buffered and written to the
+// FileChannel in batches; reads memory-map the segments. Every INDEX_INTERVAL records a sparse
+// index entry (lineNo, timestamp, file offset) is kept in memory and in a .idx file next to the
+// segment, so a time or line lookup is two binary searches plus a short scan.
+public class LogStore implements Closeable {
+
+    public interface RecordVisitor {
+        // Return false to stop
+        boolean visit(long lineNo, long timestampMillis, String line);
+    }
+
+    public static final class Policy {
+        final long segmentBytes;
+        final long maxTotalBytes;
+        final long maxAgeMillis;
+        final long compactAfterMillis;
+        final Predicate<CharSequence> compactDrop;
+
+        // compactDrop: lines removed from segments older than compactAfterMillis (null = never compact)
+        public Policy(long segmentBytes, long maxTotalBytes, long maxAgeMillis,
+                      long compactAfterMillis, Predicate<CharSequence> compactDrop) {
+            this.segmentBytes = segmentBytes;
+            this.maxTotalBytes = maxTotalBytes;
+            this.maxAgeMillis = maxAgeMillis;
+            this.compactAfterMillis = compactAfterMillis;
+            this.compactDrop = compactDrop;
+        }
+
+        // 64 MB segments, 2 GB or 30 days in total, no compaction
+        public static Policy defaults() {
+            return new Policy(64L << 20, 2L << 30, 30L * 24 * 60 * 60_000, Long.MAX_VALUE, null);
+        }
+
+        // The defaults, overridden by console.history.segmentMB, .maxMB, .maxDays and, for
+        // compaction, .compactDrop (regex of lines to drop) and .compactAfterDays
+        public static Policy fromSystemProperties() {
+            long day = 24 * 60 * 60_000L;
+            String drop = System.getProperty("console.history.compactDrop");
+            Pattern dropPattern = drop == null || drop.isBlank() ? null : Pattern.compile(drop);
+            return new Policy(
+                    Long.getLong("console.history.segmentMB", 64L) << 20,
+                    Long.getLong("console.history.maxMB", 2048L) << 20,
+                    Long.getLong("console.history.maxDays", 30L) * day,
+                    dropPattern == null ? Long.MAX_VALUE : Long.getLong("console.history.compactAfterDays", 7L) * day,
+                    dropPattern == null ? null : line -> dropPattern.matcher(line).find());
+        }
+    }
+
+    private static final int HEADER = 20;
+    private static final int INDEX_INTERVAL = 128;
+    private static final int INDEX_ENTRY = 24;
+    private static final int WRITE_BUFFER = 256 * 1024;
+    // A record has to fit the write buffer; longer lines are cut
+    private static final int MAX_LINE_BYTES = WRITE_BUFFER - HEADER;
+
+    private final Path dir;
+    private final Policy policy;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final ByteBuffer writeBuf = ByteBuffer.allocateDirect(WRITE_BUFFER);
+    private final ByteBuffer indexBuf = ByteBuffer.allocate(INDEX_ENTRY * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    private FileChannel dataChannel;
+    private FileChannel indexChannel;
+    private Segment active;
+    private long nextLine;
+    private long bufferedSince = 0;
+    private Thread flusher;
+    private volatile boolean closed;
+
+    public LogStore(Path dir, Policy policy) throws IOException {
+        this.dir = dir;
+        this.policy = policy;
+        writeBuf.order(ByteOrder.LITTLE_ENDIAN);
+        Files.createDirectories(dir);
+        open();
+    }
+
+    private void open() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "segment-*.log")) {
+            for (Path p : ds) files.add(p);
+        }
+        files.sort(null); // names carry zero-padded base line numbers
+        for (int i = 0; i < files.size(); i++) {
+            Segment s = new Segment(files.get(i), baseLine(files.get(i)));
+            s.recover();
+            if (s.size == 0 && i < files.size() - 1) {
+                s.delete();
+                continue;
+            }
+            segments.add(s);
+        }
+        if (segments.isEmpty()) {
+            nextLine = 0;
+            roll();
+        } else {
+            active = segments.get(segments.size() - 1);
+            nextLine = active.lastLine + 1;
+            openActive();
+        }
+    }
+
+    // Called from the console reader thread; returns the line number assigned to the line
+    public synchronized long append(long timestampMillis, CharSequence line) throws IOException {
+        int len = Utf8.encodedLength(line);
+        if (len > MAX_LINE_BYTES) {
+            line = line.subSequence(0, Utf8.prefixLength(line, MAX_LINE_BYTES));
+            len = Utf8.encodedLength(line);
+        }
+        if (writeBuf.remaining() < HEADER + len) {
+            flush();
+        }
+        if (active.size + writeBuf.position() + HEADER + len > policy.segmentBytes && active.lastLine >= active.baseLine) {
+            flush();
+            roll();
+        }
+        long offset = active.size + writeBuf.position();
+        if ((nextLine - active.baseLine) % INDEX_INTERVAL == 0) {
+            active.addIndex(nextLine, timestampMillis, offset);
+            if (indexBuf.remaining() < INDEX_ENTRY) flushIndex();
+            indexBuf.putLong(nextLine).putLong(timestampMillis).putLong(offset);
+        }
+        if (writeBuf.position() == 0) bufferedSince = System.currentTimeMillis();
+        writeBuf.putInt(len);
+        writeBuf.putLong(nextLine);
+        writeBuf.putLong(timestampMillis);
+        Utf8.encode(line, writeBuf);
+        if (active.firstTs == Long.MIN_VALUE) active.firstTs = timestampMillis;
+        active.lastTs = timestampMillis;
+        active.lastLine = nextLine;
+        return nextLine++;
+    }
+
+    // Writes buffered records in one FileChannel write; cheap when nothing is pending
+    public synchronized void flush() throws IOException {
+        if (writeBuf.position() > 0) {
+            writeBuf.flip();
+            while (writeBuf.hasRemaining()) {
+                active.size += dataChannel.write(writeBuf, active.size);
+            }
+            writeBuf.clear();
+        }
+        flushIndex();
+    }
+
+    // Flushes if the oldest buffered record is older than maxDelayMillis
+    public synchronized void flushIfOlderThan(long maxDelayMillis) throws IOException {
+        if (writeBuf.position() > 0 && System.currentTimeMillis() - bufferedSince >= maxDelayMillis) {
+            flush();
+        }
+    }
+
+    // Background thread that bounds how long a line stays buffered and applies the retention
+    // policy. onError gets the first error of a run of failures, not one per pass.
+    public synchronized void startFlusher(long flushMillis, long maintainMillis, Consumer<IOException> onError) {
+        if (flusher != null) return;
+        flusher = Thread.ofVirtual().name("console-log-flusher").start(() -> {
+            long lastMaintain = System.currentTimeMillis();
+            boolean failing = false;
+            while (!closed) {
+                try {
+                    Thread.sleep(flushMillis);
+                    if (closed) break;
+                    flushIfOlderThan(flushMillis);
+                    if (System.currentTimeMillis() - lastMaintain >= maintainMillis) {
+                        lastMaintain = System.currentTimeMillis();
+                        maintain();
+                    }
+                    failing = false;
+                } catch (InterruptedException e) {
+                    break;
+                } catch (IOException e) {
+                    if (!failing) onError.accept(e);
+                    failing = true;
+                }
+            }
+        });
+    }
+
+    private void flushIndex() throws IOException {
+        if (indexBuf.position() == 0) return;
+        indexBuf.flip();
+        while (indexBuf.hasRemaining()) {
+            indexChannel.write(indexBuf);
+        }
+        indexBuf.clear();
+    }
+
+    private void roll() throws IOException {
+        closeActive();
+        active = new Segment(dir.resolve(String.format("segment-%020d.log", nextLine)), nextLine);
+        segments.add(active);
+        openActive();
+    }
+
+    private void openActive() throws IOException {
+        dataChannel = FileChannel.open(active.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        indexChannel = FileChannel.open(active.indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void closeActive() throws IOException {
+        if (dataChannel != null) {
+            dataChannel.close();
+            indexChannel.close();
+            active.unmap();
+        }
+    }
+
+    public long firstLine() {
+        return segments.isEmpty() ? 0 : segments.get(0).baseLine;
+    }
+
+    public synchronized long nextLine() {
+        return nextLine;
+    }
+
+    // First line whose timestamp is >= timestampMillis, or nextLine() if there is none
+    public long lineAt(long timestampMillis) throws IOException {
+        flush();
+        List<Segment> snapshot = new ArrayList<>(segments);
+        for (Segment s : snapshot) {
+            if (s.lastLine < s.baseLine || s.lastTs < timestampMillis) continue;
+            long[] found = {-1};
+            s.scan(s.offsetForTime(timestampMillis), (lineNo, ts, line) -> {
+                if (ts >= timestampMillis) {
+                    found[0] = lineNo;
+                    return false;
+                }
+                return true;
+            }, Long.MAX_VALUE);
+            if (found[0] >= 0) return found[0];
+        }
+        return nextLine();
+    }
+
+    // Visits lines starting at fromLine, in order, until the visitor returns false
+    public void read(long fromLine, RecordVisitor visitor) throws IOException {
+        flush();
+        List<Segment> snapshot = new ArrayList<>(segments);
+        for (int i = 0; i < snapshot.size(); i++) {
+            Segment s = snapshot.get(i);
+            if (s.lastLine < fromLine) continue;
+            boolean[] stopped = {false};
+            s.scan(s.offsetForLine(fromLine), (lineNo, ts, line) -> {
+                if (lineNo < fromLine) return true;
+                if (!visitor.visit(lineNo, ts, line)) {
+                    stopped[0] = true;
+                    return false;
+                }
+                return true;
+            }, fromLine);
+            if (stopped[0]) return;
+        }
+    }
+
+    // Visits lines with fromMillis <= timestamp < toMillis
+    public void readRange(long fromMillis, long toMillis, RecordVisitor visitor) throws IOException {
+        read(lineAt(fromMillis), (lineNo, ts, line) -> ts < toMillis && visitor.visit(lineNo, ts, line));
+    }
+
+    public String line(long lineNo) throws IOException {
+        String[] result = {null};
+        read(lineNo, (n, ts, line) -> {
+            if (n == lineNo) result[0] = line;
+            return false;
+        });
+        return result[0];
+    }
+
+    public long totalBytes() {
+        long total = 0;
+        for (Segment s : segments) total += s.size;
+        return total;
+    }
+
+    // Applies retention and compaction to sealed segments; run periodically off the reader thread
+    public void maintain() throws IOException {
+        long now = System.currentTimeMillis();
+        List<Segment> sealed;
+        synchronized (this) {
+            sealed = new ArrayList<>(segments.subList(0, segments.size() - 1));
+        }
+        long total = totalBytes();
+        for (Segment s : sealed) {
+            boolean tooOld = s.lastTs != Long.MIN_VALUE && now - s.lastTs > policy.maxAgeMillis;
+            if (tooOld || total > policy.maxTotalBytes) {
+                total -= s.size;
+                segments.remove(s);
+                s.delete();
+            }
+        }
+        if (policy.compactDrop == null) return;
+        for (Segment s : new ArrayList<>(segments)) {
+            if (s == active || s.compacted || now - s.lastTs < policy.compactAfterMillis) continue;
+            compact(s);
+        }
+    }
+
+    // Rewrites a sealed segment without the lines matched by the policy; line numbers are kept
+    private void compact(Segment s) throws IOException {
+        Path tmp = dir.resolve(s.file.getFileName() + ".compact");
+        Path tmpIdx = dir.resolve(s.indexFile.getFileName() + ".compact");
+        ByteBuffer buf = ByteBuffer.allocate(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer idx = ByteBuffer.allocate(INDEX_ENTRY * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel data = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             FileChannel index = FileChannel.open(tmpIdx, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long[] pos = {0};
+            int[] kept = {0};
+            IOException[] error = {null};
+            s.scan(0, (lineNo, ts, line) -> {
+                if (policy.compactDrop.test(line)) return true;
+                try {
+                    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                    if (buf.remaining() < HEADER + bytes.length) {
+                        buf.flip();
+                        while (buf.hasRemaining()) pos[0] += data.write(buf);
+                        buf.clear();
+                    }
+                    if (kept[0]++ % INDEX_INTERVAL == 0) {
+                        long offset = pos[0] + buf.position();
+                        if (idx.remaining() < INDEX_ENTRY) {
+                            idx.flip();
+                            while (idx.hasRemaining()) index.write(idx);
+                            idx.clear();
+                        }
+                        idx.putLong(lineNo).putLong(ts).putLong(offset);
+                    }
+                    buf.putInt(bytes.length).putLong(lineNo).putLong(ts).put(bytes);
+                } catch (IOException e) {
+                    error[0] = e;
+                    return false;
+                }
+                return true;
+            }, Long.MIN_VALUE);
+            if (error[0] != null) throw error[0];
+            buf.flip();
+            while (buf.hasRemaining()) data.write(buf);
+            idx.flip();
+            while (idx.hasRemaining()) index.write(idx);
+        }
+        Files.move(tmp, s.file, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tmpIdx, s.indexFile, StandardCopyOption.REPLACE_EXISTING);
+        Segment replaced = new Segment(s.file, s.baseLine);
+        replaced.recover();
+        replaced.compacted = true;
+        int i = segments.indexOf(s);
+        if (i >= 0) segments.set(i, replaced);
+        s.unmap();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Not interrupted: an interrupt during a FileChannel write would close the channel
+        closed = true;
+        Thread t;
+        synchronized (this) {
+            t = flusher;
+            flusher = null;
+        }
+        if (t != null) {
+            try {
+                t.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            closeInternal();
+        }
+    }
+
+    private void closeInternal() throws IOException {
+        flush();
+        closeActive();
+        for (Segment s : segments) s.unmap();
+    }
+
+    private static long baseLine(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length()));
+    }
+
+    private interface Scanner {
+        boolean visit(long lineNo, long ts, String line);
+    }
+
+    private final class Segment {
+        final Path file;
+        final Path indexFile;
+        final long baseLine;
+        volatile long size;
+        long firstTs = Long.MIN_VALUE;
+        volatile long lastTs = Long.MIN_VALUE;
+        volatile long lastLine;
+        boolean compacted;
+
+        long[] idxLine = new long[64];
+        long[] idxTs = new long[64];
+        long[] idxPos = new long[64];
+        volatile int idxCount;
+
+        private MappedByteBuffer map;
+        private long mappedSize;
+
+        Segment(Path file, long baseLine) {
+            this.file = file;
+            String name = file.getFileName().toString();
+            this.indexFile = file.resolveSibling(name.substring(0, name.length() - ".log".length()) + ".idx");
+            this.baseLine = baseLine;
+            this.lastLine = baseLine - 1;
+        }
+
+        synchronized void addIndex(long line, long ts, long pos) {
+            if (idxCount == idxLine.length) {
+                idxLine = Arrays.copyOf(idxLine, idxCount * 2);
+                idxTs = Arrays.copyOf(idxTs, idxCount * 2);
+                idxPos = Arrays.copyOf(idxPos, idxCount * 2);
+            }
+            idxLine[idxCount] = line;
+            idxTs[idxCount] = ts;
+            idxPos[idxCount] = pos;
+            idxCount++;
+        }
+
+        // Loads the sparse index, then scans past its last entry to find the real end of the data;
+        // a torn record left by a crash is cut off
+        void recover() throws IOException {
+            if (Files.exists(indexFile)) {
+                ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(indexFile)).order(ByteOrder.LITTLE_ENDIAN);
+                while (b.remaining() >= INDEX_ENTRY) {
+                    addIndex(b.getLong(), b.getLong(), b.getLong());
+                }
+            }
+            long fileSize = Files.exists(file) ? Files.size(file) : 0;
+            size = fileSize;
+            if (idxCount > 0) firstTs = idxTs[0];
+            long start = idxCount > 0 ? Math.min(idxPos[idxCount - 1], fileSize) : 0;
+            long end = scan(start, (lineNo, ts, line) -> {
+                if (firstTs == Long.MIN_VALUE) firstTs = ts;
+                lastTs = ts;
+                lastLine = lineNo;
+                return true;
+            }, Long.MAX_VALUE);
+            if (end < fileSize) {
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    ch.truncate(end);
+                }
+                size = end;
+            }
+            unmap();
+        }
+
+        synchronized long offsetForLine(long line) {
+            int i = floor(idxLine, line);
+            return i < 0 ? 0 : idxPos[i];
+        }
+
+        synchronized long offsetForTime(long ts) {
+            int i = floor(idxTs, ts - 1);
+            return i < 0 ? 0 : idxPos[i];
+        }
+
+        private int floor(long[] keys, long key) {
+            int lo = 0, hi = idxCount - 1, found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid] <= key) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        // Scans records from a file offset, decoding the text of lines >= decodeFrom (null before);
+        // returns the offset after the last complete record
+        long scan(long from, Scanner visitor, long decodeFrom) throws IOException {
+            ByteBuffer m = mapped();
+            if (m == null) return 0;
+            int pos = (int) from;
+            int limit = m.limit();
+            byte[] tmp = new byte[256];
+            while (pos + HEADER <= limit) {
+                int len = m.getInt(pos);
+                if (len < 0 || len > MAX_LINE_BYTES || pos + HEADER + len > limit) break;
+                long lineNo = m.getLong(pos + 4);
+                long ts = m.getLong(pos + 12);
+                String line = null;
+                if (lineNo >= decodeFrom) {
+                    if (tmp.length < len) tmp = new byte[Math.max(len, tmp.length * 2)];
+                    m.get(pos + HEADER, tmp, 0, len);
+                    line = new String(tmp, 0, len, StandardCharsets.UTF_8);
+                }
+                pos += HEADER + len;
+                if (!visitor.visit(lineNo, ts, line)) break;
+            }
+            return pos;
+        }
+
+        // Maps everything written so far; the active segment is remapped when it has grown
+        private synchronized ByteBuffer mapped() throws IOException {
+            long current = size;
+            if (current == 0 || !Files.exists(file)) return null;
+            if (map == null || mappedSize != current) {
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                    map = ch.map(FileChannel.MapMode.READ_ONLY, 0, current);
+                }
+                map.order(ByteOrder.LITTLE_ENDIAN);
+                mappedSize = current;
+            }
+            return map.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        synchronized void unmap() {
+            map = null;
+            mappedSize = 0;
+        }
+
+        void delete() throws IOException {
+            unmap();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(indexFile);
+        }
+    }
+}
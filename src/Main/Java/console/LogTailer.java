@@ -0,0 +1,168 @@
+package Main.Java.console;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Follows a log file written by another process, such as logs/latest.log of a server the dashboard
+// did not start (systemd, screen, or a dashboard restart). Only appended bytes are read, through
+// positioned FileChannel reads into one direct buffer. poll() is driven by LogWatcher when the log
+// folder changes, so an idle server costs nothing.
+// Rotation (log4j moves latest.log to a dated *.log.gz and starts a new one) shows up as a new
+// file identity or a size below the read position. The rest of the old file is still read
+// through the open channel, then the new file from its start.
+public class LogTailer {
+
+    private static final int MAX_LINE = 64 * 1024;
+
+    private final Path file;
+    private final Consumer<String> sink;
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+    private byte[] line = new byte[256];
+    private int lineLen;
+
+    private boolean closed;
+    private WatchKey key;
+    private FileChannel channel;
+    private Object fileId;
+    private long position;
+    // The file present when tailing starts is read from its end; later ones from the start
+    private boolean fromEnd = true;
+    private volatile long lines;
+    private volatile long rotations;
+
+    public LogTailer(Path file, Consumer<String> sink) {
+        this.file = file;
+        this.sink = sink;
+    }
+
+    // Watches the log folder on the shared watch service; false while the folder does not exist
+    synchronized boolean register(WatchService ws) throws IOException {
+        if (closed) return false;
+        if (key != null && key.isValid()) return true;
+        Path dir = file.getParent();
+        if (!Files.isDirectory(dir)) return false;
+        key = dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        return true;
+    }
+
+    synchronized WatchKey getKey() {
+        return key;
+    }
+
+    // Reads whatever was appended since the last call and hands complete lines to the sink
+    public synchronized void poll() {
+        if (closed) return;
+        try {
+            follow();
+        } catch (IOException e) {
+            // Moved away between the checks: the position is kept and the next poll sorts it out
+        }
+    }
+
+    public synchronized void close() {
+        closed = true;
+        closeChannel();
+    }
+
+    private void follow() throws IOException {
+        if (channel != null && replaced()) {
+            // Rotated: the old file is still readable through the channel we hold
+            read();
+            if (lineLen > 0) {
+                emit();
+            }
+            closeChannel();
+            rotations++;
+        }
+        if (channel == null) {
+            if (!Files.exists(file)) {
+                fromEnd = false;
+                return;
+            }
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            position = fromEnd ? channel.size() : 0;
+            fromEnd = false;
+            fileId = identity();
+        }
+        read();
+    }
+
+    private void read() throws IOException {
+        int n;
+        while ((n = channel.read(buf.clear(), position)) > 0) {
+            position += n;
+            buf.flip();
+            while (buf.hasRemaining()) {
+                byte b = buf.get();
+                if (b == '\n') {
+                    emit();
+                } else {
+                    if (lineLen == line.length) {
+                        if (lineLen == MAX_LINE) {
+                            emit();
+                        } else {
+                            line = Arrays.copyOf(line, Math.min(MAX_LINE, lineLen * 2));
+                        }
+                    }
+                    line[lineLen++] = b;
+                }
+            }
+        }
+    }
+
+    private void emit() {
+        int len = lineLen;
+        if (len > 0 && line[len - 1] == '\r') len--;
+        lineLen = 0;
+        lines++;
+        sink.accept(new String(line, 0, len, StandardCharsets.UTF_8));
+    }
+
+    // Moved away, replaced or truncated since it was opened
+    private boolean replaced() throws IOException {
+        if (channel.size() < position) return true;
+        return !Files.exists(file) || !identity().equals(fileId);
+    }
+
+    // Inode where there is one; creation time on Windows
+    private Object identity() throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        return attrs.fileKey() != null ? attrs.fileKey() : attrs.creationTime();
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+        position = 0;
+        lineLen = 0;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getRotations() {
+        return rotations;
+    }
+}
@@ -0,0 +1,93 @@
+package Main.Java.console;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+// One WatchService for the log folders of every followed server, so following more servers adds no
+// threads: run() blocks on it from a single virtual thread. It polls the tailers of a folder when
+// that folder changes, and polls all of them every few seconds in case the file system drops
+// events (network shares) or a log folder did not exist yet when registered.
+public class LogWatcher {
+
+    private static final long RECHECK_MS = 5_000;
+
+    private final WatchService watchService;
+    private final List<LogTailer> tailers = new CopyOnWriteArrayList<>();
+
+    public LogWatcher() throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    // Starts following; the first poll happens here, so the end of the current file is where it begins
+    public void add(LogTailer tailer) {
+        synchronized (tailers) {
+            tailers.add(tailer);
+            register(tailer);
+        }
+        tailer.poll();
+    }
+
+    public void remove(LogTailer tailer) {
+        synchronized (tailers) {
+            tailers.remove(tailer);
+            // Closed first, so the recheck cannot register it again
+            tailer.close();
+            WatchKey key = tailer.getKey();
+            if (key == null) return;
+            for (LogTailer other : tailers) {
+                if (other.getKey() == key) return; // same folder, still followed
+            }
+            key.cancel();
+        }
+    }
+
+    // Blocks until close()
+    public void run() {
+        long lastRecheck = System.nanoTime();
+        try {
+            while (true) {
+                WatchKey key = watchService.poll(RECHECK_MS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    key.pollEvents();
+                    for (LogTailer tailer : tailers) {
+                        if (tailer.getKey() == key) {
+                            tailer.poll();
+                        }
+                    }
+                    key.reset();
+                }
+                if (System.nanoTime() - lastRecheck >= RECHECK_MS * 1_000_000L) {
+                    lastRecheck = System.nanoTime();
+                    for (LogTailer tailer : tailers) {
+                        register(tailer);
+                        tailer.poll();
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // closed
+        }
+    }
+
+    public void close() throws IOException {
+        for (LogTailer tailer : tailers) {
+            tailer.close();
+        }
+        tailers.clear();
+        watchService.close();
+    }
+
+    private void register(LogTailer tailer) {
+        try {
+            tailer.register(watchService);
+        } catch (IOException | ClosedWatchServiceException e) {
+            // Folder not there (yet); retried on the next recheck
+        }
+    }
+}
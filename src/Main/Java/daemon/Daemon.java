@@ -0,0 +1,516 @@
+package Main.Java.daemon;
+
+import Main.Java.monitor.MetricsServer;
+import Main.Java.server.ServerInstance;
+import Main.Java.server.ServerState;
+import Main.Java.server.ServerSupervisor;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+// The dashboard without a window: the same supervisor, console capture, player tracking,
+// RAM/CPU sampling and metrics endpoint, and no JavaFX class is ever loaded. It listens on a
+// Unix domain socket (owner-only) for one-line requests from DaemonClient, which backs both
+// "ctl" on the command line and a dashboard window attaching to it. The servers it manages are
+// kept in daemon-servers.txt, so restarting the daemon brings the same list back.
+//
+// Requests are tab-separated fields, the verb first. Replies are "OK" or "ERR <message>", then
+// payload lines, then a line with a single dot; payload lines starting with a dot get another.
+// An idle follow / watch stream gets a KEEPALIVE line every second, which clients skip.
+public class Daemon {
+
+    private static final String USAGE = "Usage: daemon [--socket <path>] [--echo] [--start] [server folder...]";
+    private static final int FOLLOW_QUEUE = 10_000;
+    // Never a payload line: those starting with a dot have it doubled
+    static final String KEEPALIVE = ".alive";
+    private static final Set<String> SERVER_REQUESTS = Set.of("status", "players", "start", "stop", "restart",
+            "cmd", "tail", "follow", "remove");
+
+    private final ServerSupervisor supervisor = new ServerSupervisor();
+    private final Path socket;
+    private final Path serversFile;
+    private final boolean echo;
+    private final int tailLines = Integer.getInteger("daemon.tailLines", 1_000);
+    private final Map<ServerInstance, Console> consoles = new ConcurrentHashMap<>();
+    // Clients following state changes; the drain thread and state listeners offer, clients take
+    private final List<BlockingQueue<String>> watchers = new CopyOnWriteArrayList<>();
+    private ServerSocketChannel listener;
+    private volatile boolean closing;
+
+    // Last lines of one server for tail, and the queues of clients following it
+    private static final class Console {
+        private final ArrayDeque<String> lines = new ArrayDeque<>();
+        private final int max;
+        final List<BlockingQueue<String>> followers = new CopyOnWriteArrayList<>();
+
+        Console(int max) {
+            this.max = max;
+        }
+
+        synchronized void add(String line) {
+            if (lines.size() == max) {
+                lines.removeFirst();
+            }
+            lines.addLast(line);
+        }
+
+        synchronized List<String> tail(int n) {
+            List<String> out = new ArrayList<>(lines);
+            return out.subList(Math.max(0, out.size() - n), out.size());
+        }
+    }
+
+    public Daemon(Path socket, boolean echo) {
+        this.socket = socket;
+        this.serversFile = socket.resolveSibling("daemon-servers.txt");
+        this.echo = echo;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path socket = DaemonClient.defaultSocket();
+        boolean echo = false;
+        boolean start = false;
+        List<String> folders = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--socket":
+                    if (++i == args.length) {
+                        System.err.println(USAGE);
+                        System.exit(2);
+                    }
+                    socket = Path.of(args[i]);
+                    break;
+                case "--echo":
+                    echo = true;
+                    break;
+                case "--start":
+                    start = true;
+                    break;
+                default:
+                    if (args[i].startsWith("-")) {
+                        System.err.println(USAGE);
+                        System.exit(2);
+                    }
+                    folders.add(args[i]);
+                    break;
+            }
+        }
+        new Daemon(socket, echo).run(folders, start);
+    }
+
+    // Blocks until the daemon is shut down
+    public void run(List<String> folders, boolean startAll) throws IOException {
+        if (new DaemonClient(socket).isRunning()) {
+            System.err.println("A daemon is already running on " + socket);
+            System.exit(1);
+        }
+        createPrivateDirectory(socket.getParent());
+        Files.deleteIfExists(socket);
+
+        List<String> known = new ArrayList<>();
+        if (Files.exists(serversFile)) {
+            known.addAll(Files.readAllLines(serversFile, StandardCharsets.UTF_8));
+        }
+        known.addAll(folders);
+        for (String folder : known) {
+            if (folder.isBlank()) continue;
+            try {
+                add(new File(folder.strip()));
+            } catch (IOException e) {
+                print("Cannot manage " + folder + ": " + e.getMessage());
+            }
+        }
+        saveServers();
+
+        int port = Integer.getInteger("metrics.port", 9225);
+        if (port > 0) {
+            try {
+                MetricsServer metrics = supervisor.serveMetrics(port);
+                print("Metrics on http://127.0.0.1:" + metrics.getPort() + "/metrics");
+            } catch (IOException e) {
+                print("Metrics endpoint not started: " + e.getMessage());
+            }
+        }
+
+        listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        listener.bind(UnixDomainSocketAddress.of(socket));
+        try {
+            Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Windows: the socket file inherits the folder's ACL
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "daemon-shutdown"));
+        Thread.ofVirtual().name("console-drain").start(this::drainLoop);
+
+        if (startAll) {
+            for (ServerInstance instance : supervisor.getInstances()) {
+                try {
+                    instance.start();
+                } catch (IOException | RuntimeException e) {
+                    print(instance.getName() + ": failed to start: " + e.getMessage());
+                }
+            }
+        }
+        print("Daemon ready on " + socket + " with " + supervisor.getInstances().size() + " servers");
+
+        try {
+            while (!closing) {
+                SocketChannel client = listener.accept();
+                Thread.ofVirtual().name("daemon-client").start(() -> serve(client));
+            }
+        } catch (AsynchronousCloseException e) {
+            // shutdown() closed the listener
+        }
+    }
+
+    private ServerInstance add(File folder) throws IOException {
+        if (!folder.isDirectory()) {
+            throw new IOException("not a folder");
+        }
+        ServerInstance instance = supervisor.add(folder);
+        if (consoles.putIfAbsent(instance, new Console(tailLines)) == null) {
+            instance.addStateListener((from, to) -> broadcast(stateLine(instance)));
+            broadcast(stateLine(instance));
+        }
+        return instance;
+    }
+
+    private synchronized void saveServers() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (ServerInstance instance : supervisor.getInstances()) {
+            lines.add(instance.getServerDir().getPath());
+        }
+        Files.write(serversFile, lines, StandardCharsets.UTF_8);
+    }
+
+    // Console lines leave the pipelines ten times a second, as the window's pulse would take them
+    private void drainLoop() {
+        while (!closing) {
+            for (ServerInstance instance : supervisor.getInstances()) {
+                Console console = consoles.get(instance);
+                if (console == null) continue;
+                instance.getConsolePipeline().drain(line -> {
+                    console.add(line);
+                    for (BlockingQueue<String> follower : console.followers) {
+                        follower.offer(line);
+                    }
+                    if (echo) {
+                        System.out.println("[" + instance.getName() + "] " + line);
+                    }
+                });
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void broadcast(String line) {
+        for (BlockingQueue<String> watcher : watchers) {
+            watcher.offer(line);
+        }
+    }
+
+    // The socket has the umask's permissions until the chmod after bind, so its folder has to
+    // keep other users out before that. A folder given with --socket that already exists is the
+    // user's to set up; the default one is tightened, the dashboard may have created it first.
+    private static void createPrivateDirectory(Path dir) throws IOException {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            // Windows: the folder inherits the profile's ACL
+            Files.createDirectories(dir);
+            return;
+        }
+        Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rwx------");
+        if (!Files.isDirectory(dir)) {
+            Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(ownerOnly));
+        } else if (dir.equals(DaemonClient.defaultSocket().getParent())) {
+            Files.setPosixFilePermissions(dir, ownerOnly);
+        }
+    }
+
+    private static String stateLine(ServerInstance instance) {
+        return instance.getName() + "\t" + instance.getState() + "\t" + instance.getPid() + "\t"
+                + instance.getServerDir().getPath();
+    }
+
+    private void serve(SocketChannel client) {
+        try (client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(client), StandardCharsets.UTF_8))) {
+            String request;
+            while ((request = in.readLine()) != null) {
+                String[] fields = request.split("\t", -1);
+                try {
+                    handle(fields, out);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    out.write("ERR " + String.valueOf(e.getMessage()).replace('\n', ' ') + "\n.\n");
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    private void handle(String[] fields, Writer out) throws Exception {
+        String verb = fields[0];
+        switch (verb) {
+            case "ping":
+                reply(out, List.of(String.valueOf(ProcessHandle.current().pid())));
+                return;
+            case "list": {
+                List<String> lines = new ArrayList<>();
+                for (ServerInstance instance : supervisor.getInstances()) {
+                    boolean sampled = instance.isSampled();
+                    lines.add(String.join("\t", instance.getName(), instance.getState().name(),
+                            String.valueOf(instance.getPid()), String.valueOf(instance.getOnlinePlayerCount()),
+                            sampled ? String.valueOf(instance.getProcessSampler().getRssBytes() / (1024 * 1024)) + " MB" : "-",
+                            sampled ? String.format("%.0f%%", instance.getProcessSampler().getCpuPercent()) : "-",
+                            instance.getServerDir().getPath()));
+                }
+                reply(out, lines);
+                return;
+            }
+            case "add": {
+                ServerInstance instance;
+                try {
+                    instance = add(new File(arg(fields, 1, "server folder")));
+                } catch (IOException e) {
+                    // A refused folder is an answer for the client, not a broken connection
+                    throw new IllegalArgumentException(e.getMessage(), e);
+                }
+                saveServers();
+                reply(out, List.of(instance.getName()));
+                return;
+            }
+            case "watch":
+                watch(out);
+                return;
+            case "shutdown":
+                reply(out, List.of("Stopping servers and exiting"));
+                out.flush();
+                Thread.ofVirtual().start(() -> System.exit(0));
+                return;
+            default:
+                if (!SERVER_REQUESTS.contains(verb)) {
+                    throw new IllegalArgumentException("Unknown request " + verb);
+                }
+                break;
+        }
+
+        ServerInstance instance = supervisor.find(arg(fields, 1, "server name"));
+        if (instance == null) {
+            throw new IllegalArgumentException("No server named " + fields[1]);
+        }
+        switch (verb) {
+            case "status": {
+                boolean sampled = instance.isSampled();
+                List<String> lines = new ArrayList<>();
+                lines.add("state: " + instance.getState());
+                lines.add("pid: " + instance.getPid());
+                lines.add("players: " + instance.getOnlinePlayerCount() + " " + instance.getOnlinePlayers());
+                if (sampled) {
+                    lines.add("rss: " + instance.getProcessSampler().getRssBytes() / (1024 * 1024) + " MB");
+                    lines.add(String.format("cpu: %.0f%%", instance.getProcessSampler().getCpuPercent()));
+                    lines.add("threads: " + instance.getProcessSampler().getThreads());
+                }
+                double tps = instance.getTickMonitor().getTps();
+                if (!Double.isNaN(tps)) {
+                    lines.add(String.format("tps: %.1f", tps));
+                }
+                lines.add("folder: " + instance.getServerDir().getPath());
+                reply(out, lines);
+                return;
+            }
+            case "players":
+                reply(out, instance.getOnlinePlayers());
+                return;
+            case "start":
+                instance.start();
+                // STARTING went out before the pid was known
+                broadcast(stateLine(instance));
+                reply(out, List.of());
+                return;
+            case "stop":
+                if (!instance.isAlive()) {
+                    throw new IllegalStateException("Server is not running");
+                }
+                instance.stop();
+                reply(out, List.of());
+                return;
+            case "restart":
+                instance.restart().whenComplete((v, error) -> {
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        instance.log("Failed to restart server: " + cause.getMessage());
+                    } else {
+                        broadcast(stateLine(instance));
+                    }
+                });
+                reply(out, List.of());
+                return;
+            case "cmd":
+                if (!instance.isAlive()) {
+                    throw new IllegalStateException("Server is not running");
+                }
+                instance.sendCommand(arg(fields, 2, "command"));
+                reply(out, List.of());
+                return;
+            case "tail":
+                reply(out, consoles.get(instance).tail(fields.length > 2 ? Integer.parseInt(fields[2]) : 50));
+                return;
+            case "follow":
+                follow(consoles.get(instance), out);
+                return;
+            case "remove":
+                supervisor.remove(instance);
+                consoles.remove(instance);
+                saveServers();
+                reply(out, List.of());
+                return;
+            default:
+                throw new IllegalArgumentException("Unknown request " + verb);
+        }
+    }
+
+    // Streams console lines until the client disconnects (the next write fails)
+    private void follow(Console console, Writer out) throws IOException, InterruptedException {
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(FOLLOW_QUEUE);
+        console.followers.add(queue);
+        try {
+            out.write("OK\n");
+            out.flush();
+            stream(queue, out);
+        } finally {
+            console.followers.remove(queue);
+        }
+    }
+
+    // Current state of every server, then every change, until the client disconnects
+    private void watch(Writer out) throws IOException, InterruptedException {
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(FOLLOW_QUEUE);
+        watchers.add(queue);
+        try {
+            out.write("OK\n");
+            for (ServerInstance instance : supervisor.getInstances()) {
+                payload(out, stateLine(instance));
+            }
+            out.flush();
+            stream(queue, out);
+        } finally {
+            watchers.remove(queue);
+        }
+    }
+
+    private void stream(BlockingQueue<String> queue, Writer out) throws IOException, InterruptedException {
+        List<String> batch = new ArrayList<>();
+        while (!closing) {
+            String line = queue.poll(1, TimeUnit.SECONDS);
+            if (line == null) {
+                // Without a write, a client that disconnected while idle would never be noticed
+                out.write(KEEPALIVE);
+                out.write('\n');
+                out.flush();
+                continue;
+            }
+            batch.add(line);
+            queue.drainTo(batch);
+            for (String l : batch) {
+                payload(out, l);
+            }
+            batch.clear();
+            out.flush();
+        }
+        out.write(".\n");
+    }
+
+    private static void reply(Writer out, List<String> lines) throws IOException {
+        out.write("OK\n");
+        for (String line : lines) {
+            payload(out, line);
+        }
+        out.write(".\n");
+    }
+
+    private static void payload(Writer out, String line) throws IOException {
+        if (line.startsWith(".")) {
+            out.write('.');
+        }
+        out.write(line);
+        out.write('\n');
+    }
+
+    private static String arg(String[] fields, int index, String what) {
+        if (fields.length <= index || fields[index].isEmpty()) {
+            throw new IllegalArgumentException("Missing " + what);
+        }
+        return fields[index];
+    }
+
+    // SIGTERM, "ctl shutdown" or Ctrl-C: stop every server cleanly, then let the JVM exit
+    private void shutdown() {
+        closing = true;
+        try {
+            if (listener != null) {
+                listener.close();
+            }
+            Files.deleteIfExists(socket);
+        } catch (IOException e) {
+            print("Cannot remove " + socket + ": " + e.getMessage());
+        }
+        for (ServerInstance instance : supervisor.getInstances()) {
+            ServerState state = instance.getState();
+            if (state == ServerState.STARTING || state == ServerState.RUNNING) {
+                print("Stopping " + instance.getName());
+                instance.stop();
+            }
+        }
+        // ServerProcess kills a server that has not exited by the stop timeout
+        long deadline = System.currentTimeMillis() + Long.getLong("server.stopTimeoutSeconds", 90) * 1000 + 5_000;
+        for (ServerInstance instance : supervisor.getInstances()) {
+            while (instance.isAlive() && System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+        print("Daemon stopped");
+    }
+
+    private static void print(String message) {
+        System.out.println("[daemon] " + message);
+    }
+}
@@ -0,0 +1,282 @@
+package Main.Java.daemon;
+
+import Main.Java.server.ServerInstance;
+import Main.Java.server.ServerRemote;
+import Main.Java.server.ServerState;
+import Main.Java.server.ServerSupervisor;
+import Main.Java.utils.AppData;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+// Talks to a Daemon over its socket: single requests for "ctl", streams for follow / watch, and
+// attach(), which mirrors the daemon's servers in a window's supervisor and routes their start,
+// stop and stdin commands back to the daemon.
+public class DaemonClient {
+
+    private static final String USAGE = String.join("\n",
+            "Usage: ctl <request> [server] [args...]",
+            "  ping | list | shutdown | add <folder>",
+            "  status|players|start|stop|restart|remove <server>",
+            "  cmd <server> <command...> | tail <server> [lines] | follow <server> | watch");
+    private static final Executor VIRTUAL = task -> Thread.ofVirtual().name("daemon-request").start(task);
+
+    private final Path socket;
+
+    public DaemonClient(Path socket) {
+        this.socket = socket;
+    }
+
+    // -Ddaemon.socket, or daemon.sock in the dashboard's data folder
+    public static Path defaultSocket() {
+        String path = System.getProperty("daemon.socket");
+        return path != null ? Path.of(path) : AppData.dir().resolve("daemon.sock");
+    }
+
+    public boolean isRunning() {
+        if (!Files.exists(socket)) return false;
+        try {
+            call("ping");
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // One request on its own connection: the payload of an OK reply; ERR replies throw
+    public List<String> call(String... fields) throws IOException {
+        try (Connection c = open()) {
+            return c.call(fields);
+        }
+    }
+
+    // Hands every payload line of follow / watch to sink until the daemon closes the stream
+    public void stream(Consumer<String> sink, String... fields) throws IOException {
+        try (Connection c = open()) {
+            c.send(fields);
+            c.status();
+            String line;
+            while ((line = c.line()) != null) {
+                sink.accept(line);
+            }
+        }
+    }
+
+    // Mirrors the daemon's servers in supervisor and keeps their state current from a watch
+    // stream. onServer gets each mirrored instance, including servers the daemon adds later.
+    // Throws right away if no daemon is listening.
+    public void attach(ServerSupervisor supervisor, Consumer<ServerInstance> onServer) throws IOException {
+        Connection c = open();
+        try {
+            c.send("watch");
+            c.status();
+        } catch (IOException e) {
+            c.close();
+            throw e;
+        }
+        Thread.ofVirtual().name("daemon-watch").start(() -> {
+            try (c) {
+                String line;
+                while ((line = c.line()) != null) {
+                    // name, state, pid, folder
+                    String[] f = line.split("\t", 4);
+                    if (f.length < 4) continue;
+                    ServerState state = ServerState.valueOf(f[1]);
+                    long pid = Long.parseLong(f[2]);
+                    ServerInstance instance = supervisor.find(new File(f[3]));
+                    if (instance == null) {
+                        try {
+                            instance = supervisor.add(new File(f[3]), new Remote(f[0]), state, pid);
+                        } catch (IOException e) {
+                            // Another folder of the same name is open in this window; the
+                            // daemon's server is left to ctl
+                            continue;
+                        }
+                        if (state.isActive()) {
+                            instance.seedPlayers(call("players", f[0]));
+                        }
+                        onServer.accept(instance);
+                    } else if (instance.isRemote()) {
+                        instance.onRemoteState(state, pid);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // Daemon gone or reply garbled; either way the mirror is over
+            } finally {
+                for (ServerInstance instance : supervisor.getInstances()) {
+                    instance.dropRemote();
+                }
+            }
+        });
+    }
+
+    // Command line client: prints the reply, exit status 1 on errors
+    public static int main(String[] args) {
+        if (args.length == 0) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        // verb, server, then everything else as one field so commands keep their spaces
+        List<String> fields = new ArrayList<>(List.of(args[0]));
+        if (args.length > 1) {
+            fields.add(args[0].equals("add") ? Path.of(args[1]).toAbsolutePath().toString() : args[1]);
+        }
+        if (args.length > 2) {
+            fields.add(String.join(" ", Arrays.copyOfRange(args, 2, args.length)));
+        }
+        DaemonClient client = new DaemonClient(defaultSocket());
+        try {
+            if (args[0].equals("follow") || args[0].equals("watch")) {
+                client.stream(System.out::println, fields.toArray(new String[0]));
+            } else {
+                for (String line : client.call(fields.toArray(new String[0]))) {
+                    System.out.println(line);
+                }
+            }
+            return 0;
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+    }
+
+    private Connection open() throws IOException {
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            channel.close();
+            throw new IOException("No daemon listening on " + socket, e);
+        }
+        return new Connection(channel);
+    }
+
+    private static final class Connection implements AutoCloseable {
+        private final SocketChannel channel;
+        private final BufferedReader in;
+        private final Writer out;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            this.out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+        }
+
+        void send(String... fields) throws IOException {
+            for (String field : fields) {
+                if (field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                    throw new IOException("Request fields cannot contain line breaks");
+                }
+            }
+            out.write(String.join("\t", fields));
+            out.write('\n');
+            out.flush();
+        }
+
+        void status() throws IOException {
+            String status = in.readLine();
+            if (status == null) {
+                throw new IOException("Daemon closed the connection");
+            }
+            if (status.startsWith("ERR ")) {
+                // Skip the rest of the reply so the connection can take another request
+                while (line() != null) {
+                }
+                throw new IOException(status.substring(4));
+            }
+        }
+
+        // Next payload line, null at the end of the reply
+        String line() throws IOException {
+            String line;
+            do {
+                line = in.readLine();
+            } while (Daemon.KEEPALIVE.equals(line));
+            if (line == null || line.equals(".")) return null;
+            return line.startsWith(".") ? line.substring(1) : line;
+        }
+
+        List<String> call(String... fields) throws IOException {
+            send(fields);
+            status();
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = line()) != null) {
+                lines.add(line);
+            }
+            return lines;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Lifecycle and stdin of one daemon server. Each call is its own connection on a virtual
+    // thread; a batch of commands shares one connection so they arrive in order.
+    private final class Remote implements ServerRemote {
+        private final String name;
+
+        Remote(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public CompletableFuture<Void> start() {
+            return request("start");
+        }
+
+        @Override
+        public CompletableFuture<Void> stop() {
+            return request("stop");
+        }
+
+        @Override
+        public CompletableFuture<Void> restart() {
+            return request("restart");
+        }
+
+        @Override
+        public CompletableFuture<Void> sendCommands(List<String> cmds) {
+            return CompletableFuture.runAsync(() -> {
+                try (Connection c = open()) {
+                    for (String cmd : cmds) {
+                        c.call("cmd", name, cmd);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, VIRTUAL);
+        }
+
+        private CompletableFuture<Void> request(String verb) {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    call(verb, name);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, VIRTUAL);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package Main.Java.monitor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+
+// Follows the server's unified GC log (-Xlog:gc*, see LaunchConfig) and turns it into pause
+// statistics, allocation rate and an estimate of the live set, plus a heap size suggestion.
+// poll() reads only what was appended since the last call; when the JVM rotates or recreates
+// the file it starts again from the top of the new one.
+//
+// Understands the one-line pause and heap summaries of G1, Parallel, Serial, ZGC and Shenandoah:
+//   [1792322207766ms][12345ms][info][gc] GC(12) Pause Young (Normal) (G1 Evacuation Pause) 1024M->256M(4096M) 12.345ms
+//   [1792322207766ms][12345ms][info][gc,phases] GC(3) Y: Pause Mark Start 0.015ms
+//   [1792322207766ms][12345ms][info][gc] GC(3) Minor Collection (Allocation Rate) 88M(1%)->26M(0%) 0.045s
+public class GcLogMonitor {
+
+    // Arguments that make the JVM write the log this class reads; relative to the server directory
+    public static final String LOG_FILE = ".dashboard/gc.log";
+    public static final String XLOG_OPTION = "-Xlog:gc*:file=" + LOG_FILE
+            + ":timemillis,uptimemillis,level,tags:filecount=5,filesize=20m";
+
+    private static final int MAX_LINE = 4096;
+
+    private final Path file;
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+    private final StringBuilder line = new StringBuilder(256);
+    private FileChannel channel;
+    private Object fileId;
+    private long position;
+    // The previous run's log, skipped until the new JVM has rotated it away
+    private Object staleId;
+
+    // Pauses and full GCs over the last hour, post-GC heap over the last 10 minutes
+    private final RollingHistogram pauses = new RollingHistogram(60, 60_000L);
+    private final RollingHistogram fullGcs = new RollingHistogram(60, 60_000L);
+    private final RollingHistogram postGcHeap = new RollingHistogram(10, 60_000L);
+    private final TimeSeries allocationHistory = new TimeSeries("gc_allocation_mb_per_second");
+
+    private volatile long gcCount;
+    private volatile long pauseCount;
+    private volatile double allocationRateMbPerSec = Double.NaN;
+    private volatile double heapCapacityMb = Double.NaN;
+    private double lastAfterMb = Double.NaN;
+    private long lastGcTime;
+
+    public GcLogMonitor(Path serverDir) {
+        this.file = serverDir.resolve(LOG_FILE);
+    }
+
+    // New server run: the JVM archives the old log and starts a fresh one
+    public synchronized void reset() {
+        closeChannel();
+        try {
+            staleId = Files.exists(file) ? identity() : null;
+        } catch (IOException e) {
+            staleId = null;
+        }
+        lastAfterMb = Double.NaN;
+        lastGcTime = 0;
+        allocationRateMbPerSec = Double.NaN;
+        heapCapacityMb = Double.NaN;
+    }
+
+    // Reads whatever was appended since the last call; cheap when nothing was
+    public synchronized void poll() {
+        try {
+            if (channel == null || replaced()) {
+                closeChannel();
+                if (!Files.exists(file)) return;
+                Object id = identity();
+                if (id.equals(staleId)) return;
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+                fileId = id;
+                position = 0;
+                line.setLength(0);
+            }
+            int n;
+            while ((n = channel.read(buf.clear(), position)) > 0) {
+                position += n;
+                buf.flip();
+                while (buf.hasRemaining()) {
+                    byte b = buf.get();
+                    if (b == '\n') {
+                        parseLine(line);
+                        line.setLength(0);
+                    } else if (b != '\r' && line.length() < MAX_LINE) {
+                        line.append((char) (b & 0xff)); // the log is ASCII
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Rotated away between the checks; picked up again on the next poll
+            closeChannel();
+        }
+    }
+
+    // Rotated (renamed away) or truncated since it was opened
+    private boolean replaced() throws IOException {
+        if (!Files.exists(file)) return true;
+        if (channel.size() < position) return true;
+        return !identity().equals(fileId);
+    }
+
+    // Inode where there is one; creation time on Windows
+    private Object identity() throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        return attrs.fileKey() != null ? attrs.fileKey() : attrs.creationTime();
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+        position = 0;
+        line.setLength(0);
+    }
+
+    void parseLine(CharSequence s) {
+        // Decorators: [timemillis][uptimemillis][level][tags]
+        long time = 0;
+        String tags = null;
+        int i = 0;
+        while (i < s.length() && s.charAt(i) == '[') {
+            int close = indexOf(s, ']', i);
+            if (close < 0) return;
+            if (close - i > 3 && s.charAt(close - 2) == 'm' && s.charAt(close - 1) == 's' && Character.isDigit(s.charAt(i + 1))) {
+                long v = parseLong(s, i + 1, close - 2);
+                if (v > 1_000_000_000_000L) time = v; // epoch millis rather than uptime
+            } else if (startsWith(s, i + 1, "gc")) {
+                tags = s.subSequence(i + 1, close).toString().trim();
+            }
+            i = close + 1;
+        }
+        if (tags == null) return;
+        if (time == 0) time = System.currentTimeMillis();
+        int msg = i;
+
+        // Pause: "... Pause <kind> ... 12.345ms" at the end of the line
+        int pause = indexOf(s, "Pause ", msg);
+        if (pause >= 0) {
+            double ms = trailingMillis(s);
+            if (!Double.isNaN(ms)) {
+                pauses.add(time, ms);
+                pauseCount++;
+                if (indexOf(s, "Pause Full", pause) >= 0) {
+                    fullGcs.add(time, ms);
+                }
+            }
+        }
+
+        // Heap summary on the plain [gc] line: before->after(capacity)
+        if (tags.equals("gc")) {
+            int arrow = indexOf(s, "->", msg);
+            if (arrow > 0) {
+                parseTransition(s, arrow, time);
+            }
+        }
+    }
+
+    // "1024M->256M(4096M)" or ZGC's "88M(1%)->26M(0%)" around the arrow at 'arrow'
+    private void parseTransition(CharSequence s, int arrow, long time) {
+        int b = arrow;
+        if (b > 0 && s.charAt(b - 1) == ')') {
+            b = lastIndexOf(s, '(', b - 1);
+            if (b < 0) return;
+        }
+        int unitAt = b - 1;
+        int start = unitAt;
+        while (start > 0 && Character.isDigit(s.charAt(start - 1))) start--;
+        if (unitAt < 0 || start == unitAt) return;
+        double before = toMb(parseLong(s, start, unitAt), s.charAt(unitAt));
+
+        int a = arrow + 2;
+        int e = a;
+        while (e < s.length() && Character.isDigit(s.charAt(e))) e++;
+        if (e == a || e >= s.length()) return;
+        double after = toMb(parseLong(s, a, e), s.charAt(e));
+        if (Double.isNaN(before) || Double.isNaN(after)) return;
+        // Capacity, if given: "(4096M)" right after the unit (G1, Parallel, Serial, Shenandoah)
+        if (e + 2 < s.length() && s.charAt(e + 1) == '(' && Character.isDigit(s.charAt(e + 2))) {
+            int c = e + 2;
+            while (c < s.length() && Character.isDigit(s.charAt(c))) c++;
+            if (c < s.length()) {
+                double capacity = toMb(parseLong(s, e + 2, c), s.charAt(c));
+                if (!Double.isNaN(capacity)) heapCapacityMb = capacity;
+            }
+        }
+
+        gcCount++;
+        postGcHeap.add(time, after);
+        // Everything above the previous post-GC level was allocated since that GC
+        if (!Double.isNaN(lastAfterMb) && time > lastGcTime && before >= lastAfterMb) {
+            double rate = (before - lastAfterMb) * 1000.0 / (time - lastGcTime);
+            allocationRateMbPerSec = Double.isNaN(allocationRateMbPerSec) ? rate : allocationRateMbPerSec * 0.8 + rate * 0.2;
+            allocationHistory.add(time, allocationRateMbPerSec);
+        }
+        lastAfterMb = after;
+        lastGcTime = time;
+    }
+
+    // Heap suggestion from the last hour of GC activity, or null until there is enough of it.
+    // G1 and ZGC want headroom of about three times the live set; full GCs mean the heap is too
+    // small whatever the estimate says. Xms equals Xmx so the heap is never resized.
+    public Advice advise(long currentXmxMb, long physicalMb) {
+        long now = System.currentTimeMillis();
+        double live = getLiveSetMb();
+        if (pauses.count(now) < 10 || Double.isNaN(live)) return null;
+        long full = fullGcs.count(now);
+        double target = live * 3;
+        String reason = "3x the live set of " + (live >= 1024
+                ? String.format(Locale.ROOT, "%.1f GB", live / 1024) : String.format(Locale.ROOT, "%.0f MB", live));
+        if (full > 0 && target < currentXmxMb * 1.5) {
+            target = currentXmxMb * 1.5;
+            reason = full + " full GC" + (full == 1 ? "" : "s") + " in the last hour";
+        }
+        long mb = Math.max(2048, (long) Math.ceil(target / 1024) * 1024);
+        if (physicalMb > 0) {
+            // Leave the OS and everything else at least 2 GB
+            long cap = Math.max(1024, (physicalMb - 2048) / 1024 * 1024);
+            if (mb > cap) {
+                mb = cap;
+                reason += ", capped by " + physicalMb / 1024 + " GB of RAM";
+            }
+        }
+        String size = mb % 1024 == 0 ? mb / 1024 + "G" : mb + "M";
+        return new Advice(size, size, reason, mb != currentXmxMb);
+    }
+
+    public static final class Advice {
+        private final String xms;
+        private final String xmx;
+        private final String reason;
+        private final boolean change;
+
+        Advice(String xms, String xmx, String reason, boolean change) {
+            this.xms = xms;
+            this.xmx = xmx;
+            this.reason = reason;
+            this.change = change;
+        }
+
+        public String getXms() { return xms; }
+        public String getXmx() { return xmx; }
+        public String getReason() { return reason; }
+        // False if the current -Xmx already matches
+        public boolean isChange() { return change; }
+    }
+
+    private static double trailingMillis(CharSequence s) {
+        int end = s.length();
+        while (end > 0 && s.charAt(end - 1) == ' ') end--;
+        if (end < 3 || s.charAt(end - 1) != 's' || s.charAt(end - 2) != 'm') return Double.NaN;
+        int start = end - 2;
+        while (start > 0 && (Character.isDigit(s.charAt(start - 1)) || s.charAt(start - 1) == '.')) start--;
+        if (start == end - 2) return Double.NaN;
+        return TickMonitor.parseDecimal(s, start);
+    }
+
+    private static double toMb(long value, char unit) {
+        switch (unit) {
+            case 'B': return value / (1024.0 * 1024.0);
+            case 'K': return value / 1024.0;
+            case 'M': return value;
+            case 'G': return value * 1024.0;
+            case 'T': return value * 1024.0 * 1024.0;
+            default: return Double.NaN;
+        }
+    }
+
+    private static long parseLong(CharSequence s, int from, int to) {
+        long v = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') break;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static boolean startsWith(CharSequence s, int from, String prefix) {
+        if (from + prefix.length() > s.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (s.charAt(from + i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence s, char c, int from) {
+        for (int i = from; i < s.length(); i++) {
+            if (s.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(CharSequence s, char c, int from) {
+        for (int i = from; i >= 0; i--) {
+            if (s.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static int indexOf(CharSequence s, String str, int from) {
+        for (int i = from; i + str.length() <= s.length(); i++) {
+            if (startsWith(s, i, str)) return i;
+        }
+        return -1;
+    }
+
+    public RollingHistogram getPauses() {
+        return pauses;
+    }
+
+    public long getFullGcCount() {
+        return fullGcs.count(System.currentTimeMillis());
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    public long getPauseCount() {
+        return pauseCount;
+    }
+
+    public double getAllocationRateMbPerSec() {
+        return allocationRateMbPerSec;
+    }
+
+    public TimeSeries getAllocationHistory() {
+        return allocationHistory;
+    }
+
+    // Low end (10th percentile) of the post-GC heap over the last 10 minutes. Whatever is still
+    // in the heap right after a collection is live data or old garbage not collected yet, so this
+    // bounds the live set from above; the percentile ignores one-off lows such as shutdown.
+    public double getLiveSetMb() {
+        return postGcHeap.percentile(System.currentTimeMillis(), 0.1);
+    }
+
+    public double getHeapCapacityMb() {
+        return heapCapacityMb;
+    }
+}
@@ -0,0 +1,322 @@
+package Main.Java.monitor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+// Counters, gauges and histograms rendered in the Prometheus text format. Hot paths only touch
+// LongAdders, which stripe under contention instead of making the console reader and command
+// callbacks fight over one cache line; everything else is read from its owner at scrape time.
+// Each series renders its name and labels once, when it is registered, so a scrape is appends
+// into one reused buffer. Scrapes and registrations share a lock; recording never takes it.
+public class MetricsRegistry {
+
+    // Seconds; command round trips and frame times both fall well inside
+    public static final double[] LATENCY_BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+    private final StringBuilder out = new StringBuilder(16 * 1024);
+
+    private static final class Family {
+        final String name;
+        final String header;
+        final List<Series> series = new ArrayList<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.header = "# HELP " + name + " " + help + "\n# TYPE " + name + " " + type + "\n";
+        }
+    }
+
+    private abstract static class Series {
+        final String[] labels;
+        // name{labels} for every line of this series except histogram buckets
+        final String prefix;
+
+        Series(String name, String[] labels) {
+            this.labels = labels;
+            this.prefix = name + labelSet(labels, null, null) + " ";
+        }
+
+        abstract void render(StringBuilder out);
+    }
+
+    public static final class Counter extends Series {
+        private final LongAdder value = new LongAdder();
+
+        Counter(String name, String[] labels) {
+            super(name, labels);
+        }
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        @Override
+        void render(StringBuilder out) {
+            out.append(prefix).append(value.sum()).append('\n');
+        }
+    }
+
+    private static final class LongFunction extends Series {
+        private final LongSupplier value;
+
+        LongFunction(String name, String[] labels, LongSupplier value) {
+            super(name, labels);
+            this.value = value;
+        }
+
+        @Override
+        void render(StringBuilder out) {
+            out.append(prefix).append(value.getAsLong()).append('\n');
+        }
+    }
+
+    private static final class DoubleFunction extends Series {
+        private final DoubleSupplier value;
+
+        DoubleFunction(String name, String[] labels, DoubleSupplier value) {
+            super(name, labels);
+            this.value = value;
+        }
+
+        // NaN means "not known right now" (server down, nothing sampled) and leaves the series out
+        @Override
+        void render(StringBuilder out) {
+            double v = value.getAsDouble();
+            if (Double.isNaN(v)) return;
+            out.append(prefix);
+            appendDouble(out, v);
+            out.append('\n');
+        }
+    }
+
+    // Durations in nanoseconds into fixed buckets, rendered in seconds
+    public static final class Histogram extends Series {
+        private final long[] boundsNanos;
+        private final LongAdder[] buckets;
+        private final LongAdder sumNanos = new LongAdder();
+        private final String[] bucketPrefixes;
+        private final String sumPrefix;
+        private final String countPrefix;
+
+        Histogram(String name, String[] labels, double[] boundsSeconds) {
+            super(name, labels);
+            this.boundsNanos = new long[boundsSeconds.length];
+            this.buckets = new LongAdder[boundsSeconds.length + 1];
+            this.bucketPrefixes = new String[boundsSeconds.length + 1];
+            for (int i = 0; i <= boundsSeconds.length; i++) {
+                buckets[i] = new LongAdder();
+                String le = i < boundsSeconds.length ? format(boundsSeconds[i]) : "+Inf";
+                bucketPrefixes[i] = name + "_bucket" + labelSet(labels, "le", le) + " ";
+                if (i < boundsSeconds.length) {
+                    boundsNanos[i] = (long) (boundsSeconds[i] * 1e9);
+                }
+            }
+            this.sumPrefix = name + "_sum" + labelSet(labels, null, null) + " ";
+            this.countPrefix = name + "_count" + labelSet(labels, null, null) + " ";
+        }
+
+        public void observeNanos(long nanos) {
+            int i = Arrays.binarySearch(boundsNanos, nanos);
+            buckets[i >= 0 ? i : -i - 1].increment();
+            sumNanos.add(nanos);
+        }
+
+        // Buckets are summed one by one while others record, so a scrape can be off by the
+        // few observations that landed in between; Prometheus tolerates that
+        @Override
+        void render(StringBuilder out) {
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i].sum();
+                out.append(bucketPrefixes[i]).append(cumulative).append('\n');
+            }
+            out.append(sumPrefix);
+            appendDouble(out, sumNanos.sum() / 1e9);
+            out.append('\n').append(countPrefix).append(cumulative).append('\n');
+        }
+    }
+
+    // Percentiles of a RollingHistogram over its window, as a gauge per quantile
+    private static final class Quantiles extends Series {
+        private final RollingHistogram histogram;
+        private final double scale;
+        private final String[] quantilePrefixes = new String[QUANTILES.length];
+
+        Quantiles(String name, String[] labels, RollingHistogram histogram, double scale) {
+            super(name, labels);
+            this.histogram = histogram;
+            this.scale = scale;
+            for (int i = 0; i < QUANTILES.length; i++) {
+                quantilePrefixes[i] = name + labelSet(labels, "quantile", format(QUANTILES[i])) + " ";
+            }
+        }
+
+        @Override
+        void render(StringBuilder out) {
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < QUANTILES.length; i++) {
+                double v = histogram.percentile(now, QUANTILES[i]);
+                if (Double.isNaN(v)) return;
+                out.append(quantilePrefixes[i]);
+                appendDouble(out, v * scale);
+                out.append('\n');
+            }
+        }
+    }
+
+    // labels are name/value pairs. Registering the same name and labels again returns the
+    // series already there, so an instance can register on every start without duplicates.
+    public synchronized Counter counter(String name, String help, String... labels) {
+        Family family = family(name, help, "counter");
+        Series existing = find(family, labels);
+        if (existing != null) return (Counter) existing;
+        Counter counter = new Counter(name, labels);
+        family.series.add(counter);
+        return counter;
+    }
+
+    // A counter kept by its owner, e.g. a total it already maintains
+    public synchronized void counter(String name, String help, LongSupplier value, String... labels) {
+        Family family = family(name, help, "counter");
+        if (find(family, labels) == null) {
+            family.series.add(new LongFunction(name, labels, value));
+        }
+    }
+
+    public synchronized void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        Family family = family(name, help, "gauge");
+        if (find(family, labels) == null) {
+            family.series.add(new DoubleFunction(name, labels, value));
+        }
+    }
+
+    public synchronized Histogram histogram(String name, String help, double[] boundsSeconds, String... labels) {
+        Family family = family(name, help, "histogram");
+        Series existing = find(family, labels);
+        if (existing != null) return (Histogram) existing;
+        Histogram histogram = new Histogram(name, labels, boundsSeconds);
+        family.series.add(histogram);
+        return histogram;
+    }
+
+    // Windowed percentiles of a RollingHistogram, multiplied by scale (e.g. 0.001 for ms to s)
+    public synchronized void quantiles(String name, String help, RollingHistogram histogram, double scale, String... labels) {
+        Family family = family(name, help, "gauge");
+        if (find(family, labels) == null) {
+            family.series.add(new Quantiles(name, labels, histogram, scale));
+        }
+    }
+
+    // Drops every series carrying this label value, e.g. all series of a removed server
+    public synchronized void remove(String label, String value) {
+        for (Family family : families.values()) {
+            family.series.removeIf(s -> has(s.labels, label, value));
+        }
+    }
+
+    // One scrape in text format 0.0.4
+    public synchronized byte[] render() {
+        out.setLength(0);
+        for (Family family : families.values()) {
+            if (family.series.isEmpty()) continue;
+            out.append(family.header);
+            for (Series s : family.series) {
+                s.render(out);
+            }
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.get(name);
+        if (family == null) {
+            family = new Family(name, help, type);
+            families.put(name, family);
+        } else if (!family.header.endsWith(" " + type + "\n")) {
+            throw new IllegalArgumentException(name + " is already registered with another type");
+        }
+        return family;
+    }
+
+    private static Series find(Family family, String[] labels) {
+        for (Series s : family.series) {
+            if (Arrays.equals(s.labels, labels)) return s;
+        }
+        return null;
+    }
+
+    private static boolean has(String[] labels, String label, String value) {
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (labels[i].equals(label) && labels[i + 1].equals(value)) return true;
+        }
+        return false;
+    }
+
+    // {a="1",b="2"} plus an optional extra pair (le, quantile); empty without labels
+    private static String labelSet(String[] labels, String extraName, String extraValue) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        if (labels.length == 0 && extraName == null) return "";
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(labels[i]).append("=\"");
+            escape(sb, labels[i + 1]);
+            sb.append('"');
+        }
+        if (extraName != null) {
+            if (labels.length > 0) sb.append(',');
+            sb.append(extraName).append("=\"").append(extraValue).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void escape(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    private static void appendDouble(StringBuilder out, double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) {
+            out.append((long) v);
+        } else if (Double.isInfinite(v)) {
+            out.append(v > 0 ? "+Inf" : "-Inf");
+        } else {
+            out.append(v);
+        }
+    }
+
+    private static String format(double v) {
+        StringBuilder sb = new StringBuilder();
+        appendDouble(sb, v);
+        return v == Math.rint(v) ? sb.append(".0").toString() : sb.toString();
+    }
+}
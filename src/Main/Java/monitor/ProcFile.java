@@ -0,0 +1,89 @@
+package Main.Java.monitor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A /proc file kept open between samples. Reading at offset 0 makes the kernel regenerate the
+// contents, so the same channel and buffer can be reused every second without allocating.
+public class ProcFile implements Closeable {
+
+    private final FileChannel channel;
+
+    public ProcFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    // Reads the whole file into buf (cleared first) and returns the number of bytes read
+    public int read(ByteBuffer buf) throws IOException {
+        buf.clear();
+        long pos = 0;
+        int n;
+        while (buf.hasRemaining() && (n = channel.read(buf, pos)) > 0) {
+            pos += n;
+        }
+        return buf.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Index just after the last ')' of a stat line; fields 3.. follow, space-separated
+    public static int afterComm(ByteBuffer buf, int len) {
+        for (int i = len - 1; i >= 0; i--) {
+            if (buf.get(i) == ')') return i + 1;
+        }
+        return 0;
+    }
+
+    // Skips 'count' space-separated tokens starting at 'from' and returns the start of the next one
+    public static int skipFields(ByteBuffer buf, int len, int from, int count) {
+        int i = from;
+        while (i < len && buf.get(i) == ' ') i++;
+        for (int f = 0; f < count; f++) {
+            while (i < len && buf.get(i) != ' ') i++;
+            while (i < len && buf.get(i) == ' ') i++;
+        }
+        return i;
+    }
+
+    public static long parseLong(ByteBuffer buf, int len, int from) {
+        long v = 0;
+        int i = from;
+        while (i < len && (buf.get(i) == ' ' || buf.get(i) == '\t')) i++;
+        boolean negative = i < len && buf.get(i) == '-';
+        if (negative) i++;
+        while (i < len) {
+            byte b = buf.get(i);
+            if (b < '0' || b > '9') break;
+            v = v * 10 + (b - '0');
+            i++;
+        }
+        return negative ? -v : v;
+    }
+
+    // Finds "key" at the start of a line (as in /proc/<pid>/status) and returns the index after it, or -1
+    public static int findKey(ByteBuffer buf, int len, byte[] key) {
+        int i = 0;
+        while (i < len) {
+            if (len - i >= key.length) {
+                boolean match = true;
+                for (int j = 0; j < key.length; j++) {
+                    if (buf.get(i + j) != key[j]) {
+                        match = false;
+                        break;
+                    }
+                }
+                if (match) return i + key.length;
+            }
+            while (i < len && buf.get(i) != '\n') i++;
+            i++;
+        }
+        return -1;
+    }
+}
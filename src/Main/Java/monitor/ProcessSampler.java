@@ -0,0 +1,203 @@
+package Main.Java.monitor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Samples memory and CPU of the server process tree (the run script and the java process it
+// launches) from /proc on Linux. Files stay open and buffers are reused, so a steady-state
+// sample does not allocate. Not thread-safe: call sample() from a single monitor thread.
+public class ProcessSampler {
+
+    // USER_HZ; 100 on every mainstream Linux architecture
+    private static final long CLOCK_TICKS = 100;
+    private static final int MAX_PROCESSES = 64;
+    private static final byte[] VM_RSS = "VmRSS:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VM_SWAP = "VmSwap:".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(16 * 1024);
+    private final long[] pids = new long[MAX_PROCESSES];
+    private final long[] openPids = new long[MAX_PROCESSES];
+    private final ProcFile[][] openFiles = new ProcFile[MAX_PROCESSES][];
+    private final boolean[] seen = new boolean[MAX_PROCESSES];
+    private int openCount = 0;
+
+    private long rssBytes;
+    private long swapBytes;
+    private long cpuTicks;
+    private int threads;
+    private int processCount;
+    private double cpuPercent;
+
+    private long lastCpuTicks = -1;
+    private long lastSampleTime;
+
+    private long lastSampleNanos;
+    private long totalSampleNanos;
+    private long sampleCount;
+
+    public static boolean isSupported() {
+        return Files.isReadable(Paths.get("/proc/self/stat"));
+    }
+
+    // Samples rootPid and its descendants. Returns false if the root process is gone.
+    public boolean sample(long rootPid) {
+        long start = System.nanoTime();
+        long rss = 0, swap = 0, ticks = 0;
+        int threadCount = 0;
+        boolean rootAlive = false;
+
+        int count = collectTree(rootPid);
+        for (int i = 0; i < count; i++) {
+            ProcFile[] files = files(pids[i]);
+            if (files == null) continue;
+            try {
+                int len = files[0].read(buf);
+                int fields = ProcFile.afterComm(buf, len);
+                // utime is field 14, stime 15, num_threads 20; afterComm lands on field 3
+                int utime = ProcFile.skipFields(buf, len, fields, 11);
+                ticks += ProcFile.parseLong(buf, len, utime);
+                int stime = ProcFile.skipFields(buf, len, utime, 1);
+                ticks += ProcFile.parseLong(buf, len, stime);
+                int numThreads = ProcFile.skipFields(buf, len, stime, 5);
+                threadCount += (int) ProcFile.parseLong(buf, len, numThreads);
+
+                len = files[1].read(buf);
+                int idx = ProcFile.findKey(buf, len, VM_RSS);
+                if (idx >= 0) rss += ProcFile.parseLong(buf, len, idx) * 1024;
+                idx = ProcFile.findKey(buf, len, VM_SWAP);
+                if (idx >= 0) swap += ProcFile.parseLong(buf, len, idx) * 1024;
+                if (i == 0) rootAlive = true;
+            } catch (IOException e) {
+                // process exited between listing and reading
+            }
+        }
+        closeUnseen();
+
+        long now = System.nanoTime();
+        if (lastCpuTicks >= 0 && now > lastSampleTime && ticks >= lastCpuTicks) {
+            double elapsedSec = (now - lastSampleTime) / 1e9;
+            cpuPercent = (ticks - lastCpuTicks) * 100.0 / CLOCK_TICKS / elapsedSec;
+        }
+        lastCpuTicks = ticks;
+        lastSampleTime = now;
+
+        rssBytes = rss;
+        swapBytes = swap;
+        cpuTicks = ticks;
+        threads = threadCount;
+        processCount = count;
+
+        lastSampleNanos = System.nanoTime() - start;
+        totalSampleNanos += lastSampleNanos;
+        sampleCount++;
+        return rootAlive;
+    }
+
+    public void reset() {
+        lastCpuTicks = -1;
+        cpuPercent = 0;
+        for (int i = 0; i < openCount; i++) {
+            closeFiles(openFiles[i]);
+            openFiles[i] = null;
+        }
+        openCount = 0;
+    }
+
+    public long getRssBytes() { return rssBytes; }
+    public long getSwapBytes() { return swapBytes; }
+    public long getCpuTimeMillis() { return cpuTicks * 1000 / CLOCK_TICKS; }
+    public int getThreads() { return threads; }
+    public int getProcessCount() { return processCount; }
+    public double getCpuPercent() { return cpuPercent; }
+
+    // Cost of the last sample and the running average, in nanoseconds
+    public long getLastSampleNanos() { return lastSampleNanos; }
+    public long getAverageSampleNanos() { return sampleCount == 0 ? 0 : totalSampleNanos / sampleCount; }
+
+    // Breadth-first walk using /proc/<pid>/task/<pid>/children; fills pids[] and returns the count
+    private int collectTree(long rootPid) {
+        int count = 0;
+        pids[count++] = rootPid;
+        for (int i = 0; i < count; i++) {
+            ProcFile[] files = files(pids[i]);
+            if (files == null || files[2] == null) {
+                if (i == 0 && files == null) return 0;
+                continue;
+            }
+            try {
+                int len = files[2].read(buf);
+                int pos = 0;
+                while (pos < len && count < MAX_PROCESSES) {
+                    while (pos < len && buf.get(pos) == ' ') pos++;
+                    if (pos >= len || buf.get(pos) == '\n') break;
+                    pids[count++] = ProcFile.parseLong(buf, len, pos);
+                    while (pos < len && buf.get(pos) != ' ') pos++;
+                }
+            } catch (IOException ignored) {
+            }
+        }
+        return count;
+    }
+
+    // Returns [stat, status, children] for pid, opening them on first use; null if the process is gone
+    private ProcFile[] files(long pid) {
+        for (int i = 0; i < openCount; i++) {
+            if (openPids[i] == pid) {
+                seen[i] = true;
+                return openFiles[i];
+            }
+        }
+        if (openCount == MAX_PROCESSES) return null;
+        Path dir = Paths.get("/proc", Long.toString(pid));
+        ProcFile[] files = new ProcFile[3];
+        try {
+            files[0] = new ProcFile(dir.resolve("stat"));
+            files[1] = new ProcFile(dir.resolve("status"));
+        } catch (IOException e) {
+            closeFiles(files);
+            return null;
+        }
+        try {
+            files[2] = new ProcFile(dir.resolve("task").resolve(Long.toString(pid)).resolve("children"));
+        } catch (IOException e) {
+            // kernel built without CONFIG_PROC_CHILDREN: only the root process is sampled
+        }
+        openPids[openCount] = pid;
+        openFiles[openCount] = files;
+        seen[openCount] = true;
+        openCount++;
+        return files;
+    }
+
+    private void closeUnseen() {
+        int w = 0;
+        for (int i = 0; i < openCount; i++) {
+            if (seen[i]) {
+                openPids[w] = openPids[i];
+                openFiles[w] = openFiles[i];
+                seen[w] = false;
+                w++;
+            } else {
+                closeFiles(openFiles[i]);
+            }
+        }
+        for (int i = w; i < openCount; i++) {
+            openFiles[i] = null;
+        }
+        openCount = w;
+    }
+
+    private static void closeFiles(ProcFile[] files) {
+        for (ProcFile f : files) {
+            if (f == null) continue;
+            try {
+                f.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package Main.Java.monitor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+// Size of a world from its region files without reading them: every r.X.Z.mca starts with an
+// 8 KB header of 1024 chunk locations (offset and sector count) and 1024 save timestamps, and
+// that header is all this reads, through a read-only mapping. Files are scanned in parallel on
+// the common pool. The per-file results are cached by mtime and size in a small file, so a
+// rescan only maps the regions the server has written since.
+// Dimensions: <world>/region, DIM-1 and DIM1 (also inside world_nether / world_the_end on
+// Bukkit servers) and datapack dimensions under dimensions/<namespace>/<name>/region.
+public class RegionScanner {
+
+    private static final int HEADER = 8192;
+    private static final int SECTOR = 4096;
+    private static final int CACHE_VERSION = 1;
+
+    private final Path cacheFile;
+    // Region path -> what its header said when the file had this mtime and size
+    private final Map<String, Region> cache = new ConcurrentHashMap<>();
+    // Chunks per dimension at the previous scan, for growth
+    private final Map<String, Long> lastChunks = new HashMap<>();
+    private long lastScanTime;
+    private boolean loaded;
+
+    public RegionScanner(Path cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    static final class Region {
+        final long mtime;
+        final long size;
+        final int chunks;
+        final long sectorBytes;
+        // Newest chunk save, epoch seconds
+        final int newest;
+
+        Region(long mtime, long size, int chunks, long sectorBytes, int newest) {
+            this.mtime = mtime;
+            this.size = size;
+            this.chunks = chunks;
+            this.sectorBytes = sectorBytes;
+            this.newest = newest;
+        }
+    }
+
+    // Totals of one dimension
+    public static final class Dimension {
+        private final String name;
+        private int regions;
+        private long chunks;
+        private long fileBytes;
+        private long sectorBytes;
+        private long newestSave;
+        private int minX = Integer.MAX_VALUE;
+        private int maxX = Integer.MIN_VALUE;
+        private int minZ = Integer.MAX_VALUE;
+        private int maxZ = Integer.MIN_VALUE;
+        private long growth;
+
+        Dimension(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+        public int getRegions() { return regions; }
+        public long getChunks() { return chunks; }
+        public long getFileBytes() { return fileBytes; }
+        public long getSectorBytes() { return sectorBytes; }
+        // Epoch millis of the newest chunk save, 0 if none
+        public long getNewestSave() { return newestSave; }
+        // Chunks generated since the previous scan
+        public long getGrowth() { return growth; }
+
+        // Width and depth in blocks of the box around all region files
+        public int getWidthBlocks() {
+            return regions == 0 ? 0 : (maxX - minX + 1) * 512;
+        }
+
+        public int getDepthBlocks() {
+            return regions == 0 ? 0 : (maxZ - minZ + 1) * 512;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %,d chunks in %d regions, %s, %,d x %,d blocks",
+                    name, chunks, regions, size(fileBytes), getWidthBlocks(), getDepthBlocks());
+        }
+    }
+
+    public static final class Result {
+        private final List<Dimension> dimensions;
+        private final int scanned;
+        private final int cached;
+        private final long elapsedMs;
+        private final long sincePreviousMs;
+
+        Result(List<Dimension> dimensions, int scanned, int cached, long elapsedMs, long sincePreviousMs) {
+            this.dimensions = dimensions;
+            this.scanned = scanned;
+            this.cached = cached;
+            this.elapsedMs = elapsedMs;
+            this.sincePreviousMs = sincePreviousMs;
+        }
+
+        public List<Dimension> getDimensions() { return dimensions; }
+        // Region headers read in this scan; the rest came from the cache
+        public int getScanned() { return scanned; }
+        public int getCached() { return cached; }
+        public long getElapsedMs() { return elapsedMs; }
+        // Time since the scan the growth figures compare against, 0 on the first scan
+        public long getSincePreviousMs() { return sincePreviousMs; }
+
+        public long getTotalChunks() {
+            long n = 0;
+            for (Dimension d : dimensions) n += d.chunks;
+            return n;
+        }
+
+        public long getTotalBytes() {
+            long n = 0;
+            for (Dimension d : dimensions) n += d.fileBytes;
+            return n;
+        }
+
+        public List<String> summary() {
+            List<String> out = new ArrayList<>();
+            out.add(String.format(Locale.ROOT, "World: %,d chunks, %s (%d regions read, %d cached, %.2f s)",
+                    getTotalChunks(), size(getTotalBytes()), scanned, cached, elapsedMs / 1000.0));
+            for (Dimension d : dimensions) {
+                String line = d.toString();
+                if (sincePreviousMs > 0 && d.growth != 0) {
+                    double hours = sincePreviousMs / 3_600_000.0;
+                    line += String.format(Locale.ROOT, ", %+,d chunks in %.1f h", d.growth, hours);
+                }
+                out.add(line);
+            }
+            return out;
+        }
+    }
+
+    // Scans the region folders of the given world folders (relative to serverDir)
+    public synchronized Result scan(Path serverDir, List<String> worlds) throws IOException {
+        long start = System.nanoTime();
+        if (!loaded) {
+            load();
+            loaded = true;
+        }
+        Map<Path, String> regionDirs = new TreeMap<>();
+        for (String world : worlds) {
+            findRegionDirs(serverDir.resolve(world), world, regionDirs);
+        }
+        List<Path> files = new ArrayList<>();
+        List<String> dims = new ArrayList<>();
+        for (Map.Entry<Path, String> dir : regionDirs.entrySet()) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.getKey(), "r.*.*.mca")) {
+                for (Path p : stream) {
+                    files.add(p);
+                    dims.add(dir.getValue());
+                }
+            }
+        }
+
+        Region[] regions = new Region[files.size()];
+        boolean[] fresh = new boolean[files.size()];
+        IntStream.range(0, files.size()).parallel().forEach(i -> {
+            Path file = files.get(i);
+            String key = file.toString();
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                long mtime = attrs.lastModifiedTime().toMillis();
+                Region r = cache.get(key);
+                if (r == null || r.mtime != mtime || r.size != attrs.size()) {
+                    r = readHeader(file, mtime, attrs.size());
+                    cache.put(key, r);
+                    fresh[i] = true;
+                }
+                regions[i] = r;
+            } catch (NoSuchFileException e) {
+                cache.remove(key);
+            } catch (IOException e) {
+                // Being rewritten right now; counted on the next scan
+            }
+        });
+
+        Map<String, Dimension> byName = new TreeMap<>();
+        int scanned = 0;
+        for (int i = 0; i < regions.length; i++) {
+            Region r = regions[i];
+            if (r == null) continue;
+            if (fresh[i]) scanned++;
+            Dimension d = byName.computeIfAbsent(dims.get(i), Dimension::new);
+            d.regions++;
+            d.chunks += r.chunks;
+            d.fileBytes += r.size;
+            d.sectorBytes += r.sectorBytes;
+            d.newestSave = Math.max(d.newestSave, r.newest * 1000L);
+            int[] xz = coordinates(files.get(i).getFileName().toString());
+            if (xz != null) {
+                d.minX = Math.min(d.minX, xz[0]);
+                d.maxX = Math.max(d.maxX, xz[0]);
+                d.minZ = Math.min(d.minZ, xz[1]);
+                d.maxZ = Math.max(d.maxZ, xz[1]);
+            }
+        }
+        // Forget regions that were deleted (trimmed worlds)
+        if (cache.size() > files.size()) {
+            Set<String> present = new HashSet<>();
+            for (Path f : files) present.add(f.toString());
+            cache.keySet().retainAll(present);
+        }
+
+        long now = System.currentTimeMillis();
+        long since = lastScanTime > 0 ? now - lastScanTime : 0;
+        for (Dimension d : byName.values()) {
+            Long before = lastChunks.get(d.name);
+            d.growth = before != null ? d.chunks - before : 0;
+            lastChunks.put(d.name, d.chunks);
+        }
+        lastScanTime = now;
+        save();
+        return new Result(new ArrayList<>(byName.values()), scanned, regions.length - scanned,
+                (System.nanoTime() - start) / 1_000_000, since);
+    }
+
+    // Region folders of one world folder and the dimension each belongs to
+    private static void findRegionDirs(Path world, String worldName, Map<Path, String> out) throws IOException {
+        if (!Files.isDirectory(world)) return;
+        String base = worldName.endsWith("_nether") ? "nether" : worldName.endsWith("_the_end") ? "end" : "overworld";
+        addIfDir(world.resolve("region"), base, out);
+        addIfDir(world.resolve("DIM-1").resolve("region"), "nether", out);
+        addIfDir(world.resolve("DIM1").resolve("region"), "end", out);
+        Path custom = world.resolve("dimensions");
+        if (Files.isDirectory(custom)) {
+            try (DirectoryStream<Path> namespaces = Files.newDirectoryStream(custom, Files::isDirectory)) {
+                for (Path ns : namespaces) {
+                    try (DirectoryStream<Path> names = Files.newDirectoryStream(ns, Files::isDirectory)) {
+                        for (Path dim : names) {
+                            addIfDir(dim.resolve("region"), ns.getFileName() + ":" + dim.getFileName(), out);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addIfDir(Path dir, String dimension, Map<Path, String> out) {
+        if (Files.isDirectory(dir)) {
+            out.put(dir, dimension);
+        }
+    }
+
+    // Maps only the 8 KB header; a region that was never written is shorter and holds no chunks
+    static Region readHeader(Path file, long mtime, long size) throws IOException {
+        if (size < HEADER) {
+            return new Region(mtime, size, 0, 0, 0);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            header.order(ByteOrder.BIG_ENDIAN);
+            int chunks = 0;
+            long sectors = 0;
+            int newest = 0;
+            for (int i = 0; i < 1024; i++) {
+                int location = header.getInt(i * 4);
+                if (location == 0) continue;
+                chunks++;
+                sectors += location & 0xff;
+                newest = Math.max(newest, header.getInt(SECTOR + i * 4));
+            }
+            return new Region(mtime, size, chunks, sectors * SECTOR, newest);
+        }
+    }
+
+    // "r.-3.12.mca" -> {-3, 12}
+    static int[] coordinates(String name) {
+        int a = name.indexOf('.');
+        int b = name.indexOf('.', a + 1);
+        int c = name.indexOf('.', b + 1);
+        if (a < 0 || b < 0 || c < 0) return null;
+        try {
+            return new int[] {Integer.parseInt(name.substring(a + 1, b)), Integer.parseInt(name.substring(b + 1, c))};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(cacheFile)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != CACHE_VERSION) return;
+            lastScanTime = in.readLong();
+            int dims = in.readInt();
+            for (int i = 0; i < dims; i++) {
+                lastChunks.put(in.readUTF(), in.readLong());
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String key = in.readUTF();
+                cache.put(key, new Region(in.readLong(), in.readLong(), in.readInt(), in.readLong(), in.readInt()));
+            }
+        } catch (IOException e) {
+            // Damaged cache: start over, the next scan rebuilds it
+            cache.clear();
+            lastChunks.clear();
+            lastScanTime = 0;
+        }
+    }
+
+    private void save() throws IOException {
+        Files.createDirectories(cacheFile.getParent());
+        Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(CACHE_VERSION);
+            out.writeLong(lastScanTime);
+            out.writeInt(lastChunks.size());
+            for (Map.Entry<String, Long> e : lastChunks.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue());
+            }
+            out.writeInt(cache.size());
+            for (Map.Entry<String, Region> e : cache.entrySet()) {
+                Region r = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(r.mtime);
+                out.writeLong(r.size);
+                out.writeInt(r.chunks);
+                out.writeLong(r.sectorBytes);
+                out.writeInt(r.newest);
+            }
+        }
+        Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static String size(long bytes) {
+        if (bytes >= 1024L * 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.2f GB", bytes / (1024.0 * 1024 * 1024));
+        }
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024));
+    }
+}
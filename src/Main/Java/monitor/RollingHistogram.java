@@ -0,0 +1,131 @@
+package Main.Java.monitor;
+
+import java.util.Arrays;
+
+// Distribution of a metric (tick times, lag, pause times) over a sliding window. Values go into
+// geometric buckets 5% wide, so percentiles are within 5% of the true value at any magnitude;
+// the window is a ring of time slots that are cleared as they come round again. Fixed-size
+// primitive arrays, so recording a value never allocates.
+public class RollingHistogram {
+
+    private static final double MIN = 0.01;
+    private static final double RATIO = 1.05;
+    private static final double LOG_RATIO = Math.log(RATIO);
+    // MIN * RATIO^BUCKETS is about 1e6, well past anything measured in ms
+    private static final int BUCKETS = 380;
+
+    private final long slotMillis;
+    private final int[][] counts;
+    private final long[] slotIds;
+    private final long[] slotCounts;
+    private final double[] slotSums;
+    private final double[] slotMax;
+    private final long[] merged = new long[BUCKETS];
+
+    // Window of slots * slotMillis, e.g. 60 slots of 10s for the last ten minutes
+    public RollingHistogram(int slots, long slotMillis) {
+        this.slotMillis = slotMillis;
+        this.counts = new int[slots][BUCKETS];
+        this.slotIds = new long[slots];
+        this.slotCounts = new long[slots];
+        this.slotSums = new double[slots];
+        this.slotMax = new double[slots];
+        Arrays.fill(slotIds, -1L);
+    }
+
+    public synchronized void add(long timeMillis, double value) {
+        if (!(value >= 0)) return; // NaN or negative
+        long id = timeMillis / slotMillis;
+        int s = (int) (id % slotIds.length);
+        if (slotIds[s] != id) {
+            Arrays.fill(counts[s], 0);
+            slotIds[s] = id;
+            slotCounts[s] = 0;
+            slotSums[s] = 0;
+            slotMax[s] = 0;
+        }
+        counts[s][bucket(value)]++;
+        slotCounts[s]++;
+        slotSums[s] += value;
+        slotMax[s] = Math.max(slotMax[s], value);
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(slotIds, -1L);
+    }
+
+    public synchronized long count(long nowMillis) {
+        long n = 0;
+        for (int s = 0; s < slotIds.length; s++) {
+            if (live(s, nowMillis)) n += slotCounts[s];
+        }
+        return n;
+    }
+
+    public synchronized double mean(long nowMillis) {
+        long n = 0;
+        double sum = 0;
+        for (int s = 0; s < slotIds.length; s++) {
+            if (live(s, nowMillis)) {
+                n += slotCounts[s];
+                sum += slotSums[s];
+            }
+        }
+        return n == 0 ? Double.NaN : sum / n;
+    }
+
+    public synchronized double max(long nowMillis) {
+        double max = Double.NaN;
+        for (int s = 0; s < slotIds.length; s++) {
+            if (live(s, nowMillis) && slotCounts[s] > 0) {
+                max = Double.isNaN(max) ? slotMax[s] : Math.max(max, slotMax[s]);
+            }
+        }
+        return max;
+    }
+
+    // q in [0, 1]; NaN when the window is empty. Reports the bucket's upper bound, capped at the max.
+    public synchronized double percentile(long nowMillis, double q) {
+        Arrays.fill(merged, 0);
+        long n = 0;
+        double max = 0;
+        for (int s = 0; s < slotIds.length; s++) {
+            if (!live(s, nowMillis) || slotCounts[s] == 0) continue;
+            int[] c = counts[s];
+            for (int b = 0; b < BUCKETS; b++) {
+                merged[b] += c[b];
+            }
+            n += slotCounts[s];
+            max = Math.max(max, slotMax[s]);
+        }
+        if (n == 0) return Double.NaN;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += merged[b];
+            if (seen >= rank) {
+                return Math.min(upperBound(b), max);
+            }
+        }
+        return max;
+    }
+
+    public long windowMillis() {
+        return slotMillis * slotIds.length;
+    }
+
+    private boolean live(int s, long nowMillis) {
+        long id = slotIds[s];
+        return id >= 0 && id > nowMillis / slotMillis - slotIds.length;
+    }
+
+    private static int bucket(double value) {
+        if (value <= MIN) return 0;
+        int b = (int) (Math.log(value / MIN) / LOG_RATIO) + 1;
+        return Math.min(b, BUCKETS - 1);
+    }
+
+    private static double upperBound(int bucket) {
+        return MIN * Math.pow(RATIO, bucket);
+    }
+}
@@ -0,0 +1,370 @@
+package Main.Java.monitor;
+
+import com.sun.tools.attach.AttachNotSupportedException;
+import com.sun.tools.attach.VirtualMachine;
+
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Sampling profiler for a server JVM: takes a burst of thread dumps and folds them into
+// collapsed stacks ("root;caller;leaf count", the input format of flamegraph.pl and
+// speedscope). Every capture is an incident directory holding the folded stacks of the main
+// thread and of all threads, plus a summary naming the plugin or mod packages that were on the
+// main thread's stack the most.
+//
+// Dumps come from the JVM's ThreadMXBean over a local JMX connection opened through the attach
+// API, which costs a few milliseconds per dump. If attaching is not possible (no jdk.attach in
+// this runtime, another user's process) each dump runs "jcmd <pid> Thread.print", which starts
+// a JVM every time and so samples far more coarsely.
+public class StackProfiler {
+
+    // Frames of these packages are the server, JDK or loader, not a plugin or mod
+    private static final String[] PLATFORM_PACKAGES = {
+            "java.", "javax.", "jdk.", "sun.", "com.sun.", "net.minecraft.", "com.mojang.", "org.bukkit.",
+            "org.spigotmc.", "io.papermc.", "com.destroystokyo.paper.", "ca.spottedleaf.", "net.minecraftforge.",
+            "net.neoforged.", "net.fabricmc.", "cpw.mods.", "org.spongepowered.asm.", "it.unimi.dsi.fastutil.",
+            "com.google.", "org.apache.", "io.netty.", "org.slf4j.", "org.jline."
+    };
+    private static final DateTimeFormatter INCIDENT_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss", Locale.ROOT);
+    private static final long JCMD_TIMEOUT_MS = 10_000;
+
+    private final String jcmd;
+    private final Path incidentsDir;
+    private final String focusThread;
+
+    public StackProfiler(String jcmd, Path incidentsDir, String focusThread) {
+        this.jcmd = jcmd;
+        this.incidentsDir = incidentsDir;
+        this.focusThread = focusThread;
+    }
+
+    // jcmd of the JDK that runs the server, so the tool and the target JVM match
+    public static String findJcmd(String javaPath) {
+        String exe = System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows") ? "jcmd.exe" : "jcmd";
+        File bin = javaPath != null ? new File(javaPath).getParentFile() : null;
+        if (bin != null && new File(bin, exe).canExecute()) {
+            return new File(bin, exe).getPath();
+        }
+        File own = new File(System.getProperty("java.home"), "bin" + File.separator + exe);
+        return own.canExecute() ? own.getPath() : exe;
+    }
+
+    // Blocks for about samples * intervalMs plus attach time; run it off the UI and reader threads
+    public Incident capture(long pid, String reason, int samples, long intervalMs) throws IOException, InterruptedException {
+        Sampler sampler = new Sampler(focusThread);
+        long start = System.currentTimeMillis();
+        String method;
+        ThreadMXBean threads = null;
+        JMXConnector connector = null;
+        try {
+            connector = connect(pid);
+            threads = ManagementFactory.newPlatformMXBeanProxy(connector.getMBeanServerConnection(),
+                    ManagementFactory.THREAD_MXBEAN_NAME, ThreadMXBean.class);
+            method = "JMX";
+        } catch (IOException | AttachNotSupportedException | RuntimeException | LinkageError e) {
+            method = "jcmd (attach failed: " + e.getMessage() + ")";
+        }
+        try {
+            for (int i = 0; i < samples; i++) {
+                long t0 = System.nanoTime();
+                if (threads != null) {
+                    sampler.add(threads.dumpAllThreads(false, false));
+                } else {
+                    dump(pid, sampler);
+                }
+                long left = intervalMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+                if (i + 1 < samples && left > 0) {
+                    Thread.sleep(left);
+                }
+            }
+        } finally {
+            if (connector != null) {
+                try {
+                    connector.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        if (sampler.dumps == 0) {
+            throw new IOException("No thread dumps captured");
+        }
+
+        Path dir = incidentsDir.resolve("incident-" + LocalDateTime.now().format(INCIDENT_NAME));
+        for (int n = 2; Files.exists(dir); n++) {
+            dir = incidentsDir.resolve("incident-" + LocalDateTime.now().format(INCIDENT_NAME) + "-" + n);
+        }
+        Files.createDirectories(dir);
+        Files.write(dir.resolve("server-thread.folded"), folded(sampler.focused), StandardCharsets.UTF_8);
+        Files.write(dir.resolve("all-threads.folded"), folded(sampler.all), StandardCharsets.UTF_8);
+        Incident incident = new Incident(dir, reason, method, start, System.currentTimeMillis() - start, sampler.dumps,
+                sampler.focusedSamples, top(sampler.suspects, 5), top(sampler.leaves, 5), top(sampler.states, 4));
+        Files.writeString(dir.resolve("summary.txt"), incident.describe(), StandardCharsets.UTF_8);
+        return incident;
+    }
+
+    // Starts the target's local-only management agent (a no-op if it is running) and connects to it
+    private static JMXConnector connect(long pid) throws IOException, AttachNotSupportedException {
+        String url;
+        VirtualMachine vm = VirtualMachine.attach(Long.toString(pid));
+        try {
+            url = vm.startLocalManagementAgent();
+        } finally {
+            vm.detach();
+        }
+        return JMXConnectorFactory.connect(new JMXServiceURL(url));
+    }
+
+    private void dump(long pid, Sampler sampler) throws IOException, InterruptedException {
+        Process p = new ProcessBuilder(jcmd, Long.toString(pid), "Thread.print")
+                .redirectErrorStream(true)
+                .start();
+        // Killing a hung jcmd closes its output, so the read below ends within the timeout too
+        AtomicBoolean timedOut = new AtomicBoolean();
+        Thread watchdog = Thread.ofVirtual().name("jcmd-watchdog").start(() -> {
+            try {
+                if (!p.waitFor(JCMD_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    timedOut.set(true);
+                    p.destroyForcibly();
+                }
+            } catch (InterruptedException ignored) {
+            }
+        });
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+            sampler.read(reader);
+        } catch (IOException e) {
+            if (!timedOut.get()) throw e;
+        }
+        try {
+            p.waitFor();
+            watchdog.join();
+        } catch (InterruptedException e) {
+            p.destroyForcibly();
+            throw e;
+        }
+        if (timedOut.get()) {
+            throw new IOException("jcmd did not finish within " + JCMD_TIMEOUT_MS / 1000 + "s");
+        }
+        if (p.exitValue() != 0) {
+            throw new IOException("jcmd exited with " + p.exitValue() + (sampler.lastError != null ? ": " + sampler.lastError : ""));
+        }
+    }
+
+    // Turns thread dumps (ThreadInfo or parsed Thread.print text) into stack counts
+    static final class Sampler {
+        private final String focusThread;
+        final Map<String, Integer> focused = new HashMap<>();
+        final Map<String, Integer> all = new HashMap<>();
+        final Map<String, Integer> suspects = new HashMap<>();
+        final Map<String, Integer> leaves = new HashMap<>();
+        final Map<String, Integer> states = new HashMap<>();
+        int dumps;
+        int focusedSamples;
+        String lastError;
+
+        private String thread;
+        private String state;
+        private final List<String> frames = new ArrayList<>();
+
+        Sampler(String focusThread) {
+            this.focusThread = focusThread;
+        }
+
+        void add(ThreadInfo[] infos) {
+            for (ThreadInfo info : infos) {
+                if (info == null) continue;
+                thread = info.getThreadName();
+                state = info.getThreadState().name();
+                for (StackTraceElement e : info.getStackTrace()) {
+                    frames.add(e.getClassName() + "." + e.getMethodName());
+                }
+                endThread();
+            }
+            dumps++;
+        }
+
+        void read(BufferedReader reader) throws IOException {
+            boolean any = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("\"")) {
+                    endThread();
+                    int end = line.indexOf("\" #");
+                    thread = line.substring(1, end > 0 ? end : Math.max(1, line.lastIndexOf('"')));
+                    any = true;
+                } else if (thread != null && line.startsWith("\tat ")) {
+                    int paren = line.indexOf('(', 4);
+                    frames.add(line.substring(4, paren > 0 ? paren : line.length()));
+                } else if (thread != null && line.startsWith("   java.lang.Thread.State: ")) {
+                    // "TIMED_WAITING (sleeping)" -> "TIMED_WAITING", as ThreadInfo reports it
+                    String st = line.substring(27).trim();
+                    int space = st.indexOf(' ');
+                    state = space > 0 ? st.substring(0, space) : st;
+                } else if (line.isEmpty()) {
+                    endThread();
+                } else if (thread == null && lastError == null && !line.isBlank()) {
+                    lastError = line.trim();
+                }
+            }
+            endThread();
+            if (any) dumps++;
+        }
+
+        private void endThread() {
+            if (thread == null) return;
+            if (!frames.isEmpty()) {
+                // Dumps list the leaf first; folded stacks go root first
+                StringBuilder sb = new StringBuilder();
+                for (int i = frames.size() - 1; i >= 0; i--) {
+                    if (sb.length() > 0) sb.append(';');
+                    sb.append(frames.get(i));
+                }
+                String stack = sb.toString();
+                all.merge(sanitize(thread) + ";" + stack, 1, Integer::sum);
+                if (thread.equals(focusThread)) {
+                    focused.merge(stack, 1, Integer::sum);
+                    focusedSamples++;
+                    leaves.merge(frames.get(0), 1, Integer::sum);
+                    suspects.merge(suspect(frames), 1, Integer::sum);
+                    states.merge(state != null ? state : "UNKNOWN", 1, Integer::sum);
+                }
+            }
+            thread = null;
+            state = null;
+            frames.clear();
+        }
+    }
+
+    // Package of the frame nearest the leaf that is not server, JDK or loader code
+    static String suspect(List<String> leafFirst) {
+        for (String frame : leafFirst) {
+            if (!isPlatform(frame)) {
+                return packageOf(frame);
+            }
+        }
+        return "(server code only)";
+    }
+
+    private static boolean isPlatform(String frame) {
+        for (String prefix : PLATFORM_PACKAGES) {
+            if (frame.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    // First three segments of the package: com.example.plugin.module.Class.method -> com.example.plugin
+    private static String packageOf(String frame) {
+        int dot = 0;
+        for (int i = 0; i < 3; i++) {
+            int next = frame.indexOf('.', dot);
+            if (next < 0) break;
+            dot = next + 1;
+        }
+        int classDot = frame.lastIndexOf('.', frame.lastIndexOf('.') - 1);
+        int end = Math.min(dot - 1, classDot);
+        return end > 0 ? frame.substring(0, end) : frame;
+    }
+
+    // Folded stacks use ';' between frames and a space before the count
+    private static String sanitize(String threadName) {
+        return threadName.replace(';', ':').replace(' ', '_');
+    }
+
+    private static List<String> folded(Map<String, Integer> stacks) {
+        List<String> lines = new ArrayList<>(stacks.size());
+        stacks.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .forEach(e -> lines.add(e.getKey() + " " + e.getValue()));
+        return lines;
+    }
+
+    private static List<Map.Entry<String, Integer>> top(Map<String, Integer> counts, int n) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        return new ArrayList<>(entries.subList(0, Math.min(n, entries.size())));
+    }
+
+    public static final class Incident {
+        private final Path dir;
+        private final String reason;
+        private final String method;
+        private final long startedAt;
+        private final long durationMs;
+        private final int dumps;
+        private final int samples;
+        private final List<Map.Entry<String, Integer>> suspects;
+        private final List<Map.Entry<String, Integer>> leaves;
+        private final List<Map.Entry<String, Integer>> states;
+
+        Incident(Path dir, String reason, String method, long startedAt, long durationMs, int dumps, int samples,
+                 List<Map.Entry<String, Integer>> suspects, List<Map.Entry<String, Integer>> leaves,
+                 List<Map.Entry<String, Integer>> states) {
+            this.dir = dir;
+            this.reason = reason;
+            this.method = method;
+            this.startedAt = startedAt;
+            this.durationMs = durationMs;
+            this.dumps = dumps;
+            this.samples = samples;
+            this.suspects = suspects;
+            this.leaves = leaves;
+            this.states = states;
+        }
+
+        public Path getDir() { return dir; }
+        public String getReason() { return reason; }
+        public long getStartedAt() { return startedAt; }
+        public int getDumps() { return dumps; }
+        public int getSamples() { return samples; }
+
+        // "com.example.plugin 65%", or null when the main thread was never seen
+        public String topSuspect() {
+            if (suspects.isEmpty()) return null;
+            Map.Entry<String, Integer> e = suspects.get(0);
+            return e.getKey() + " " + percent(e.getValue()) + "%";
+        }
+
+        String describe() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Reason: ").append(reason).append('\n');
+            sb.append("Started: ").append(new java.util.Date(startedAt)).append('\n');
+            sb.append("Sampled via: ").append(method).append('\n');
+            sb.append("Thread dumps: ").append(dumps).append(" in ").append(durationMs).append(" ms, ")
+                    .append(samples).append(" with the main thread\n");
+            section(sb, "Plugin / mod packages on the main thread", suspects);
+            section(sb, "Top leaf frames", leaves);
+            section(sb, "Thread states", states);
+            return sb.toString();
+        }
+
+        private void section(StringBuilder sb, String title, List<Map.Entry<String, Integer>> entries) {
+            sb.append('\n').append(title).append(":\n");
+            for (Map.Entry<String, Integer> e : entries) {
+                sb.append(String.format(Locale.ROOT, "  %3d%%  %s%n", percent(e.getValue()), e.getKey()));
+            }
+        }
+
+        private int percent(int count) {
+            return samples == 0 ? 0 : Math.round(100f * count / samples);
+        }
+    }
+}
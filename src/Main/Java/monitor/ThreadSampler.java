@@ -0,0 +1,351 @@
+package Main.Java.monitor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Per-thread CPU of the server JVM from /proc/<pid>/task/<tid>/stat, so a saturated main tick
+// thread is visible even when the process as a whole looks idle. The stat files stay open and
+// are re-read in place (see ProcFile); the task directory is only listed again when the thread
+// count changes. The thread name comes from the comm field of stat (the same text as
+// task/<tid>/comm) and is decoded to a String only when it changes.
+// sample() runs on one thread; the top-N and per-kind totals are copied out under a lock.
+public class ThreadSampler {
+
+    // What a thread does, from its name
+    public enum Kind {
+        MAIN("Main thread"),
+        WORLDGEN("Chunks / worldgen"),
+        NETWORK("Network"),
+        GC("GC"),
+        JIT("JIT"),
+        OTHER("Other");
+
+        private final String displayName;
+
+        Kind(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private static final long CLOCK_TICKS = 100;
+    private static final int RELIST_EVERY = 60;
+    private static final Kind[] KINDS = Kind.values();
+
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(4 * 1024);
+    private final int topN;
+
+    private long pid = -1;
+    private ProcFile processStat;
+    private int count;
+    private long[] tids = new long[64];
+    private ProcFile[] files = new ProcFile[64];
+    private long[] lastTicks = new long[64];
+    private double[] cpu = new double[64];
+    private byte[][] comm = new byte[64][16];
+    private int[] commLen = new int[64];
+    private String[] names = new String[64];
+    private Kind[] kinds = new Kind[64];
+    private boolean[] gone = new boolean[64];
+    private long lastSampleNanos;
+    private int samplesSinceList;
+    private final int[] topIdx;
+    private final double[] kindWork = new double[KINDS.length];
+
+    // Published under the lock
+    private final String[] topNames;
+    private final double[] topCpu;
+    private final Kind[] topKinds;
+    private int topCount;
+    private final double[] kindCpu = new double[KINDS.length];
+    private int threadCount;
+
+    public ThreadSampler(int topN) {
+        this.topN = topN;
+        this.topIdx = new int[topN];
+        this.topNames = new String[topN];
+        this.topCpu = new double[topN];
+        this.topKinds = new Kind[topN];
+    }
+
+    // Samples all threads of pid; false if the process is gone or /proc is unavailable
+    public boolean sample(long pid) {
+        if (pid != this.pid) {
+            reset();
+            this.pid = pid;
+        }
+        try {
+            if (processStat == null) {
+                processStat = new ProcFile(Paths.get("/proc", Long.toString(pid), "stat"));
+            }
+            int len = processStat.read(buf);
+            if (len == 0) return false;
+            int numThreads = (int) ProcFile.parseLong(buf, len, ProcFile.skipFields(buf, len, ProcFile.afterComm(buf, len), 17));
+            if (numThreads != count || ++samplesSinceList >= RELIST_EVERY) {
+                relist();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+
+        long now = System.nanoTime();
+        double elapsedSec = lastSampleNanos > 0 ? (now - lastSampleNanos) / 1e9 : 0;
+        lastSampleNanos = now;
+        boolean anyGone = false;
+        for (int i = 0; i < count; i++) {
+            long ticks;
+            try {
+                int len = files[i].read(buf);
+                if (len == 0) {
+                    gone[i] = anyGone = true;
+                    continue;
+                }
+                int close = ProcFile.afterComm(buf, len);
+                updateName(i, len, close);
+                // utime is field 14, stime 15; afterComm lands on field 3
+                int utime = ProcFile.skipFields(buf, len, close, 11);
+                ticks = ProcFile.parseLong(buf, len, utime)
+                        + ProcFile.parseLong(buf, len, ProcFile.skipFields(buf, len, utime, 1));
+            } catch (IOException e) {
+                gone[i] = anyGone = true;
+                continue;
+            }
+            if (lastTicks[i] >= 0 && elapsedSec > 0 && ticks >= lastTicks[i]) {
+                cpu[i] = (ticks - lastTicks[i]) * 100.0 / CLOCK_TICKS / elapsedSec;
+            }
+            lastTicks[i] = ticks;
+        }
+        if (anyGone) {
+            compact();
+        }
+        publish();
+        return true;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < count; i++) {
+            close(files[i]);
+            files[i] = null;
+            names[i] = null;
+        }
+        close(processStat);
+        processStat = null;
+        count = 0;
+        pid = -1;
+        lastSampleNanos = 0;
+        topCount = 0;
+        threadCount = 0;
+        Arrays.fill(kindCpu, 0);
+    }
+
+    // Copies the hottest threads, hottest first, and returns how many were copied
+    public synchronized int copyTop(String[] outNames, double[] outCpu, Kind[] outKinds) {
+        int n = Math.min(topCount, Math.min(outNames.length, Math.min(outCpu.length, outKinds.length)));
+        System.arraycopy(topNames, 0, outNames, 0, n);
+        System.arraycopy(topCpu, 0, outCpu, 0, n);
+        System.arraycopy(topKinds, 0, outKinds, 0, n);
+        return n;
+    }
+
+    // CPU percent of one core used by all threads of a kind
+    public synchronized double getKindCpu(Kind kind) {
+        return kindCpu[kind.ordinal()];
+    }
+
+    public synchronized int getThreadCount() {
+        return threadCount;
+    }
+
+    // One line on where the CPU goes: the main tick thread, chunk work, GC or nowhere in particular
+    public synchronized String verdict() {
+        double main = kindCpu[Kind.MAIN.ordinal()];
+        double worldgen = kindCpu[Kind.WORLDGEN.ordinal()];
+        double gc = kindCpu[Kind.GC.ordinal()];
+        if (threadCount == 0) return "-";
+        if (main >= 85) return String.format("Main-thread bound (%.0f%% of a core)", main);
+        if (worldgen >= 100 && worldgen > main) return String.format("Worldgen bound (%.0f%% on chunk threads)", worldgen);
+        if (gc >= 50 && gc > main) return String.format("GC heavy (%.0f%% in GC threads)", gc);
+        return String.format("Not CPU bound (main thread %.0f%%)", main);
+    }
+
+    // Lists task/ and opens the stat file of every thread not tracked yet
+    private void relist() throws IOException {
+        samplesSinceList = 0;
+        Path taskDir = Paths.get("/proc", Long.toString(pid), "task");
+        Arrays.fill(gone, 0, count, true);
+        try (DirectoryStream<Path> tasks = Files.newDirectoryStream(taskDir)) {
+            for (Path task : tasks) {
+                long tid;
+                try {
+                    tid = Long.parseLong(task.getFileName().toString());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                int i = indexOf(tid);
+                if (i >= 0) {
+                    gone[i] = false;
+                    continue;
+                }
+                ProcFile f;
+                try {
+                    f = new ProcFile(task.resolve("stat"));
+                } catch (IOException e) {
+                    continue; // exited while listing
+                }
+                ensureCapacity(count + 1);
+                tids[count] = tid;
+                files[count] = f;
+                lastTicks[count] = -1;
+                cpu[count] = 0;
+                commLen[count] = -1;
+                names[count] = null;
+                kinds[count] = Kind.OTHER;
+                gone[count] = false;
+                count++;
+            }
+        }
+        compact();
+    }
+
+    private int indexOf(long tid) {
+        for (int i = 0; i < count; i++) {
+            if (tids[i] == tid) return i;
+        }
+        return -1;
+    }
+
+    // comm sits between the first '(' and the last ')' of the stat line
+    private void updateName(int i, int len, int afterComm) {
+        int open = 0;
+        while (open < len && buf.get(open) != '(') open++;
+        int start = open + 1;
+        int end = Math.max(start, afterComm - 1);
+        int n = Math.min(end - start, comm[i].length);
+        boolean same = n == commLen[i];
+        for (int j = 0; same && j < n; j++) {
+            same = comm[i][j] == buf.get(start + j);
+        }
+        if (same) return;
+        for (int j = 0; j < n; j++) {
+            comm[i][j] = buf.get(start + j);
+        }
+        commLen[i] = n;
+        names[i] = new String(comm[i], 0, n, StandardCharsets.UTF_8);
+        kinds[i] = classify(names[i]);
+    }
+
+    // Linux truncates names to 15 bytes: "Netty Epoll Ser", "C2 CompilerThre"
+    static Kind classify(String name) {
+        if (name.equals("Server thread")) return Kind.MAIN;
+        String lower = name.toLowerCase(java.util.Locale.ROOT);
+        if (lower.startsWith("worker-main") || lower.contains("chunk") || lower.startsWith("c2me")
+                || lower.startsWith("worldgen") || lower.startsWith("region")) {
+            return Kind.WORLDGEN;
+        }
+        if (lower.startsWith("netty") || lower.contains("epoll") || lower.startsWith("io-worker")) return Kind.NETWORK;
+        if (lower.startsWith("gc ") || lower.startsWith("g1") || lower.startsWith("vm thread")
+                || lower.startsWith("zworker") || lower.startsWith("zdriver") || lower.startsWith("zdirector")
+                || lower.startsWith("shenandoah")) {
+            return Kind.GC;
+        }
+        if (lower.startsWith("c1 compiler") || lower.startsWith("c2 compiler")) return Kind.JIT;
+        return Kind.OTHER;
+    }
+
+    // Drops threads marked gone, keeping the order of the rest
+    private void compact() {
+        int w = 0;
+        for (int i = 0; i < count; i++) {
+            if (gone[i]) {
+                close(files[i]);
+                continue;
+            }
+            if (w != i) {
+                tids[w] = tids[i];
+                files[w] = files[i];
+                lastTicks[w] = lastTicks[i];
+                cpu[w] = cpu[i];
+                byte[] c = comm[w];
+                comm[w] = comm[i];
+                comm[i] = c;
+                commLen[w] = commLen[i];
+                names[w] = names[i];
+                kinds[w] = kinds[i];
+            }
+            gone[w] = false;
+            w++;
+        }
+        for (int i = w; i < count; i++) {
+            files[i] = null;
+            names[i] = null;
+        }
+        count = w;
+    }
+
+    // Partial selection of the topN by CPU plus per-kind sums, then one copy under the lock
+    private void publish() {
+        int n = 0;
+        Arrays.fill(kindWork, 0);
+        for (int i = 0; i < count; i++) {
+            kindWork[kinds[i].ordinal()] += cpu[i];
+            if (names[i] == null) continue;
+            int pos = n < topN ? n++ : topN;
+            if (pos == topN) {
+                if (cpu[i] <= cpu[topIdx[topN - 1]]) continue;
+                pos = topN - 1;
+            }
+            while (pos > 0 && cpu[topIdx[pos - 1]] < cpu[i]) {
+                topIdx[pos] = topIdx[pos - 1];
+                pos--;
+            }
+            topIdx[pos] = i;
+        }
+        synchronized (this) {
+            for (int k = 0; k < n; k++) {
+                int i = topIdx[k];
+                topNames[k] = names[i];
+                topCpu[k] = cpu[i];
+                topKinds[k] = kinds[i];
+            }
+            topCount = n;
+            System.arraycopy(kindWork, 0, kindCpu, 0, kindCpu.length);
+            threadCount = count;
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= tids.length) return;
+        int cap = Math.max(needed, tids.length * 2);
+        tids = Arrays.copyOf(tids, cap);
+        files = Arrays.copyOf(files, cap);
+        lastTicks = Arrays.copyOf(lastTicks, cap);
+        cpu = Arrays.copyOf(cpu, cap);
+        int old = comm.length;
+        comm = Arrays.copyOf(comm, cap);
+        for (int i = old; i < cap; i++) {
+            comm[i] = new byte[16];
+        }
+        commLen = Arrays.copyOf(commLen, cap);
+        names = Arrays.copyOf(names, cap);
+        kinds = Arrays.copyOf(kinds, cap);
+        gone = Arrays.copyOf(gone, cap);
+    }
+
+    private static void close(ProcFile f) {
+        if (f == null) return;
+        try {
+            f.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package Main.Java.monitor;
+
+import Main.Java.console.LogEventMatcher;
+import Main.Java.console.LogEventType;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Tick health of one server: TPS and milliseconds per tick (MSPT) from tps/mspt style command
+// output, and "Can't keep up!" lag warnings from the console. Both go into rolling histograms,
+// and crossing a threshold raises a spike. A stretch of slow ticks raises one spike, not one
+// per poll; every lag warning over the threshold is its own spike (the server rate-limits them).
+public class TickMonitor {
+
+    public static final double TARGET_TPS = 20.0;
+    // Polled over RCON on the first pass; the ones the server understands are kept
+    public static final List<String> POLL_COMMANDS = List.of("tps", "mspt", "tick query", "forge tps");
+
+    public enum Cause { LAG_WARNING, SLOW_TICKS, LOW_TPS }
+
+    public static final class Spike {
+        private final long time;
+        private final Cause cause;
+        private final double value;
+        private final double threshold;
+
+        Spike(long time, Cause cause, double value, double threshold) {
+            this.time = time;
+            this.cause = cause;
+            this.value = value;
+            this.threshold = threshold;
+        }
+
+        public long getTime() { return time; }
+        public Cause getCause() { return cause; }
+        public double getValue() { return value; }
+        public double getThreshold() { return threshold; }
+
+        @Override
+        public String toString() {
+            switch (cause) {
+                case LAG_WARNING:
+                    return String.format(Locale.ROOT, "server fell %.0f ms behind", value);
+                case SLOW_TICKS:
+                    return String.format(Locale.ROOT, "%.1f ms per tick (limit %.0f)", value, threshold);
+                default:
+                    return String.format(Locale.ROOT, "%.1f TPS (limit %.1f)", value, threshold);
+            }
+        }
+    }
+
+    private final double spikeMspt = doubleProperty("tick.spikeMspt", 50.0);
+    private final double spikeTps = doubleProperty("tick.spikeTps", 18.0);
+    private final long spikeLagMs = Long.getLong("tick.spikeLagMs", 2_000L);
+
+    // MSPT over the last 10 minutes, lag warnings over the last hour
+    private final RollingHistogram msptHistogram = new RollingHistogram(60, 10_000L);
+    private final RollingHistogram lagHistogram = new RollingHistogram(60, 60_000L);
+    private final TimeSeries tpsHistory = new TimeSeries("server_tps");
+    private final TimeSeries msptHistory = new TimeSeries("server_mspt");
+    private final List<TickSpikeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile double tps = Double.NaN;
+    private volatile double mspt = Double.NaN;
+    private volatile long lastUpdate;
+    private volatile long lastLagTicks;
+    private volatile long lagWarnings;
+    private volatile long spikes;
+    private boolean tpsReported;
+    private boolean unhealthy;
+
+    public void addSpikeListener(TickSpikeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeSpikeListener(TickSpikeListener listener) {
+        listeners.remove(listener);
+    }
+
+    // New server run: current values go, the histograms keep their (time-bounded) history
+    public synchronized void reset() {
+        tps = Double.NaN;
+        mspt = Double.NaN;
+        tpsReported = false;
+        unhealthy = false;
+    }
+
+    // LAG, TPS and MSPT events from the console matcher; other types are ignored
+    public void onLogEvent(LogEventType type, CharSequence line, int fieldStart, int fieldEnd) {
+        if (fieldStart < 0) return;
+        long now = System.currentTimeMillis();
+        switch (type) {
+            case LAG: {
+                // "Running 2043ms or 40 ticks behind"
+                long behindMs = LogEventMatcher.parseField(line, fieldStart, fieldEnd);
+                int t = fieldEnd;
+                while (t < line.length() && !Character.isDigit(line.charAt(t))) t++;
+                int e = t;
+                while (e < line.length() && Character.isDigit(line.charAt(e))) e++;
+                onLagWarning(now, behindMs, e > t ? LogEventMatcher.parseField(line, t, e) : -1);
+                break;
+            }
+            case TPS:
+                onTps(now, parseDecimal(line, fieldStart));
+                break;
+            case MSPT:
+                onMspt(now, parseDecimal(line, fieldStart));
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Output of a polled command; false if it held nothing this monitor understands
+    public boolean parseResponse(String response) {
+        long now = System.currentTimeMillis();
+        // Drop colour codes (section sign + one char) before looking for numbers
+        String text = response.replaceAll("\u00a7.", "").toLowerCase(Locale.ROOT);
+        boolean parsed = false;
+        String tpsMarker = "tps from last 1m, 5m, 15m:";
+        int i = text.indexOf(tpsMarker);
+        if (i >= 0) {
+            parsed |= onTps(now, firstNumber(text, i + tpsMarker.length()));
+        }
+        // Paper "mspt": "Server tick times (avg/min/max) from last 5s, 10s, 1m:\n 1.2/0.9/2.3, ..."
+        i = text.indexOf("server tick times");
+        if (i >= 0 && (i = text.indexOf(":", i)) >= 0) {
+            parsed |= onMspt(now, firstNumber(text, i + 1));
+        }
+        String[] msptMarkers = {"average time per tick:", "overall: mean tick time:"};
+        for (String marker : msptMarkers) {
+            i = text.indexOf(marker);
+            if (i >= 0) {
+                parsed |= onMspt(now, firstNumber(text, i + marker.length()));
+            }
+        }
+        return parsed;
+    }
+
+    public void onLagWarning(long now, long behindMs, long ticksBehind) {
+        lagHistogram.add(now, behindMs);
+        lagWarnings++;
+        lastLagTicks = ticksBehind;
+        if (behindMs >= spikeLagMs) {
+            fire(new Spike(now, Cause.LAG_WARNING, behindMs, spikeLagMs));
+        }
+    }
+
+    public boolean onTps(long now, double value) {
+        if (!(value >= 0)) return false;
+        synchronized (this) {
+            tpsReported = true;
+        }
+        updateTps(now, value);
+        return true;
+    }
+
+    public boolean onMspt(long now, double value) {
+        if (!(value >= 0)) return false;
+        mspt = value;
+        lastUpdate = now;
+        msptHistogram.add(now, value);
+        msptHistory.add(now, value);
+        boolean derive;
+        synchronized (this) {
+            derive = !tpsReported;
+        }
+        if (derive) {
+            // Servers that only report tick time: a tick over 50 ms means fewer than 20 per second
+            updateTps(now, value > 0 ? Math.min(TARGET_TPS, 1000.0 / value) : TARGET_TPS);
+        } else {
+            checkHealth(now);
+        }
+        return true;
+    }
+
+    private void updateTps(long now, double value) {
+        tps = value;
+        lastUpdate = now;
+        tpsHistory.add(now, value);
+        checkHealth(now);
+    }
+
+    private void checkHealth(long now) {
+        double t = tps;
+        double m = mspt;
+        Spike spike = null;
+        synchronized (this) {
+            boolean slow = m > spikeMspt;
+            boolean low = t < spikeTps;
+            if (!slow && !low) {
+                unhealthy = false;
+                return;
+            }
+            if (!unhealthy) {
+                unhealthy = true;
+                spike = slow ? new Spike(now, Cause.SLOW_TICKS, m, spikeMspt) : new Spike(now, Cause.LOW_TPS, t, spikeTps);
+            }
+        }
+        if (spike != null) {
+            fire(spike);
+        }
+    }
+
+    private void fire(Spike spike) {
+        spikes++;
+        for (TickSpikeListener listener : listeners) {
+            listener.onSpike(spike);
+        }
+    }
+
+    private static double firstNumber(CharSequence s, int from) {
+        while (from < s.length() && !Character.isDigit(s.charAt(from))) from++;
+        return parseDecimal(s, from);
+    }
+
+    // "19.97" or "20" at from; NaN if there is no number there
+    static double parseDecimal(CharSequence s, int from) {
+        long whole = 0;
+        int i = from;
+        while (i < s.length() && Character.isDigit(s.charAt(i))) {
+            whole = whole * 10 + (s.charAt(i++) - '0');
+        }
+        if (i == from) return Double.NaN;
+        double v = whole;
+        if (i + 1 < s.length() && s.charAt(i) == '.' && Character.isDigit(s.charAt(i + 1))) {
+            double scale = 0.1;
+            for (i++; i < s.length() && Character.isDigit(s.charAt(i)); i++) {
+                v += (s.charAt(i) - '0') * scale;
+                scale /= 10;
+            }
+        }
+        return v;
+    }
+
+    private static double doubleProperty(String name, double def) {
+        String v = System.getProperty(name);
+        if (v == null) return def;
+        try {
+            return Double.parseDouble(v);
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    // NaN until the server has reported it
+    public double getTps() {
+        return tps;
+    }
+
+    public double getMspt() {
+        return mspt;
+    }
+
+    public long getLastUpdate() {
+        return lastUpdate;
+    }
+
+    public long getLagWarnings() {
+        return lagWarnings;
+    }
+
+    public long getLastLagTicks() {
+        return lastLagTicks;
+    }
+
+    public long getSpikes() {
+        return spikes;
+    }
+
+    public RollingHistogram getMsptHistogram() {
+        return msptHistogram;
+    }
+
+    public RollingHistogram getLagHistogram() {
+        return lagHistogram;
+    }
+
+    public TimeSeries getTpsHistory() {
+        return tpsHistory;
+    }
+
+    public TimeSeries getMsptHistory() {
+        return msptHistory;
+    }
+}
@@ -0,0 +1,6 @@
+package Main.Java.monitor;
+
+// Called on the thread that observed the spike (console reader or RCON response); must not block
+public interface TickSpikeListener {
+    void onSpike(TickMonitor.Spike spike);
+}
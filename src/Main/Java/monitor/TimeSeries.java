@@ -0,0 +1,188 @@
+package Main.Java.monitor;
+
+// History of one metric kept at three resolutions (1s, 10s, 1m) in primitive ring buffers.
+// Samples are rolled up into averages as they arrive, so nothing is boxed and nothing is
+// allocated per sample. Queries pick the finest resolution that still covers the requested
+// window and downsample it with LTTB to a fixed number of points, so chart cost stays the
+// same whether the server has been up for five minutes or five days.
+public class TimeSeries {
+
+    private static final long[] RESOLUTIONS = {1_000L, 10_000L, 60_000L};
+
+    private final String name;
+    private final Ring[] rings;
+    private final long[] scratchTimes;
+    private final double[] scratchValues;
+
+    // Defaults: 1 hour of 1s points, 12 hours of 10s points, 7 days of 1m points
+    public TimeSeries(String name) {
+        this(name, 3_600, 4_320, 10_080);
+    }
+
+    public TimeSeries(String name, int secondPoints, int tenSecondPoints, int minutePoints) {
+        this.name = name;
+        this.rings = new Ring[]{
+                new Ring(RESOLUTIONS[0], secondPoints),
+                new Ring(RESOLUTIONS[1], tenSecondPoints),
+                new Ring(RESOLUTIONS[2], minutePoints)
+        };
+        int max = Math.max(secondPoints, Math.max(tenSecondPoints, minutePoints));
+        this.scratchTimes = new long[max];
+        this.scratchValues = new double[max];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized void add(long timeMillis, double value) {
+        for (Ring ring : rings) {
+            ring.add(timeMillis, value);
+        }
+    }
+
+    public synchronized double latest() {
+        return rings[0].size == 0 ? Double.NaN : rings[0].values[rings[0].index(rings[0].size - 1)];
+    }
+
+    public synchronized long latestTime() {
+        return rings[0].size == 0 ? 0 : rings[0].times[rings[0].index(rings[0].size - 1)];
+    }
+
+    // Fills outTimes/outValues with at most maxPoints points covering [fromMillis, toMillis]
+    // and returns how many were written.
+    public synchronized int query(long fromMillis, long toMillis, int maxPoints, long[] outTimes, double[] outValues) {
+        maxPoints = Math.min(maxPoints, Math.min(outTimes.length, outValues.length));
+        Ring ring = null;
+        for (Ring r : rings) {
+            if (r.size > 0 && r.times[r.index(0)] <= fromMillis) {
+                ring = r;
+                break;
+            }
+        }
+        if (ring == null) {
+            // History is shorter than the window: the finest ring that never wrapped holds all of it
+            ring = rings[rings.length - 1];
+            for (Ring r : rings) {
+                if (r.size < r.times.length) {
+                    ring = r;
+                    break;
+                }
+            }
+        }
+
+        int n = 0;
+        for (int i = 0; i < ring.size; i++) {
+            int idx = ring.index(i);
+            long t = ring.times[idx];
+            if (t < fromMillis) continue;
+            if (t > toMillis) break;
+            scratchTimes[n] = t;
+            scratchValues[n] = ring.values[idx];
+            n++;
+        }
+        return lttb(scratchTimes, scratchValues, n, maxPoints, outTimes, outValues);
+    }
+
+    // Largest-Triangle-Three-Buckets downsampling of (xs, ys)[0..n) into at most threshold points
+    static int lttb(long[] xs, double[] ys, int n, int threshold, long[] outX, double[] outY) {
+        if (threshold >= n || threshold < 3) {
+            int count = Math.min(n, Math.max(threshold, 0));
+            System.arraycopy(xs, 0, outX, 0, count);
+            System.arraycopy(ys, 0, outY, 0, count);
+            return count;
+        }
+
+        int out = 0;
+        double every = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        outX[out] = xs[a];
+        outY[out] = ys[a];
+        out++;
+
+        for (int i = 0; i < threshold - 2; i++) {
+            // Average of the next bucket is the third point of the triangle
+            int avgStart = (int) Math.floor((i + 1) * every) + 1;
+            int avgEnd = Math.min((int) Math.floor((i + 2) * every) + 1, n);
+            double avgX = 0, avgY = 0;
+            int avgLen = avgEnd - avgStart;
+            for (int j = avgStart; j < avgEnd; j++) {
+                avgX += xs[j];
+                avgY += ys[j];
+            }
+            if (avgLen > 0) {
+                avgX /= avgLen;
+                avgY /= avgLen;
+            }
+
+            int rangeStart = (int) Math.floor(i * every) + 1;
+            int rangeEnd = (int) Math.floor((i + 1) * every) + 1;
+            double ax = xs[a], ay = ys[a];
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((ax - avgX) * (ys[j] - ay) - (ax - xs[j]) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            outX[out] = xs[next];
+            outY[out] = ys[next];
+            out++;
+            a = next;
+        }
+
+        outX[out] = xs[n - 1];
+        outY[out] = ys[n - 1];
+        out++;
+        return out;
+    }
+
+    private static final class Ring {
+        private final long resolution;
+        private final long[] times;
+        private final double[] values;
+        private int start = 0;
+        private int size = 0;
+
+        private long bucket = Long.MIN_VALUE;
+        private double sum = 0;
+        private int count = 0;
+
+        Ring(long resolution, int capacity) {
+            this.resolution = resolution;
+            this.times = new long[capacity];
+            this.values = new double[capacity];
+        }
+
+        void add(long timeMillis, double value) {
+            long b = timeMillis - Math.floorMod(timeMillis, resolution);
+            if (b != bucket) {
+                bucket = b;
+                sum = 0;
+                count = 0;
+                push(b);
+            }
+            sum += value;
+            count++;
+            // The newest point is the running average of its still-open bucket
+            values[index(size - 1)] = sum / count;
+        }
+
+        private void push(long time) {
+            if (size == times.length) {
+                start = (start + 1) % times.length;
+                size--;
+            }
+            int idx = index(size);
+            times[idx] = time;
+            values[idx] = 0;
+            size++;
+        }
+
+        int index(int i) {
+            return (start + i) % times.length;
+        }
+    }
+}
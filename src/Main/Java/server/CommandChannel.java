@@ -0,0 +1,142 @@
+package Main.Java.server;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+// Long-lived writer for a server's stdin. Callers queue commands and never block on the pipe;
+// one writer thread takes everything queued, writes it through a single buffered writer and
+// flushes once, then completes the futures of that batch. When the queue is full, submit()
+// fails fast with a RejectedExecutionException so callers can back off.
+public class CommandChannel implements AutoCloseable {
+
+    private static final int MAX_BATCH = 1024;
+
+    private final Writer writer;
+    private final ArrayBlockingQueue<Pending> queue;
+    private final Thread writerThread;
+    private volatile boolean closed;
+    private volatile long flushes;
+    private volatile long written;
+
+    public CommandChannel(OutputStream stdin, int capacity, String name) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(stdin, StandardCharsets.UTF_8), 64 * 1024);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerThread = Thread.ofVirtual().name("command-writer-" + name).start(this::run);
+    }
+
+    // Completes once the command has been flushed to the process
+    public CompletableFuture<Void> submit(String command) {
+        Pending p = new Pending(command);
+        if (closed) {
+            p.ack.completeExceptionally(new IOException("Command channel is closed"));
+            return p.ack;
+        }
+        // Producers serialize on the queue so submitAll can reserve room for a whole batch
+        synchronized (queue) {
+            if (!queue.offer(p)) {
+                p.ack.completeExceptionally(new RejectedExecutionException("Command queue is full ("
+                        + queue.size() + " pending)"));
+            }
+        }
+        // Closed while queuing: the writer may already have drained for the last time
+        if (closed && queue.remove(p)) {
+            p.ack.completeExceptionally(new IOException("Command channel is closed"));
+        }
+        return p.ack;
+    }
+
+    // Queues all commands or none of them; they normally go out in one flush
+    public CompletableFuture<Void> submitAll(List<String> commands) {
+        if (commands.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        synchronized (queue) {
+            if (queue.remainingCapacity() < commands.size()) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException("Command queue has room for "
+                        + queue.remainingCapacity() + " of " + commands.size() + " commands"));
+            }
+            CompletableFuture<?>[] acks = new CompletableFuture<?>[commands.size()];
+            for (int i = 0; i < acks.length; i++) {
+                acks[i] = submit(commands.get(i));
+            }
+            return CompletableFuture.allOf(acks);
+        }
+    }
+
+    // Backpressure signal: free slots before submit() starts rejecting
+    public int remainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    public long flushCount() {
+        return flushes;
+    }
+
+    public long writtenCount() {
+        return written;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>();
+        try {
+            while (!closed) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                try {
+                    for (Pending p : batch) {
+                        writer.write(p.command);
+                        writer.write(System.lineSeparator());
+                    }
+                    writer.flush();
+                    flushes++;
+                    written += batch.size();
+                    for (Pending p : batch) {
+                        p.ack.complete(null);
+                    }
+                } catch (IOException e) {
+                    // Process gone: fail this batch and everything after it
+                    closed = true;
+                    fail(batch, e);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException ignored) {
+        }
+        queue.drainTo(batch);
+        fail(batch, new IOException("Command channel is closed"));
+    }
+
+    private static void fail(List<Pending> batch, IOException e) {
+        for (Pending p : batch) {
+            p.ack.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        writerThread.interrupt();
+    }
+
+    private static final class Pending {
+        final String command;
+        final CompletableFuture<Void> ack = new CompletableFuture<>();
+
+        Pending(String command) {
+            this.command = command;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package Main.Java.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+// Fixed-size direct buffers recycled between connections, so reconnect storms don't churn
+// native memory. Not thread-safe: owned by a single I/O thread.
+public class DirectBufferPool {
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    private int allocated = 0;
+
+    public DirectBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buf = free.pollFirst();
+        if (buf == null) {
+            buf = ByteBuffer.allocateDirect(bufferSize);
+            allocated++;
+        }
+        buf.clear();
+        return buf;
+    }
+
+    public void release(ByteBuffer buf) {
+        if (buf == null || buf.capacity() != bufferSize) return;
+        if (free.size() < maxPooled) {
+            free.addFirst(buf);
+        }
+    }
+
+    public int allocatedCount() {
+        return allocated;
+    }
+
+    public int pooledCount() {
+        return free.size();
+    }
+}
@@ -0,0 +1,328 @@
+package Main.Java.server;
+
+import Main.Java.monitor.GcLogMonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+// How to start a server JVM, kept in <server>/.dashboard/launch.properties. The dashboard
+// builds the java command line from this directly instead of going through run.bat, so it
+// works the same on every OS. The first load imports an existing run.bat / run.sh.
+//
+// Command line: java [jvmArgs] -Xms -Xmx [profile flags] [large pages] [pre-touch] [GC log] target [serverArgs]
+// jvmArgs come first so the dashboard's own heap and GC settings override imported ones.
+public class LaunchConfig {
+
+    private static final String FILE = "launch.properties";
+
+    private final File serverDir;
+    private String javaPath;
+    private String minHeap = "1G";
+    private String maxHeap = "4G";
+    private LaunchProfile profile = LaunchProfile.AIKAR;
+    private boolean largePages;
+    private boolean alwaysPreTouch;
+    // Unified GC log for the dashboard's GC statistics (GcLogMonitor)
+    private boolean gcLog = true;
+    private List<String> jvmArgs = new ArrayList<>();
+    // "-jar server.jar", Forge-style "@libraries/.../unix_args.txt" or a main class
+    private List<String> target = new ArrayList<>();
+    private List<String> serverArgs = new ArrayList<>(List.of("nogui"));
+
+    private LaunchConfig(File serverDir) {
+        this.serverDir = serverDir;
+        this.javaPath = defaultJava();
+    }
+
+    public static LaunchConfig load(File serverDir) throws IOException {
+        LaunchConfig c = new LaunchConfig(serverDir);
+        Path file = c.file();
+        if (Files.isRegularFile(file)) {
+            Properties p = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                p.load(reader);
+            }
+            c.javaPath = p.getProperty("java", c.javaPath);
+            c.minHeap = p.getProperty("xms", c.minHeap);
+            c.maxHeap = p.getProperty("xmx", c.maxHeap);
+            try {
+                c.profile = LaunchProfile.valueOf(p.getProperty("profile", c.profile.name()));
+            } catch (IllegalArgumentException ignored) {
+            }
+            c.largePages = Boolean.parseBoolean(p.getProperty("largePages", "false"));
+            c.alwaysPreTouch = Boolean.parseBoolean(p.getProperty("alwaysPreTouch", "false"));
+            c.gcLog = Boolean.parseBoolean(p.getProperty("gcLog", "true"));
+            c.jvmArgs = split(p.getProperty("jvmArgs", ""));
+            c.target = split(p.getProperty("target", ""));
+            c.serverArgs = split(p.getProperty("serverArgs", "nogui"));
+            return c;
+        }
+        File script = findScript(serverDir);
+        if (script != null) {
+            c.importScript(script);
+        } else {
+            File jar = findServerJar(serverDir);
+            if (jar != null) {
+                c.target = new ArrayList<>(List.of("-jar", jar.getName()));
+            }
+        }
+        return c;
+    }
+
+    // False until the settings (or an imported script) have been saved
+    public boolean exists() {
+        return Files.isRegularFile(file());
+    }
+
+    public void save() throws IOException {
+        Properties p = new Properties();
+        p.setProperty("java", javaPath);
+        p.setProperty("xms", minHeap);
+        p.setProperty("xmx", maxHeap);
+        p.setProperty("profile", profile.name());
+        p.setProperty("largePages", Boolean.toString(largePages));
+        p.setProperty("alwaysPreTouch", Boolean.toString(alwaysPreTouch));
+        p.setProperty("gcLog", Boolean.toString(gcLog));
+        p.setProperty("jvmArgs", join(jvmArgs));
+        p.setProperty("target", join(target));
+        p.setProperty("serverArgs", join(serverArgs));
+        Path file = file();
+        Files.createDirectories(file.getParent());
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            p.store(writer, "Server launch settings (managed by the dashboard)");
+        }
+    }
+
+    public List<String> toCommand() {
+        if (target.isEmpty()) {
+            throw new IllegalStateException("No server jar or start script found in " + serverDir);
+        }
+        List<String> cmd = new ArrayList<>();
+        cmd.add(javaPath);
+        for (String a : jvmArgs) {
+            if (profile == LaunchProfile.CUSTOM || !LaunchProfile.isTuningFlag(a)) {
+                cmd.add(a);
+            }
+        }
+        cmd.add("-Xms" + minHeap);
+        cmd.add("-Xmx" + maxHeap);
+        cmd.addAll(profile.flags(heapMb(maxHeap), javaFeature(javaPath)));
+        if (largePages) {
+            // Transparent huge pages need no reserved hugetlbfs pool, so they work out of the box on Linux
+            cmd.add(isWindows() ? "-XX:+UseLargePages" : "-XX:+UseTransparentHugePages");
+        }
+        if (alwaysPreTouch) {
+            cmd.add("-XX:+AlwaysPreTouch");
+        }
+        if (gcLog) {
+            cmd.add(GcLogMonitor.XLOG_OPTION);
+        }
+        cmd.addAll(target);
+        cmd.addAll(serverArgs);
+        return cmd;
+    }
+
+    // Reads the java line of a run.bat / run.sh: heap sizes, JVM flags, jar or @argfile and args
+    public void importScript(File script) throws IOException {
+        for (String raw : Files.readAllLines(script.toPath(), StandardCharsets.UTF_8)) {
+            List<String> tokens = tokenize(raw.trim());
+            if (tokens.isEmpty() || !isJavaCommand(tokens.get(0))) continue;
+            if (!tokens.get(0).equalsIgnoreCase("java") && !tokens.get(0).equalsIgnoreCase("java.exe")) {
+                javaPath = tokens.get(0);
+            }
+            jvmArgs = new ArrayList<>();
+            target = new ArrayList<>();
+            serverArgs = new ArrayList<>();
+            List<String> out = jvmArgs;
+            for (int i = 1; i < tokens.size(); i++) {
+                String t = tokens.get(i);
+                if (t.contains("%") || t.contains("$")) continue; // %*, "$@" and other script variables
+                if (out == serverArgs) {
+                    serverArgs.add(t);
+                } else if (t.startsWith("-Xmx")) {
+                    maxHeap = t.substring(4);
+                } else if (t.startsWith("-Xms")) {
+                    minHeap = t.substring(4);
+                } else if (t.equals("-jar") && i + 1 < tokens.size()) {
+                    target.add(t);
+                    target.add(tokens.get(++i));
+                    out = serverArgs;
+                } else if (t.startsWith("@") && isPlatformArgsFile(t)) {
+                    // Forge/NeoForge: libraries/.../win_args.txt or unix_args.txt, pick this OS
+                    target.add(isWindows() ? t.replace("unix_args", "win_args") : t.replace("win_args", "unix_args"));
+                    out = serverArgs;
+                } else if ((t.equals("-cp") || t.equals("-classpath") || t.equals("--class-path")) && i + 1 < tokens.size()) {
+                    jvmArgs.add(t);
+                    jvmArgs.add(tokens.get(++i));
+                } else if (!t.startsWith("-") && !t.startsWith("@")) {
+                    // Main class of a classpath launch
+                    target.add(t);
+                    out = serverArgs;
+                } else {
+                    jvmArgs.add(t);
+                }
+            }
+            profile = LaunchProfile.CUSTOM;
+            return;
+        }
+    }
+
+    public static File findScript(File serverDir) {
+        String[] names = isWindows()
+                ? new String[]{"run.bat", "start.bat", "run.sh", "start.sh"}
+                : new String[]{"run.sh", "start.sh", "run.bat", "start.bat"};
+        for (String name : names) {
+            File f = new File(serverDir, name);
+            if (f.isFile()) return f;
+        }
+        return null;
+    }
+
+    private static File findServerJar(File serverDir) {
+        File[] jars = serverDir.listFiles((d, n) -> n.toLowerCase(Locale.ROOT).endsWith(".jar"));
+        if (jars == null || jars.length == 0) return null;
+        for (File jar : jars) {
+            String n = jar.getName().toLowerCase(Locale.ROOT);
+            if (n.contains("server") || n.startsWith("paper") || n.startsWith("purpur") || n.startsWith("fabric")) {
+                return jar;
+            }
+        }
+        return jars[0];
+    }
+
+    private static boolean isJavaCommand(String token) {
+        String name = new File(token).getName().toLowerCase(Locale.ROOT);
+        return name.equals("java") || name.equals("java.exe") || name.equals("javaw.exe");
+    }
+
+    private static boolean isPlatformArgsFile(String token) {
+        return token.endsWith("win_args.txt") || token.endsWith("unix_args.txt");
+    }
+
+    // Splits on whitespace, honouring double quotes
+    static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                any = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (any) {
+                    tokens.add(cur.toString());
+                    cur.setLength(0);
+                    any = false;
+                }
+            } else {
+                cur.append(c);
+                any = true;
+            }
+        }
+        if (any) tokens.add(cur.toString());
+        return tokens;
+    }
+
+    private static List<String> split(String s) {
+        return s.isBlank() ? new ArrayList<>() : new ArrayList<>(Arrays.asList(s.trim().split("\t")));
+    }
+
+    private static String join(List<String> args) {
+        return String.join("\t", args);
+    }
+
+    // "4G", "4096M", "4096m" -> MB; unparseable sizes count as 0
+    public static long heapMb(String size) {
+        String v = size.trim().toUpperCase(Locale.ROOT);
+        try {
+            if (v.endsWith("G")) return Long.parseLong(v.substring(0, v.length() - 1)) * 1024;
+            if (v.endsWith("M")) return Long.parseLong(v.substring(0, v.length() - 1));
+            if (v.endsWith("K")) return Long.parseLong(v.substring(0, v.length() - 1)) / 1024;
+            return Long.parseLong(v) / (1024 * 1024);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Feature version (17, 21, ...) of the java at javaPath from its release file; 0 if unknown
+    static int javaFeature(String javaPath) {
+        try {
+            Path exe = Path.of(javaPath);
+            if (exe.getParent() == null) {
+                exe = onPath(javaPath);
+                if (exe == null) return 0;
+            }
+            // Follows /usr/bin/java and similar links into the runtime image
+            Path bin = exe.toRealPath().getParent();
+            Path home = bin != null ? bin.getParent() : null;
+            if (home == null) return 0;
+            for (String line : Files.readAllLines(home.resolve("release"), StandardCharsets.ISO_8859_1)) {
+                if (line.startsWith("JAVA_VERSION=")) {
+                    // "21.0.1", "17", "1.8.0_392"
+                    String[] parts = line.substring(13).replace("\"", "").trim().split("[._+-]");
+                    int feature = Integer.parseInt(parts[0]);
+                    return feature == 1 && parts.length > 1 ? Integer.parseInt(parts[1]) : feature;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // No release file, or a path or version we cannot read
+        }
+        return 0;
+    }
+
+    private static Path onPath(String command) {
+        String path = System.getenv("PATH");
+        if (path == null) return null;
+        for (String dir : path.split(File.pathSeparator)) {
+            if (dir.isEmpty()) continue;
+            for (String name : isWindows() ? new String[]{command, command + ".exe"} : new String[]{command}) {
+                File f = new File(dir, name);
+                if (f.isFile() && f.canExecute()) return f.toPath();
+            }
+        }
+        return null;
+    }
+
+    private static String defaultJava() {
+        // The JVM running the dashboard, unless the imported script names another one
+        return ProcessHandle.current().info().command().orElse("java");
+    }
+
+    private static boolean isWindows() {
+        return System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows");
+    }
+
+    private Path file() {
+        return serverDir.toPath().resolve(".dashboard").resolve(FILE);
+    }
+
+    public File getServerDir() { return serverDir; }
+    public String getJavaPath() { return javaPath; }
+    public void setJavaPath(String javaPath) { this.javaPath = javaPath; }
+    public String getMinHeap() { return minHeap; }
+    public void setMinHeap(String minHeap) { this.minHeap = minHeap; }
+    public String getMaxHeap() { return maxHeap; }
+    public void setMaxHeap(String maxHeap) { this.maxHeap = maxHeap; }
+    public LaunchProfile getProfile() { return profile; }
+    public void setProfile(LaunchProfile profile) { this.profile = profile; }
+    public boolean isLargePages() { return largePages; }
+    public void setLargePages(boolean largePages) { this.largePages = largePages; }
+    public boolean isAlwaysPreTouch() { return alwaysPreTouch; }
+    public void setAlwaysPreTouch(boolean alwaysPreTouch) { this.alwaysPreTouch = alwaysPreTouch; }
+    public boolean isGcLog() { return gcLog; }
+    public void setGcLog(boolean gcLog) { this.gcLog = gcLog; }
+    public List<String> getJvmArgs() { return jvmArgs; }
+    public List<String> getServerArgs() { return serverArgs; }
+}
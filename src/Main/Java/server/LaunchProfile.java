@@ -0,0 +1,77 @@
+package Main.Java.server;
+
+import java.util.List;
+
+// Named GC/JIT flag sets for the server JVM. CUSTOM adds nothing and keeps whatever tuning
+// flags were imported from the old start script.
+public enum LaunchProfile {
+
+    CUSTOM("Custom (as imported)"),
+    DEFAULT("JVM defaults"),
+    G1("G1"),
+    // Aikar's flags: G1 tuned for Minecraft's allocation pattern (large young gen, few mixed GCs)
+    AIKAR("G1 (Aikar's flags)"),
+    ZGC("Generational ZGC"),
+    SHENANDOAH("Shenandoah");
+
+    private final String displayName;
+
+    LaunchProfile(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    // GC selection and tuning flags for the given maximum heap and Java feature version (0 if unknown)
+    public List<String> flags(long maxHeapMb, int javaFeature) {
+        switch (this) {
+            case G1:
+                return List.of("-XX:+UseG1GC", "-XX:MaxGCPauseMillis=200", "-XX:+ParallelRefProcEnabled");
+            case AIKAR: {
+                boolean big = maxHeapMb > 12 * 1024;
+                return List.of(
+                        "-XX:+UseG1GC", "-XX:+ParallelRefProcEnabled", "-XX:MaxGCPauseMillis=200",
+                        "-XX:+UnlockExperimentalVMOptions", "-XX:+DisableExplicitGC",
+                        "-XX:G1NewSizePercent=" + (big ? 40 : 30), "-XX:G1MaxNewSizePercent=" + (big ? 50 : 40),
+                        "-XX:G1HeapRegionSize=" + (big ? "16M" : "8M"), "-XX:G1ReservePercent=" + (big ? 15 : 20),
+                        "-XX:G1HeapWastePercent=5", "-XX:G1MixedGCCountTarget=4",
+                        "-XX:InitiatingHeapOccupancyPercent=" + (big ? 20 : 15),
+                        "-XX:G1MixedGCLiveThresholdPercent=90", "-XX:G1RSetUpdatingPauseTimePercent=5",
+                        "-XX:SurvivorRatio=32", "-XX:+PerfDisableSharedMem", "-XX:MaxTenuringThreshold=1");
+            }
+            case ZGC:
+                // Older JVMs refuse to start with ZGenerational; 23 made it the default and deprecated it
+                if (javaFeature >= 21 && javaFeature < 23) {
+                    return List.of("-XX:+UseZGC", "-XX:+ZGenerational", "-XX:+DisableExplicitGC");
+                }
+                return List.of("-XX:+UseZGC", "-XX:+DisableExplicitGC");
+            case SHENANDOAH:
+                return List.of("-XX:+UseShenandoahGC", "-XX:+DisableExplicitGC");
+            default:
+                return List.of();
+        }
+    }
+
+    // Flags a profile owns; they are dropped from imported JVM args unless the profile is CUSTOM
+    public static boolean isTuningFlag(String arg) {
+        if (!arg.startsWith("-XX:")) return false;
+        String name = arg.substring(4);
+        if (name.startsWith("+") || name.startsWith("-")) name = name.substring(1);
+        int eq = name.indexOf('=');
+        if (eq >= 0) name = name.substring(0, eq);
+        return name.startsWith("G1") || name.startsWith("Z") || name.startsWith("Shenandoah")
+                || name.endsWith("GC") // UseG1GC, UseZGC, UseParallelGC, DisableExplicitGC, ...
+                || name.equals("MaxGCPauseMillis") || name.equals("ParallelRefProcEnabled")
+                || name.equals("UnlockExperimentalVMOptions") || name.equals("InitiatingHeapOccupancyPercent")
+                || name.equals("SurvivorRatio") || name.equals("MaxTenuringThreshold")
+                || name.equals("PerfDisableSharedMem") || name.equals("AlwaysPreTouch")
+                || name.equals("UseLargePages") || name.equals("UseTransparentHugePages");
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -3,6 +3,7 @@ package Main.Java.server;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.regex.Matcher;
 
 public class RamConfigEditor {
 
@@ -16,6 +17,23 @@ public class RamConfigEditor {
         Files.writeString(runBat.toPath(), content);
     }
 
+    // Heap sizes for the dashboard launcher; a run.bat / run.sh next to it is kept in step so
+    // starting the server by hand uses the same sizes
+    public static void UpdateRam(LaunchConfig config, String maxRam, String minRam) throws IOException {
+        config.setMaxHeap(maxRam);
+        config.setMinHeap(minRam);
+        config.save();
+        File script = LaunchConfig.findScript(config.getServerDir());
+        if (script != null) {
+            String content = Files.readString(script.toPath());
+            String updated = content.replaceAll("-Xmx\\d+[MGmg]", "-Xmx" + Matcher.quoteReplacement(maxRam))
+                    .replaceAll("-Xms\\d+[MGmg]", "-Xms" + Matcher.quoteReplacement(minRam));
+            if (!updated.equals(content)) {
+                Files.writeString(script.toPath(), updated);
+            }
+        }
+    }
+
 //wello
 
 }
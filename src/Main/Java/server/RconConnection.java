@@ -1,17 +1,40 @@
 package Main.Java.server;
 
+import java.io.BufferedInputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// Source RCON client. Commands are pipelined over one connection: each command is followed by
+// an empty marker packet of an unknown type, which the server answers only after it has sent
+// every fragment of the command's response. Fragments are collected by request id and the
+// command's future completes when its marker comes back.
 public class RconConnection implements Closeable {
 
+    private static final long DEFAULT_TIMEOUT_MS = 10_000;
+
     private final String host;
     private final int port;
     private final String password;
 
     private Socket socket;
+    private OutputStream out;
+    private Thread readerThread;
+
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final Map<Integer, Pending> pending = new ConcurrentHashMap<>();
+    private final Map<Integer, Pending> markers = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
 
     public RconConnection(String host, int port, String password) {
         this.host = host;
@@ -19,23 +42,137 @@ public class RconConnection implements Closeable {
         this.password = password;
     }
 
+    public static RconConnection forServer(ServerProperties props) {
+        return new RconConnection("127.0.0.1", props.getRconPort(), props.getRconPassword());
+    }
+
     public synchronized void connect() throws IOException {
         if (socket != null && socket.isConnected() && !socket.isClosed()) {
             return;
         }
         socket = new Socket();
+        socket.setTcpNoDelay(true);
         socket.connect(new InetSocketAddress(host, port), 3000);
-        // TODO: implement RCON handshake / auth packet using 'password'
+        out = socket.getOutputStream();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        try {
+            authenticate(in);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        Socket s = socket;
+        readerThread = new Thread(() -> readLoop(s, in), "rcon-reader-" + port);
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    private void authenticate(DataInputStream in) throws IOException {
+        int id = nextId.getAndUpdate(RconPacket::followingId);
+        socket.setSoTimeout(3000);
+        try {
+            write(id, RconPacket.TYPE_AUTH, password, -1);
+            while (true) {
+                RconPacket packet = RconPacket.read(in);
+                // Source servers send an empty RESPONSE_VALUE before the auth answer; skip it
+                if (packet.getType() != RconPacket.TYPE_AUTH_RESPONSE) continue;
+                if (packet.getRequestId() == -1) {
+                    throw new IOException("RCON authentication failed: wrong password");
+                }
+                if (packet.getRequestId() == id) break;
+            }
+        } catch (SocketTimeoutException e) {
+            throw new IOException("RCON authentication timed out", e);
+        }
+        socket.setSoTimeout(0);
     }
 
     public synchronized boolean isConnected() {
         return socket != null && socket.isConnected() && !socket.isClosed();
     }
 
+    // Sends a command without waiting; the future completes with the full response text
+    public CompletableFuture<String> sendCommand(String cmd) {
+        return sendCommand(cmd, DEFAULT_TIMEOUT_MS);
+    }
+
+    public CompletableFuture<String> sendCommand(String cmd, long timeoutMs) {
+        if (!isConnected()) {
+            return CompletableFuture.failedFuture(new IOException("RCON is not connected"));
+        }
+        int id = nextId.getAndUpdate(RconPacket::followingId);
+        int markerId = nextId.getAndUpdate(RconPacket::followingId);
+        Pending p = new Pending();
+        pending.put(id, p);
+        markers.put(markerId, p);
+        p.future.whenComplete((r, e) -> {
+            pending.remove(id);
+            markers.remove(markerId);
+        });
+        try {
+            write(id, RconPacket.TYPE_EXEC_COMMAND, cmd, markerId);
+        } catch (IOException | IllegalArgumentException e) {
+            p.future.completeExceptionally(e);
+        }
+        return p.future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Writes a packet, optionally followed by the end-of-response marker, in a single write
+    private void write(int id, int type, String body, int markerId) throws IOException {
+        int size = RconPacket.encodedSize(body) + (markerId >= 0 ? RconPacket.HEADER_SIZE + 2 : 0);
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        RconPacket.encode(buf, id, type, body);
+        if (markerId >= 0) {
+            RconPacket.encode(buf, markerId, RconPacket.TYPE_RESPONSE_VALUE, "");
+        }
+        synchronized (writeLock) {
+            out.write(buf.array(), 0, buf.position());
+            out.flush();
+        }
+    }
+
+    private void readLoop(Socket s, DataInputStream in) {
+        try {
+            while (true) {
+                RconPacket packet = RconPacket.read(in);
+                Pending p = pending.get(packet.getRequestId());
+                if (p != null) {
+                    p.response.append(packet.getBody());
+                    continue;
+                }
+                p = markers.get(packet.getRequestId());
+                if (p != null) {
+                    p.future.complete(p.response.toString());
+                }
+            }
+        } catch (IOException e) {
+            // A reader left over from an earlier connection must not fail or close the current one
+            synchronized (this) {
+                if (socket != s) return;
+                failAll(e);
+                try {
+                    s.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void failAll(Throwable cause) {
+        for (Pending p : pending.values()) {
+            p.future.completeExceptionally(cause);
+        }
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
     public synchronized void disconnect() throws IOException {
         if (socket != null) {
             socket.close();
         }
+        failAll(new IOException("RCON disconnected"));
     }
 
     @Override
@@ -43,5 +180,8 @@ public class RconConnection implements Closeable {
         disconnect();
     }
 
-    // TODO: add sendCommand(String cmd) that sends RCON packets and returns the response
+    private static final class Pending {
+        final StringBuilder response = new StringBuilder();
+        final CompletableFuture<String> future = new CompletableFuture<>();
+    }
 }
@@ -0,0 +1,430 @@
+package Main.Java.server;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Non-blocking RCON engine: any number of server connections share one selector thread.
+// Each Session pipelines commands the same way RconConnection does (command + end marker),
+// reconnects with exponential backoff, and enforces connect and per-command timeouts.
+// Futures complete on the I/O thread, so callbacks must not block.
+public class RconMultiplexer implements Closeable {
+
+    public enum State { CONNECTING, AUTHENTICATING, READY, BACKOFF, FAILED, CLOSED }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MIN_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final long IDLE_SELECT_MS = 1_000;
+
+    private final long connectTimeoutMs;
+    private final long commandTimeoutMs;
+    private final Selector selector;
+    private final Thread ioThread;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final DirectBufferPool buffers = new DirectBufferPool(BUFFER_SIZE, 64);
+    // Copy-on-write: the I/O thread iterates it every pass, other threads add and count
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+
+    public RconMultiplexer() throws IOException {
+        this(3_000, 10_000);
+    }
+
+    public RconMultiplexer(long connectTimeoutMs, long commandTimeoutMs) throws IOException {
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.commandTimeoutMs = commandTimeoutMs;
+        this.selector = Selector.open();
+        this.ioThread = new Thread(this::runLoop, "rcon-io");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    // Registers a server; the connection is established (and re-established) in the background
+    public Session open(String host, int port, String password) {
+        Session session = new Session(new InetSocketAddress(host, port), password);
+        // Listed right away, so shutting the engine down also fails a session still waiting to connect
+        sessions.add(session);
+        execute(session::connect);
+        return session;
+    }
+
+    public Session open(ServerProperties props) {
+        return open("127.0.0.1", props.getRconPort(), props.getRconPassword());
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            ioThread.join(2_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private void runLoop() {
+        try {
+            while (running) {
+                long now = System.currentTimeMillis();
+                long wait = IDLE_SELECT_MS;
+                for (Session s : sessions) {
+                    wait = Math.min(wait, s.nextTimer(now));
+                }
+                selector.select(Math.max(1, wait));
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Session s = (Session) key.attachment();
+                    try {
+                        if (key.isValid() && key.isConnectable()) s.finishConnect();
+                        if (key.isValid() && key.isReadable()) s.read();
+                        if (key.isValid() && key.isWritable()) s.pump();
+                    } catch (IOException e) {
+                        s.fail(e, false);
+                    }
+                }
+                selector.selectedKeys().clear();
+
+                now = System.currentTimeMillis();
+                for (int i = 0; i < sessions.size(); i++) {
+                    sessions.get(i).checkTimers(now);
+                }
+            }
+        } catch (IOException e) {
+            // selector broken; fall through and fail everything
+        } finally {
+            for (Session s : sessions) {
+                s.shutdown();
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public final class Session {
+
+        private final InetSocketAddress address;
+        private final String password;
+        private volatile State state = State.CONNECTING;
+
+        // Written by any thread, drained by the I/O thread
+        private final ConcurrentLinkedQueue<Command> outbound = new ConcurrentLinkedQueue<>();
+
+        // I/O thread only
+        private SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer readBuf;
+        private ByteBuffer writeBuf;
+        private final Map<Integer, Command> inFlight = new HashMap<>();
+        private final Map<Integer, Command> markers = new HashMap<>();
+        private final ArrayDeque<Command> inFlightOrder = new ArrayDeque<>();
+        private int nextId = 1;
+        private int authId;
+        private long deadline;
+        private long nextAttempt;
+        private long backoff = MIN_BACKOFF_MS;
+
+        private Session(InetSocketAddress address, String password) {
+            this.address = address;
+            this.password = password;
+            // Listed before connect() runs; keep the timer check from failing it in the meantime
+            this.deadline = System.currentTimeMillis() + connectTimeoutMs;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public boolean isReady() {
+            return state == State.READY;
+        }
+
+        public InetSocketAddress getAddress() {
+            return address;
+        }
+
+        // Queues a command; it is sent as soon as the session is authenticated. The check and the
+        // enqueue hold the session lock, which fail() takes to drain the queue of a closed session,
+        // so a command can never be left in a queue nobody reads.
+        public CompletableFuture<String> sendCommand(String cmd) {
+            Command c = new Command(cmd, System.currentTimeMillis() + commandTimeoutMs);
+            synchronized (this) {
+                if (state == State.CLOSED || state == State.FAILED || !running) {
+                    c.future.completeExceptionally(new IOException("RCON session is " + state));
+                    return c.future;
+                }
+                outbound.add(c);
+            }
+            execute(this::pumpQuietly);
+            return c.future;
+        }
+
+        public void close() {
+            execute(() -> {
+                shutdown();
+                sessions.remove(this);
+            });
+        }
+
+        private void connect() {
+            try {
+                state = State.CONNECTING;
+                deadline = System.currentTimeMillis() + connectTimeoutMs;
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                readBuf = buffers.acquire();
+                writeBuf = buffers.acquire();
+                if (channel.connect(address)) {
+                    key = channel.register(selector, SelectionKey.OP_READ, this);
+                    authenticate();
+                } else {
+                    key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+                }
+            } catch (IOException e) {
+                fail(e, false);
+            }
+        }
+
+        private void finishConnect() throws IOException {
+            if (channel.finishConnect()) {
+                key.interestOps(SelectionKey.OP_READ);
+                authenticate();
+            }
+        }
+
+        private void authenticate() throws IOException {
+            state = State.AUTHENTICATING;
+            deadline = System.currentTimeMillis() + connectTimeoutMs;
+            authId = takeId();
+            RconPacket.encode(writeBuf, authId, RconPacket.TYPE_AUTH, password);
+            flush();
+        }
+
+        private void read() throws IOException {
+            int n = channel.read(readBuf);
+            if (n < 0) {
+                throw new EOFException("RCON connection closed by server");
+            }
+            readBuf.flip();
+            RconPacket packet;
+            while ((packet = RconPacket.decode(readBuf)) != null) {
+                handle(packet);
+                if (channel == null) return;
+            }
+            if (readBuf.position() == 0 && readBuf.limit() == readBuf.capacity()) {
+                throw new IOException("RCON packet larger than " + BUFFER_SIZE + " bytes");
+            }
+            readBuf.compact();
+        }
+
+        private void handle(RconPacket packet) throws IOException {
+            if (state == State.AUTHENTICATING) {
+                if (packet.getType() != RconPacket.TYPE_AUTH_RESPONSE) return;
+                if (packet.getRequestId() == -1) {
+                    fail(new IOException("RCON authentication failed: wrong password"), true);
+                } else if (packet.getRequestId() == authId) {
+                    state = State.READY;
+                    backoff = MIN_BACKOFF_MS;
+                    pump();
+                }
+                return;
+            }
+            Command c = inFlight.get(packet.getRequestId());
+            if (c != null) {
+                c.response.append(packet.getBody());
+                return;
+            }
+            c = markers.remove(packet.getRequestId());
+            if (c != null) {
+                inFlight.remove(c.id);
+                inFlightOrder.remove(c);
+                c.future.complete(c.response.toString());
+            }
+        }
+
+        private void pumpQuietly() {
+            try {
+                pump();
+            } catch (IOException e) {
+                fail(e, false);
+            }
+        }
+
+        // Encodes as many queued commands as fit in the write buffer, then writes
+        private void pump() throws IOException {
+            if (state != State.READY || channel == null) return;
+            while (true) {
+                Command c;
+                while ((c = outbound.peek()) != null) {
+                    if (c.future.isDone()) {
+                        outbound.poll();
+                        continue;
+                    }
+                    int size = RconPacket.encodedSize(c.command) + RconPacket.HEADER_SIZE + 2;
+                    if (size > RconPacket.MAX_PACKET_SIZE) {
+                        outbound.poll();
+                        c.future.completeExceptionally(new IllegalArgumentException("RCON command too long"));
+                        continue;
+                    }
+                    if (writeBuf.remaining() < size) break;
+                    outbound.poll();
+                    c.id = takeId();
+                    int markerId = takeId();
+                    RconPacket.encode(writeBuf, c.id, RconPacket.TYPE_EXEC_COMMAND, c.command);
+                    RconPacket.encode(writeBuf, markerId, RconPacket.TYPE_RESPONSE_VALUE, "");
+                    inFlight.put(c.id, c);
+                    markers.put(markerId, c);
+                    inFlightOrder.add(c);
+                }
+                int before = writeBuf.position();
+                flush();
+                // Stop once the socket stops taking data or there is nothing left to encode
+                if (writeBuf.position() == before || outbound.isEmpty()) return;
+            }
+        }
+
+        private int takeId() {
+            int id = nextId;
+            nextId = RconPacket.followingId(id);
+            return id;
+        }
+
+        private void flush() throws IOException {
+            writeBuf.flip();
+            channel.write(writeBuf);
+            writeBuf.compact();
+            int ops = SelectionKey.OP_READ | (writeBuf.position() > 0 ? SelectionKey.OP_WRITE : 0);
+            if (key.interestOps() != ops) {
+                key.interestOps(ops);
+            }
+        }
+
+        private long nextTimer(long now) {
+            long next = Long.MAX_VALUE;
+            if (state == State.CONNECTING || state == State.AUTHENTICATING) next = deadline;
+            if (state == State.BACKOFF) next = nextAttempt;
+            Command oldest = inFlightOrder.peek();
+            if (oldest != null) next = Math.min(next, oldest.deadline);
+            Command queued = outbound.peek();
+            if (queued != null) next = Math.min(next, queued.deadline);
+            return next == Long.MAX_VALUE ? IDLE_SELECT_MS : next - now;
+        }
+
+        private void checkTimers(long now) {
+            if ((state == State.CONNECTING || state == State.AUTHENTICATING) && now >= deadline) {
+                fail(new IOException("RCON connect timed out: " + address), false);
+            } else if (state == State.BACKOFF && now >= nextAttempt) {
+                connect();
+            }
+
+            // Queued commands are FIFO, so deadlines are in order
+            Command c;
+            while ((c = outbound.peek()) != null && now >= c.deadline) {
+                outbound.poll();
+                c.future.completeExceptionally(new IOException("RCON command timed out"));
+            }
+            // A stuck in-flight command means the connection is unhealthy; drop it and reconnect
+            Command oldest = inFlightOrder.peek();
+            if (oldest != null && now >= oldest.deadline) {
+                fail(new IOException("RCON command timed out"), false);
+            }
+        }
+
+        // Tears down the connection, fails in-flight commands and schedules a reconnect
+        private void fail(IOException cause, boolean permanent) {
+            closeChannel();
+            for (Command c : inFlightOrder) {
+                c.future.completeExceptionally(cause);
+            }
+            inFlight.clear();
+            markers.clear();
+            inFlightOrder.clear();
+            if (permanent) {
+                synchronized (this) {
+                    state = State.FAILED;
+                    failQueued(cause);
+                }
+            } else {
+                state = State.BACKOFF;
+                nextAttempt = System.currentTimeMillis() + backoff;
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+
+        private void shutdown() {
+            fail(new IOException("RCON session closed"), true);
+            synchronized (this) {
+                state = State.CLOSED;
+            }
+        }
+
+        private void failQueued(IOException cause) {
+            Command c;
+            while ((c = outbound.poll()) != null) {
+                c.future.completeExceptionally(cause);
+            }
+        }
+
+        private void closeChannel() {
+            if (key != null) {
+                key.cancel();
+                key = null;
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+                channel = null;
+            }
+            buffers.release(readBuf);
+            buffers.release(writeBuf);
+            readBuf = null;
+            writeBuf = null;
+        }
+    }
+
+    private static final class Command {
+        final String command;
+        final long deadline;
+        final StringBuilder response = new StringBuilder();
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        int id;
+
+        Command(String command, long deadline) {
+            this.command = command;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package Main.Java.server;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+// Source RCON packet: int32 length, int32 request id, int32 type, body, two NUL bytes.
+// All integers are little-endian; length counts everything after itself.
+public class RconPacket {
+
+    public static final int TYPE_RESPONSE_VALUE = 0;
+    public static final int TYPE_EXEC_COMMAND = 2;
+    public static final int TYPE_AUTH_RESPONSE = 2;
+    public static final int TYPE_AUTH = 3;
+
+    // Minecraft rejects incoming packets larger than this
+    public static final int MAX_PACKET_SIZE = 4096;
+    public static final int HEADER_SIZE = 12;
+
+    private final int requestId;
+    private final int type;
+    private final String body;
+
+    public RconPacket(int requestId, int type, String body) {
+        this.requestId = requestId;
+        this.type = type;
+        this.body = body;
+    }
+
+    public int getRequestId() { return requestId; }
+    public int getType() { return type; }
+    public String getBody() { return body; }
+
+    // Writes the packet into buf at its current position
+    public static void encode(ByteBuffer buf, int requestId, int type, String body) {
+        byte[] payload = body.getBytes(StandardCharsets.UTF_8);
+        if (payload.length + HEADER_SIZE + 2 > MAX_PACKET_SIZE) {
+            throw new IllegalArgumentException("RCON packet too large: " + payload.length + " bytes");
+        }
+        ByteOrder order = buf.order();
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(payload.length + 10);
+        buf.putInt(requestId);
+        buf.putInt(type);
+        buf.put(payload);
+        buf.put((byte) 0);
+        buf.put((byte) 0);
+        buf.order(order);
+    }
+
+    // Request ids stay positive: -1 is the auth failure answer and the clients use ids below 0
+    // to mean "no marker"
+    public static int followingId(int id) {
+        return id == Integer.MAX_VALUE ? 1 : id + 1;
+    }
+
+    public static int encodedSize(String body) {
+        return body.getBytes(StandardCharsets.UTF_8).length + HEADER_SIZE + 2;
+    }
+
+    // Blocking read of one packet
+    public static RconPacket read(DataInputStream in) throws IOException {
+        int length = Integer.reverseBytes(in.readInt());
+        if (length < 10 || length > 1024 * 1024) {
+            throw new IOException("Invalid RCON packet length " + length);
+        }
+        int requestId = Integer.reverseBytes(in.readInt());
+        int type = Integer.reverseBytes(in.readInt());
+        byte[] payload = new byte[length - 8];
+        in.readFully(payload);
+        return new RconPacket(requestId, type, new String(payload, 0, bodyLength(payload, payload.length), StandardCharsets.UTF_8));
+    }
+
+    // Decodes one packet from buf if a complete one is available, otherwise returns null and
+    // leaves the position untouched
+    public static RconPacket decode(ByteBuffer buf) throws IOException {
+        if (buf.remaining() < 4) return null;
+        ByteOrder order = buf.order();
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            int start = buf.position();
+            int length = buf.getInt(start);
+            if (length < 10 || length > 1024 * 1024) {
+                throw new IOException("Invalid RCON packet length " + length);
+            }
+            if (buf.remaining() < length + 4) return null;
+            int requestId = buf.getInt(start + 4);
+            int type = buf.getInt(start + 8);
+            byte[] payload = new byte[length - 8];
+            buf.position(start + HEADER_SIZE);
+            buf.get(payload);
+            return new RconPacket(requestId, type, new String(payload, 0, bodyLength(payload, payload.length), StandardCharsets.UTF_8));
+        } finally {
+            buf.order(order);
+        }
+    }
+
+    // Body ends at the first of the two trailing NULs
+    private static int bodyLength(byte[] payload, int len) {
+        int end = len;
+        while (end > 0 && payload[end - 1] == 0) end--;
+        return end;
+    }
+}
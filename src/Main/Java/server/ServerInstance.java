@@ -0,0 +1,1129 @@
+package Main.Java.server;
+
+import Main.Java.backup.BackupEngine;
+import Main.Java.console.ConsoleIndex;
+import Main.Java.console.ConsolePipeline;
+import Main.Java.console.LineRing;
+import Main.Java.console.LogAnalytics;
+import Main.Java.console.LogEventListener;
+import Main.Java.console.LogEventMatcher;
+import Main.Java.console.LogEventType;
+import Main.Java.console.LogStore;
+import Main.Java.console.LogTailer;
+import Main.Java.monitor.GcLogMonitor;
+import Main.Java.monitor.MetricsRegistry;
+import Main.Java.monitor.ProcessSampler;
+import Main.Java.monitor.RegionScanner;
+import Main.Java.monitor.StackProfiler;
+import Main.Java.monitor.ThreadSampler;
+import Main.Java.monitor.TickMonitor;
+import Main.Java.monitor.TimeSeries;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// One managed server: its process, console buffers, history, metrics and RCON session.
+// Nothing here is shared with other instances except the supervisor's RCON engine and
+// sampler loop, so servers cannot starve or overwrite each other. No JavaFX dependencies.
+public class ServerInstance {
+
+    private final ServerSupervisor supervisor;
+    private final String name;
+    private final File serverDir;
+    private final LogEventMatcher logEvents;
+    private final LogEventListener logEventListener = this::onLogEvent;
+
+    // Console lines travel reader thread -> pipeline -> ring, drained once per UI pulse
+    private final ConsolePipeline consolePipeline = new ConsolePipeline(Integer.getInteger("console.maxPending", 50_000));
+    private final LineRing consoleLines = new LineRing(
+            Integer.getInteger("console.retention", 1_000_000),
+            Integer.getInteger("console.retentionBytes", 64 * 1024 * 1024));
+
+    private final ProcessSampler processSampler = new ProcessSampler();
+    private final ThreadSampler threadSampler = new ThreadSampler(Integer.getInteger("threads.top", 5));
+    private final TimeSeries ramHistory = new TimeSeries("server_rss_gb");
+    private final TimeSeries cpuHistory = new TimeSeries("server_cpu_percent");
+    private final TickMonitor tickMonitor = new TickMonitor();
+    private final GcLogMonitor gcMonitor;
+    private final long tickPollMs = Long.getLong("server.tickPollSeconds", 5L) * 1000L;
+
+    // Exported on the supervisor's metrics endpoint; recorded without locks on the reader thread
+    // Lower-case name -> name as the console printed it
+    private final Map<String, String> onlinePlayers = new ConcurrentHashMap<>();
+    private final MetricsRegistry.Counter consoleLineCount;
+    private final MetricsRegistry.Histogram rconLatency;
+    private final MetricsRegistry.Histogram stdinLatency;
+    private long lastLineCount;
+    private volatile double consoleLinesPerSecond;
+
+    // Thread-dump bursts on lag spikes (and on demand), one incident directory per capture
+    private final AtomicBoolean profiling = new AtomicBoolean();
+    private final AtomicBoolean analyzing = new AtomicBoolean();
+    // Chunk counts from region headers, cached in .dashboard/region-cache.bin
+    private final RegionScanner regionScanner;
+    private final AtomicBoolean scanning = new AtomicBoolean();
+
+    // World backups in .dashboard/backups; one backup, verify or restore at a time
+    private final BackupEngine backups;
+    private final AtomicBoolean backingUp = new AtomicBoolean();
+    private volatile CompletableFuture<Void> saveWaiter;
+    private final boolean profileOnSpike = Boolean.parseBoolean(System.getProperty("profile.onSpike", "true"));
+    private final long profileCooldownMs = Long.getLong("profile.cooldownSeconds", 300L) * 1000L;
+    private volatile StackProfiler profiler;
+    private volatile StackProfiler.Incident lastIncident;
+    private volatile long lastProfileAt;
+
+    private final ServerProcess serverProcess;
+    private final LaunchHistory launchHistory;
+    private volatile RconMultiplexer.Session rcon;
+    // Set when a daemon on this host runs the server: lifecycle and stdin go through it, and the
+    // state and pid mirror what it reports. Console and players still come from latest.log.
+    private volatile ServerRemote remote;
+    private volatile ServerState remoteState = ServerState.STOPPED;
+    private final List<ServerStateListener> remoteListeners = new CopyOnWriteArrayList<>();
+    // Full console history on disk, including the boot lines the console view hides
+    private volatile LogStore consoleLog;
+    private volatile ConsoleIndex consoleIndex;
+    private volatile LogEventListener eventListener;
+    // Follows logs/latest.log while the server is not running under this dashboard
+    private volatile LogTailer logTailer;
+    private volatile long serverPid = -1L;
+    private volatile double configuredMaxRamGb = 0.0;
+    private long sampledPid = -1L;
+    private volatile boolean sampled;
+
+    // Current run, for the launch history: settings used, boot time and memory at boot / peak
+    private volatile LaunchConfig launchConfig;
+    private volatile long startedAt;
+    private volatile long bootMs = -1L;
+    private volatile long bootRssMb;
+    private volatile long peakRssMb;
+
+    // Tick polling over RCON; null until the first poll has found which commands the server knows
+    private volatile List<String> tickCommands;
+    private volatile boolean tickPollPending;
+    private long lastTickPoll;
+
+    ServerInstance(ServerSupervisor supervisor, File serverDir, LogEventMatcher logEvents, ServerProcess serverProcess) {
+        this.supervisor = supervisor;
+        this.serverDir = serverDir;
+        this.name = serverDir.getName();
+        this.logEvents = logEvents;
+        this.serverProcess = serverProcess;
+        this.launchHistory = new LaunchHistory(serverDir);
+        this.gcMonitor = new GcLogMonitor(serverDir.toPath());
+        this.regionScanner = new RegionScanner(serverDir.toPath().resolve(".dashboard").resolve("region-cache.bin"));
+        this.backups = new BackupEngine(serverDir.toPath().resolve(".dashboard").resolve("backups"),
+                Integer.getInteger("backup.threads", Runtime.getRuntime().availableProcessors()),
+                Long.getLong("backup.maxMBps", 100L) * 1024 * 1024);
+        MetricsRegistry metrics = supervisor.getMetrics();
+        this.consoleLineCount = metrics.counter("mcdash_console_lines_total",
+                "Lines the server printed, including boot output", "server", name);
+        String latencyHelp = "Time until a command was answered (rcon) or written to the server (stdin)";
+        this.rconLatency = metrics.histogram("mcdash_command_latency_seconds", latencyHelp,
+                MetricsRegistry.LATENCY_BUCKETS, "server", name, "transport", "rcon");
+        this.stdinLatency = metrics.histogram("mcdash_command_latency_seconds", latencyHelp,
+                MetricsRegistry.LATENCY_BUCKETS, "server", name, "transport", "stdin");
+        registerMetrics(metrics);
+        serverProcess.addListener(this::onStateChanged);
+        tickMonitor.addSpikeListener(spike -> {
+            log("Lag spike: " + spike);
+            if (profileOnSpike && System.currentTimeMillis() - lastProfileAt >= profileCooldownMs) {
+                profile("lag spike: " + spike);
+            }
+        });
+    }
+
+    // Player events seen on the console; called on the reader thread
+    public void setEventListener(LogEventListener listener) {
+        this.eventListener = listener;
+    }
+
+    public void addStateListener(ServerStateListener listener) {
+        serverProcess.addListener(listener);
+        remoteListeners.add(listener);
+    }
+
+    public void removeStateListener(ServerStateListener listener) {
+        serverProcess.removeListener(listener);
+        remoteListeners.remove(listener);
+    }
+
+    // Before the log is attached, so this process never writes the console history the daemon keeps
+    void useRemote(ServerRemote remote, ServerState state, long pid) {
+        this.remote = remote;
+        onRemoteState(state, pid);
+    }
+
+    public boolean isRemote() {
+        return remote != null;
+    }
+
+    // State and pid reported by the daemon that runs this server
+    public void onRemoteState(ServerState to, long pid) {
+        ServerState from;
+        synchronized (this) {
+            from = remoteState;
+            remoteState = to;
+            serverPid = to.isActive() ? pid : -1L;
+        }
+        if (from == to) return;
+        switch (to) {
+            case STARTING:
+                tickMonitor.reset();
+                gcMonitor.reset();
+                tickCommands = null;
+                break;
+            case RUNNING:
+                connectRcon();
+                if (profiler == null) {
+                    try {
+                        // Thread dumps through jcmd work on any JVM of this user, not just our children
+                        profiler = newProfiler(LaunchConfig.load(serverDir));
+                    } catch (IOException e) {
+                        log("Profiling unavailable: " + e.getMessage());
+                    }
+                }
+                break;
+            case STOPPING:
+                closeRcon();
+                break;
+            default:
+                closeRcon();
+                onlinePlayers.clear();
+                break;
+        }
+        for (ServerStateListener listener : remoteListeners) {
+            listener.onStateChanged(from, to);
+        }
+    }
+
+    // The daemon went away: the server is seen as stopped and can be started from here again
+    public void dropRemote() {
+        if (remote == null) return;
+        onRemoteState(ServerState.STOPPED, -1L);
+        remote = null;
+        log("Lost the connection to the daemon running this server");
+    }
+
+    private void forward(CompletableFuture<Void> call, String what) {
+        call.whenComplete((v, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                log("Daemon could not " + what + " the server: " + cause.getMessage());
+            }
+        });
+    }
+
+    public synchronized void start() throws IOException {
+        ServerRemote r = remote;
+        if (r != null) {
+            forward(r.start(), "start");
+            return;
+        }
+        if (serverProcess.getState().isActive()) {
+            throw new IllegalStateException("Server is already running");
+        }
+        // Our own process: its stdout carries the same lines as latest.log
+        detachLog();
+        try {
+            launch();
+        } catch (IOException | RuntimeException e) {
+            attachLog();
+            throw e;
+        }
+    }
+
+    private void launch() throws IOException {
+        LaunchConfig config = LaunchConfig.load(serverDir);
+        List<String> command;
+        try {
+            command = config.toCommand();
+        } catch (IllegalStateException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (!config.exists()) {
+            // First start: keep what was imported from run.bat / run.sh so it can be edited
+            config.save();
+        }
+        openConsoleLog();
+        log("Starting server in: " + serverDir.getAbsolutePath());
+        log("Launch profile: " + config.getProfile().getDisplayName() + ", heap " + config.getMinHeap()
+                + "-" + config.getMaxHeap());
+        launchConfig = config;
+        configuredMaxRamGb = LaunchConfig.heapMb(config.getMaxHeap()) / 1024.0;
+        startedAt = System.currentTimeMillis();
+        bootMs = -1L;
+        bootRssMb = 0;
+        peakRssMb = 0;
+        tickMonitor.reset();
+        gcMonitor.reset();
+        tickCommands = null;
+        profiler = newProfiler(config);
+        serverProcess.start(command);
+        try {
+            serverPid = serverProcess.getProcess().pid();
+        } catch (UnsupportedOperationException e) {
+            serverPid = -1L;
+        }
+        startConsoleReader(serverProcess);
+    }
+
+    private StackProfiler newProfiler(LaunchConfig config) {
+        return new StackProfiler(StackProfiler.findJcmd(config.getJavaPath()),
+                serverDir.toPath().resolve(".dashboard").resolve("profiles"),
+                System.getProperty("profile.thread", "Server thread"));
+    }
+
+    public void stop() {
+        closeRcon();
+        ServerRemote r = remote;
+        if (r != null) {
+            forward(r.stop(), "stop");
+            return;
+        }
+        serverProcess.stop();
+    }
+
+    // Stops the server if it is up and starts it again as soon as the process has exited
+    public CompletableFuture<Void> restart() {
+        ServerRemote r = remote;
+        if (r != null) {
+            return r.restart();
+        }
+        ServerState state = serverProcess.getState();
+        if (state == ServerState.STARTING || state == ServerState.RUNNING) {
+            stop();
+        }
+        return serverProcess.onExit().thenRun(() -> {
+            try {
+                start();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // Gauges read the volatile fields the sampler and the monitors already keep
+    private void registerMetrics(MetricsRegistry metrics) {
+        metrics.gauge("mcdash_server_up", "1 while the server is running", () -> getState() == ServerState.RUNNING ? 1 : 0,
+                "server", name);
+        metrics.gauge("mcdash_server_rss_bytes", "Resident memory of the server process tree",
+                () -> sampled ? processSampler.getRssBytes() : Double.NaN, "server", name);
+        metrics.gauge("mcdash_server_cpu_percent", "CPU of the server process tree, 100 per core",
+                () -> sampled ? processSampler.getCpuPercent() : Double.NaN, "server", name);
+        metrics.gauge("mcdash_server_threads", "Threads of the server process tree",
+                () -> sampled ? processSampler.getThreads() : Double.NaN, "server", name);
+        metrics.gauge("mcdash_sampler_last_seconds", "Time the last /proc sample of the server took",
+                () -> sampled ? processSampler.getLastSampleNanos() / 1e9 : Double.NaN, "server", name);
+        metrics.gauge("mcdash_sampler_average_seconds", "Average time of a /proc sample of the server",
+                () -> sampled ? processSampler.getAverageSampleNanos() / 1e9 : Double.NaN, "server", name);
+        metrics.gauge("mcdash_players_online", "Players online according to the console",
+                onlinePlayers::size, "server", name);
+        metrics.gauge("mcdash_console_lines_per_second", "Console lines per second over the last sample",
+                () -> consoleLinesPerSecond, "server", name);
+        metrics.gauge("mcdash_console_pending_lines", "Console lines waiting for the UI to drain them",
+                consolePipeline::pending, "server", name);
+        metrics.counter("mcdash_console_dropped_lines_total", "Console lines dropped because the UI fell behind",
+                consolePipeline::droppedCount, "server", name);
+        metrics.gauge("mcdash_tps", "Ticks per second last reported by the server", tickMonitor::getTps, "server", name);
+        metrics.quantiles("mcdash_tick_seconds", "Tick time percentiles over the last ten minutes",
+                tickMonitor.getMsptHistogram(), 0.001, "server", name);
+        metrics.counter("mcdash_lag_spikes_total", "Lag spikes detected", tickMonitor::getSpikes, "server", name);
+        metrics.quantiles("mcdash_gc_pause_seconds", "GC pause percentiles over the last hour",
+                gcMonitor.getPauses(), 0.001, "server", name);
+        metrics.counter("mcdash_gc_pauses_total", "GC pauses read from the GC log", gcMonitor::getPauseCount,
+                "server", name);
+    }
+
+    // start is System.nanoTime() from just before the command was handed over
+    private static <T> CompletableFuture<T> timed(long start, CompletableFuture<T> command, MetricsRegistry.Histogram latency) {
+        return command.whenComplete((v, error) -> latency.observeNanos(System.nanoTime() - start));
+    }
+
+    private void onStateChanged(ServerState from, ServerState to) {
+        switch (to) {
+            case RUNNING:
+                bootMs = System.currentTimeMillis() - startedAt;
+                bootRssMb = sampled ? processSampler.getRssBytes() / (1024 * 1024) : 0;
+                log(String.format("Boot took %.1f s", bootMs / 1000.0));
+                connectRcon();
+                break;
+            case STOPPED:
+                closeRcon();
+                onlinePlayers.clear();
+                recordLaunch(to);
+                log("Server stopped" + reason());
+                attachLog();
+                break;
+            case CRASHED:
+                closeRcon();
+                onlinePlayers.clear();
+                recordLaunch(to);
+                Integer code = serverProcess.getExitCode();
+                log("Server " + (from == ServerState.STARTING ? "failed to start" : "crashed")
+                        + (code != null ? " (exit code " + code + ")" : "") + reason());
+                attachLog();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void recordLaunch(ServerState endState) {
+        LaunchConfig config = launchConfig;
+        if (config == null) return;
+        launchConfig = null;
+        try {
+            launchHistory.record(config, bootMs, bootRssMb, peakRssMb, endState);
+        } catch (IOException e) {
+            log("Failed to record launch history: " + e.getMessage());
+        }
+    }
+
+    // Average boot time and memory of earlier runs with the same launch settings, or null
+    public String launchSummary(LaunchConfig config) {
+        try {
+            return launchHistory.summary(config);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private String reason() {
+        String failure = serverProcess.getFailure();
+        return failure != null ? ": " + failure : ".";
+    }
+
+    // Uses RCON when it is connected, so the response comes back as the command's own output
+    public void sendCommand(String cmd) {
+        ServerProcess process = serverProcess;
+        if (!isAlive()) {
+            log("Server is not running.");
+            return;
+        }
+        RconMultiplexer.Session r = rcon;
+        if (r != null && r.isReady()) {
+            log("> " + cmd);
+            timed(System.nanoTime(), r.sendCommand(cmd), rconLatency).whenComplete((response, error) -> {
+                if (error != null) {
+                    log("RCON command failed: " + error.getMessage());
+                } else if (!response.isBlank()) {
+                    log(response.strip());
+                }
+            });
+            return;
+        }
+        log("> " + cmd);
+        ServerRemote remote = this.remote;
+        CompletableFuture<Void> sent = remote != null ? remote.sendCommands(List.of(cmd)) : process.sendCommand(cmd);
+        timed(System.nanoTime(), sent, stdinLatency).whenComplete((v, error) -> {
+            if (error != null) {
+                log("Failed to send command: " + error.getMessage());
+            }
+        });
+    }
+
+    // Many commands at once (kick or whitelist a list of players): pipelined over RCON when it is
+    // connected, otherwise queued together on stdin and written with a single flush
+    public CompletableFuture<Void> sendCommands(List<String> cmds) {
+        ServerProcess process = serverProcess;
+        if (!isAlive()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Server is not running"));
+        }
+        RconMultiplexer.Session r = rcon;
+        if (r != null && r.isReady()) {
+            CompletableFuture<?>[] responses = new CompletableFuture<?>[cmds.size()];
+            long start = System.nanoTime();
+            for (int i = 0; i < responses.length; i++) {
+                responses[i] = timed(start, r.sendCommand(cmds.get(i)), rconLatency);
+            }
+            return CompletableFuture.allOf(responses);
+        }
+        ServerRemote remote = this.remote;
+        return timed(System.nanoTime(), remote != null ? remote.sendCommands(cmds) : process.sendCommands(cmds), stdinLatency);
+    }
+
+    // Takes a burst of thread dumps of the server JVM in the background and saves them as an
+    // incident; completes exceptionally if the server is down or a capture is already running
+    public CompletableFuture<StackProfiler.Incident> profile(String reason) {
+        long pid = serverPid;
+        StackProfiler p = profiler;
+        if (p == null || pid <= 0 || !isAlive()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Server is not running"));
+        }
+        if (!profiling.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("A profile is already being captured"));
+        }
+        lastProfileAt = System.currentTimeMillis();
+        CompletableFuture<StackProfiler.Incident> result = new CompletableFuture<>();
+        int samples = Integer.getInteger("profile.samples", 20);
+        long intervalMs = Long.getLong("profile.intervalMs", 100L);
+        log("Profiling server thread (" + samples + " thread dumps, " + reason + ")...");
+        supervisor.startVirtual("profiler-" + name, () -> {
+            try {
+                StackProfiler.Incident incident = p.capture(pid, reason, samples, intervalMs);
+                lastIncident = incident;
+                String suspect = incident.topSuspect();
+                log("Profile saved to " + incident.getDir()
+                        + (suspect != null ? " (most seen on the main thread: " + suspect + ")" : ""));
+                result.complete(incident);
+            } catch (IOException | RuntimeException e) {
+                log("Profiling failed: " + e.getMessage());
+                result.completeExceptionally(e);
+            } catch (InterruptedException e) {
+                result.completeExceptionally(e);
+            } finally {
+                profiling.set(false);
+            }
+        });
+        return result;
+    }
+
+    // Sessions, players per hour and lag warnings over everything in logs/, scanned in parallel in
+    // the background; the summary goes to the console and the hourly peaks to a CSV file
+    public CompletableFuture<LogAnalytics.Report> analyzeLogs() {
+        if (!analyzing.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Log analysis is already running"));
+        }
+        CompletableFuture<LogAnalytics.Report> result = new CompletableFuture<>();
+        log("Analyzing old logs...");
+        supervisor.startVirtual("log-analytics-" + name, () -> {
+            try {
+                List<Path> files = LogAnalytics.findLogs(serverDir.toPath().resolve("logs"));
+                LogAnalytics.Report report = new LogAnalytics(logEvents).analyze(files);
+                for (String line : report.summary()) {
+                    log(line);
+                }
+                if (report.getFiles() > 0) {
+                    Path csv = serverDir.toPath().resolve(".dashboard").resolve("players-per-hour.csv");
+                    report.writeHourlyCsv(csv);
+                    log("Peak players per hour saved to " + csv);
+                }
+                result.complete(report);
+            } catch (IOException | RuntimeException e) {
+                log("Log analysis failed: " + e.getMessage());
+                result.completeExceptionally(e);
+            } finally {
+                analyzing.set(false);
+            }
+        });
+        return result;
+    }
+
+    // Generated chunks and region bytes per dimension from the region file headers, and how many
+    // chunks were added since the last scan; only regions written since then are read again
+    public CompletableFuture<RegionScanner.Result> scanWorld() {
+        if (!scanning.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("World scan is already running"));
+        }
+        CompletableFuture<RegionScanner.Result> result = new CompletableFuture<>();
+        supervisor.startVirtual("world-scan-" + name, () -> {
+            try {
+                RegionScanner.Result scan = regionScanner.scan(serverDir.toPath(), worldFolders());
+                for (String line : scan.summary()) {
+                    log(line);
+                }
+                result.complete(scan);
+            } catch (IOException | RuntimeException e) {
+                log("World scan failed: " + e.getMessage());
+                result.completeExceptionally(e);
+            } finally {
+                scanning.set(false);
+            }
+        });
+        return result;
+    }
+
+    // Snapshots the world folders in the background. A running server is told to stop saving and
+    // flush the world first, and to save again as soon as the copy is done.
+    public CompletableFuture<BackupEngine.Snapshot> backup() {
+        ServerState state = getState();
+        if (state == ServerState.STARTING || state == ServerState.STOPPING) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Server is " + state.name().toLowerCase()));
+        }
+        if (!backingUp.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("A backup task is already running"));
+        }
+        CompletableFuture<BackupEngine.Snapshot> result = new CompletableFuture<>();
+        supervisor.startVirtual("backup-" + name, () -> {
+            boolean paused = false;
+            try {
+                List<String> roots = worldFolders();
+                if (roots.isEmpty()) {
+                    throw new IOException("no world folder in " + serverDir);
+                }
+                if (getState() == ServerState.RUNNING) {
+                    paused = true;
+                    pauseSaving();
+                } else if (isFollowingLog()) {
+                    log("Backup: if this server is running outside the dashboard, its saves are not paused");
+                }
+                log("Backing up " + String.join(", ", roots) + "...");
+                BackupEngine.Snapshot snapshot = backups.backup(serverDir.toPath(), roots);
+                if (paused) {
+                    paused = false;
+                    resumeSaving();
+                }
+                log("Backup " + snapshot.summary());
+                long removed = backups.prune(Integer.getInteger("backup.keep", 14));
+                if (removed > 0) {
+                    log("Backup: removed " + removed + " chunks no snapshot uses any more");
+                }
+                result.complete(snapshot);
+            } catch (IOException | RuntimeException | InterruptedException e) {
+                log("Backup failed: " + e.getMessage());
+                result.completeExceptionally(e);
+            } finally {
+                if (paused) {
+                    resumeSaving();
+                }
+                backingUp.set(false);
+            }
+        });
+        return result;
+    }
+
+    // save-off, then save-all flush; returns once the server says the world is on disk
+    private void pauseSaving() throws IOException, InterruptedException {
+        long timeoutMs = Long.getLong("backup.saveTimeoutSeconds", 120L) * 1000L;
+        CompletableFuture<Void> saved = new CompletableFuture<>();
+        saveWaiter = saved;
+        log("Backup: pausing world saves...");
+        try {
+            RconMultiplexer.Session r = rcon;
+            if (r != null && r.isReady()) {
+                // RCON answers once the command has run, and save-all flush runs to completion
+                r.sendCommand("save-off").get(timeoutMs, TimeUnit.MILLISECONDS);
+                r.sendCommand("save-all flush").get(timeoutMs, TimeUnit.MILLISECONDS);
+            } else {
+                sendCommands(List.of("save-off", "save-all flush"));
+                saved.get(timeoutMs, TimeUnit.MILLISECONDS);
+            }
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("the server did not confirm save-all within " + timeoutMs / 1000 + " s", e);
+        } finally {
+            saveWaiter = null;
+        }
+    }
+
+    private void resumeSaving() {
+        sendCommands(List.of("save-on")).whenComplete((v, error) -> {
+            if (error != null) {
+                log("Backup: could not turn saving back on, run save-on: " + error.getMessage());
+            }
+        });
+    }
+
+    // level-name from server.properties, plus the _nether / _the_end folders Bukkit servers keep beside it
+    private List<String> worldFolders() {
+        String level;
+        try {
+            level = ServerProperties.load(serverDir).getLevelName();
+        } catch (IOException e) {
+            level = "world";
+        }
+        List<String> roots = new ArrayList<>();
+        for (String root : List.of(level, level + "_nether", level + "_the_end")) {
+            if (Files.isDirectory(serverDir.toPath().resolve(root))) {
+                roots.add(root);
+            }
+        }
+        return roots;
+    }
+
+    // Backups of this server, oldest first
+    public List<BackupEngine.Snapshot> listBackups() throws IOException {
+        return backups.list();
+    }
+
+    // Reads back every chunk of a snapshot and checks it; the outcome goes to the console
+    public CompletableFuture<BackupEngine.Verification> verifyBackup(BackupEngine.Snapshot snapshot) {
+        if (!backingUp.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("A backup task is already running"));
+        }
+        CompletableFuture<BackupEngine.Verification> result = new CompletableFuture<>();
+        log("Verifying backup " + snapshot.getId() + "...");
+        supervisor.startVirtual("backup-verify-" + name, () -> {
+            try {
+                BackupEngine.Verification v = backups.verify(snapshot);
+                if (v.isOk()) {
+                    log("Backup " + snapshot.getId() + " is intact (" + v.getFiles() + " files, " + v.getChunks() + " chunks)");
+                } else {
+                    log("Backup " + snapshot.getId() + " is damaged: " + v.getMissing() + " chunks missing, "
+                            + v.getCorrupt() + " corrupt");
+                    for (String problem : v.getProblems()) {
+                        log("  " + problem);
+                    }
+                }
+                result.complete(v);
+            } catch (IOException | RuntimeException | InterruptedException e) {
+                log("Verify failed: " + e.getMessage());
+                result.completeExceptionally(e);
+            } finally {
+                backingUp.set(false);
+            }
+        });
+        return result;
+    }
+
+    // Puts a snapshot's world folders back. The server must be stopped; the current folders are
+    // kept beside the restored ones as <name>.before-restore-<time>.
+    public CompletableFuture<Void> restoreBackup(BackupEngine.Snapshot snapshot) {
+        if (getState().isActive()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Stop the server before restoring a backup"));
+        }
+        if (!backingUp.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("A backup task is already running"));
+        }
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        log("Restoring backup " + snapshot.getId() + "...");
+        supervisor.startVirtual("backup-restore-" + name, () -> {
+            try {
+                Path base = serverDir.toPath();
+                for (String root : snapshot.getRoots()) {
+                    if (inUse(base.resolve(root))) {
+                        throw new IOException(root + " is in use by a running server");
+                    }
+                }
+                String suffix = ".before-restore-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+                for (String root : snapshot.getRoots()) {
+                    Path dir = base.resolve(root);
+                    if (Files.exists(dir)) {
+                        Files.move(dir, dir.resolveSibling(root + suffix));
+                        log("Kept the current " + root + " as " + root + suffix);
+                    }
+                }
+                backups.restore(snapshot, base);
+                log("Restored backup " + snapshot.getId());
+                result.complete(null);
+            } catch (IOException | RuntimeException | InterruptedException e) {
+                log("Restore failed: " + e.getMessage());
+                result.completeExceptionally(e);
+            } finally {
+                backingUp.set(false);
+            }
+        });
+        return result;
+    }
+
+    // A running server, ours or not, holds a lock on the world's session.lock
+    private static boolean inUse(Path world) {
+        Path lock = world.resolve("session.lock");
+        if (!Files.exists(lock)) return false;
+        try (FileChannel channel = FileChannel.open(lock, StandardOpenOption.WRITE)) {
+            FileLock l = channel.tryLock();
+            if (l == null) return true;
+            l.release();
+            return false;
+        } catch (OverlappingFileLockException | IOException e) {
+            return true;
+        }
+    }
+
+    public boolean isBackingUp() {
+        return backingUp.get();
+    }
+
+    // Dashboard message in this server's console; safe from any thread
+    public void log(String text) {
+        consolePipeline.offer(text.endsWith("\n") ? text.substring(0, text.length() - 1) : text);
+    }
+
+    private void startConsoleReader(ServerProcess process) {
+        InputStream stream = process.getConsoleStream();
+        if (stream == null) {
+            log("No console stream available.");
+            return;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
+        supervisor.startVirtual("console-reader-" + name, () -> {
+            String line;
+            try {
+                while ((line = reader.readLine()) != null) {
+                    onConsoleLine(line);
+                }
+                // Server exited: make its last lines durable now rather than on the next tick
+                LogStore log = consoleLog;
+                if (log != null) {
+                    log.flush();
+                }
+            } catch (IOException e) {
+                consolePipeline.offer("Console reader stopped: " + e.getMessage());
+            }
+        });
+    }
+
+    // One server output line, from the process's stdout or from the tailed latest.log
+    private void onConsoleLine(String line) {
+        consoleLineCount.inc();
+        LogStore log = consoleLog;
+        if (log != null) {
+            try {
+                long lineNo = log.append(System.currentTimeMillis(), line);
+                ConsoleIndex index = consoleIndex;
+                if (index != null) {
+                    index.offer(lineNo, line);
+                }
+            } catch (IOException e) {
+                consoleLog = null;
+                consolePipeline.offer("Console history disabled: " + e.getMessage());
+            }
+        }
+        // Player events and boot detection in a single pass over the line
+        logEvents.match(line, logEventListener);
+        // Filter boot noise until the server reports it is running
+        if (getState() != ServerState.STARTING) {
+            consolePipeline.offer(line);
+        }
+    }
+
+    // Follows logs/latest.log so a server started elsewhere still shows its console and players.
+    // Does nothing while the dashboard runs the server itself or is already following the log.
+    public synchronized void attachLog() {
+        if (logTailer != null || serverProcess.getState().isActive()) return;
+        Path logs = serverDir.toPath().resolve("logs");
+        if (consoleLog == null && remote == null && Files.isDirectory(logs)) {
+            openConsoleLog();
+        }
+        LogTailer tailer = new LogTailer(logs.resolve("latest.log"), this::onConsoleLine);
+        try {
+            supervisor.logWatcher().add(tailer);
+            logTailer = tailer;
+            if (startedAt == 0 && Files.exists(tailer.getFile())) {
+                log("Following logs/latest.log (server not started from this dashboard)");
+            }
+        } catch (IOException e) {
+            log("Cannot follow logs/latest.log: " + e.getMessage());
+        }
+    }
+
+    public synchronized void detachLog() {
+        LogTailer tailer = logTailer;
+        logTailer = null;
+        if (tailer != null) {
+            try {
+                supervisor.logWatcher().remove(tailer);
+            } catch (IOException e) {
+                tailer.close();
+            }
+        }
+    }
+
+    // True while console lines come from logs/latest.log rather than from our own process
+    public boolean isFollowingLog() {
+        return logTailer != null;
+    }
+
+    private void onLogEvent(LogEventType type, CharSequence line, int fieldStart, int fieldEnd) {
+        switch (type) {
+            case BOOT_DONE:
+                onlinePlayers.clear();
+                serverProcess.markRunning();
+                return;
+            case JOIN: {
+                String player = line.subSequence(fieldStart, fieldEnd).toString();
+                onlinePlayers.put(player.toLowerCase(Locale.ROOT), player);
+                break;
+            }
+            case LEAVE:
+                onlinePlayers.remove(line.subSequence(fieldStart, fieldEnd).toString().toLowerCase(Locale.ROOT));
+                break;
+            case SAVED: {
+                CompletableFuture<Void> waiter = saveWaiter;
+                if (waiter != null) {
+                    waiter.complete(null);
+                }
+                return;
+            }
+            case LAG:
+            case TPS:
+            case MSPT:
+                tickMonitor.onLogEvent(type, line, fieldStart, fieldEnd);
+                return;
+            default:
+                break;
+        }
+        LogEventListener listener = eventListener;
+        if (listener != null) {
+            listener.onEvent(type, line, fieldStart, fieldEnd);
+        }
+    }
+
+    // Registers the server with the shared RCON engine; it connects and reconnects in the background
+    private synchronized void connectRcon() {
+        try {
+            ServerProperties props = ServerProperties.load(serverDir);
+            if (!props.isRconEnabled()) {
+                return;
+            }
+            closeRcon();
+            rcon = supervisor.rconEngine().open(props);
+            log("Using RCON on port " + props.getRconPort());
+        } catch (IOException e) {
+            log("RCON unavailable, using console input: " + e.getMessage());
+        }
+    }
+
+    private void closeRcon() {
+        RconMultiplexer.Session r = rcon;
+        rcon = null;
+        if (r != null) {
+            r.close();
+        }
+    }
+
+    private void openConsoleLog() {
+        closeConsoleLog();
+        try {
+            LogStore log = new LogStore(serverDir.toPath().resolve(".dashboard").resolve("console"),
+                    LogStore.Policy.fromSystemProperties());
+            log.startFlusher(500, 10 * 60_000L, e -> log("Console history: " + e.getMessage()));
+            ConsoleIndex index = new ConsoleIndex(log, logEvents, Integer.getInteger("console.indexPending", 100_000),
+                    Long.getLong("console.indexLines", 5_000_000L));
+            index.start(e -> log("Console search stopped: " + e.getMessage()));
+            consoleIndex = index;
+            consoleLog = log;
+        } catch (IOException e) {
+            log("Console history disabled: " + e.getMessage());
+        }
+    }
+
+    private void closeConsoleLog() {
+        ConsoleIndex index = consoleIndex;
+        consoleIndex = null;
+        if (index != null) {
+            index.stop();
+        }
+        LogStore log = consoleLog;
+        consoleLog = null;
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                log("Failed to close console history: " + e.getMessage());
+            }
+        }
+    }
+
+    // Supervisor sampler thread, once per second
+    void sample() {
+        long lines = consoleLineCount.get();
+        consoleLinesPerSecond = lines - lastLineCount;
+        lastLineCount = lines;
+        long pid = serverPid;
+        boolean ok = false;
+        // Sampled while booting too, so boot-time memory shows up in the launch history
+        if (ProcessSampler.isSupported() && getState().isActive() && pid > 0) {
+            if (pid != sampledPid) {
+                processSampler.reset();
+                threadSampler.reset();
+                sampledPid = pid;
+            }
+            ok = processSampler.sample(pid);
+            if (ok) {
+                threadSampler.sample(pid);
+            }
+        }
+        if (ok) {
+            long now = System.currentTimeMillis();
+            long rss = processSampler.getRssBytes();
+            ramHistory.add(now, rss / (1024.0 * 1024.0 * 1024.0));
+            peakRssMb = Math.max(peakRssMb, rss / (1024 * 1024));
+            cpuHistory.add(now, processSampler.getCpuPercent());
+        }
+        sampled = ok;
+        if (getState().isActive()) {
+            gcMonitor.poll();
+        }
+        if (getState() == ServerState.RUNNING) {
+            pollTicks(System.currentTimeMillis());
+        }
+    }
+
+    // Asks for TPS / MSPT over RCON, where the answer comes back to us instead of the console.
+    // The first poll tries every known command and keeps up to two the server answered.
+    private void pollTicks(long now) {
+        RconMultiplexer.Session r = rcon;
+        if (tickPollMs <= 0 || r == null || !r.isReady() || tickPollPending || now - lastTickPoll < tickPollMs) {
+            return;
+        }
+        List<String> commands = tickCommands;
+        boolean probing = commands == null;
+        if (probing) {
+            commands = TickMonitor.POLL_COMMANDS;
+        }
+        if (commands.isEmpty()) return;
+        lastTickPoll = now;
+        tickPollPending = true;
+        boolean[] answered = new boolean[commands.size()];
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[commands.size()];
+        long start = System.nanoTime();
+        for (int i = 0; i < responses.length; i++) {
+            int index = i;
+            responses[i] = timed(start, r.sendCommand(commands.get(i)), rconLatency)
+                    .thenAccept(response -> answered[index] = tickMonitor.parseResponse(response));
+        }
+        List<String> polled = commands;
+        CompletableFuture.allOf(responses).whenComplete((v, error) -> {
+            tickPollPending = false;
+            if (!probing || error != null) return;
+            List<String> working = new ArrayList<>();
+            for (int i = 0; i < answered.length && working.size() < 2; i++) {
+                if (answered[i]) working.add(polled.get(i));
+            }
+            tickCommands = working;
+            if (working.isEmpty()) {
+                log("Tick polling off: the server did not answer " + String.join(", ", polled));
+            }
+        });
+    }
+
+    // Releases files and connections; the process itself is left alone
+    void close() {
+        detachLog();
+        closeRcon();
+        closeConsoleLog();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public File getServerDir() {
+        return serverDir;
+    }
+
+    public boolean isAlive() {
+        return remote != null ? remoteState.isActive() : serverProcess.isAlive();
+    }
+
+    public ServerState getState() {
+        return remote != null ? remoteState : serverProcess.getState();
+    }
+
+    public long getPid() {
+        return serverPid;
+    }
+
+    // True if the last sampler pass read the process tree
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    public ProcessSampler getProcessSampler() {
+        return processSampler;
+    }
+
+    public ThreadSampler getThreadSampler() {
+        return threadSampler;
+    }
+
+    public TimeSeries getRamHistory() {
+        return ramHistory;
+    }
+
+    public TimeSeries getCpuHistory() {
+        return cpuHistory;
+    }
+
+    public TickMonitor getTickMonitor() {
+        return tickMonitor;
+    }
+
+    public GcLogMonitor getGcMonitor() {
+        return gcMonitor;
+    }
+
+    // Heap suggestion from the GC log against the current -Xmx and this machine's memory
+    public GcLogMonitor.Advice heapAdvice() {
+        long physicalMb = 0;
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            physicalMb = ((com.sun.management.OperatingSystemMXBean) os).getTotalMemorySize() / (1024 * 1024);
+        }
+        return gcMonitor.advise((long) (configuredMaxRamGb * 1024), physicalMb);
+    }
+
+    public StackProfiler.Incident getLastIncident() {
+        return lastIncident;
+    }
+
+    public boolean isProfiling() {
+        return profiling.get();
+    }
+
+    public boolean isAnalyzingLogs() {
+        return analyzing.get();
+    }
+
+    public int getOnlinePlayerCount() {
+        return onlinePlayers.size();
+    }
+
+    // Players already online when the log was attached, which the tailer starts reading at its end
+    public void seedPlayers(List<String> names) {
+        for (String player : names) {
+            onlinePlayers.put(player.toLowerCase(Locale.ROOT), player);
+        }
+    }
+
+    public List<String> getOnlinePlayers() {
+        List<String> names = new ArrayList<>(onlinePlayers.values());
+        names.sort(String.CASE_INSENSITIVE_ORDER);
+        return names;
+    }
+
+    public boolean isScanningWorld() {
+        return scanning.get();
+    }
+
+    public ConsolePipeline getConsolePipeline() {
+        return consolePipeline;
+    }
+
+    public LineRing getConsoleLines() {
+        return consoleLines;
+    }
+
+    public ConsoleIndex getConsoleIndex() {
+        return consoleIndex;
+    }
+
+    public double getConfiguredMaxRamGb() {
+        return configuredMaxRamGb;
+    }
+
+    public void setConfiguredMaxRamGb(double gb) {
+        this.configuredMaxRamGb = gb;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -1,41 +1,231 @@
 package Main.Java.server;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+// A server process and its lifecycle (see ServerState). Transitions are driven by events:
+// start(), markRunning() when the console reports boot, stop(), and Process.onExit().
+// Boot and stop timeouts run on the shared scheduler instead of dedicated polling threads.
 public class ServerProcess {
-    private Process process;
+
+    private static final long KILL_GRACE_MS = 10_000;
+    private static final int COMMAND_QUEUE = 4096;
+
     private final File serverDir;
+    private final ScheduledExecutorService scheduler;
+    private final long bootTimeoutMs;
+    private final long stopTimeoutMs;
+    private final List<ServerStateListener> listeners = new CopyOnWriteArrayList<>();
 
-    public ServerProcess(File serverDir){
+    private volatile Process process;
+    private volatile CommandChannel commands;
+    private ServerState state = ServerState.STOPPED;
+    private ScheduledFuture<?> timeout;
+    private CompletableFuture<Void> exited = CompletableFuture.completedFuture(null);
+    private volatile String failure;
+    private volatile List<String> command = List.of();
+
+    public ServerProcess(File serverDir, ScheduledExecutorService scheduler, long bootTimeoutMs, long stopTimeoutMs) {
         this.serverDir = serverDir;
+        this.scheduler = scheduler;
+        this.bootTimeoutMs = bootTimeoutMs;
+        this.stopTimeoutMs = stopTimeoutMs;
+    }
+
+    public void addListener(ServerStateListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ServerStateListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Launches the given command line (normally LaunchConfig.toCommand()) in the server directory
+    public void start(List<String> command) throws IOException {
+        ServerState from;
+        Process p;
+        synchronized (this) {
+            if (state.isActive()) {
+                throw new IllegalStateException("Server is " + state.name().toLowerCase());
+            }
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.directory(serverDir);
+            pb.redirectErrorStream(true);
+            p = pb.start();
+            process = p;
+            this.command = List.copyOf(command);
+            commands = new CommandChannel(p.getOutputStream(), COMMAND_QUEUE, serverDir.getName());
+            failure = null;
+            exited = new CompletableFuture<>();
+            from = state;
+            state = ServerState.STARTING;
+            schedule(this::onBootTimeout, bootTimeoutMs);
+        }
+        fire(from, ServerState.STARTING);
+        // Registered after STARTING is published, so an instant exit is still reported in order
+        p.onExit().thenAccept(this::onExit);
+    }
+
+    // Boot finished (the console printed "Done"); false if the process was not starting
+    public boolean markRunning() {
+        synchronized (this) {
+            if (state != ServerState.STARTING) return false;
+            state = ServerState.RUNNING;
+            cancelTimeout();
+        }
+        fire(ServerState.STARTING, ServerState.RUNNING);
+        return true;
+    }
+
+    // Asks the server to save and exit; it is killed if it has not exited after the stop timeout
+    public void stop() {
+        ServerState from;
+        synchronized (this) {
+            if (state != ServerState.STARTING && state != ServerState.RUNNING) {
+                throw new IllegalStateException("Server is " + state.name().toLowerCase());
+            }
+            from = state;
+            state = ServerState.STOPPING;
+            schedule(this::onStopTimeout, stopTimeoutMs);
+        }
+        fire(from, ServerState.STOPPING);
+        sendCommand("stop");
+    }
+
+    // Completes when the current process has exited and its final state has been published
+    public synchronized CompletableFuture<Void> onExit() {
+        return exited;
+    }
+
+    // Queued on the stdin channel; completes when the command has been flushed to the process
+    public CompletableFuture<Void> sendCommand(String cmd) {
+        CommandChannel c = commands;
+        if (c == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Server is not running"));
+        }
+        return c.submit(cmd);
+    }
+
+    // Bulk form of sendCommand: all commands are queued together and written with one flush
+    public CompletableFuture<Void> sendCommands(List<String> cmds) {
+        CommandChannel c = commands;
+        if (c == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Server is not running"));
+        }
+        return c.submitAll(cmds);
+    }
+
+    public CommandChannel getCommandChannel() {
+        return commands;
     }
 
-    public void start() throws Exception{
-        ProcessBuilder pb = new ProcessBuilder("cmd.exe","/c","run.bat");
-        pb.directory(serverDir);
-        pb.redirectErrorStream(true);
-        process = pb.start();
+    private void onExit(Process p) {
+        ServerState from;
+        ServerState to;
+        CompletableFuture<Void> done;
+        synchronized (this) {
+            if (p != process) return;
+            cancelTimeout();
+            from = state;
+            // Exiting while stopping is the expected outcome, even if it took a kill
+            to = from == ServerState.STOPPING ? ServerState.STOPPED : ServerState.CRASHED;
+            state = to;
+            done = exited;
+            commands.close();
+        }
+        fire(from, to);
+        done.complete(null);
     }
 
-    public void sendCommand(String cmd) throws Exception{
-        if (process != null){
-            OutputStreamWriter writer = new OutputStreamWriter(process.getOutputStream());
-            writer.write(cmd + System.lineSeparator());
-            writer.flush();
+    private void onBootTimeout() {
+        synchronized (this) {
+            if (state != ServerState.STARTING) return;
+            failure = "no boot within " + bootTimeoutMs / 1000 + "s";
         }
+        kill(process);
+    }
+
+    private void onStopTimeout() {
+        synchronized (this) {
+            if (state != ServerState.STOPPING) return;
+            failure = "did not stop within " + stopTimeoutMs / 1000 + "s";
+        }
+        kill(process);
+    }
+
+    // Terminates the JVM and anything it started; forcibly if that is ignored
+    private void kill(Process p) {
+        if (p == null || !p.isAlive()) return;
+        p.descendants().forEach(ProcessHandle::destroy);
+        p.destroy();
+        scheduler.schedule(() -> {
+            if (p.isAlive()) {
+                p.descendants().forEach(ProcessHandle::destroyForcibly);
+                p.destroyForcibly();
+            }
+        }, KILL_GRACE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Holds the lock
+    private void schedule(Runnable task, long delayMs) {
+        cancelTimeout();
+        timeout = scheduler.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+    }
+
+    private void fire(ServerState from, ServerState to) {
+        for (ServerStateListener listener : listeners) {
+            listener.onStateChanged(from, to);
+        }
+    }
+
+    public synchronized ServerState getState() {
+        return state;
+    }
+
+    // Why the process was killed, or null if it exited on its own
+    public String getFailure() {
+        return failure;
+    }
+
+    public Integer getExitCode() {
+        Process p = process;
+        return p != null && !p.isAlive() ? p.exitValue() : null;
     }
 
     public InputStream getConsoleStream(){
-        return process != null ? process.getInputStream() : null;
+        Process p = process;
+        return p != null ? p.getInputStream() : null;
     }
 
     public boolean isAlive() {
-        return process != null && process.isAlive();
+        Process p = process;
+        return p != null && p.isAlive();
     }
 
     public Process getProcess() {
         return process;
     }
+
+    // Command line of the current or last run
+    public List<String> getCommand() {
+        return command;
+    }
+
+    public File getServerDir() {
+        return serverDir;
+    }
 }
@@ -0,0 +1,57 @@
+package Main.Java.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+// Read-only view of a server's server.properties
+public class ServerProperties {
+
+    private final Properties props = new Properties();
+
+    private ServerProperties() {
+    }
+
+    public static ServerProperties load(File serverDir) throws IOException {
+        ServerProperties sp = new ServerProperties();
+        File file = new File(serverDir, "server.properties");
+        if (file.isFile()) {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.ISO_8859_1)) {
+                sp.props.load(reader);
+            }
+        }
+        return sp;
+    }
+
+    public String get(String key, String def) {
+        return props.getProperty(key, def);
+    }
+
+    public int getInt(String key, int def) {
+        try {
+            return Integer.parseInt(props.getProperty(key, "").trim());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    public boolean isRconEnabled() {
+        return Boolean.parseBoolean(get("enable-rcon", "false").trim())
+                && !get("rcon.password", "").isEmpty();
+    }
+
+    public int getRconPort() {
+        return getInt("rcon.port", 25575);
+    }
+
+    public String getRconPassword() {
+        return get("rcon.password", "");
+    }
+
+    public String getLevelName() {
+        return get("level-name", "world");
+    }
+}
@@ -0,0 +1,19 @@
+package Main.Java.server;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Control of a server whose process belongs to another dashboard process on this host (the
+// headless daemon). The instance forwards lifecycle calls and stdin commands here and mirrors
+// the state the other process reports through ServerInstance.onRemoteState.
+public interface ServerRemote {
+
+    CompletableFuture<Void> start();
+
+    CompletableFuture<Void> stop();
+
+    CompletableFuture<Void> restart();
+
+    // In order, as if typed on the server's stdin
+    CompletableFuture<Void> sendCommands(List<String> cmds);
+}
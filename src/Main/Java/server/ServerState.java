@@ -0,0 +1,17 @@
+package Main.Java.server;
+
+// Lifecycle of a server process:
+//   STOPPED -> STARTING -> RUNNING -> STOPPING -> STOPPED
+// STARTING and RUNNING go to CRASHED when the process exits without being asked to stop
+// (or is killed after a boot / stop timeout); CRASHED can be started again like STOPPED.
+public enum ServerState {
+    STOPPED,
+    STARTING,
+    RUNNING,
+    STOPPING,
+    CRASHED;
+
+    public boolean isActive() {
+        return this == STARTING || this == RUNNING || this == STOPPING;
+    }
+}
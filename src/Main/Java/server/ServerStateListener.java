@@ -0,0 +1,6 @@
+package Main.Java.server;
+
+// Called on the thread that caused the transition (process exit, scheduler or caller); must not block
+public interface ServerStateListener {
+    void onStateChanged(ServerState from, ServerState to);
+}
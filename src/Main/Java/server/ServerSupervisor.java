@@ -0,0 +1,170 @@
+package Main.Java.server;
+
+import Main.Java.console.LogEventMatcher;
+import Main.Java.console.LogWatcher;
+import Main.Java.monitor.MetricsRegistry;
+import Main.Java.monitor.MetricsServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Manages any number of ServerInstances on shared threads, so adding a server adds no platform threads
+public class ServerSupervisor {
+
+    private final List<ServerInstance> instances = new CopyOnWriteArrayList<>();
+    private final LogEventMatcher logEvents = LogEventMatcher.minecraft();
+    private final List<Runnable> sampleListeners = new CopyOnWriteArrayList<>();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "server-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+    private final long bootTimeoutMs = Long.getLong("server.bootTimeoutSeconds", 600) * 1000;
+    private final long stopTimeoutMs = Long.getLong("server.stopTimeoutSeconds", 90) * 1000;
+    private RconMultiplexer rconEngine;
+    private LogWatcher logWatcher;
+    private ScheduledFuture<?> sampler;
+    private MetricsServer metricsServer;
+    private final Set<ServerInstance> failingSamples = ConcurrentHashMap.newKeySet();
+    // Sampler thread only
+    private boolean listenerFailing;
+
+    // Returns the instance already registered for this folder, or a new one
+    public ServerInstance add(File serverDir) throws IOException {
+        return add(serverDir, null, ServerState.STOPPED, -1L);
+    }
+
+    // A server another process on this host runs (the daemon): controlled through remote, with
+    // the given state and pid until it reports changes
+    public synchronized ServerInstance add(File serverDir, ServerRemote remote, ServerState state, long pid) throws IOException {
+        File dir = serverDir.getCanonicalFile();
+        ServerInstance existing = find(dir);
+        if (existing != null) {
+            return existing;
+        }
+        // Servers are addressed by folder name (daemon requests, metrics labels)
+        ServerInstance sameName = find(dir.getName());
+        if (sameName != null) {
+            throw new IOException("a server named " + dir.getName() + " is already open from " + sameName.getServerDir());
+        }
+        ServerInstance instance = new ServerInstance(this, dir, logEvents,
+                new ServerProcess(dir, scheduler, bootTimeoutMs, stopTimeoutMs));
+        if (remote != null) {
+            instance.useRemote(remote, state, pid);
+        }
+        instances.add(instance);
+        // A server already running outside the dashboard shows up through its log
+        instance.attachLog();
+        if (sampler == null) {
+            sampler = scheduler.scheduleAtFixedRate(this::samplePass, 0, 1, TimeUnit.SECONDS);
+        }
+        return instance;
+    }
+
+    public synchronized void remove(ServerInstance instance) {
+        if (instance.isAlive()) {
+            throw new IllegalStateException(instance.getName() + " is still running");
+        }
+        instances.remove(instance);
+        failingSamples.remove(instance);
+        instance.close();
+        metrics.remove("server", instance.getName());
+    }
+
+    public List<ServerInstance> getInstances() {
+        return instances;
+    }
+
+    // Every instance registers its series here; the UI adds its own
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    // Starts the loopback /metrics endpoint once; port 0 picks a free port
+    public synchronized MetricsServer serveMetrics(int port) throws IOException {
+        if (metricsServer == null) {
+            metricsServer = new MetricsServer(metrics, port);
+        }
+        return metricsServer;
+    }
+
+    // Called on the sampler thread after every pass over all instances
+    public void addSampleListener(Runnable listener) {
+        sampleListeners.add(listener);
+    }
+
+    synchronized RconMultiplexer rconEngine() throws IOException {
+        if (rconEngine == null) {
+            rconEngine = new RconMultiplexer();
+        }
+        return rconEngine;
+    }
+
+    synchronized LogWatcher logWatcher() throws IOException {
+        if (logWatcher == null) {
+            logWatcher = new LogWatcher();
+            startVirtual("log-watcher", logWatcher::run);
+        }
+        return logWatcher;
+    }
+
+    public ServerInstance find(File serverDir) throws IOException {
+        File dir = serverDir.getCanonicalFile();
+        for (ServerInstance instance : instances) {
+            if (instance.getServerDir().equals(dir)) {
+                return instance;
+            }
+        }
+        return null;
+    }
+
+    public ServerInstance find(String name) {
+        for (ServerInstance instance : instances) {
+            if (instance.getName().equals(name)) {
+                return instance;
+            }
+        }
+        return null;
+    }
+
+    Thread startVirtual(String name, Runnable task) {
+        return Thread.ofVirtual().name(name).start(task);
+    }
+
+    // Failures must not cancel the periodic task. They go to the server's console, once until
+    // the next pass that works, so a misbehaving server does not print a line every second.
+    private void samplePass() {
+        for (ServerInstance instance : instances) {
+            try {
+                instance.sample();
+                failingSamples.remove(instance);
+            } catch (RuntimeException e) {
+                if (failingSamples.add(instance)) {
+                    instance.log("Sampling failed: " + e);
+                }
+            }
+        }
+        try {
+            for (Runnable listener : sampleListeners) {
+                listener.run();
+            }
+            listenerFailing = false;
+        } catch (RuntimeException e) {
+            if (!listenerFailing) {
+                for (ServerInstance instance : instances) {
+                    instance.log("Dashboard update failed: " + e);
+                }
+            }
+            listenerFailing = true;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package Main.Java.ui;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Player head images, decoded once at display size. Lookups go memory LRU -> disk cache (valid
+// for ttlMillis) -> AvatarSource. Concurrent requests for the same player share one in-flight
+// load, so each head is downloaded and decoded at most once per TTL. A failed load shows a
+// placeholder, and the next request after retryMillis tries again.
+public class AvatarCache {
+
+    public static final int SIZE = 20;
+    private static final long RETRY_MILLIS = 60_000;
+
+    private final AvatarSource source;
+    private final Path diskDir;
+    private final long ttlMillis;
+    private final long retryMillis;
+    private final Map<String, Image> memory;
+    // Placeholders of failed loads, until their retry time; guarded by memory
+    private final Map<String, Failure> failures;
+    private final Map<String, CompletableFuture<Image>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "avatar-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public AvatarCache(AvatarSource source, Path diskDir, long ttlMillis, int memoryEntries) {
+        this(source, diskDir, ttlMillis, memoryEntries, RETRY_MILLIS);
+    }
+
+    AvatarCache(AvatarSource source, Path diskDir, long ttlMillis, int memoryEntries, long retryMillis) {
+        this.source = source;
+        this.diskDir = diskDir;
+        this.ttlMillis = ttlMillis;
+        this.retryMillis = retryMillis;
+        this.memory = lru(memoryEntries);
+        this.failures = lru(memoryEntries);
+    }
+
+    private static <V> Map<String, V> lru(int entries) {
+        return new LinkedHashMap<>(entries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > entries;
+            }
+        };
+    }
+
+    public Image getIfPresent(String playerName) {
+        String key = key(playerName);
+        synchronized (memory) {
+            Image image = memory.get(key);
+            if (image != null) return image;
+            Failure failure = failures.get(key);
+            return failure != null && System.currentTimeMillis() < failure.retryAt ? failure.placeholder : null;
+        }
+    }
+
+    // Completes with the head image, or a placeholder if none could be loaded
+    public CompletableFuture<Image> get(String playerName) {
+        String key = key(playerName);
+        Image cached = getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<Image> f = inFlight.computeIfAbsent(key,
+                k -> CompletableFuture.supplyAsync(() -> load(k), executor));
+        // Not inside the mapping function: a future that is already done runs this at once, and
+        // removing from the map while computeIfAbsent holds its bin throws. remove(key, f) keeps
+        // a newer load of the same key in place.
+        f.whenComplete((img, e) -> inFlight.remove(key, f));
+        return f;
+    }
+
+    private Image load(String key) {
+        Image image = null;
+        Path file = isSafeName(key) ? diskDir.resolve(key + ".png") : null;
+        try {
+            if (file != null && Files.isRegularFile(file)
+                    && System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis() < ttlMillis) {
+                image = decode(Files.readAllBytes(file));
+            }
+            if (image == null) {
+                byte[] png = source.fetch(key, SIZE);
+                if (png != null) {
+                    image = decode(png);
+                    if (image != null && file != null) {
+                        store(file, png);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // offline or rate limited: fall back to a stale copy if there is one
+            if (file != null && Files.isRegularFile(file)) {
+                try {
+                    image = decode(Files.readAllBytes(file));
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        synchronized (memory) {
+            if (image != null) {
+                memory.put(key, image);
+                failures.remove(key);
+                return image;
+            }
+            Failure failure = failures.get(key);
+            Image shown = failure != null ? failure.placeholder : placeholder(key);
+            failures.put(key, new Failure(shown, System.currentTimeMillis() + retryMillis));
+            return shown;
+        }
+    }
+
+    private static Image decode(byte[] png) {
+        Image image = new Image(new ByteArrayInputStream(png), SIZE, SIZE, true, true);
+        return image.isError() ? null : image;
+    }
+
+    private void store(Path file, byte[] png) throws IOException {
+        Files.createDirectories(diskDir);
+        Path tmp = Files.createTempFile(diskDir, "avatar", ".tmp");
+        Files.write(tmp, png);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Solid square tinted from the name, so players stay distinguishable offline
+    private static Image placeholder(String key) {
+        WritableImage img = new WritableImage(SIZE, SIZE);
+        PixelWriter w = img.getPixelWriter();
+        Color color = Color.hsb(Math.floorMod(key.hashCode(), 360), 0.45, 0.65);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                w.setColor(x, y, color);
+            }
+        }
+        return img;
+    }
+
+    private static boolean isSafeName(String key) {
+        if (key.isEmpty() || key.length() > 32) return false;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_')) return false;
+        }
+        return true;
+    }
+
+    private static String key(String playerName) {
+        return playerName.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Failure {
+        final Image placeholder;
+        final long retryAt;
+
+        Failure(Image placeholder, long retryAt) {
+            this.placeholder = placeholder;
+            this.retryAt = retryAt;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package Main.Java.ui;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.regex.Pattern;
+
+// Where player head PNGs come from. Returning null means "no avatar"; the cache then
+// shows a placeholder.
+public interface AvatarSource {
+
+    // Java edition account names; anything else never reaches a URL
+    Pattern PLAYER_NAME = Pattern.compile("[A-Za-z0-9_]{1,16}");
+
+    byte[] fetch(String playerName, int size) throws IOException;
+
+    static AvatarSource minotar() {
+        return (playerName, size) -> {
+            if (!PLAYER_NAME.matcher(playerName).matches()) {
+                return null;
+            }
+            URL url = URI.create("https://minotar.net/avatar/" + playerName + "/" + size + ".png").toURL();
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setConnectTimeout(5000);
+            conn.setReadTimeout(5000);
+            try {
+                if (conn.getResponseCode() != 200) {
+                    return null;
+                }
+                try (InputStream in = conn.getInputStream()) {
+                    return in.readAllBytes();
+                }
+            } finally {
+                conn.disconnect();
+            }
+        };
+    }
+
+    // For tests and hosts without internet access
+    static AvatarSource offline() {
+        return (playerName, size) -> null;
+    }
+}
@@ -1,6 +1,224 @@
 package Main.Java.ui;
 
-public class ConsolePanel {
+import Main.Java.console.LineRing;
+import javafx.geometry.Orientation;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
 
-    //hello
+import java.nio.charset.StandardCharsets;
+
+// Console view that only draws the rows currently on screen. Lines are read straight out of a
+// LineRing, so scrolling and appending cost the same with 100 lines or a million.
+public final class ConsolePanel extends Region {
+
+    private static final Color BACKGROUND = Color.web("#020617");
+    private static final Color TEXT = Color.web("#e5e7eb");
+    private static final Color WARN = Color.web("#facc15");
+    private static final Color ERROR = Color.web("#f87171");
+    private static final byte[] WARN_TAG = "/WARN]".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ERROR_TAG = "/ERROR]".getBytes(StandardCharsets.US_ASCII);
+    private static final double PADDING = 4;
+
+    private final Canvas canvas = new Canvas();
+    private final ScrollBar scrollBar = new ScrollBar();
+    private final Font font = Font.font("Monospaced", 12);
+    private final double lineHeight;
+    private final byte[] scratch = new byte[8192];
+
+    private LineRing source;
+    private long topLine = 0;
+    private long paintedNextLine = -1;
+    private long paintedFirstLine = -1;
+    private boolean followTail = true;
+    private boolean updatingScrollBar = false;
+
+    public ConsolePanel() {
+        getStyleClass().add("console-view");
+        Text probe = new Text("Xg");
+        probe.setFont(font);
+        lineHeight = Math.ceil(probe.getLayoutBounds().getHeight());
+
+        scrollBar.setOrientation(Orientation.VERTICAL);
+        scrollBar.setMin(0);
+        scrollBar.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (updatingScrollBar || source == null) return;
+            topLine = source.firstLine() + Math.round(newVal.doubleValue());
+            followTail = newVal.doubleValue() >= scrollBar.getMax();
+            paint();
+        });
+
+        setOnScroll(event -> {
+            if (event.getDeltaY() == 0) return;
+            scrollBy(event.getDeltaY() > 0 ? -3 : 3);
+            event.consume();
+        });
+
+        MenuItem copyVisible = new MenuItem("Copy visible lines");
+        copyVisible.setOnAction(e -> copyVisibleLines());
+        ContextMenu menu = new ContextMenu(copyVisible);
+        setOnContextMenuRequested(e -> menu.show(this, e.getScreenX(), e.getScreenY()));
+
+        getChildren().addAll(canvas, scrollBar);
+    }
+
+    public void setSource(LineRing source) {
+        this.source = source;
+        followTail = true;
+        paintedNextLine = -1;
+        refresh();
+    }
+
+    public LineRing getSource() {
+        return source;
+    }
+
+    // Called after new lines were added to the source; repaints only if something changed
+    public void refresh() {
+        if (source == null) return;
+        if (source.nextLine() == paintedNextLine && source.firstLine() == paintedFirstLine) return;
+        paint();
+    }
+
+    public void scrollToEnd() {
+        followTail = true;
+        paint();
+    }
+
+    public void scrollBy(int lines) {
+        if (source == null) return;
+        topLine += lines;
+        followTail = false;
+        clampTop();
+        if (topLine >= maxTop()) {
+            followTail = true;
+        }
+        paint();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double sbWidth = scrollBar.prefWidth(-1);
+        double w = getWidth() - snappedLeftInset() - snappedRightInset();
+        double h = getHeight() - snappedTopInset() - snappedBottomInset();
+        canvas.setLayoutX(snappedLeftInset());
+        canvas.setLayoutY(snappedTopInset());
+        canvas.setWidth(Math.max(0, w - sbWidth));
+        canvas.setHeight(Math.max(0, h));
+        scrollBar.resizeRelocate(snappedLeftInset() + w - sbWidth, snappedTopInset(), sbWidth, h);
+        paint();
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return 360;
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return lineHeight * 18 + PADDING * 2;
+    }
+
+    private int visibleRows() {
+        return Math.max(1, (int) ((canvas.getHeight() - PADDING * 2) / lineHeight));
+    }
+
+    private long maxTop() {
+        return Math.max(source.firstLine(), source.nextLine() - visibleRows());
+    }
+
+    private void clampTop() {
+        topLine = Math.max(source.firstLine(), Math.min(topLine, maxTop()));
+    }
+
+    private void paint() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFill(BACKGROUND);
+        gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (source == null) return;
+
+        int rows = visibleRows();
+        if (followTail) {
+            topLine = maxTop();
+        } else {
+            clampTop();
+        }
+        updateScrollBar(rows);
+
+        gc.setFont(font);
+        gc.setTextBaseline(VPos.TOP);
+        double y = PADDING;
+        for (int i = 0; i < rows; i++) {
+            long lineNo = topLine + i;
+            if (!source.contains(lineNo)) break;
+            int len = source.copyBytes(lineNo, scratch);
+            if (len < source.byteLength(lineNo)) {
+                len = characterBoundary(scratch, len);
+            }
+            if (indexOf(scratch, len, ERROR_TAG) >= 0) {
+                gc.setFill(ERROR);
+            } else if (indexOf(scratch, len, WARN_TAG) >= 0) {
+                gc.setFill(WARN);
+            } else {
+                gc.setFill(TEXT);
+            }
+            gc.fillText(new String(scratch, 0, len, StandardCharsets.UTF_8), PADDING, y);
+            y += lineHeight;
+        }
+        paintedNextLine = source.nextLine();
+        paintedFirstLine = source.firstLine();
+    }
+
+    private void updateScrollBar(int rows) {
+        updatingScrollBar = true;
+        double max = Math.max(0, source.size() - rows);
+        scrollBar.setMax(max);
+        scrollBar.setVisibleAmount(Math.min(rows, Math.max(1, source.size())));
+        scrollBar.setValue(Math.min(max, topLine - source.firstLine()));
+        updatingScrollBar = false;
+    }
+
+    private void copyVisibleLines() {
+        if (source == null) return;
+        StringBuilder sb = new StringBuilder();
+        int rows = visibleRows();
+        for (int i = 0; i < rows && source.contains(topLine + i); i++) {
+            sb.append(source.line(topLine + i)).append('\n');
+        }
+        ClipboardContent content = new ClipboardContent();
+        content.putString(sb.toString());
+        Clipboard.getSystemClipboard().setContent(content);
+    }
+
+    // Length of b[0, len) without a multi-byte character cut off at its end
+    private static int characterBoundary(byte[] b, int len) {
+        int lead = len - 1;
+        while (lead > 0 && lead > len - 4 && (b[lead] & 0xC0) == 0x80) {
+            lead--;
+        }
+        if (lead < 0) return len;
+        int first = b[lead] & 0xFF;
+        int size = first < 0x80 ? 1 : first >= 0xF0 ? 4 : first >= 0xE0 ? 3 : first >= 0xC0 ? 2 : 1;
+        return lead + size > len ? lead : len;
+    }
+
+    private static int indexOf(byte[] haystack, int len, byte[] needle) {
+        outer:
+        for (int i = 0; i <= len - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
 }
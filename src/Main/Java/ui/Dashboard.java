@@ -1,15 +1,17 @@
 package Main.Java.ui;
 
-import Main.Java.server.ServerProcess;
+import Main.Java.server.ServerInstance;
+import Main.Java.server.ServerSupervisor;
 
 import java.io.File;
 
 public class Dashboard {
-    private ServerProcess server;
+    private final ServerSupervisor supervisor = new ServerSupervisor();
+    private ServerInstance server;
 
     public void OnStartClicked(File serverFolder){
-        server = new ServerProcess(serverFolder);
         try {
+            server = supervisor.add(serverFolder);
             server.start();
         }
         catch (Exception e){
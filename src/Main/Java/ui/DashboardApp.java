@@ -0,0 +1,35 @@
+package Main.Java.ui;
+
+import javafx.application.Application;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+// The dashboard window; Main starts it unless a headless mode was asked for
+public class DashboardApp extends Application {
+
+    @Override
+    public void start(Stage stage) throws Exception {
+        FXMLLoader loader = new FXMLLoader(getClass()
+                .getResource("/Main/resources/layout.fxml"));
+
+        //hello
+
+        Parent root = loader.load(); // This loads the FXML
+
+        Scene scene = new Scene(root);
+
+        // Load CSS styling
+        scene.getStylesheets().add(getClass()
+                .getResource("/Main/resources/style.css").toExternalForm());
+
+        stage.setTitle("Minecraft Server Dashboard");
+        stage.setScene(scene);
+        stage.show();
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
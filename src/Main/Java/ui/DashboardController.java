@@ -1,9 +1,30 @@
 package Main.Java.ui;
 
+import Main.Java.backup.BackupEngine;
+import Main.Java.console.ConsoleIndex;
+import Main.Java.console.ConsolePipeline;
+import Main.Java.console.LineRing;
+import Main.Java.console.LogEventType;
+import Main.Java.daemon.DaemonClient;
+import Main.Java.monitor.GcLogMonitor;
+import Main.Java.monitor.MetricsRegistry;
+import Main.Java.monitor.MetricsServer;
+import Main.Java.monitor.ProcessSampler;
+import Main.Java.monitor.StackProfiler;
+import Main.Java.monitor.ThreadSampler;
+import Main.Java.monitor.TickMonitor;
+import Main.Java.server.LaunchConfig;
+import Main.Java.server.LaunchProfile;
 import Main.Java.server.RamConfigEditor;
-import Main.Java.server.ServerProcess;
+import Main.Java.server.ServerInstance;
+import Main.Java.server.ServerState;
+import Main.Java.server.ServerStateListener;
+import Main.Java.server.ServerSupervisor;
+import Main.Java.utils.AppData;
+import javafx.animation.AnimationTimer;
 import javafx.animation.FadeTransition;
 import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.CheckBoxTableCell;
@@ -18,18 +39,36 @@ import javafx.util.Duration;
 
 import java.io.*;
 import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public class DashboardController {
 
     @FXML
-    private TextArea consoleOutput;
+    private ConsolePanel consoleOutput;
 
     @FXML
     private TextField serverPathField;
 
+    @FXML
+    private ComboBox<ServerInstance> serverSelector;
+
     @FXML
     private TextField commandField;
 
+    @FXML
+    private TextField consoleSearchField;
+
+    @FXML
+    private Label consoleSearchStatus;
+
+    @FXML
+    private ListView<String> consoleSearchResults;
+
     @FXML
     private Button startBtn;
 
@@ -45,12 +84,84 @@ public class DashboardController {
     @FXML
     private ProgressBar ramUsageBar;
 
+    @FXML
+    private Label processStatsLabel;
+
+    @FXML
+    private MetricChart ramChart;
+
+    @FXML
+    private MetricChart cpuChart;
+
+    @FXML
+    private Label threadStatsLabel;
+
+    @FXML
+    private Label tpsLabel;
+
+    @FXML
+    private ProgressBar tpsBar;
+
+    @FXML
+    private Label tickStatsLabel;
+
+    @FXML
+    private MetricChart tpsChart;
+
+    @FXML
+    private Button profileBtn;
+
+    @FXML
+    private Label profileLabel;
+
+    @FXML
+    private Button analyzeLogsBtn;
+
+    @FXML
+    private Button backupBtn;
+
+    @FXML
+    private Button verifyBackupBtn;
+
+    @FXML
+    private Button restoreBackupBtn;
+
+    @FXML
+    private Label backupLabel;
+
+    @FXML
+    private Button scanWorldBtn;
+
+    @FXML
+    private Label worldLabel;
+
     @FXML
     private TextField minRamField;
 
     @FXML
     private TextField maxRamField;
 
+    @FXML
+    private ComboBox<LaunchProfile> launchProfileBox;
+
+    @FXML
+    private CheckBox largePagesBox;
+
+    @FXML
+    private CheckBox preTouchBox;
+
+    @FXML
+    private Label launchStatsLabel;
+
+    @FXML
+    private Label gcStatsLabel;
+
+    @FXML
+    private Button gcAdviceBtn;
+
+    // Last heap suggestion shown next to the launch settings
+    private volatile GcLogMonitor.Advice heapAdvice;
+
     // Player list table in center
     @FXML
     private TableView<PlayerViewModel> playerTable;
@@ -73,14 +184,21 @@ public class DashboardController {
     @FXML
     private StackPane splashOverlay;
 
-    private ServerProcess serverProcess;
-    private Thread consoleReaderThread;
-    private Thread ramMonitorThread;
-    private volatile boolean serverStarted = false;
-
-    private volatile long serverPid = -1L;
+    // Every server managed from this dashboard; the view shows the selected one
+    private final ServerSupervisor supervisor = new ServerSupervisor();
+    private volatile ServerInstance selected;
+    private final Map<ServerInstance, PlayerRoster> rosters = new HashMap<>();
 
-    private volatile double configuredMaxRamGb = 0.0;
+    // Dashboard messages while no server is selected
+    private final ConsolePipeline dashboardPipeline = new ConsolePipeline(1_000);
+    private final LineRing dashboardLines = new LineRing(1_000, 256 * 1024);
+    private AnimationTimer consoleDrainTimer;
+    // FX thread health for the metrics endpoint: gaps between pulses and how long a queued task waits
+    private MetricsRegistry.Histogram pulseInterval;
+    private MetricsRegistry.Histogram runLaterDelay;
+    private long lastPulse;
+    private final AvatarCache avatars = new AvatarCache(AvatarSource.minotar(),
+            AppData.dir().resolve("avatars"), 24 * 60 * 60_000L, 256);
 
     @FXML
     private void initialize() {
@@ -98,21 +216,91 @@ public class DashboardController {
 
         // Send command on Enter key
         commandField.setOnAction(event -> onSendCommand());
+        consoleSearchField.setOnAction(event -> onSearchConsole());
+        serverSelector.setOnAction(event -> {
+            ServerInstance instance = serverSelector.getValue();
+            if (instance != null && instance != selected) {
+                select(instance);
+            }
+        });
+
+        launchProfileBox.getItems().setAll(LaunchProfile.values());
 
         // Configure player table
         setupPlayerTable();
 
-        // RAM monitor will show 0 GB until serverStarted is true
-        startRamMonitor();
+        // RAM monitor will show 0 GB until the selected server has booted
+        supervisor.addSampleListener(this::onSample);
+
+        consoleOutput.setSource(dashboardLines);
+        consoleDrainTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (lastPulse != 0) {
+                    pulseInterval.observeNanos(now - lastPulse);
+                }
+                lastPulse = now;
+                onPulse();
+            }
+        };
+        startMetrics();
+        consoleDrainTimer.start();
+        attachDaemon();
+    }
+
+    // Servers run by a daemon on this host ("daemon" mode) show up here and are started, stopped
+    // and sent commands through it; their console and players come from latest.log as usual
+    private void attachDaemon() {
+        DaemonClient daemon = new DaemonClient(DaemonClient.defaultSocket());
+        CompletableFuture.runAsync(() -> {
+            try {
+                daemon.attach(supervisor, instance -> Platform.runLater(() -> {
+                    appendToConsole("Attached to daemon server " + instance.getName() + "\n");
+                    if (selected == null) {
+                        select(instance);
+                    } else if (!serverSelector.getItems().contains(instance)) {
+                        serverSelector.getItems().add(instance);
+                    }
+                }));
+            } catch (IOException e) {
+                // No daemon running: this window manages its servers itself
+            }
+        });
+    }
+
+    // Prometheus endpoint on 127.0.0.1:metrics.port (9225 unless set; 0 or less turns it off)
+    private void startMetrics() {
+        MetricsRegistry metrics = supervisor.getMetrics();
+        pulseInterval = metrics.histogram("mcdash_fx_pulse_interval_seconds",
+                "Time between UI pulses; above 1/60 s the FX thread was busy", MetricsRegistry.LATENCY_BUCKETS);
+        runLaterDelay = metrics.histogram("mcdash_fx_runlater_delay_seconds",
+                "Time a sample update waited in the FX event queue", MetricsRegistry.LATENCY_BUCKETS);
+        metrics.gauge("mcdash_fx_queue_depth", "Console lines of all servers waiting for the FX thread", () -> {
+            long pending = dashboardPipeline.pending();
+            for (ServerInstance instance : supervisor.getInstances()) {
+                pending += instance.getConsolePipeline().pending();
+            }
+            return pending;
+        });
+        int port = Integer.getInteger("metrics.port", 9225);
+        if (port <= 0) return;
+        try {
+            MetricsServer server = supervisor.serveMetrics(port);
+            appendToConsole("Metrics on http://127.0.0.1:" + server.getPort() + "/metrics\n");
+        } catch (IOException e) {
+            appendToConsole("Metrics endpoint not started: " + e.getMessage() + "\n");
+        }
     }
 
     private void setupPlayerTable() {
+
         // Name column with head image + name label
         playerNameColumn.setCellValueFactory(param -> new javafx.beans.property.SimpleObjectProperty<>(param.getValue()));
         playerNameColumn.setCellFactory(col -> new TableCell<PlayerViewModel, PlayerViewModel>() {
             private final ImageView imageView = new ImageView();
             private final Label nameLabel = new Label();
             private final HBox container = new HBox(6, imageView, nameLabel);
+            private final Tooltip stats = new Tooltip();
 
             {
                 imageView.setFitWidth(20);
@@ -120,19 +308,33 @@ public class DashboardController {
                 imageView.setPreserveRatio(true);
                 nameLabel.getStyleClass().add("player-name-label");
                 nameLabel.getStyleClass().add("minecraft-font");
+                // Session stats are computed when the tooltip opens rather than on every cell update
+                stats.setOnShowing(e -> {
+                    PlayerViewModel p = getItem();
+                    if (p == null) return;
+                    long minutes = (System.currentTimeMillis() - p.getSessionStart()) / 60_000;
+                    stats.setText("Online " + minutes + " min\n"
+                            + p.getDeaths() + " deaths, " + p.getChatMessages() + " chat messages, "
+                            + p.getAdvancements() + " advancements");
+                });
+                Tooltip.install(container, stats);
             }
 
             @Override
             protected void updateItem(PlayerViewModel item, boolean empty) {
                 super.updateItem(item, empty);
+                imageView.imageProperty().unbind();
                 if (empty || item == null) {
+                    imageView.setImage(null);
                     setGraphic(null);
                 } else {
                     nameLabel.setText(item.getName());
-                    // Load player head from Minotar API based on name
-                    String url = "https://minotar.net/avatar/" + item.getName() + "/40.png";
-                    Image head = new Image(url, true);
-                    imageView.setImage(head);
+                    // Head comes from the avatar cache once per player, not per cell update
+                    imageView.imageProperty().bind(item.skinHeadProperty());
+                    if (item.getSkinHead() == null) {
+                        avatars.get(item.getName()).thenAccept(head ->
+                                Platform.runLater(() -> item.skinHeadProperty().set(head)));
+                    }
                     setGraphic(container);
                 }
             }
@@ -207,81 +409,166 @@ public class DashboardController {
         chooser.setTitle("Select Minecraft server folder");
         File folder = chooser.showDialog(window);
         if (folder != null) {
-            serverPathField.setText(folder.getAbsolutePath());
+            try {
+                select(supervisor.add(folder));
+            } catch (IOException e) {
+                appendToConsole("Cannot open server folder: " + e.getMessage() + "\n");
+            }
+        }
+    }
+
+    // Shows one server's console, players, charts and buttons
+    private void select(ServerInstance instance) {
+        selected = instance;
+        if (!serverSelector.getItems().contains(instance)) {
+            serverSelector.getItems().add(instance);
+        }
+        serverSelector.setValue(instance);
+        serverPathField.setText(instance.getServerDir().getAbsolutePath());
+        consoleOutput.setSource(instance.getConsoleLines());
+        playerTable.setItems(rosterFor(instance).getItems());
+        if (ramChart != null) {
+            ramChart.setSeries(instance.getRamHistory(), "RSS", v -> String.format("%.2f GB", v));
+        }
+        if (cpuChart != null) {
+            cpuChart.setSeries(instance.getCpuHistory(), "CPU", v -> String.format("%.0f%%", v));
+        }
+        if (tpsChart != null) {
+            tpsChart.setSeries(instance.getTickMonitor().getTpsHistory(), "TPS", v -> String.format("%.1f", v));
+        }
+        showLaunchConfig(instance);
+        showBackupStatus(instance);
+        if (worldLabel != null) worldLabel.setText("-");
+        updateButtons();
+    }
+
+    // Newest backup of the selected server
+    private void showBackupStatus(ServerInstance instance) {
+        if (backupLabel == null) return;
+        try {
+            List<BackupEngine.Snapshot> snapshots = instance.listBackups();
+            backupLabel.setText(snapshots.isEmpty() ? "No backups yet"
+                    : snapshots.size() + " backups, latest " + snapshots.get(snapshots.size() - 1));
+        } catch (IOException e) {
+            backupLabel.setText("Backups unreadable: " + e.getMessage());
+        }
+    }
+
+    // Launch settings of the selected server, imported from its start script the first time
+    private void showLaunchConfig(ServerInstance instance) {
+        try {
+            LaunchConfig config = LaunchConfig.load(instance.getServerDir());
+            minRamField.setText(config.getMinHeap());
+            maxRamField.setText(config.getMaxHeap());
+            launchProfileBox.setValue(config.getProfile());
+            largePagesBox.setSelected(config.isLargePages());
+            preTouchBox.setSelected(config.isAlwaysPreTouch());
+            instance.setConfiguredMaxRamGb(LaunchConfig.heapMb(config.getMaxHeap()) / 1024.0);
+            showLaunchStats(instance, config);
+        } catch (IOException e) {
+            appendToConsole("Failed to read launch settings: " + e.getMessage() + "\n");
         }
     }
 
+    private void showLaunchStats(ServerInstance instance, LaunchConfig config) {
+        String summary = instance.launchSummary(config);
+        launchStatsLabel.setText(summary != null ? summary : "No runs with these settings yet");
+    }
+
+    private PlayerRoster rosterFor(ServerInstance instance) {
+        return rosters.computeIfAbsent(instance, i -> {
+            PlayerRoster roster = new PlayerRoster(FXCollections.observableArrayList());
+            i.setEventListener((type, line, fieldStart, fieldEnd) -> onLogEvent(roster, type, line, fieldStart, fieldEnd));
+            // Players who joined before this window saw the console (a daemon's server)
+            for (String player : i.getOnlinePlayers()) {
+                roster.join(player);
+            }
+            i.addStateListener((from, to) -> {
+                if (!to.isActive()) {
+                    roster.clear();
+                }
+                Platform.runLater(() -> {
+                    updateButtons();
+                    if (!to.isActive() && i == selected) {
+                        showLaunchConfig(i);
+                    }
+                });
+            });
+            return roster;
+        });
+    }
+
+    private void updateButtons() {
+        ServerState state = selected != null ? selected.getState() : ServerState.STOPPED;
+        startBtn.setDisable(state.isActive());
+        stopBtn.setDisable(state != ServerState.STARTING && state != ServerState.RUNNING);
+    }
+
     @FXML
     private void onStartServer() {
-        if (serverProcess != null && serverProcess.isAlive()) {
-            appendToConsole("Server is already running.\n");
+        ServerInstance instance = selected;
+        if (instance == null) {
+            appendToConsole("Please choose a server folder first.\n");
             return;
         }
-        String path = serverPathField.getText();
-        if (path == null || path.isBlank()) {
-            appendToConsole("Please choose a server folder first.\n");
+        if (instance.isAlive()) {
+            appendToConsole("Server is already running.\n");
             return;
         }
-        File dir = new File(path);
-        if (!dir.isDirectory()) {
+        if (!instance.getServerDir().isDirectory()) {
             appendToConsole("Selected path is not a folder.\n");
             return;
         }
-        serverProcess = new ServerProcess(dir);
+        rosterFor(instance).clear();
+        Runnable hideAnimation = showStartupAnimation(instance);
         try {
-            showStartupAnimation();
-            appendToConsole("Starting server in: " + dir.getAbsolutePath() + "\n");
-            serverProcess.start();
-            // capture PID if available
-            Process p = serverProcess.getProcess();
-            try {
-                serverPid = p.pid();
-            } catch (Throwable ignored) {
-                serverPid = -1L;
-            }
-            startBtn.setDisable(true);
-            stopBtn.setDisable(false);
-            startConsoleReader();
+            instance.start();
         } catch (Exception e) {
+            hideAnimation.run();
             appendToConsole("Failed to start server: " + e.getMessage() + "\n");
             e.printStackTrace();
-            serverProcess = null;
         }
     }
 
     @FXML
     private void onStopServer() {
-        if (serverProcess == null || !serverProcess.isAlive()) {
+        ServerInstance instance = selected;
+        if (instance == null || !instance.isAlive()) {
             appendToConsole("Server is not running.\n");
             return;
         }
         try {
-            serverProcess.sendCommand("stop");
+            instance.stop();
             appendToConsole("Sent stop command to server.\n");
         } catch (Exception e) {
             appendToConsole("Failed to send stop command: " + e.getMessage() + "\n");
         }
-        startBtn.setDisable(false);
-        stopBtn.setDisable(true);
-        serverStarted = false;
     }
 
     @FXML
     private void onRestartServer() {
+        ServerInstance instance = selected;
+        if (instance == null) {
+            appendToConsole("Please choose a server folder first.\n");
+            return;
+        }
         appendToConsole("Restarting server...\n");
-        onStopServer();
-        // Simple delay to let stop command process
-        new Thread(() -> {
-            try {
-                Thread.sleep(4000);
-            } catch (InterruptedException ignored) {}
-            Platform.runLater(this::onStartServer);
-        }).start();
+        try {
+            // Starts again the moment the old process has exited, however long shutdown takes
+            instance.restart().whenComplete((v, error) -> {
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    instance.log("Failed to restart server: " + cause.getMessage());
+                }
+            });
+        } catch (Exception e) {
+            appendToConsole("Failed to restart server: " + e.getMessage() + "\n");
+        }
     }
 
     @FXML
     private void onSendCommand() {
-        if (serverProcess == null || !serverProcess.isAlive()) {
+        if (selected == null || !selected.isAlive()) {
             appendToConsole("Server is not running.\n");
             return;
         }
@@ -289,40 +576,44 @@ public class DashboardController {
         if (cmd == null || cmd.isBlank()) {
             return;
         }
-        try {
-            serverProcess.sendCommand(cmd);
-            appendToConsole("> " + cmd + "\n");
-            commandField.clear();
-        } catch (Exception e) {
-            appendToConsole("Failed to send command: " + e.getMessage() + "\n");
-        }
+        sendServerCommand(cmd);
+        commandField.clear();
     }
 
     @FXML
     private void onApplyRamSettings() {
-        String path = serverPathField.getText();
-        if (path == null || path.isBlank()) {
+        ServerInstance instance = selected;
+        if (instance == null) {
             appendToConsole("Please choose a server folder first.\n");
             return;
         }
-        File dir = new File(path);
-        File runBat = new File(dir, "run.bat");
-        if (!runBat.exists()) {
-            appendToConsole("Could not find run.bat in the selected folder.\n");
-            return;
-        }
         String min = minRamField.getText();
         String max = maxRamField.getText();
         if (min == null || min.isBlank() || max == null || max.isBlank()) {
             appendToConsole("Please enter both min and max RAM values (e.g. 1G, 4G).\n");
             return;
         }
+        min = min.trim();
+        max = max.trim();
+        if (LaunchConfig.heapMb(min) <= 0 || LaunchConfig.heapMb(max) <= 0) {
+            appendToConsole("RAM values must look like 1024M or 4G.\n");
+            return;
+        }
         try {
-            RamConfigEditor.UpdateRam(runBat, max, min);
-            configuredMaxRamGb = parseRamToGb(max);
-            appendToConsole("Updated RAM settings in run.bat to Xms=" + min + ", Xmx=" + max + "\n");
+            LaunchConfig config = LaunchConfig.load(instance.getServerDir());
+            if (launchProfileBox.getValue() != null) {
+                config.setProfile(launchProfileBox.getValue());
+            }
+            config.setLargePages(largePagesBox.isSelected());
+            config.setAlwaysPreTouch(preTouchBox.isSelected());
+            RamConfigEditor.UpdateRam(config, max, min);
+            instance.setConfiguredMaxRamGb(parseRamToGb(max));
+            appendToConsole("Updated launch settings to Xms=" + min + ", Xmx=" + max + ", "
+                    + config.getProfile().getDisplayName()
+                    + (instance.isAlive() ? " (applies on next start)" : "") + "\n");
+            showLaunchStats(instance, config);
         } catch (IOException e) {
-            appendToConsole("Failed to update RAM settings: " + e.getMessage() + "\n");
+            appendToConsole("Failed to update launch settings: " + e.getMessage() + "\n");
         }
     }
 
@@ -341,141 +632,367 @@ public class DashboardController {
         }
     }
 
-    private void startConsoleReader() {
-        try {
-            InputStream stream = serverProcess.getConsoleStream();
-            if (stream == null) {
-                appendToConsole("No console stream available.\n");
+    private void onSearchConsole() {
+        String query = consoleSearchField.getText();
+        ConsoleIndex index = selected != null ? selected.getConsoleIndex() : null;
+        boolean show = query != null && !query.isBlank();
+        consoleSearchStatus.setVisible(show);
+        consoleSearchStatus.setManaged(show);
+        consoleSearchResults.setVisible(show);
+        consoleSearchResults.setManaged(show);
+        if (!show) {
+            return;
+        }
+        if (index == null) {
+            consoleSearchStatus.setText("Console history is available once a server has been started.");
+            consoleSearchResults.getItems().clear();
+            return;
+        }
+        consoleSearchStatus.setText("Searching...");
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return index.search(query, 500);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((result, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                consoleSearchStatus.setText("Search failed: " + cause.getMessage());
+                consoleSearchResults.getItems().clear();
                 return;
             }
-            BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-            consoleReaderThread = new Thread(() -> {
-                String line;
-                boolean bootSection = true;
-                try {
-                    while ((line = reader.readLine()) != null) {
-                        String finalLine = line;
-                        // Player join/leave parsing
-                        handlePlayerEvents(finalLine);
-                        // Filter boot noise until serverStarted is set
-                        if (bootSection) {
-                            String lower = finalLine.toLowerCase();
-                            if (lower.contains("done") ||
-                                lower.contains("ready") ||
-                                lower.contains("server started")) {
-                                serverStarted = true;
-                                bootSection = false;
-                                Platform.runLater(() -> appendToConsole(finalLine + "\n"));
-                            }
-                        } else {
-                            Platform.runLater(() -> appendToConsole(finalLine + "\n"));
-                        }
-                    }
-                } catch (IOException e) {
-                    Platform.runLater(() -> appendToConsole("Console reader stopped: " + e.getMessage() + "\n"));
-                }
-            }, "server-console-reader");
-            consoleReaderThread.setDaemon(true);
-            consoleReaderThread.start();
-        } catch (Exception e) {
-            appendToConsole("Failed to start console reader: " + e.getMessage() + "\n");
+            consoleSearchStatus.setText((result.truncated ? "Newest " : "") + result.lines.length
+                    + " matches in " + (result.micros / 1000.0) + " ms");
+            consoleSearchResults.getItems().setAll(Arrays.asList(result.lines));
+        }));
+    }
+
+    // Runs on the server's console reader thread; only builds a String for the events it acts on
+    private void onLogEvent(PlayerRoster roster, LogEventType type, CharSequence line, int fieldStart, int fieldEnd) {
+        switch (type) {
+            case JOIN:
+                roster.join(line.subSequence(fieldStart, fieldEnd).toString());
+                break;
+            case LEAVE:
+                roster.leave(line.subSequence(fieldStart, fieldEnd).toString());
+                break;
+            case DEATH:
+            case CHAT:
+            case ADVANCEMENT:
+                roster.record(type, line.subSequence(fieldStart, fieldEnd).toString());
+                break;
+            default:
+                break;
         }
     }
 
-    private void handlePlayerEvents(String logLine) {
-        // Basic patterns; adjust as needed for your log format
-        // Example: "[19:32:07] [Server thread/INFO]: PlayerName joined the game"
-        String lower = logLine.toLowerCase();
-        if (lower.contains(" joined the game")) {
-            String name = extractPlayerName(logLine, "joined the game");
-            if (name != null && !name.isBlank()) {
-                Platform.runLater(() -> addOrUpdatePlayer(name));
+    // Supervisor sampler thread, after each pass: show the selected server's numbers
+    private void onSample() {
+        ServerInstance instance = selected;
+        boolean supported = ProcessSampler.isSupported();
+        boolean sampled = instance != null && instance.isSampled();
+        ProcessSampler processSampler = sampled ? instance.getProcessSampler() : null;
+
+        // RSS of the whole server process tree, scaled against the configured -Xmx
+        double usedGb = sampled ? processSampler.getRssBytes() / (1024.0 * 1024.0 * 1024.0) : 0.0;
+        double totalGb = sampled ? instance.getConfiguredMaxRamGb() : 0.0;
+        double progress = (sampled && totalGb > 0) ? Math.min(1.0, usedGb / totalGb) : 0.0;
+        String stats;
+        if (!supported) {
+            stats = "Process stats need Linux /proc";
+        } else if (sampled) {
+            stats = String.format("CPU %.0f%% \u00b7 %d threads \u00b7 swap %d MB \u00b7 sample %d \u00b5s",
+                    processSampler.getCpuPercent(),
+                    processSampler.getThreads(),
+                    processSampler.getSwapBytes() / (1024 * 1024),
+                    processSampler.getAverageSampleNanos() / 1000);
+        } else {
+            stats = "-";
+        }
+
+        String threadStats = sampled ? threadStats(instance.getThreadSampler()) : "-";
+        GcLogMonitor.Advice advice = instance != null ? instance.heapAdvice() : null;
+        String gcStats = instance != null ? gcStats(instance.getGcMonitor(), advice) : "-";
+
+        // Tick health: last reported TPS, MSPT percentiles over 10 minutes, lag warnings over an hour
+        TickMonitor ticks = instance != null ? instance.getTickMonitor() : null;
+        boolean running = instance != null && instance.getState() == ServerState.RUNNING;
+        double tps = running ? ticks.getTps() : Double.NaN;
+        String tickStats = running ? tickStats(ticks) : "-";
+        boolean profiling = instance != null && instance.isProfiling();
+        StackProfiler.Incident incident = instance != null ? instance.getLastIncident() : null;
+        String profile = profiling ? "Capturing thread dumps..." : incident == null ? "-"
+                : String.format("Last profile %tT: %s", incident.getStartedAt(),
+                        incident.topSuspect() != null ? incident.topSuspect() : "main thread not seen");
+
+        long posted = System.nanoTime();
+        Platform.runLater(() -> {
+            runLaterDelay.observeNanos(System.nanoTime() - posted);
+            if (threadStatsLabel != null) {
+                threadStatsLabel.setText(threadStats);
+            }
+            heapAdvice = advice;
+            if (gcStatsLabel != null) {
+                gcStatsLabel.setText(gcStats);
+            }
+            if (gcAdviceBtn != null) {
+                gcAdviceBtn.setDisable(advice == null || !advice.isChange());
+            }
+            if (tpsLabel != null) {
+                tpsLabel.setText(Double.isNaN(tps) ? "-" : String.format("%.1f", tps));
+            }
+            if (tpsBar != null) {
+                tpsBar.setProgress(Double.isNaN(tps) ? 0.0 : Math.min(1.0, tps / TickMonitor.TARGET_TPS));
+                tpsBar.getStyleClass().removeAll("tps-warn", "tps-bad");
+                if (tps < 15.0) {
+                    tpsBar.getStyleClass().add("tps-bad");
+                } else if (tps < 19.0) {
+                    tpsBar.getStyleClass().add("tps-warn");
+                }
             }
-        } else if (lower.contains(" left the game")) {
-            String name = extractPlayerName(logLine, "left the game");
-            if (name != null && !name.isBlank()) {
-                Platform.runLater(() -> removePlayer(name));
+            if (tickStatsLabel != null) {
+                tickStatsLabel.setText(tickStats);
             }
+            if (tpsChart != null) {
+                tpsChart.refresh();
+            }
+            if (profileBtn != null) {
+                profileBtn.setDisable(!running || profiling);
+            }
+            if (profileLabel != null) {
+                profileLabel.setText(profile);
+            }
+            if (ramUsedLabel != null) {
+                ramUsedLabel.setText(String.format("%.2f GB", usedGb));
+            }
+            if (ramTotalLabel != null) {
+                if (totalGb > 0) {
+                    ramTotalLabel.setText(String.format("%.2f GB", totalGb));
+                } else {
+                    ramTotalLabel.setText("-");
+                }
+            }
+            if (ramUsageBar != null) {
+                ramUsageBar.setProgress(progress);
+            }
+            if (processStatsLabel != null) {
+                processStatsLabel.setText(stats);
+            }
+            if (ramChart != null) {
+                ramChart.refresh();
+            }
+            if (cpuChart != null) {
+                cpuChart.refresh();
+            }
+            updateButtons();
+        });
+    }
+
+    @FXML
+    private void onProfileServer() {
+        ServerInstance instance = selected;
+        if (instance == null || instance.getState() != ServerState.RUNNING) {
+            appendToConsole("Server is not running.\n");
+            return;
         }
+        profileBtn.setDisable(true);
+        // Progress and the result are logged to the server console
+        instance.profile("on demand");
     }
 
-    private String extractPlayerName(String logLine, String marker) {
-        int idx = logLine.indexOf(marker);
-        if (idx <= 0) return null;
-        String before = logLine.substring(0, idx).trim();
-        // Take the last token before the marker as the name
-        int lastSpace = before.lastIndexOf(' ');
-        if (lastSpace >= 0 && lastSpace < before.length() - 1) {
-            return before.substring(lastSpace + 1).trim();
+    @FXML
+    private void onAnalyzeLogs() {
+        ServerInstance instance = selected;
+        if (instance == null) {
+            appendToConsole("Please choose a server folder first.\n");
+            return;
         }
-        return before;
+        analyzeLogsBtn.setDisable(true);
+        // The summary is logged to the server console
+        instance.analyzeLogs().whenComplete((report, error) -> Platform.runLater(() -> analyzeLogsBtn.setDisable(false)));
     }
 
-    private void addOrUpdatePlayer(String name) {
-        if (playerTable == null) return;
-        PlayerViewModel existing = playerTable.getItems().stream()
-                .filter(p -> p.getName().equalsIgnoreCase(name))
-                .findFirst()
-                .orElse(null);
-        if (existing == null) {
-            // Create view model; head image will be lazily loaded in the cell from Minotar
-            playerTable.getItems().add(new PlayerViewModel(name, 0, false, null));
+    @FXML
+    private void onScanWorld() {
+        ServerInstance instance = selected;
+        if (instance == null) {
+            appendToConsole("Please choose a server folder first.\n");
+            return;
         }
+        scanWorldBtn.setDisable(true);
+        // Per-dimension lines go to the server console, the totals to the label
+        instance.scanWorld().whenComplete((scan, error) -> Platform.runLater(() -> {
+            scanWorldBtn.setDisable(false);
+            if (selected != instance) return;
+            worldLabel.setText(error != null ? "Scan failed" : scan.summary().get(0));
+        }));
     }
 
-    private void removePlayer(String name) {
-        if (playerTable == null) return;
-        playerTable.getItems().removeIf(p -> p.getName().equalsIgnoreCase(name));
+    @FXML
+    private void onBackupServer() {
+        ServerInstance instance = selected;
+        if (instance == null) {
+            appendToConsole("Please choose a server folder first.\n");
+            return;
+        }
+        // Progress and the result are logged to the server console
+        whileBackupRuns(instance, instance.backup());
     }
 
-    private void startRamMonitor() {
-        ramMonitorThread = new Thread(() -> {
-            while (true) {
-                double usedGb = 0.0;
-                // As a fallback, approximate using this JVM's heap; real server RSS would
-                // require OS-specific calls. We still scale against configuredMaxRamGb.
-                Runtime rt = Runtime.getRuntime();
-                long total = rt.totalMemory();
-                long used = total - rt.freeMemory();
-                usedGb = used / (1024.0 * 1024.0 * 1024.0);
+    @FXML
+    private void onVerifyBackup() {
+        ServerInstance instance = selected;
+        if (instance == null) {
+            appendToConsole("Please choose a server folder first.\n");
+            return;
+        }
+        try {
+            List<BackupEngine.Snapshot> snapshots = instance.listBackups();
+            if (snapshots.isEmpty()) {
+                appendToConsole("No backups to verify.\n");
+                return;
+            }
+            whileBackupRuns(instance, instance.verifyBackup(snapshots.get(snapshots.size() - 1)));
+        } catch (IOException e) {
+            appendToConsole("Failed to read backups: " + e.getMessage() + "\n");
+        }
+    }
 
-                double totalGb = configuredMaxRamGb;
-                double displayUsed = serverStarted ? usedGb : 0.0;
-                double displayTotal = serverStarted ? totalGb : 0.0;
-                double progress = (serverStarted && displayTotal > 0) ? displayUsed / displayTotal : 0.0;
-                double finalUsed = displayUsed;
-                double finalTotal = displayTotal;
+    @FXML
+    private void onRestoreBackup() {
+        ServerInstance instance = selected;
+        if (instance == null) {
+            appendToConsole("Please choose a server folder first.\n");
+            return;
+        }
+        if (instance.getState().isActive()) {
+            appendToConsole("Stop the server before restoring a backup.\n");
+            return;
+        }
+        List<BackupEngine.Snapshot> snapshots;
+        try {
+            snapshots = instance.listBackups();
+        } catch (IOException e) {
+            appendToConsole("Failed to read backups: " + e.getMessage() + "\n");
+            return;
+        }
+        if (snapshots.isEmpty()) {
+            appendToConsole("No backups to restore.\n");
+            return;
+        }
+        ChoiceDialog<BackupEngine.Snapshot> choice = new ChoiceDialog<>(snapshots.get(snapshots.size() - 1), snapshots);
+        choice.setTitle("Restore backup");
+        choice.setHeaderText("Restore the world of " + instance.getName() + " from:");
+        Optional<BackupEngine.Snapshot> picked = choice.showAndWait();
+        if (picked.isEmpty()) return;
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
+                "The current world folders are kept next to the restored ones (.before-restore-...).",
+                ButtonType.OK, ButtonType.CANCEL);
+        confirm.setHeaderText("Restore " + picked.get().getId() + "?");
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) return;
+        whileBackupRuns(instance, instance.restoreBackup(picked.get()));
+    }
 
-                Platform.runLater(() -> {
-                    if (ramUsedLabel != null) {
-                        ramUsedLabel.setText(String.format("%.2f GB", finalUsed));
-                    }
-                    if (ramTotalLabel != null) {
-                        if (finalTotal > 0) {
-                            ramTotalLabel.setText(String.format("%.2f GB", finalTotal));
-                        } else {
-                            ramTotalLabel.setText("-");
-                        }
-                    }
-                    if (ramUsageBar != null) {
-                        ramUsageBar.setProgress(progress);
-                    }
-                });
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    return;
-                }
+    // Backup buttons stay disabled until the task ends, then the status line is refreshed
+    private void whileBackupRuns(ServerInstance instance, CompletableFuture<?> task) {
+        setBackupButtonsDisabled(true);
+        task.whenComplete((v, error) -> Platform.runLater(() -> {
+            setBackupButtonsDisabled(false);
+            // Refused before it started (already running, server booting); other failures are logged already
+            if (error instanceof IllegalStateException) {
+                instance.log(error.getMessage());
+            }
+            if (instance == selected) {
+                showBackupStatus(instance);
             }
-        }, "ram-monitor");
-        ramMonitorThread.setDaemon(true);
-        ramMonitorThread.start();
+        }));
     }
 
-    private void showStartupAnimation() {
-        if (rootPane == null) {
+    private void setBackupButtonsDisabled(boolean disabled) {
+        backupBtn.setDisable(disabled);
+        verifyBackupBtn.setDisable(disabled);
+        restoreBackupBtn.setDisable(disabled);
+    }
+
+    // Pause percentiles over the last hour, allocation rate, live set and the heap suggestion
+    private static String gcStats(GcLogMonitor gc, GcLogMonitor.Advice advice) {
+        long now = System.currentTimeMillis();
+        double p50 = gc.getPauses().percentile(now, 0.5);
+        if (Double.isNaN(p50)) {
+            return "No GC activity logged yet";
+        }
+        StringBuilder sb = new StringBuilder(String.format("GC pauses p50 %.1f \u00b7 p99 %.1f \u00b7 max %.1f ms",
+                p50, gc.getPauses().percentile(now, 0.99), gc.getPauses().max(now)));
+        double rate = gc.getAllocationRateMbPerSec();
+        double live = gc.getLiveSetMb();
+        if (!Double.isNaN(rate)) {
+            sb.append(String.format("%nAllocating %.0f MB/s", rate));
+        }
+        if (!Double.isNaN(live)) {
+            sb.append(String.format("%nLive set \u2264 %.2f GB", live / 1024));
+        }
+        long full = gc.getFullGcCount();
+        if (full > 0) {
+            sb.append(String.format("%n%d full GC%s in the last hour", full, full == 1 ? "" : "s"));
+        }
+        if (advice == null) {
+            sb.append("\nHeap suggestion after 10 GCs");
+        } else if (advice.isChange()) {
+            sb.append(String.format("%nSuggested: Xms %s, Xmx %s (%s)", advice.getXms(), advice.getXmx(), advice.getReason()));
+        } else {
+            sb.append("\nHeap size looks right (" + advice.getReason() + ")");
+        }
+        return sb.toString();
+    }
+
+    @FXML
+    private void onApplyHeapAdvice() {
+        GcLogMonitor.Advice advice = heapAdvice;
+        if (advice == null) {
             return;
         }
+        minRamField.setText(advice.getXms());
+        maxRamField.setText(advice.getXmx());
+        onApplyRamSettings();
+    }
+
+    // Verdict plus the hottest threads, CPU in percent of one core
+    private static String threadStats(ThreadSampler threads) {
+        String[] names = new String[5];
+        double[] cpu = new double[5];
+        ThreadSampler.Kind[] kinds = new ThreadSampler.Kind[5];
+        int n = threads.copyTop(names, cpu, kinds);
+        StringBuilder sb = new StringBuilder(threads.verdict());
+        for (int i = 0; i < n; i++) {
+            sb.append(String.format("%n%4.0f%%  %s", cpu[i], names[i]));
+        }
+        return sb.toString();
+    }
+
+    private static String tickStats(TickMonitor ticks) {
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder();
+        double p50 = ticks.getMsptHistogram().percentile(now, 0.5);
+        if (!Double.isNaN(p50)) {
+            sb.append(String.format("MSPT p50 %.1f \u00b7 p99 %.1f \u00b7 max %.1f ms",
+                    p50, ticks.getMsptHistogram().percentile(now, 0.99), ticks.getMsptHistogram().max(now)));
+        } else {
+            sb.append("No tick times (enable RCON to poll them)");
+        }
+        long lags = ticks.getLagHistogram().count(now);
+        sb.append('\n').append(lags).append(lags == 1 ? " lag warning" : " lag warnings").append(" in the last hour");
+        if (lags > 0) {
+            sb.append(String.format(", worst %.1f s", ticks.getLagHistogram().max(now) / 1000.0));
+        }
+        return sb.toString();
+    }
+
+    // Returns an action that removes the overlay; it also goes away by itself once boot ends
+    private Runnable showStartupAnimation(ServerInstance instance) {
+        if (rootPane == null) {
+            return () -> {};
+        }
         ProgressIndicator indicator = new ProgressIndicator();
         indicator.setMaxSize(80, 80);
         StackPane overlay = new StackPane(indicator);
@@ -487,21 +1004,45 @@ public class DashboardController {
         ft.setToValue(1.0);
         ft.play();
 
-        // Remove overlay when server is marked started (in console reader)
-        new Thread(() -> {
-            while (!serverStarted) {
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException ignored) {}
+        // Leaving STARTING means booted, failed, crashed or timed out: hide in every case
+        ServerStateListener listener = new ServerStateListener() {
+            @Override
+            public void onStateChanged(ServerState from, ServerState to) {
+                if (to != ServerState.STARTING) {
+                    instance.removeStateListener(this);
+                    Platform.runLater(() -> rootPane.getChildren().remove(overlay));
+                }
             }
-            Platform.runLater(() -> rootPane.getChildren().remove(overlay));
-        }).start();
+        };
+        instance.addStateListener(listener);
+        return () -> {
+            instance.removeStateListener(listener);
+            rootPane.getChildren().remove(overlay);
+        };
     }
 
-
     private void appendToConsole(String text) {
-        if (consoleOutput == null) return;
-        consoleOutput.appendText(text);
+        ServerInstance instance = selected;
+        if (instance != null) {
+            instance.log(text);
+        } else {
+            dashboardPipeline.offer(text.endsWith("\n") ? text.substring(0, text.length() - 1) : text);
+        }
+    }
+
+    // Once per FX pulse: apply batched roster changes and console lines of every server, so
+    // background servers keep their buffers current and never back up their pipelines
+    private void onPulse() {
+        for (Map.Entry<ServerInstance, PlayerRoster> e : rosters.entrySet()) {
+            e.getValue().flush();
+        }
+        for (ServerInstance instance : supervisor.getInstances()) {
+            instance.getConsolePipeline().drain(instance.getConsoleLines()::add);
+        }
+        dashboardPipeline.drain(dashboardLines::add);
+        if (consoleOutput != null) {
+            consoleOutput.refresh();
+        }
     }
 
     private void onKickPlayer(String name) {
@@ -517,15 +1058,11 @@ public class DashboardController {
     }
 
     private void sendServerCommand(String cmd) {
-        if (serverProcess == null || !serverProcess.isAlive()) {
+        ServerInstance instance = selected;
+        if (instance == null) {
             appendToConsole("Server is not running.\n");
             return;
         }
-        try {
-            serverProcess.sendCommand(cmd);
-            appendToConsole("> " + cmd + "\n");
-        } catch (Exception e) {
-            appendToConsole("Failed to send command: " + e.getMessage() + "\n");
-        }
+        instance.sendCommand(cmd);
     }
 }
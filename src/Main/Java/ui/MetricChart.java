@@ -0,0 +1,113 @@
+package Main.Java.ui;
+
+import Main.Java.monitor.TimeSeries;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+import java.util.function.DoubleFunction;
+
+// Small line chart drawn on a Canvas from a TimeSeries. Each refresh queries a fixed number of
+// downsampled points into reusable arrays, so drawing cost does not grow with uptime.
+// Clicking the chart cycles through the time windows.
+public final class MetricChart extends Region {
+
+    private static final long[] WINDOWS = {5 * 60_000L, 60 * 60_000L, 12 * 60 * 60_000L};
+    private static final String[] WINDOW_NAMES = {"5m", "1h", "12h"};
+    private static final int MAX_POINTS = 300;
+    private static final Color BACKGROUND = Color.web("#020617");
+    private static final Color AXIS = Color.web("#1f2937");
+    private static final Color LINE = Color.web("#a7f3d0");
+    private static final Color LABEL = Color.web("#9ca3af");
+
+    private final Canvas canvas = new Canvas();
+    private final long[] times = new long[MAX_POINTS];
+    private final double[] values = new double[MAX_POINTS];
+    private final double[] xs = new double[MAX_POINTS];
+    private final double[] ys = new double[MAX_POINTS];
+    private final Font font = Font.font(10);
+
+    private TimeSeries series;
+    private String title = "";
+    private DoubleFunction<String> formatter = v -> String.format("%.1f", v);
+    private int window = 0;
+
+    public MetricChart() {
+        getStyleClass().add("metric-chart");
+        getChildren().add(canvas);
+        setOnMouseClicked(e -> {
+            window = (window + 1) % WINDOWS.length;
+            refresh();
+        });
+    }
+
+    public void setSeries(TimeSeries series, String title, DoubleFunction<String> formatter) {
+        this.series = series;
+        this.title = title;
+        this.formatter = formatter;
+        refresh();
+    }
+
+    public void refresh() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        double w = canvas.getWidth();
+        double h = canvas.getHeight();
+        gc.setFill(BACKGROUND);
+        gc.fillRect(0, 0, w, h);
+        if (series == null || w <= 0 || h <= 0) return;
+
+        long now = System.currentTimeMillis();
+        int n = series.query(now - WINDOWS[window], now, (int) Math.min(MAX_POINTS, w), times, values);
+
+        double max = 0;
+        for (int i = 0; i < n; i++) {
+            max = Math.max(max, values[i]);
+        }
+        double top = 14;
+        double plotH = h - top - 2;
+        double scale = max > 0 ? plotH / (max * 1.1) : 0;
+        double span = WINDOWS[window];
+        for (int i = 0; i < n; i++) {
+            xs[i] = w - (now - times[i]) / span * w;
+            ys[i] = h - 1 - values[i] * scale;
+        }
+
+        gc.setStroke(AXIS);
+        gc.strokeLine(0, h - 1, w, h - 1);
+        if (n > 1) {
+            gc.setStroke(LINE);
+            gc.setLineWidth(1.2);
+            gc.strokePolyline(xs, ys, n);
+        }
+
+        gc.setFont(font);
+        gc.setTextBaseline(VPos.TOP);
+        gc.setFill(LABEL);
+        gc.fillText(title + " - " + WINDOW_NAMES[window], 2, 1);
+        if (n > 0) {
+            String peak = "max " + formatter.apply(max);
+            gc.fillText(peak, Math.max(2, w - 6 * peak.length() - 2), 1);
+        }
+    }
+
+    @Override
+    protected void layoutChildren() {
+        canvas.setWidth(Math.max(0, getWidth() - snappedLeftInset() - snappedRightInset()));
+        canvas.setHeight(Math.max(0, getHeight() - snappedTopInset() - snappedBottomInset()));
+        canvas.relocate(snappedLeftInset(), snappedTopInset());
+        refresh();
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return 200;
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return 70;
+    }
+}
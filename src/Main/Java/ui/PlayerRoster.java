@@ -0,0 +1,149 @@
+package Main.Java.ui;
+
+import Main.Java.console.LogEventType;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Online player list backed by a case-insensitive name index that is maintained on the console
+// reader thread. Joins, leaves and counters are queued and applied to the table's items once per
+// pulse, so a burst of 200 reconnects is one list change instead of 200 scans and relayouts.
+public class PlayerRoster {
+
+    private final ObservableList<PlayerViewModel> items;
+    private final Map<String, PlayerViewModel> index = new HashMap<>();
+    private final ConcurrentLinkedQueue<Change> changes = new ConcurrentLinkedQueue<>();
+
+    public PlayerRoster(ObservableList<PlayerViewModel> items) {
+        this.items = items;
+    }
+
+    public ObservableList<PlayerViewModel> getItems() {
+        return items;
+    }
+
+    // Called from any thread
+    public void join(String name) {
+        PlayerViewModel player;
+        synchronized (index) {
+            String key = key(name);
+            if (index.containsKey(key)) return;
+            player = new PlayerViewModel(name, 0, false, null);
+            index.put(key, player);
+        }
+        changes.add(new Change(LogEventType.JOIN, player));
+    }
+
+    public void leave(String name) {
+        PlayerViewModel player;
+        synchronized (index) {
+            player = index.remove(key(name));
+        }
+        if (player != null) {
+            changes.add(new Change(LogEventType.LEAVE, player));
+        }
+    }
+
+    // Bumps the death / chat / advancement counter of an online player
+    public void record(LogEventType type, String name) {
+        PlayerViewModel player = find(name);
+        if (player != null) {
+            changes.add(new Change(type, player));
+        }
+    }
+
+    public PlayerViewModel find(String name) {
+        synchronized (index) {
+            return index.get(key(name));
+        }
+    }
+
+    public int size() {
+        synchronized (index) {
+            return index.size();
+        }
+    }
+
+    public List<String> names() {
+        synchronized (index) {
+            List<String> names = new ArrayList<>(index.size());
+            for (PlayerViewModel p : index.values()) {
+                names.add(p.getName());
+            }
+            return names;
+        }
+    }
+
+    public void clear() {
+        List<PlayerViewModel> all;
+        synchronized (index) {
+            all = new ArrayList<>(index.values());
+            index.clear();
+        }
+        for (PlayerViewModel p : all) {
+            changes.add(new Change(LogEventType.LEAVE, p));
+        }
+    }
+
+    // FX thread, once per pulse: applies everything queued since the last call as at most one
+    // removal and one addition on the items list
+    public void flush() {
+        if (changes.isEmpty()) return;
+        List<PlayerViewModel> added = new ArrayList<>();
+        Set<PlayerViewModel> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Change c;
+        while ((c = changes.poll()) != null) {
+            PlayerViewModel p = c.player;
+            switch (c.type) {
+                case JOIN:
+                    removed.remove(p);
+                    added.add(p);
+                    break;
+                case LEAVE:
+                    if (!added.remove(p)) {
+                        removed.add(p);
+                    }
+                    break;
+                case DEATH:
+                    p.deathsProperty().set(p.getDeaths() + 1);
+                    break;
+                case CHAT:
+                    p.chatMessagesProperty().set(p.getChatMessages() + 1);
+                    break;
+                case ADVANCEMENT:
+                    p.advancementsProperty().set(p.getAdvancements() + 1);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (!removed.isEmpty()) {
+            items.removeAll(removed);
+        }
+        if (!added.isEmpty()) {
+            items.addAll(added);
+        }
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Change {
+        final LogEventType type;
+        final PlayerViewModel player;
+
+        Change(LogEventType type, PlayerViewModel player) {
+            this.type = type;
+            this.player = player;
+        }
+    }
+}
@@ -9,6 +9,10 @@ public class PlayerViewModel {
     private final IntegerProperty ping = new SimpleIntegerProperty();
     private final BooleanProperty operator = new SimpleBooleanProperty();
     private final ObjectProperty<Image> skinHead = new SimpleObjectProperty<>();
+    private final LongProperty sessionStart = new SimpleLongProperty(System.currentTimeMillis());
+    private final IntegerProperty deaths = new SimpleIntegerProperty();
+    private final IntegerProperty chatMessages = new SimpleIntegerProperty();
+    private final IntegerProperty advancements = new SimpleIntegerProperty();
 
     public PlayerViewModel(String name, int ping, boolean operator, Image skinHead) {
         this.name.set(name);
@@ -21,10 +25,18 @@ public class PlayerViewModel {
     public IntegerProperty pingProperty() { return ping; }
     public BooleanProperty operatorProperty() { return operator; }
     public ObjectProperty<Image> skinHeadProperty() { return skinHead; }
+    public LongProperty sessionStartProperty() { return sessionStart; }
+    public IntegerProperty deathsProperty() { return deaths; }
+    public IntegerProperty chatMessagesProperty() { return chatMessages; }
+    public IntegerProperty advancementsProperty() { return advancements; }
 
     public String getName() { return name.get(); }
     public int getPing() { return ping.get(); }
     public boolean isOperator() { return operator.get(); }
     public Image getSkinHead() { return skinHead.get(); }
+    public long getSessionStart() { return sessionStart.get(); }
+    public int getDeaths() { return deaths.get(); }
+    public int getChatMessages() { return chatMessages.get(); }
+    public int getAdvancements() { return advancements.get(); }
 }
 
@@ -0,0 +1,13 @@
+package Main.Java.utils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Kept apart from FileHelper, which needs JavaFX: the headless daemon resolves its socket here
+public class AppData {
+
+    // Per-user folder for caches and data the dashboard keeps between runs
+    public static Path dir() {
+        return Paths.get(System.getProperty("user.home"), ".mc-dashboard");
+    }
+}
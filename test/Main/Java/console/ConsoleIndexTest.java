@@ -0,0 +1,100 @@
+package Main.Java.console;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsoleIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void stoppingWhileLinesArriveLeavesTheStoreUsable() throws Exception {
+        try (LogStore store = new LogStore(dir, LogStore.Policy.defaults())) {
+            for (int i = 0; i < 50_000; i++) {
+                store.append(i, "[12:00:00] [Server thread/INFO]: history line " + i);
+            }
+            for (int round = 0; round < 20; round++) {
+                // Backfill reads the store while the appender flushes into it
+                ConsoleIndex index = new ConsoleIndex(store, LogEventMatcher.minecraft(), 1000, 50_000);
+                AtomicBoolean appending = new AtomicBoolean(true);
+                AtomicReference<IOException> failed = new AtomicReference<>();
+                Thread appender = Thread.ofVirtual().start(() -> {
+                    try {
+                        while (appending.get()) {
+                            long lineNo = store.append(1, "[12:00:01] [Server thread/INFO]: live line");
+                            index.offer(lineNo, "[12:00:01] [Server thread/INFO]: live line");
+                            store.flush();
+                        }
+                    } catch (IOException e) {
+                        failed.set(e);
+                    }
+                });
+                index.start(failed::set);
+                Thread.sleep(round % 5);
+                index.stop();
+                appending.set(false);
+                appender.join();
+                int r = round;
+                assertNull(failed.get(), () -> "round " + r + ": " + failed.get());
+            }
+            long lineNo = store.append(2, "after the index stopped");
+            store.flush();
+            assertEquals("after the index stopped", store.line(lineNo));
+            assertEquals("[12:00:00] [Server thread/INFO]: history line 7", store.line(7));
+        }
+    }
+
+    @Test
+    void dropsPostingsOfLinesRetentionDeleted() throws Exception {
+        // 4 KB segments, at most 8 KB kept
+        LogStore.Policy policy = new LogStore.Policy(4096, 8192, Long.MAX_VALUE, Long.MAX_VALUE, null);
+        try (LogStore store = new LogStore(dir, policy)) {
+            ConsoleIndex index = new ConsoleIndex(store, LogEventMatcher.minecraft(), 10_000, 0);
+            index.start(e -> { });
+            for (int i = 0; i < 1000; i++) {
+                String line = "[12:00:00] [Server thread/INFO]: old" + i;
+                index.offer(store.append(i, line), line);
+            }
+            awaitIndexed(index, store.nextLine() - 1);
+            long firstNew = store.nextLine();
+            for (int i = 0; i < 1000; i++) {
+                String line = "[12:00:00] [Server thread/INFO]: new";
+                index.offer(store.append(i, line), line);
+            }
+            store.flush();
+            store.maintain();
+            assertTrue(store.firstLine() > 1000, "retention ran: " + store.firstLine());
+            long deadline = System.currentTimeMillis() + 5_000;
+            // Retention deletes segment by segment, so pruning may take more than one pass
+            while (index.tokenCount() >= 10 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(index.tokenCount() < 10, "tokens left: " + index.tokenCount());
+            awaitIndexed(index, firstNew + 999);
+            assertEquals(0, index.search("old5", 10).lineNos.length);
+            ConsoleIndex.Result result = index.search("new", 3);
+            assertArrayEquals(new long[]{firstNew + 999, firstNew + 998, firstNew + 997}, result.lineNos);
+            assertTrue(result.truncated);
+            index.stop();
+        }
+    }
+
+    private static void awaitIndexed(ConsoleIndex index, long lineNo) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (index.indexedUpTo() < lineNo && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(lineNo, index.indexedUpTo());
+    }
+}
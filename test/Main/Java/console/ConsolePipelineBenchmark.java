@@ -0,0 +1,115 @@
+package Main.Java.console;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// A console reader offering lines as fast as it can while a second thread drains them into a
+// LineRing once per 60 Hz pulse, the way the dashboard's AnimationTimer does. "reader" is the
+// offered lines/s, "pulse" the pulses/s the drain kept up (60 when no pulse overruns its frame),
+// and the delivered/dropped counters the lines/s that reached the ring or were dropped at the
+// pending limit. ringAdd is the cost of one LineRing.add.
+//
+// Needs JMH's annotation processor on the test compile; run main() or the JMH IDE plugin.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsolePipelineBenchmark {
+
+    private static final long PULSE_NANOS = 1_000_000_000L / 60;
+    private static final String[] LINES = {
+            "[12:00:00] [Server thread/INFO]: Steve joined the game",
+            "[12:00:01] [Server thread/WARN]: Can't keep up! Is the server overloaded? Running 2345ms or 46 ticks behind",
+            "[12:00:02] [Worker-Main-3/ERROR]: Couldn't load chunk [12, -40]",
+            "[12:00:03] [Server thread/INFO]: <Steve> zdravím všechny 👋",
+            "[12:00:04] [Worker-Main-5/WARN]: Ignoring unknown attribute 'generic.flying_speed'",
+            "[12:00:05] [Server thread/INFO]: Saving chunks for level 'ServerLevel[world]'/minecraft:overworld",
+            "[12:00:06] [Server thread/INFO]: Named entity EntityVillager['Villager'/123, l='ServerLevel[world]'] died",
+            "[12:00:07] [Server thread/INFO]: Steve left the game",
+    };
+
+    private ConsolePipeline pipeline;
+    private LineRing ring;
+    private Consumer<String> sink;
+    // Reader thread only
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        // The defaults of console.maxPending, console.retention and console.retentionBytes
+        pipeline = new ConsolePipeline(50_000);
+        ring = new LineRing(1_000_000, 64 * 1024 * 1024);
+        sink = ring::add;
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Delivery {
+        public long delivered;
+        public long dropped;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            delivered = 0;
+            dropped = 0;
+        }
+    }
+
+    @Benchmark
+    @Group("pipeline")
+    @GroupThreads(1)
+    public boolean reader() {
+        return pipeline.offer(LINES[next++ & (LINES.length - 1)]);
+    }
+
+    @Benchmark
+    @Group("pipeline")
+    @GroupThreads(1)
+    public int pulse(Delivery d) throws InterruptedException {
+        long start = System.nanoTime();
+        long droppedBefore = pipeline.droppedCount();
+        int n = pipeline.drain(sink);
+        d.delivered += n;
+        d.dropped += pipeline.droppedCount() - droppedBefore;
+        long left = PULSE_NANOS - (System.nanoTime() - start);
+        if (left > 0) {
+            TimeUnit.NANOSECONDS.sleep(left);
+        }
+        return n;
+    }
+
+    // A group of its own: the state is shared per group
+    @Benchmark
+    @Group("ringAdd")
+    @GroupThreads(1)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long ringAdd() {
+        ring.add(LINES[next++ & (LINES.length - 1)]);
+        return ring.nextLine();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ConsolePipelineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
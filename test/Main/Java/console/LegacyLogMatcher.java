@@ -0,0 +1,49 @@
+package Main.Java.console;
+
+// The console parsing the dashboard did before LogEventMatcher, kept verbatim as the reference
+// the tests and the benchmark compare against: every line is lower-cased and searched with
+// contains(), the player name cut out with a substring chain, and the boot filter lower-cases
+// the line a second time.
+final class LegacyLogMatcher {
+
+    record Event(LogEventType type, String name) {
+    }
+
+    private LegacyLogMatcher() {
+    }
+
+    // handlePlayerEvents: JOIN or LEAVE with the name, or null
+    static Event playerEvent(String logLine) {
+        String lower = logLine.toLowerCase();
+        if (lower.contains(" joined the game")) {
+            String name = extractPlayerName(logLine, "joined the game");
+            if (name != null && !name.isBlank()) {
+                return new Event(LogEventType.JOIN, name);
+            }
+        } else if (lower.contains(" left the game")) {
+            String name = extractPlayerName(logLine, "left the game");
+            if (name != null && !name.isBlank()) {
+                return new Event(LogEventType.LEAVE, name);
+            }
+        }
+        return null;
+    }
+
+    // The boot filter in startConsoleReader
+    static boolean isBootDone(String logLine) {
+        String lower = logLine.toLowerCase();
+        return lower.contains("done") || lower.contains("ready") || lower.contains("server started");
+    }
+
+    private static String extractPlayerName(String logLine, String marker) {
+        int idx = logLine.indexOf(marker);
+        if (idx <= 0) return null;
+        String before = logLine.substring(0, idx).trim();
+        // Take the last token before the marker as the name
+        int lastSpace = before.lastIndexOf(' ');
+        if (lastSpace >= 0 && lastSpace < before.length() - 1) {
+            return before.substring(lastSpace + 1).trim();
+        }
+        return before;
+    }
+}
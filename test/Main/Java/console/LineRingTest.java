@@ -0,0 +1,41 @@
+package Main.Java.console;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LineRingTest {
+
+    @Test
+    void keepsLinesAcrossTheEndOfTheArray() {
+        LineRing ring = new LineRing(1000, 1024);
+        for (int i = 0; i < 500; i++) {
+            ring.add("line " + i + " é😀");
+        }
+        for (long l = ring.firstLine(); l < ring.nextLine(); l++) {
+            assertEquals("line " + l + " é😀", ring.line(l));
+        }
+        assertTrue(ring.size() < 500, "evicted by bytes: " + ring.size());
+    }
+
+    @Test
+    void cutsAnOversizedLineOnAWholeCharacter() {
+        LineRing ring = new LineRing(10, 1024);
+        // Odd offset so the tail would start on the low half of a pair
+        ring.add("x" + "😀".repeat(2000));
+        String kept = ring.line(ring.nextLine() - 1);
+        assertTrue(kept.length() > 0 && !Character.isLowSurrogate(kept.charAt(0)), "starts with a whole character");
+        assertEquals(kept, new String(kept.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void clampsHugeLimits() {
+        LineRing ring = new LineRing(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        ring.add("fits");
+        assertEquals("fits", ring.line(0));
+        assertEquals(Integer.MAX_VALUE, ring.capacity());
+    }
+}
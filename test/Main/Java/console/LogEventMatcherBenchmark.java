@@ -0,0 +1,77 @@
+package Main.Java.console;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-line cost of the LogEventMatcher automaton against the old toLowerCase/contains parsing
+// (LegacyLogMatcher) on a mix of console lines shaped like a busy server's. The legacy side only
+// looks for joins and leaves; the automaton looks for every event type in the same pass. Add
+// "-prof gc" to see allocation per line.
+//
+// Needs JMH's annotation processor on the test compile; run main() or the JMH IDE plugin.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogEventMatcherBenchmark {
+
+    private static final String[] LINES = {
+            "[12:00:00] [Server thread/INFO]: Steve joined the game",
+            "[12:00:01] [Server thread/INFO]: <Steve> anyone up for the nether?",
+            "[12:00:02] [Server thread/WARN]: Can't keep up! Is the server overloaded? Running 2345ms or 46 ticks behind",
+            "[12:00:03] [Server thread/INFO]: Steve was slain by Zombie",
+            "[12:00:04] [Server thread/INFO]: Steve has made the advancement [Stone Age]",
+            "[12:00:05] [Server thread/WARN]: Steve moved too quickly! 12.5,0.0,3.25",
+            "[12:00:06] [Server thread/INFO]: Saving chunks for level 'ServerLevel[world]'/minecraft:overworld",
+            "[12:00:07] [Server thread/INFO]: ThreadedAnvilChunkStorage (world): All chunks are saved",
+            "[12:00:08] [Server thread/INFO]: [Steve: Set the time to 1000]",
+            "[12:00:09] [Server thread/INFO]: Named entity EntityVillager['Villager'/123, l='ServerLevel[world]', x=1.5, y=64.0, z=-2.5] died",
+            "[12:00:10] [Worker-Main-3/WARN]: Ignoring unknown attribute 'generic.flying_speed'",
+            "[12:00:11] [Server thread/INFO]: Steve left the game",
+    };
+
+    private final LogEventMatcher matcher = LogEventMatcher.minecraft();
+    private LogEventListener sink;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        sink = (type, line, start, end) -> bh.consume(start);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(12)
+    public void legacy(Blackhole bh) {
+        for (String line : LINES) {
+            bh.consume(LegacyLogMatcher.playerEvent(line));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(12)
+    public void automaton(Blackhole bh) {
+        for (String line : LINES) {
+            bh.consume(matcher.match(line, sink));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LogEventMatcherBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,155 @@
+package Main.Java.console;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogEventMatcherTest {
+
+    private static final LogEventMatcher MATCHER = LogEventMatcher.minecraft();
+
+    // Vanilla, Paper and Forge console lines both implementations must classify alike
+    private static final String[] PLAYER_LINES = {
+            "[12:01:02] [Server thread/INFO]: Steve joined the game",
+            "[12:05:10] [Server thread/INFO]: Steve left the game",
+            "[12:01:02 INFO]: Notch joined the game",
+            "[12:05:10 INFO]: Notch left the game",
+            "[12:01:02] [Server thread/INFO] [minecraft/MinecraftServer]: Dev_42 joined the game",
+            "[12:05:10] [Server thread/INFO] [minecraft/MinecraftServer]: Dev_42 left the game",
+            "[12:01:01] [User Authenticator #1/INFO]: UUID of player Steve is 069a79f4-44e9-4726-a5be-fca90e38aaf5",
+            "[12:01:02] [Server thread/INFO]: Steve[/127.0.0.1:51234] logged in with entity id 123 at (0.5, 64.0, 0.5)",
+            "[12:05:10] [Server thread/INFO]: Steve lost connection: Disconnected",
+            "[12:03:00] [Server thread/INFO]: <Steve> hello",
+            "[12:04:00] [Server thread/INFO]: Steve was slain by Zombie",
+            "[12:06:00] [Server thread/INFO]: Saving chunks for level 'ServerLevel[world]'/minecraft:overworld",
+    };
+
+    private static final String[] BOOT_DONE_LINES = {
+            "[12:00:30] [Server thread/INFO]: Done (12.345s)! For help, type \"help\"",
+            "[12:00:30 INFO]: Done (8.201s)! For help, type \"help\"",
+            "[12:00:30] [Server thread/INFO] [minecraft/DedicatedServer]: Done (20.100s)! For help, type \"help\" or \"?\"",
+            "[12:00:30] [Server thread/INFO]: Server started",
+    };
+
+    private static final String[] BOOT_LINES = {
+            "[12:00:01] [ServerMain/INFO]: Environment: Environment[sessionHost=https://sessionserver.mojang.com]",
+            "[12:00:02] [Server thread/INFO]: Starting minecraft server version 1.20.4",
+            "[12:00:02] [Server thread/INFO]: Loading properties",
+            "[12:00:05] [Server thread/INFO]: Preparing level \"world\"",
+            "[12:00:06] [Worker-Main-2/INFO]: Preparing spawn area: 42%",
+            "[12:00:07] [Server thread/INFO]: Time elapsed: 3456 ms",
+    };
+
+    @Test
+    void joinAndLeaveMatchTheOldParsingOnRealLines() {
+        for (String line : PLAYER_LINES) {
+            LegacyLogMatcher.Event old = LegacyLogMatcher.playerEvent(line);
+            Map<LogEventType, String> events = match(line);
+            String join = events.get(LogEventType.JOIN);
+            String leave = events.get(LogEventType.LEAVE);
+            assertEquals(old != null && old.type() == LogEventType.JOIN ? old.name() : null, join, line);
+            assertEquals(old != null && old.type() == LogEventType.LEAVE ? old.name() : null, leave, line);
+        }
+    }
+
+    @Test
+    void bootDoneMatchesTheOldFilterOnRealLines() {
+        for (String line : BOOT_DONE_LINES) {
+            assertTrue(LegacyLogMatcher.isBootDone(line), line);
+            assertTrue(match(line).containsKey(LogEventType.BOOT_DONE), line);
+        }
+        for (String line : BOOT_LINES) {
+            assertFalse(LegacyLogMatcher.isBootDone(line), line);
+            assertFalse(match(line).containsKey(LogEventType.BOOT_DONE), line);
+        }
+    }
+
+    // Lines where the old substring checks were wrong and the matcher deliberately differs
+    @Test
+    void fixesWhatTheOldParsingGotWrong() {
+        String remap = "[ReobfServer] Done remapping server in 6543ms.";
+        assertTrue(LegacyLogMatcher.isBootDone(remap));
+        assertFalse(match(remap).containsKey(LogEventType.BOOT_DONE));
+
+        String bindFailed = "[12:00:03] [Server thread/WARN]: Perhaps a server is already running on that port?";
+        assertTrue(LegacyLogMatcher.isBootDone(bindFailed));
+        assertFalse(match(bindFailed).containsKey(LogEventType.BOOT_DONE));
+
+        String chat = "[12:10:00] [Server thread/INFO]: <Alex> Steve joined the game lol";
+        assertEquals("Steve", LegacyLogMatcher.playerEvent(chat).name());
+        assertNull(match(chat).get(LogEventType.JOIN));
+        assertEquals("Alex", match(chat).get(LogEventType.CHAT));
+
+        String renamed = "[12:01:02] [Server thread/INFO]: Steve (formerly known as Alex) joined the game";
+        assertEquals("Alex)", LegacyLogMatcher.playerEvent(renamed).name());
+        assertEquals("Steve", match(renamed).get(LogEventType.JOIN));
+    }
+
+    // Anything a player types lands in the message; only the start of it is the server's
+    @Test
+    void ignoresEventTextTypedInChat() {
+        String[] chat = {
+                "[12:10:00] [Server thread/INFO]: <Alex> Can't keep up! Is the server overloaded? Running 9000ms or 180 ticks behind",
+                "[12:10:00] [Server thread/INFO]: <Alex> Done (1.000s)! For help, type \"help\"",
+                "[12:10:00] [Server thread/INFO]: <Alex> ]: Done (1.000s)! For help, type \"help\"",
+                "[12:10:00] [Server thread/INFO]: <Alex> ]: Server started",
+                "[12:10:00] [Server thread/INFO]: <Alex> ]: Saved the game",
+                "[12:10:00] [Server thread/INFO]: <Alex> ]: <Notch> hi",
+                "[12:10:00] [Server thread/INFO]: <Alex> ]: Steve joined the game",
+        };
+        for (String line : chat) {
+            Map<LogEventType, String> events = match(line);
+            assertEquals(Map.of(LogEventType.CHAT, "Alex"), events, line);
+        }
+        // /me, which every player may use
+        assertTrue(match("[12:10:00] [Server thread/INFO]: * Alex Can't keep up! Running 9000ms").isEmpty());
+        assertTrue(match("[12:10:00] [Server thread/INFO]: * Alex For help, type \"help\"").isEmpty());
+    }
+
+    @Test
+    void readsTickStatsOnlyFromCommandReplies() {
+        assertEquals("20", match("[12:00:00 INFO]: TPS from last 1m, 5m, 15m: 20.0, 19.9, 19.8").get(LogEventType.TPS));
+        assertEquals("20", match("[12:00:00 INFO]: \u00a76TPS from last 1m, 5m, 15m: \u00a7a20.0, 20.0, 20.0")
+                .get(LogEventType.TPS));
+        assertEquals("1", match("[12:00:00] [Server thread/INFO] [minecraft/MinecraftServer]: Overall: Mean tick time: "
+                + "1.234 ms. Mean TPS: 20.000").get(LogEventType.MSPT));
+        // Second line of a vanilla "tick query" reply, printed without a prefix
+        assertEquals("3", match("Average time per tick: 3.4ms (Target: 50.0ms)").get(LogEventType.MSPT));
+
+        String[] chat = {
+                "[12:10:00] [Server thread/INFO]: <Alex> tps from last 1m, 5m, 15m: 1.0",
+                "[12:10:00] [Server thread/INFO]: <Alex> Overall: Mean tick time: 999 ms",
+                "[12:10:00] [Server thread/INFO]: <Alex> average time per tick: 999ms",
+                "[12:10:00] [Server thread/INFO]: <Alex> ]: TPS from last 1m, 5m, 15m: 1.0",
+        };
+        for (String line : chat) {
+            assertEquals(Map.of(LogEventType.CHAT, "Alex"), match(line), line);
+        }
+        assertTrue(match("[12:10:00] [Server thread/INFO]: * Alex TPS from last 1m, 5m, 15m: 1.0").isEmpty());
+    }
+
+    @Test
+    void extractsFieldsOfTheOtherEvents() {
+        assertEquals("Steve", match("[12:04:00] [Server thread/INFO]: Steve was slain by Zombie").get(LogEventType.DEATH));
+        assertEquals("Steve", match("[12:04:00] [Server thread/INFO]: Steve has made the advancement [Stone Age]")
+                .get(LogEventType.ADVANCEMENT));
+        assertEquals("Steve", match("[12:04:00] [Server thread/INFO]: [Not Secure] <Steve> hi").get(LogEventType.CHAT));
+        assertEquals("2345", match("[12:04:00] [Server thread/WARN]: Can't keep up! Is the server overloaded? "
+                + "Running 2345ms or 46 ticks behind").get(LogEventType.LAG));
+        assertTrue(match("[12:04:00] [Server thread/INFO]: Saved the game").containsKey(LogEventType.SAVED));
+    }
+
+    // Event type -> field text ("" when the event has no field)
+    private static Map<LogEventType, String> match(String line) {
+        Map<LogEventType, String> events = new EnumMap<>(LogEventType.class);
+        MATCHER.match(line, (type, l, start, end) ->
+                events.put(type, start < 0 ? "" : l.subSequence(start, end).toString()));
+        return events;
+    }
+}
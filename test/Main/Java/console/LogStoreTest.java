@@ -0,0 +1,83 @@
+package Main.Java.console;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void keepsLinesAroundAnOversizedOne() throws IOException {
+        try (LogStore store = new LogStore(dir, LogStore.Policy.defaults())) {
+            store.append(1, "before");
+            // A stack trace or NBT dump far past the write buffer
+            long big = store.append(2, "x".repeat(3 << 20));
+            store.append(3, "after");
+            store.flush();
+            assertEquals("before", store.line(big - 1));
+            assertEquals("after", store.line(big + 1));
+            int length = store.line(big).length();
+            assertTrue(length > 200_000 && length < 256 * 1024, "cut to the buffer: " + length);
+        }
+    }
+
+    @Test
+    void cutsMultiByteLinesAtACharacter() throws IOException {
+        try (LogStore store = new LogStore(dir, LogStore.Policy.defaults())) {
+            // 4-byte characters, as surrogate pairs
+            long lineNo = store.append(1, "😀".repeat(100_000));
+            store.flush();
+            String line = store.line(lineNo);
+            assertTrue(line.length() % 2 == 0 && line.length() < 200_000, "length " + line.length());
+            assertEquals(line, new String(line.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void readsThePolicyFromSystemProperties() {
+        String[] keys = {"console.history.segmentMB", "console.history.maxMB", "console.history.maxDays",
+                "console.history.compactDrop", "console.history.compactAfterDays"};
+        try {
+            LogStore.Policy defaults = LogStore.Policy.fromSystemProperties();
+            assertEquals(64L << 20, defaults.segmentBytes);
+            assertEquals(2048L << 20, defaults.maxTotalBytes);
+            assertEquals(30L * 24 * 60 * 60_000, defaults.maxAgeMillis);
+            assertNull(defaults.compactDrop);
+
+            System.setProperty("console.history.segmentMB", "8");
+            System.setProperty("console.history.maxMB", "512");
+            System.setProperty("console.history.maxDays", "3");
+            System.setProperty("console.history.compactDrop", "Can't keep up|moved too quickly");
+            System.setProperty("console.history.compactAfterDays", "1");
+            LogStore.Policy policy = LogStore.Policy.fromSystemProperties();
+            assertEquals(8L << 20, policy.segmentBytes);
+            assertEquals(512L << 20, policy.maxTotalBytes);
+            assertEquals(3L * 24 * 60 * 60_000, policy.maxAgeMillis);
+            assertEquals(24 * 60 * 60_000L, policy.compactAfterMillis);
+            assertTrue(policy.compactDrop.test("[12:00:00] [Server thread/WARN]: Steve moved too quickly! 1,2,3"));
+            assertFalse(policy.compactDrop.test("[12:00:00] [Server thread/INFO]: Steve joined the game"));
+        } finally {
+            for (String key : keys) System.clearProperty(key);
+        }
+    }
+
+    @Test
+    void prefixLengthStopsBeforeTheCharacterThatDoesNotFit() {
+        assertEquals(3, Utf8.prefixLength("abcdef", 3));
+        assertEquals(1, Utf8.prefixLength("aéb", 2));
+        assertEquals(1, Utf8.prefixLength("a😀", 4));
+        assertEquals(3, Utf8.prefixLength("a😀", 5));
+        assertEquals(2, Utf8.prefixLength("ab", 100));
+    }
+}
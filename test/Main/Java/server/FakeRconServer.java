@@ -0,0 +1,180 @@
+package Main.Java.server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+// Loopback stand-in for a Minecraft RCON listener. It answers the way the vanilla server does:
+// an auth reply (request id -1 on a wrong password), command output cut into 4096 character
+// packets under the command's id, and "Unknown request <type>" for any other packet type, which
+// is what the clients rely on as the end-of-response marker.
+final class FakeRconServer implements Closeable {
+
+    static final int FRAGMENT = 4096;
+
+    private final String password;
+    private final UnaryOperator<String> handler;
+    private final ServerSocket listener;
+    private final List<Socket> clients = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService delayed = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicInteger commands = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile long replyDelayNanos;
+    private volatile boolean silent;
+    private volatile int holdUntil;
+
+    FakeRconServer(String password, UnaryOperator<String> handler) throws IOException {
+        this.password = password;
+        this.handler = handler;
+        this.listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread accept = new Thread(this::acceptLoop, "fake-rcon-accept");
+        accept.setDaemon(true);
+        accept.start();
+    }
+
+    int port() {
+        return listener.getLocalPort();
+    }
+
+    int commandsReceived() {
+        return commands.get();
+    }
+
+    int connectionsAccepted() {
+        return connections.get();
+    }
+
+    // One-way network latency: every reply is written this long after its request arrived
+    void setReplyDelay(long delay, TimeUnit unit) {
+        replyDelayNanos = unit.toNanos(delay);
+    }
+
+    // Reads everything and answers nothing, like a server stuck on a long tick
+    void setSilent(boolean silent) {
+        this.silent = silent;
+    }
+
+    // Buffers replies until this many commands arrived in total; only a pipelining client gets
+    // any answer before it has sent them all
+    void holdRepliesUntil(int commandCount) {
+        holdUntil = commandCount;
+    }
+
+    void dropConnections() throws IOException {
+        for (Socket client : clients) {
+            client.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        listener.close();
+        dropConnections();
+        delayed.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        try {
+            while (true) {
+                Socket client = listener.accept();
+                client.setTcpNoDelay(true);
+                clients.add(client);
+                connections.incrementAndGet();
+                Thread t = new Thread(() -> serve(client), "fake-rcon-client");
+                t.setDaemon(true);
+                t.start();
+            }
+        } catch (IOException e) {
+            // listener closed
+        }
+    }
+
+    private void serve(Socket client) {
+        try (client) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+            OutputStream out = client.getOutputStream();
+            ByteArrayOutputStream held = new ByteArrayOutputStream();
+            boolean authenticated = false;
+            while (true) {
+                RconPacket packet = RconPacket.read(in);
+                long arrived = System.nanoTime();
+                if (silent) continue;
+
+                ByteArrayOutputStream reply = new ByteArrayOutputStream();
+                int id = packet.getRequestId();
+                if (packet.getType() == RconPacket.TYPE_AUTH) {
+                    authenticated = packet.getBody().equals(password);
+                    // Source servers send an empty response ahead of the auth answer
+                    write(reply, id, RconPacket.TYPE_RESPONSE_VALUE, "");
+                    write(reply, authenticated ? id : -1, RconPacket.TYPE_AUTH_RESPONSE, "");
+                } else if (!authenticated) {
+                    write(reply, -1, RconPacket.TYPE_AUTH_RESPONSE, "");
+                } else if (packet.getType() == RconPacket.TYPE_EXEC_COMMAND) {
+                    commands.incrementAndGet();
+                    String output = handler.apply(packet.getBody());
+                    int pos = 0;
+                    do {
+                        int end = Math.min(output.length(), pos + FRAGMENT);
+                        write(reply, id, RconPacket.TYPE_RESPONSE_VALUE, output.substring(pos, end));
+                        pos = end;
+                    } while (pos < output.length());
+                } else {
+                    write(reply, id, RconPacket.TYPE_RESPONSE_VALUE,
+                            String.format(Locale.ROOT, "Unknown request %s", Integer.toHexString(packet.getType())));
+                }
+
+                reply.writeTo(held);
+                if (commands.get() < holdUntil) continue;
+                byte[] bytes = held.toByteArray();
+                held.reset();
+                send(out, bytes, arrived);
+            }
+        } catch (IOException e) {
+            // client gone or dropped by the test
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    private void send(OutputStream out, byte[] bytes, long arrived) throws IOException {
+        long delay = replyDelayNanos;
+        if (delay == 0) {
+            out.write(bytes);
+            return;
+        }
+        // A single scheduler thread writes in arrival order, so replies overlap in flight
+        // instead of queueing behind each other's delay
+        delayed.schedule(() -> {
+            try {
+                out.write(bytes);
+            } catch (IOException ignored) {
+            }
+        }, arrived + delay - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    // Encoded by hand: RconPacket.encode enforces the client-to-server size limit, and server
+    // fragments are allowed to be larger
+    private static void write(ByteArrayOutputStream out, int id, int type, String body) {
+        byte[] payload = body.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(payload.length + RconPacket.HEADER_SIZE + 2).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(payload.length + 10).putInt(id).putInt(type).put(payload).put((byte) 0).put((byte) 0);
+        out.write(buf.array(), 0, buf.position());
+    }
+}
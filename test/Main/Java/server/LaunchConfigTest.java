@@ -0,0 +1,65 @@
+package Main.Java.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LaunchConfigTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsTheJavaVersionFromTheReleaseFile() throws IOException {
+        assertEquals(21, LaunchConfig.javaFeature(fakeJava("jdk21", "21.0.1").toString()));
+        assertEquals(17, LaunchConfig.javaFeature(fakeJava("jdk17", "17").toString()));
+        assertEquals(8, LaunchConfig.javaFeature(fakeJava("jdk8", "1.8.0_392").toString()));
+        assertEquals(0, LaunchConfig.javaFeature(dir.resolve("missing/bin/java").toString()));
+    }
+
+    @Test
+    void addsZGenerationalOnlyWhereTheJvmTakesIt() throws IOException {
+        assertFalse(LaunchProfile.ZGC.flags(4096, 17).contains("-XX:+ZGenerational"));
+        assertFalse(LaunchProfile.ZGC.flags(4096, 0).contains("-XX:+ZGenerational"));
+        assertTrue(LaunchProfile.ZGC.flags(4096, 21).contains("-XX:+ZGenerational"));
+        assertFalse(LaunchProfile.ZGC.flags(4096, 23).contains("-XX:+ZGenerational"));
+
+        Files.createFile(dir.resolve("server.jar"));
+        LaunchConfig config = LaunchConfig.load(dir.toFile());
+        config.getJvmArgs().add("-XX:+ZGenerational");
+        config.setProfile(LaunchProfile.ZGC);
+        config.setJavaPath(fakeJava("jdk17", "17").toString());
+        assertFalse(config.toCommand().contains("-XX:+ZGenerational"), "imported copy is dropped too");
+    }
+
+    @Test
+    void historySkipsRowsItCannotRead() throws IOException {
+        LaunchConfig config = LaunchConfig.load(dir.toFile());
+        LaunchHistory history = new LaunchHistory(dir.toFile());
+        history.record(config, 30_000, 2048, 3072, ServerState.STOPPED);
+        Path csv = dir.resolve(".dashboard/launch-history.csv");
+        Files.writeString(csv, "1700000000000,AIKAR,4G,false,false,31000,20\n"
+                + "1700000000000,AIKAR,4G,false,false,abc,2048,3072,STOPPED\n", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+        history.record(config, 32_000, 2048, 3072, ServerState.STOPPED);
+        assertEquals("G1 (Aikar's flags): boot 31.0 s, RSS 2.0 GB at boot, 3.0 GB peak (2 runs)", history.summary(config));
+    }
+
+    // A runtime image with bin/java and a release file
+    private Path fakeJava(String name, String version) throws IOException {
+        Path bin = Files.createDirectories(dir.resolve(name).resolve("bin"));
+        Files.writeString(dir.resolve(name).resolve("release"), "IMPLEMENTOR=\"Test\"\nJAVA_VERSION=\"" + version + "\"\n");
+        Path java = bin.resolve("java");
+        if (!Files.exists(java)) Files.createFile(java);
+        return java;
+    }
+}
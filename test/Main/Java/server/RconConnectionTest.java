@@ -0,0 +1,113 @@
+package Main.Java.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RconConnectionTest {
+
+    private FakeRconServer server;
+    private RconConnection rcon;
+
+    @BeforeEach
+    void start() throws IOException {
+        // "big <n>" answers with n characters, anything else echoes the command
+        server = new FakeRconServer("secret",
+                cmd -> cmd.startsWith("big ") ? "#".repeat(Integer.parseInt(cmd.substring(4))) : "ran " + cmd);
+        rcon = new RconConnection("127.0.0.1", server.port(), "secret");
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        rcon.close();
+        server.close();
+    }
+
+    @Test
+    void runsCommandsAfterAuthenticating() throws Exception {
+        rcon.connect();
+        assertEquals("ran list", rcon.sendCommand("list").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsAWrongPassword() throws IOException {
+        try (RconConnection wrong = new RconConnection("127.0.0.1", server.port(), "guess")) {
+            IOException e = assertThrows(IOException.class, wrong::connect);
+            assertTrue(e.getMessage().contains("wrong password"), e.getMessage());
+        }
+    }
+
+    @Test
+    void pipelinesCommandsAndMatchesResponsesById() throws Exception {
+        int count = 200;
+        rcon.connect();
+        server.holdRepliesUntil(count);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(rcon.sendCommand("say " + i));
+        }
+        for (int i = 0; i < count; i++) {
+            assertEquals("ran say " + i, futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, server.connectionsAccepted());
+    }
+
+    @Test
+    void joinsMultiPacketResponsesAtTheMarker() throws Exception {
+        rcon.connect();
+        // Exactly two full fragments: without the marker there is no way to tell it is complete
+        CompletableFuture<String> exact = rcon.sendCommand("big " + 2 * FakeRconServer.FRAGMENT);
+        CompletableFuture<String> large = rcon.sendCommand("big 10000");
+        CompletableFuture<String> after = rcon.sendCommand("list");
+        assertEquals(2 * FakeRconServer.FRAGMENT, exact.get(5, TimeUnit.SECONDS).length());
+        assertEquals("#".repeat(10_000), large.get(5, TimeUnit.SECONDS));
+        assertEquals("ran list", after.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void timesOutWhenTheServerStopsAnswering() throws Exception {
+        rcon.connect();
+        server.setSilent(true);
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> rcon.sendCommand("list", 200).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+    }
+
+    @Test
+    void failsPendingCommandsAndReconnectsAfterADrop() throws Exception {
+        rcon.connect();
+        server.setSilent(true);
+        CompletableFuture<String> lost = rcon.sendCommand("list");
+        server.dropConnections();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> lost.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (rcon.isConnected() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        server.setSilent(false);
+        rcon.connect();
+        assertEquals("ran list", rcon.sendCommand("list").get(5, TimeUnit.SECONDS));
+        assertEquals(2, server.connectionsAccepted());
+    }
+
+    @Test
+    void requestIdsWrapWithinThePositiveRange() {
+        assertEquals(2, RconPacket.followingId(1));
+        assertEquals(1, RconPacket.followingId(Integer.MAX_VALUE));
+    }
+}
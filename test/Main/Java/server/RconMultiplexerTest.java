@@ -0,0 +1,94 @@
+package Main.Java.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RconMultiplexerTest {
+
+    private final List<FakeRconServer> servers = new ArrayList<>();
+    private RconMultiplexer engine;
+
+    @BeforeEach
+    void start() throws IOException {
+        engine = new RconMultiplexer(1_000, 2_000);
+        for (int i = 0; i < 8; i++) {
+            String name = "server" + i;
+            servers.add(new FakeRconServer("secret", cmd -> name + " ran " + cmd));
+        }
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        engine.close();
+        for (FakeRconServer server : servers) {
+            server.close();
+        }
+    }
+
+    @Test
+    void routesPipelinedCommandsToTheirOwnServer() throws Exception {
+        List<RconMultiplexer.Session> sessions = new ArrayList<>();
+        for (FakeRconServer server : servers) {
+            sessions.add(engine.open("127.0.0.1", server.port(), "secret"));
+        }
+        assertEquals(servers.size(), engine.sessionCount());
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int round = 0; round < 50; round++) {
+            for (RconMultiplexer.Session session : sessions) {
+                futures.add(session.sendCommand("say " + round));
+            }
+        }
+        int i = 0;
+        for (int round = 0; round < 50; round++) {
+            for (int s = 0; s < sessions.size(); s++) {
+                assertEquals("server" + s + " ran say " + round, futures.get(i++).get(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    void closingASessionFailsQueuedAndLaterCommands() throws Exception {
+        FakeRconServer server = servers.get(0);
+        server.setSilent(true);
+        RconMultiplexer.Session session = engine.open("127.0.0.1", server.port(), "secret");
+        // Still authenticating, so these sit in the queue
+        List<CompletableFuture<String>> queued = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            queued.add(session.sendCommand("list"));
+        }
+        session.close();
+        for (CompletableFuture<String> f : queued) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, e.getCause());
+        }
+        assertTrue(session.sendCommand("list").isCompletedExceptionally());
+    }
+
+    @Test
+    void reconnectsAfterTheServerDropsTheConnection() throws Exception {
+        FakeRconServer server = servers.get(0);
+        RconMultiplexer.Session session = engine.open("127.0.0.1", server.port(), "secret");
+        assertEquals("server0 ran list", session.sendCommand("list").get(5, TimeUnit.SECONDS));
+        server.dropConnections();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (session.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // The first backoff is half a second; the command waits in the queue meanwhile
+        assertEquals("server0 ran list", session.sendCommand("list").get(5, TimeUnit.SECONDS));
+        assertEquals(2, server.connectionsAccepted());
+    }
+}
@@ -0,0 +1,150 @@
+package Main.Java.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Bursts of RCON commands against FakeRconServer: the pipelined RconConnection against a
+// blocking client that sends one command and reads its answer before sending the next, which
+// is how RCON was driven before. replyDelayMicros simulates one-way network latency; on plain
+// loopback (0) the difference is only syscalls and wakeups.
+//
+// Needs JMH's annotation processor on the test compile; run main() or the JMH IDE plugin.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RconThroughputBenchmark {
+
+    private static final int BURST = 100;
+
+    @Param({"0", "500"})
+    public long replyDelayMicros;
+
+    private FakeRconServer server;
+    private RconConnection pipelined;
+    private BlockingRcon blocking;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        server = new FakeRconServer("secret", cmd -> "ran " + cmd);
+        server.setReplyDelay(replyDelayMicros, TimeUnit.MICROSECONDS);
+        pipelined = new RconConnection("127.0.0.1", server.port(), "secret");
+        pipelined.connect();
+        blocking = new BlockingRcon(server.port(), "secret");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        blocking.close();
+        pipelined.close();
+        server.close();
+    }
+
+    // Time per command, averaged over a burst
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int pipelinedBurst() {
+        List<CompletableFuture<String>> futures = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            futures.add(pipelined.sendCommand("list"));
+        }
+        int total = 0;
+        for (CompletableFuture<String> f : futures) {
+            total += f.join().length();
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int oneAtATimeBurst() throws IOException {
+        int total = 0;
+        for (int i = 0; i < BURST; i++) {
+            total += blocking.run("list").length();
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RconThroughputBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    // Blocking request/response client: writes a command and its marker, then reads until the
+    // marker comes back before anything else can be sent
+    private static final class BlockingRcon implements Closeable {
+        private final Socket socket = new Socket();
+        private final DataInputStream in;
+        private final OutputStream out;
+        private int nextId = 1;
+
+        BlockingRcon(int port, String password) throws IOException {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress("127.0.0.1", port));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = socket.getOutputStream();
+            int id = nextId++;
+            send(id, RconPacket.TYPE_AUTH, password);
+            RconPacket packet;
+            do {
+                packet = RconPacket.read(in);
+            } while (packet.getType() != RconPacket.TYPE_AUTH_RESPONSE);
+            if (packet.getRequestId() != id) {
+                throw new IOException("RCON authentication failed");
+            }
+        }
+
+        String run(String cmd) throws IOException {
+            int id = nextId++;
+            int markerId = nextId++;
+            send(id, RconPacket.TYPE_EXEC_COMMAND, cmd);
+            send(markerId, RconPacket.TYPE_RESPONSE_VALUE, "");
+            StringBuilder response = new StringBuilder();
+            while (true) {
+                RconPacket packet = RconPacket.read(in);
+                if (packet.getRequestId() == markerId) return response.toString();
+                if (packet.getRequestId() == id) response.append(packet.getBody());
+            }
+        }
+
+        private void send(int id, int type, String body) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(RconPacket.encodedSize(body));
+            RconPacket.encode(buf, id, type, body);
+            out.write(buf.array(), 0, buf.position());
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package Main.Java.ui;
+
+import javafx.scene.image.Image;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class AvatarCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void requestsForTheSamePlayerShareOneFetch() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        AvatarCache cache = new AvatarCache((name, size) -> {
+            fetches.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return null;
+        }, dir, 60_000, 100);
+        List<CompletableFuture<Image>> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            requests.add(cache.get(i % 2 == 0 ? "Steve" : "steve"));
+        }
+        release.countDown();
+        Image first = requests.get(0).get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<Image> request : requests) {
+            assertSame(first, request.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void triesAgainAfterAFailedFetch() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        AvatarCache cache = new AvatarCache((name, size) -> {
+            fetches.incrementAndGet();
+            throw new IOException("offline");
+        }, dir, 60_000, 100, 200);
+        Image placeholder = cache.get("Steve").get(5, TimeUnit.SECONDS);
+        assertNotNull(placeholder);
+        // Within the retry delay the placeholder is served without a fetch
+        assertSame(placeholder, cache.get("Steve").get(5, TimeUnit.SECONDS));
+        assertEquals(1, fetches.get());
+        Thread.sleep(250);
+        assertNull(cache.getIfPresent("Steve"));
+        cache.get("Steve").get(5, TimeUnit.SECONDS);
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void minotarRefusesNamesThatAreNotAccountNames() throws IOException {
+        AvatarSource minotar = AvatarSource.minotar();
+        for (String name : new String[]{"../../evil", "Steve?x=1", "a b", "", "ThisNameIsTooLong17", ".BedrockPlayer"}) {
+            assertNull(minotar.fetch(name, AvatarCache.SIZE), name);
+        }
+    }
+}